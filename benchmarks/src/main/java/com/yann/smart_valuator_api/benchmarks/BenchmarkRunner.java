@@ -0,0 +1,132 @@
+package com.yann.smart_valuator_api.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks with the GC profiler and writes JMH's JSON results, then optionally
+ * compares them with a baseline from a previous release.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.yann.smart_valuator_api.benchmarks.BenchmarkRunner \
+ *     [include-regex] [--out results.json] [--baseline previous.json] [--threshold 0.10]
+ * </pre>
+ *
+ * Exits with status 1 when any score or allocation rate is worse than the baseline by more than
+ * the threshold, so it can gate a release build.
+ */
+public final class BenchmarkRunner {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String include = ".*";
+        Path out = Path.of("target", "jmh-results.json");
+        Path baseline = null;
+        double threshold = 0.10;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out" -> out = Path.of(args[++i]);
+                case "--baseline" -> baseline = Path.of(args[++i]);
+                case "--threshold" -> threshold = Double.parseDouble(args[++i]);
+                default -> include = args[i];
+            }
+        }
+
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(out.toString());
+        new Runner(options.build()).run();
+        System.out.println("Results written to " + out.toAbsolutePath());
+
+        if (baseline != null && compare(baseline, out, threshold) > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints every benchmark present in both files and returns how many regressed. Lower is
+     * better for average-time scores and allocation, higher for throughput.
+     */
+    static int compare(Path baselineFile, Path currentFile, double threshold) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = index(objectMapper.readTree(baselineFile.toFile()));
+        Map<String, JsonNode> current = index(objectMapper.readTree(currentFile.toFile()));
+
+        int regressions = 0;
+        System.out.printf("%n%-110s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            boolean higherIsBetter = after.path("mode").asText().equals("thrpt");
+
+            regressions += report(entry.getKey(),
+                    before.path("primaryMetric"), after.path("primaryMetric"), higherIsBetter, threshold);
+            regressions += report(entry.getKey() + ":" + ALLOCATION,
+                    before.path("secondaryMetrics").path(ALLOCATION),
+                    after.path("secondaryMetrics").path(ALLOCATION), false, threshold);
+        }
+        System.out.println(regressions == 0 ? "No regressions" : regressions + " regression(s) beyond " + Math.round(threshold * 100) + "%");
+        return regressions;
+    }
+
+    private static int report(String name, JsonNode before, JsonNode after, boolean higherIsBetter, double threshold) {
+        if (before.isMissingNode() || after.isMissingNode()) {
+            return 0;
+        }
+        double old = before.path("score").asDouble();
+        double now = after.path("score").asDouble();
+        // Allocation rates near zero make ratios meaningless; treat a few bytes as noise
+        if (Math.abs(old) < 1 && Math.abs(now) < 1) {
+            return 0;
+        }
+        double change = old == 0 ? 1 : (now - old) / old;
+        // Only flag changes that are also outside both runs' confidence intervals
+        double noise = errorOf(before) + errorOf(after);
+        boolean regressed = (higherIsBetter ? change < -threshold : change > threshold)
+                && Math.abs(now - old) > noise;
+        System.out.printf("%-110s %14.3f %14.3f %+8.1f%%%s%n",
+                name, old, now, change * 100, regressed ? "  REGRESSION" : "");
+        return regressed ? 1 : 0;
+    }
+
+    private static double errorOf(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static Map<String, JsonNode> index(JsonNode results) {
+        Map<String, JsonNode> byName = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            result.path("params").properties().forEach(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            byName.put(key.toString(), result);
+        }
+        return byName;
+    }
+}
@@ -0,0 +1,50 @@
+package com.yann.smart_valuator_api.benchmarks;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of estimation lists, as returned by the listing endpoint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EstimationSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private List<Estimation> estimations;
+
+    @Setup
+    public void setUp() {
+        estimations = new ArrayList<>(size);
+        LocalDateTime createdAt = LocalDateTime.of(2026, 2, 13, 8, 30, 15, 123_456_000);
+        for (int i = 0; i < size; i++) {
+            Estimation estimation = Fixtures.estimation("iPhone " + (11 + i % 6), "Apple", "Smartphone", 2019 + i % 6, 1 + i % 10);
+            estimation.setId((long) i + 1);
+            estimation.setEstimatedPrice(new BigDecimal("100.00").add(BigDecimal.valueOf(i, 2)));
+            estimation.setAiDescription("A used iPhone in good condition. Based on current European market analysis, "
+                    + "this item retains reasonable resale value in the used electronics market.");
+            estimation.setCreatedAt(createdAt.minusMinutes(i));
+            estimations.add(estimation);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeList() {
+        return objectMapper.writeValueAsBytes(estimations);
+    }
+}
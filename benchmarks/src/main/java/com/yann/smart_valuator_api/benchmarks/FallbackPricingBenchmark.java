@@ -0,0 +1,121 @@
+package com.yann.smart_valuator_api.benchmarks;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationSearchRepository;
+import com.yann.smart_valuator_api.service.FallbackPriceRules;
+import com.yann.smart_valuator_api.service.FallbackPricingEngine;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiled fallback rules against the original {@code String.contains} chain, and the whole
+ * {@link FallbackPricingEngine#price} path in front of them. Run with {@code -prof gc}:
+ * {@code gc.alloc.rate.norm} for {@code compiledRules} should be 0 B/op. {@code engine} prices half
+ * of the items from loaded neighbour medians and half from the rules; its repository counts its
+ * calls, and the setup fails if pricing reached it after the warm-up loads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FallbackPricingBenchmark {
+
+    private static final String[][] ITEMS = {
+            {"iPhone 14 Pro", "Apple", "Smartphone"},
+            {"Galaxy S23", "Samsung", "Smartphone"},
+            {"MacBook Air M2", "Apple", "Laptop"},
+            {"ThinkPad T14", "Lenovo", "Laptop"},
+            {"PlayStation 5", "Sony", "Console"},
+            {"Kindle Paperwhite", "Amazon", "E-reader"},
+    };
+
+    private FallbackPriceRules rules;
+    private FallbackPricingEngine engine;
+    private final AtomicInteger neighbourQueries = new AtomicInteger();
+    private Estimation[] estimations;
+    private String[] productDetails;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = FallbackPriceRules.class.getResourceAsStream("/pricing/fallback-rules.json")) {
+            rules = FallbackPriceRules.load(in, new ObjectMapper());
+        }
+        estimations = new Estimation[ITEMS.length];
+        productDetails = new String[ITEMS.length];
+        for (int i = 0; i < ITEMS.length; i++) {
+            Estimation estimation = new Estimation();
+            estimation.setItemName(ITEMS[i][0]);
+            estimation.setBrand(ITEMS[i][1]);
+            estimation.setCategory(ITEMS[i][2]);
+            estimation.setYear(2022);
+            estimation.setConditionRating(7);
+            estimations[i] = estimation;
+            productDetails[i] = String.format(
+                    "Item: %s, Brand: %s, Category: %s, Purchase Year: %d, Condition: %d/10",
+                    ITEMS[i][0], ITEMS[i][1], ITEMS[i][2], 2022, 7);
+        }
+
+        // Neighbours for the Apple and Samsung items only
+        EstimationSearchRepository repository = new EstimationSearchRepository(null) {
+            @Override
+            public List<BigDecimal> findNeighbourPrices(String itemName, int year, Integer conditionRating,
+                                                        double minSimilarity, int limit) {
+                neighbourQueries.incrementAndGet();
+                return itemName.startsWith("i") || itemName.startsWith("m") || itemName.startsWith("g")
+                        ? List.of(new BigDecimal("410.00"), new BigDecimal("420.00"), new BigDecimal("450.00"))
+                        : List.of();
+            }
+        };
+        engine = Fixtures.fallbackPricingEngine(repository, 5);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        // Loads run one at a time in item order; the MacBook is the last one with neighbours
+        while (neighbourQueries.get() < ITEMS.length
+                || engine.price(estimations[2]).compareTo(new BigDecimal("420.00")) != 0) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Neighbour prices did not load");
+            }
+            for (Estimation estimation : estimations) {
+                engine.price(estimation);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    @TearDown
+    public void checkNoQueries() {
+        if (neighbourQueries.get() != ITEMS.length) {
+            throw new IllegalStateException("Pricing queried neighbours " + neighbourQueries.get() + " times");
+        }
+    }
+
+    @Benchmark
+    public BigDecimal compiledRules() {
+        return rules.price(estimations[nextIndex()]);
+    }
+
+    @Benchmark
+    public BigDecimal engine() {
+        return engine.price(estimations[nextIndex()]);
+    }
+
+    @Benchmark
+    public BigDecimal legacyContainsChain() {
+        return LegacyFallbackPricing.estimateFallbackPrice(productDetails[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == ITEMS.length ? 0 : index + 1;
+        return index;
+    }
+}
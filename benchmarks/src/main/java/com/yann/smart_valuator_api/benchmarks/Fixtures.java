@@ -0,0 +1,75 @@
+package com.yann.smart_valuator_api.benchmarks;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationSearchRepository;
+import com.yann.smart_valuator_api.service.EstimationMetrics;
+import com.yann.smart_valuator_api.service.FallbackPricingEngine;
+import com.yann.smart_valuator_api.service.HuggingFaceService;
+import com.yann.smart_valuator_api.service.ModelPool;
+import com.yann.smart_valuator_api.service.PromptBuilder;
+import com.yann.smart_valuator_api.service.UpstreamGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.web.client.RestTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Shared inputs for the benchmarks. Chat completion fixtures under {@code fixtures/chat-completions}
+ * are response bodies recorded from the model, plus hand-edited malformed and truncated ones.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static byte[] chatCompletion(String name) {
+        String path = "/fixtures/chat-completions/" + name + ".json";
+        try (InputStream in = Fixtures.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No fixture " + path);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // No Spring context: the HTTP client is never used by the code paths benchmarked here
+    static HuggingFaceService huggingFaceService() {
+        FallbackPricingEngine fallbackPricingEngine = fallbackPricingEngine(null, 0);
+        EstimationMetrics estimationMetrics = new EstimationMetrics(new SimpleMeterRegistry(), 20);
+        UpstreamGuard upstreamGuard = new UpstreamGuard(
+                50, 20, 0.5, Duration.ofSeconds(30), 5, 20, 2, 200, 0.9, Duration.ofSeconds(10));
+        ModelPool modelPool = new ModelPool(
+                List.of("meta-llama/Llama-3.3-70B-Instruct"), false, 0.95, 500, Duration.ofMillis(500), Duration.ofSeconds(5));
+        return new HuggingFaceService(
+                new RestTemplate(), fallbackPricingEngine, estimationMetrics, upstreamGuard, modelPool, promptBuilder());
+    }
+
+    // Without a repository, neighbours must be 0 (neighbour prices off)
+    static FallbackPricingEngine fallbackPricingEngine(EstimationSearchRepository repository, int neighbours) {
+        return new FallbackPricingEngine(new DefaultResourceLoader(), new ObjectMapper(), repository,
+                "classpath:pricing/fallback-rules.json", neighbours, 0.8, 10_000, Duration.ofMinutes(10));
+    }
+
+    static PromptBuilder promptBuilder() {
+        return new PromptBuilder(
+                new DefaultResourceLoader(), new ObjectMapper(), new SimpleMeterRegistry(), "classpath:prompts/");
+    }
+
+    static Estimation estimation(String itemName, String brand, String category, int year, int condition) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(itemName);
+        estimation.setBrand(brand);
+        estimation.setCategory(category);
+        estimation.setYear(year);
+        estimation.setConditionRating(condition);
+        return estimation;
+    }
+}
@@ -0,0 +1,73 @@
+package com.yann.smart_valuator_api.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copy of the fallback pricing that {@code HuggingFaceService} used before the compiled rules,
+ * kept only as a baseline for {@link FallbackPricingBenchmark}.
+ */
+final class LegacyFallbackPricing {
+
+    private LegacyFallbackPricing() {
+    }
+
+    /**
+     * Fallback price estimation based on European market (EUR)
+     */
+    static BigDecimal estimateFallbackPrice(String productDetails) {
+        String lower = productDetails.toLowerCase();
+
+        double conditionMultiplier = 0.7; // default
+        Pattern conditionPattern = Pattern.compile("condition[:\\s]+(\\d+)/10");
+        Matcher matcher = conditionPattern.matcher(lower);
+        if (matcher.find()) {
+            conditionMultiplier = Integer.parseInt(matcher.group(1)) / 10.0;
+        }
+
+        BigDecimal basePrice;
+
+        // Prices in EUR for European market (2026)
+        if (lower.contains("iphone")) {
+            if (lower.contains("15") || lower.contains("16")) basePrice = new BigDecimal("650");
+            else if (lower.contains("14")) basePrice = new BigDecimal("500");
+            else if (lower.contains("13")) basePrice = new BigDecimal("380");
+            else if (lower.contains("12")) basePrice = new BigDecimal("280");
+            else if (lower.contains("11")) basePrice = new BigDecimal("200");
+            else if (lower.contains("x") || lower.contains("10")) basePrice = new BigDecimal("170");
+            else basePrice = new BigDecimal("140");
+        }
+        else if (lower.contains("samsung") || lower.contains("galaxy")) {
+            if (lower.contains("s24") || lower.contains("s23")) basePrice = new BigDecimal("470");
+            else if (lower.contains("s22") || lower.contains("s21")) basePrice = new BigDecimal("320");
+            else basePrice = new BigDecimal("180");
+        }
+        else if (lower.contains("macbook")) {
+            if (lower.contains("pro")) basePrice = new BigDecimal("850");
+            else basePrice = new BigDecimal("550");
+        }
+        else if (lower.contains("laptop")) {
+            basePrice = new BigDecimal("370");
+        }
+        else if (lower.contains("ipad")) {
+            if (lower.contains("pro")) basePrice = new BigDecimal("470");
+            else basePrice = new BigDecimal("280");
+        }
+        else if (lower.contains("tablet")) {
+            basePrice = new BigDecimal("180");
+        }
+        else if (lower.contains("watch")) basePrice = new BigDecimal("230");
+        else if (lower.contains("airpods")) basePrice = new BigDecimal("90");
+        else if (lower.contains("console") || lower.contains("playstation") || lower.contains("xbox")) {
+            basePrice = new BigDecimal("320");
+        }
+        else {
+            basePrice = new BigDecimal("140");
+        }
+
+        BigDecimal adjustedPrice = basePrice.multiply(new BigDecimal(conditionMultiplier));
+
+        return adjustedPrice.setScale(2, java.math.RoundingMode.HALF_UP);
+    }
+}
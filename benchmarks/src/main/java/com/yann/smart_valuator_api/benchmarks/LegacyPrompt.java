@@ -0,0 +1,60 @@
+package com.yann.smart_valuator_api.benchmarks;
+
+import com.yann.smart_valuator_api.DTO.ChatCompletionRequest;
+
+import java.util.List;
+
+/**
+ * Copy of the single-item prompt that {@code HuggingFaceService} built before the compiled
+ * templates, kept only as a baseline for {@link PromptBenchmark}.
+ */
+final class LegacyPrompt {
+
+    private LegacyPrompt() {
+    }
+
+    static ChatCompletionRequest chatRequest(String productDetails, String model, boolean stream) {
+
+        String prompt = """
+            You are an expert in electronics resale valuation for the European market. Provide a realistic market price in Euros (€).
+            
+            Analyze this used electronics item and return ONLY valid JSON (no markdown):
+            
+            {
+              "description": "Brief description of item condition and market value in Europe",
+              "estimatedPrice": 450.00,
+              "currency": "EUR",
+              "verdict": "interesting"
+            }
+            
+            PRICING GUIDELINES (current used market in EUR - 2026):
+            - iPhone 15/15 Pro: 550€ - 850€
+            - iPhone 14/14 Pro: 450€ - 650€
+            - iPhone 13/13 Pro: 350€ - 500€
+            - iPhone 12/12 Pro: 250€ - 380€
+            - iPhone 11: 180€ - 280€
+            - Samsung Galaxy S23/S24: 350€ - 650€
+            - MacBook Air/Pro (M1/M2/M3): 600€ - 1300€
+            - iPad Pro (USB-C models): 400€ - 900€
+            
+            Adjust based on condition rating (multiply by rating/10).
+            Take into account battery health if provided.
+            
+            Product:
+            %s
+            
+            Return ONLY the JSON object with a realistic non-zero price in Euros.
+            """.formatted(productDetails);
+
+        ChatCompletionRequest request = new ChatCompletionRequest();
+        request.model = model;
+        request.messages = List.of(
+                new ChatCompletionRequest.Message("user", prompt)
+        );
+        request.temperature = 0.3;
+        request.max_tokens = 500;
+        request.stream = stream;
+
+        return request;
+    }
+}
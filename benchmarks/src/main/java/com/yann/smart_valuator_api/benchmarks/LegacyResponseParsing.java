@@ -0,0 +1,95 @@
+package com.yann.smart_valuator_api.benchmarks;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copy of the response handling that {@code HuggingFaceService} used before
+ * {@code StructuredOutputParser}: the envelope as raw maps, regex extraction of the JSON, then a
+ * tree. Kept only as a baseline for {@link ResponseParsingBenchmark}.
+ */
+final class LegacyResponseParsing {
+
+    private static final Pattern MARKDOWN_FENCE = Pattern.compile("```(?:json)?\\s*");
+    private static final Pattern JSON_OBJECT = Pattern.compile(
+            "\\{(?:[^{}]|\\{[^{}]*\\})*\\}",
+            Pattern.DOTALL
+    );
+    private static final Pattern BEFORE_OBJECT = Pattern.compile("^[^{]*");
+    private static final Pattern AFTER_OBJECT = Pattern.compile("[^}]*$");
+    private static final Pattern NON_NUMERIC = Pattern.compile("[^0-9.]");
+
+    private LegacyResponseParsing() {
+    }
+
+    static String messageContent(Map<String, Object> body) {
+        if (body == null || !body.containsKey("choices")) {
+            return "API returned empty response";
+        }
+
+        List<Map<String, Object>> choices =
+                (List<Map<String, Object>>) body.get("choices");
+
+        if (choices == null || choices.isEmpty()) {
+            return "API returned no choices";
+        }
+
+        Map<String, Object> message =
+                (Map<String, Object>) choices.get(0).get("message");
+
+        return message.get("content").toString().trim();
+    }
+
+    static String extractJsonFromResponse(String response) {
+        String cleaned = MARKDOWN_FENCE.matcher(response).replaceAll("").trim();
+
+        Matcher matcher = JSON_OBJECT.matcher(cleaned);
+
+        if (matcher.find()) {
+            String json = matcher.group().trim();
+            int lastBrace = json.lastIndexOf('}');
+            if (lastBrace > 0) {
+                json = json.substring(0, lastBrace + 1);
+            }
+            return json;
+        }
+
+        cleaned = BEFORE_OBJECT.matcher(cleaned).replaceAll("");
+        cleaned = AFTER_OBJECT.matcher(cleaned).replaceAll("");
+
+        return cleaned;
+    }
+
+    static AiEstimationResult readEstimation(ObjectMapper objectMapper, String cleanedJson) {
+        JsonNode jsonNode = objectMapper.readTree(cleanedJson);
+        AiEstimationResult result = new AiEstimationResult();
+
+        if (jsonNode.has("description") && !jsonNode.get("description").isNull()) {
+            result.setDescription(jsonNode.get("description").asText());
+        }
+
+        JsonNode priceNode = jsonNode.path("estimatedPrice");
+        if (priceNode.isNumber()) {
+            result.setEstimatedPrice(new BigDecimal(priceNode.asText()));
+        } else if (priceNode.isTextual()) {
+            try {
+                result.setEstimatedPrice(new BigDecimal(NON_NUMERIC.matcher(priceNode.asText()).replaceAll("")));
+            } catch (NumberFormatException e) {
+                result.setEstimatedPrice(null);
+            }
+        }
+
+        if (jsonNode.has("verdict")) {
+            result.setVerdict(jsonNode.get("verdict").asText());
+        }
+
+        return result;
+    }
+}
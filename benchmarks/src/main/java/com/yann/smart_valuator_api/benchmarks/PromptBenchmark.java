@@ -0,0 +1,56 @@
+package com.yann.smart_valuator_api.benchmarks;
+
+import com.yann.smart_valuator_api.DTO.ChatCompletionRequest;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.service.HuggingFaceService;
+import com.yann.smart_valuator_api.service.PromptBuilder;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the chat completion request for one item, and the request body that goes on the wire,
+ * from the compiled templates and from the original {@code String.formatted} prompt.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PromptBenchmark {
+
+    private static final String MODEL = "meta-llama/Llama-3.3-70B-Instruct";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private PromptBuilder promptBuilder;
+    private Estimation estimation;
+
+    @Setup
+    public void setUp() {
+        promptBuilder = Fixtures.promptBuilder();
+        estimation = Fixtures.estimation("Galaxy S23 Ultra", "Samsung", "Smartphone", 2023, 9);
+    }
+
+    @Benchmark
+    public ChatCompletionRequest buildRequest() {
+        return promptBuilder.single(estimation, MODEL, false);
+    }
+
+    @Benchmark
+    public ChatCompletionRequest buildRequestLegacy() {
+        return LegacyPrompt.chatRequest(HuggingFaceService.productDetails(estimation), MODEL, false);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeRequest() {
+        return objectMapper.writeValueAsBytes(promptBuilder.single(estimation, MODEL, false));
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializeRequestLegacy() {
+        return objectMapper.writeValueAsBytes(
+                LegacyPrompt.chatRequest(HuggingFaceService.productDetails(estimation), MODEL, false));
+    }
+}
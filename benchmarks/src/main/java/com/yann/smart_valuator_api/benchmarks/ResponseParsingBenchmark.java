@@ -0,0 +1,68 @@
+package com.yann.smart_valuator_api.benchmarks;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.DTO.ChatCompletionResponse;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.service.HuggingFaceService;
+import com.yann.smart_valuator_api.service.StructuredOutputParser;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The path a chat completion takes before it becomes an {@link AiEstimationResult}: decoding the
+ * envelope, reading the estimation out of the message, and parsing it with fallbacks applied.
+ * The {@code legacy} methods measure the regex and tree based code this replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseParsingBenchmark {
+
+    @Param({"clean", "fenced", "prose-wrapped", "string-price", "nested", "zero-price", "truncated", "malformed"})
+    public String fixture;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HuggingFaceService huggingFaceService;
+    private Estimation estimation;
+    private byte[] envelope;
+    private String content;
+
+    @Setup
+    public void setUp() {
+        huggingFaceService = Fixtures.huggingFaceService();
+        estimation = Fixtures.estimation("iPhone 14 Pro", "Apple", "Smartphone", 2022, 8);
+        envelope = Fixtures.chatCompletion(fixture);
+        content = HuggingFaceService.messageContent(objectMapper.readValue(envelope, ChatCompletionResponse.class));
+    }
+
+    @Benchmark
+    public String decodeEnvelope() {
+        return HuggingFaceService.messageContent(objectMapper.readValue(envelope, ChatCompletionResponse.class));
+    }
+
+    @Benchmark
+    public String decodeEnvelopeLegacy() {
+        return LegacyResponseParsing.messageContent(objectMapper.readValue(envelope, Map.class));
+    }
+
+    @Benchmark
+    public AiEstimationResult readEstimation() {
+        return StructuredOutputParser.parse(content);
+    }
+
+    @Benchmark
+    public AiEstimationResult readEstimationLegacy() {
+        return LegacyResponseParsing.readEstimation(objectMapper, LegacyResponseParsing.extractJsonFromResponse(content));
+    }
+
+    @Benchmark
+    public AiEstimationResult parseStructuredEstimation() {
+        return huggingFaceService.parseStructuredEstimation(content, estimation);
+    }
+}
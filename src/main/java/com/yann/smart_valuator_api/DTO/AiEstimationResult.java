@@ -1,5 +1,6 @@
 package com.yann.smart_valuator_api.DTO;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
@@ -16,4 +17,8 @@ public class AiEstimationResult {
 
     @JsonProperty("verdict")
     private String verdict;
-}
\ No newline at end of file
+
+    // True when any part of the result comes from fallback pricing rather than the model
+    @JsonIgnore
+    private boolean fallback;
+}
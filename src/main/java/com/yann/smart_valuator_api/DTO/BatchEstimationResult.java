@@ -0,0 +1,29 @@
+package com.yann.smart_valuator_api.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.yann.smart_valuator_api.entity.Estimation;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One NDJSON line of a batch response; {@code index} is the item's position in the request. Items
+ * that could not be read get {@code error} instead of an estimation.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchEstimationResult {
+    private int index;
+    private Estimation estimation;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String error;
+
+    public BatchEstimationResult(int index, Estimation estimation) {
+        this(index, estimation, null);
+    }
+
+    public static BatchEstimationResult error(int index, String error) {
+        return new BatchEstimationResult(index, null, error);
+    }
+}
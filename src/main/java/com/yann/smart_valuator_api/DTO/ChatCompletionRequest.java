@@ -15,6 +15,7 @@ public class ChatCompletionRequest {
     public List<Message> messages;
     public double temperature;
     public int max_tokens;
+    public boolean stream;
 
     public static class Message {
         public String role;
@@ -0,0 +1,21 @@
+package com.yann.smart_valuator_api.DTO;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * The parts of a chat completion, or of one streamed chunk, that we read. A full response carries
+ * {@code message}, a streamed chunk {@code delta}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChatCompletionResponse(List<Choice> choices) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Choice(Message message, Message delta) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Message(String content) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.yann.smart_valuator_api.DTO;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.entity.EstimationJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstimationJobResult {
+    private UUID jobId;
+    private EstimationJobStatus status;
+    private Estimation estimation;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
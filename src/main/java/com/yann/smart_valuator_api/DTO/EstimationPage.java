@@ -0,0 +1,19 @@
+package com.yann.smart_valuator_api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing; pass {@code nextCursor} back as {@code cursor}
+ * to fetch the following page. It is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstimationPage<T> {
+    private List<T> items;
+    private String nextCursor;
+}
@@ -0,0 +1,21 @@
+package com.yann.smart_valuator_api.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One search result, without the AI description. {@code score} is how well the item name matches the
+ * query, from 0 to 1; null when searching descriptions only.
+ */
+public record EstimationSearchHit(
+        Long id,
+        String itemName,
+        String category,
+        String brand,
+        Integer year,
+        Integer conditionRating,
+        BigDecimal estimatedPrice,
+        LocalDateTime createdAt,
+        Float score
+) {
+}
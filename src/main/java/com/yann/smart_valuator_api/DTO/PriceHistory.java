@@ -0,0 +1,24 @@
+package com.yann.smart_valuator_api.DTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimated price statistics per time bucket and, with {@code groupBy}, per value of that dimension.
+ * Percentiles are keyed like {@code p50} or {@code p99.9}.
+ */
+public record PriceHistory(String bucket, String groupBy, List<Point> points) {
+
+    public record Point(
+            LocalDate bucketStart,
+            String group,
+            long count,
+            BigDecimal average,
+            BigDecimal min,
+            BigDecimal max,
+            Map<String, BigDecimal> percentiles
+    ) {
+    }
+}
@@ -3,7 +3,8 @@ package com.yann.smart_valuator_api;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@SpringBootApplication
+// exception/ sits outside the application package; its controller advice has to be scanned explicitly
+@SpringBootApplication(scanBasePackages = {"com.yann.smart_valuator_api", "exception"})
 public class SmartValuatorApiApplication {
 
 	public static void main(String[] args) {
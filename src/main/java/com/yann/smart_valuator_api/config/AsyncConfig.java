@@ -0,0 +1,65 @@
+package com.yann.smart_valuator_api.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+// Scheduling drives periodic housekeeping such as the fallback pricing rules reload
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    // Same switch Spring Boot uses for Tomcat; when on, the pools below keep their bounds but run virtual threads
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Bounded pool for asynchronous estimation jobs; a full queue rejects new jobs instead of growing
+    @Bean
+    public ThreadPoolTaskExecutor estimationJobExecutor(
+            @Value("${estimation.jobs.core-pool-size:4}") int corePoolSize,
+            @Value("${estimation.jobs.max-pool-size:8}") int maxPoolSize,
+            @Value("${estimation.jobs.queue-capacity:500}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = newExecutor("estimation-job-");
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    // Fan-out pool for batch estimations; its size is the cap on concurrent AI calls across all batches
+    @Bean
+    public ThreadPoolTaskExecutor estimationBatchExecutor(
+            @Value("${estimation.batch.concurrency:8}") int concurrency
+    ) {
+        ThreadPoolTaskExecutor executor = newExecutor("estimation-batch-");
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        return executor;
+    }
+
+    // Runs streamed estimations while the servlet thread is released back to the container
+    @Bean
+    public ThreadPoolTaskExecutor estimationStreamExecutor(
+            @Value("${estimation.stream.max-concurrent:32}") int maxConcurrent
+    ) {
+        ThreadPoolTaskExecutor executor = newExecutor("estimation-stream-");
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(maxConcurrent);
+        return executor;
+    }
+
+    private ThreadPoolTaskExecutor newExecutor(String threadNamePrefix) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        if (virtualThreads) {
+            executor.setThreadFactory(Thread.ofVirtual().name(threadNamePrefix, 0).factory());
+        }
+        return executor;
+    }
+}
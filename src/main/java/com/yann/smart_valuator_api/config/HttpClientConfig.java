@@ -0,0 +1,156 @@
+package com.yann.smart_valuator_api.config;
+
+import com.yann.smart_valuator_api.service.LatencyBudget;
+import com.yann.smart_valuator_api.service.UpstreamCall;
+import com.yann.smart_valuator_api.service.UpstreamRecorder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import javax.net.ssl.SSLContext;
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Pooled HTTP client for the Hugging Face router. Every estimation goes to the same host,
+ * so connections are kept alive and reused, and TLS sessions are cached so a new pooled
+ * connection can resume a session instead of doing a full handshake.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager huggingFaceConnectionManager(
+            @Value("${hf.http.connect-timeout:15s}") Duration connectTimeout,
+            @Value("${hf.http.read-timeout:30s}") Duration readTimeout,
+            @Value("${hf.http.max-connections:200}") int maxConnections,
+            @Value("${hf.http.max-connections-per-route:200}") int maxConnectionsPerRoute,
+            @Value("${hf.http.connection-ttl:10m}") Duration connectionTtl,
+            @Value("${hf.http.tls-session-cache-size:100}") int tlsSessionCacheSize,
+            @Value("${hf.http.tls-session-timeout:12h}") Duration tlsSessionTimeout
+    ) {
+        SSLContext sslContext = SSLContexts.createDefault();
+        sslContext.getClientSessionContext().setSessionCacheSize(tlsSessionCacheSize);
+        sslContext.getClientSessionContext().setSessionTimeout((int) tlsSessionTimeout.toSeconds());
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setTlsSocketStrategy(ClientTlsStrategyBuilder.create()
+                        .setSslContext(sslContext)
+                        .buildClassic())
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                // LIFO hands out the most recently used, still warm connection first
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(connectionTtl))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public RequestConfig huggingFaceRequestConfig(
+            @Value("${hf.http.read-timeout:30s}") Duration readTimeout,
+            @Value("${hf.http.connection-request-timeout:5s}") Duration connectionRequestTimeout,
+            @Value("${hf.http.keep-alive:60s}") Duration keepAlive
+    ) {
+        return RequestConfig.custom()
+                .setResponseTimeout(Timeout.of(readTimeout))
+                .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                // Used when the server does not send a Keep-Alive header
+                .setConnectionKeepAlive(TimeValue.of(keepAlive))
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient huggingFaceHttpClient(
+            PoolingHttpClientConnectionManager huggingFaceConnectionManager,
+            RequestConfig huggingFaceRequestConfig,
+            @Value("${hf.http.keep-alive:60s}") Duration keepAlive
+    ) {
+        return HttpClients.custom()
+                .setConnectionManager(huggingFaceConnectionManager)
+                .setDefaultRequestConfig(huggingFaceRequestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(keepAlive))
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    @Bean
+    public RestTemplate huggingFaceRestTemplate(
+            CloseableHttpClient huggingFaceHttpClient,
+            RequestConfig huggingFaceRequestConfig,
+            UpstreamRecorder upstreamRecorder
+    ) {
+        HttpComponentsClientHttpRequestFactory requestFactory =
+                new HttpComponentsClientHttpRequestFactory(huggingFaceHttpClient) {
+                    // Lets a hedged call that lost the race abort its request (see UpstreamCall)
+                    @Override
+                    protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+                        ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+                        if (request instanceof HttpUriRequestBase cancellable) {
+                            UpstreamCall.register(cancellable::cancel);
+                        }
+                        return request;
+                    }
+                };
+        requestFactory.setHttpContextFactory((method, uri) -> budgetedContext(huggingFaceRequestConfig));
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        // Only when recording: an interceptor buffers every request body
+        if (upstreamRecorder.isEnabled()) {
+            restTemplate.getInterceptors().add(upstreamRecorder);
+        }
+        return restTemplate;
+    }
+
+    // Shrinks the pool wait and response timeouts to what is left of the caller's latency budget
+    private static HttpContext budgetedContext(RequestConfig defaults) {
+        Duration remaining = LatencyBudget.remaining();
+        if (remaining == null) {
+            return null;
+        }
+        Timeout budget = Timeout.ofMilliseconds(Math.max(1, remaining.toMillis()));
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.copy(defaults)
+                .setResponseTimeout(shorter(defaults.getResponseTimeout(), budget))
+                .setConnectionRequestTimeout(shorter(defaults.getConnectionRequestTimeout(), budget))
+                .build());
+        return context;
+    }
+
+    private static Timeout shorter(Timeout configured, Timeout budget) {
+        return configured == null || configured.compareTo(budget) > 0 ? budget : configured;
+    }
+
+    // Leased/available/pending/max gauges under httpcomponents.httpclient.pool.*
+    @Bean
+    public PoolingHttpClientConnectionManagerMetricsBinder huggingFacePoolMetrics(
+            PoolingHttpClientConnectionManager huggingFaceConnectionManager
+    ) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(huggingFaceConnectionManager, "huggingface");
+    }
+}
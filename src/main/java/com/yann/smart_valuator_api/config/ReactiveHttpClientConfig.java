@@ -0,0 +1,54 @@
+package com.yann.smart_valuator_api.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking client for the Hugging Face router, used by the reactive profile. Same pool limits
+ * and timeouts as {@link HttpClientConfig}, on Reactor Netty: a call waiting for a connection or a
+ * response holds no thread.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveHttpClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider huggingFaceConnectionProvider(
+            @Value("${hf.http.max-connections:200}") int maxConnections,
+            @Value("${hf.http.connection-request-timeout:5s}") Duration connectionRequestTimeout,
+            @Value("${hf.http.keep-alive:60s}") Duration keepAlive,
+            @Value("${hf.http.connection-ttl:10m}") Duration connectionTtl
+    ) {
+        return ConnectionProvider.builder("huggingface")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(connectionRequestTimeout)
+                .maxIdleTime(keepAlive)
+                .maxLifeTime(connectionTtl)
+                // Most recently used, still warm connection first, as in HttpClientConfig
+                .lifo()
+                .build();
+    }
+
+    @Bean
+    public WebClient huggingFaceWebClient(
+            ConnectionProvider huggingFaceConnectionProvider,
+            @Value("${hf.http.connect-timeout:15s}") Duration connectTimeout,
+            @Value("${hf.http.read-timeout:30s}") Duration readTimeout
+    ) {
+        HttpClient httpClient = HttpClient.create(huggingFaceConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package com.yann.smart_valuator_api.controller;
+
+import com.yann.smart_valuator_api.DTO.PriceHistory;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.Bucket;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.Filter;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.GroupBy;
+import com.yann.smart_valuator_api.service.PriceAnalyticsService;
+import exception.InvalidEstimationRequestException;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@Profile("!reactive")
+@CrossOrigin
+@AllArgsConstructor
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+    // Keeps bucket=day queries to a few years of points
+    private static final long MAX_RANGE_DAYS = 3660;
+
+    private final PriceAnalyticsService priceAnalyticsService;
+
+    @GetMapping(value = "/prices", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<PriceHistory> priceHistory(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Integer condition,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "month") String bucket,
+            @RequestParam(defaultValue = "none") String groupBy,
+            @RequestParam(defaultValue = "50,90") List<Double> percentiles
+    ) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusYears(1);
+        if (start.isAfter(end) || ChronoUnit.DAYS.between(start, end) > MAX_RANGE_DAYS) {
+            throw new InvalidEstimationRequestException("from must not be after to, and at most " + MAX_RANGE_DAYS + " days before it");
+        }
+        for (double percentile : percentiles) {
+            if (percentile < 0 || percentile > 100) {
+                throw new InvalidEstimationRequestException("percentiles must be between 0 and 100");
+            }
+        }
+        return ResponseEntity.ok(priceAnalyticsService.priceHistory(
+                new Filter(category, brand, year, condition),
+                start, end,
+                parse(Bucket.class, bucket, "bucket must be one of day, week, month, year"),
+                parse(GroupBy.class, groupBy, "groupBy must be one of none, category, brand, year, condition"),
+                percentiles
+        ));
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String message) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEstimationRequestException(message);
+        }
+    }
+}
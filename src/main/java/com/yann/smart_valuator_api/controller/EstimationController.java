@@ -1,22 +1,45 @@
 package com.yann.smart_valuator_api.controller;
 
+import com.yann.smart_valuator_api.DTO.EstimationPage;
+import com.yann.smart_valuator_api.DTO.EstimationSearchHit;
 import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.service.BatchEstimationService;
+import com.yann.smart_valuator_api.service.EstimationEntityCache;
+import com.yann.smart_valuator_api.service.EstimationExportService;
 import com.yann.smart_valuator_api.service.EstimationService;
+import exception.InvalidEstimationRequestException;
 import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
 @RestController
+// Under the reactive profile, ReactiveEstimationController serves create, batch and get by id
+@Profile("!reactive")
 @CrossOrigin
 @AllArgsConstructor
 @RequestMapping("/api/estimations")
 public class EstimationController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
     private final EstimationService estimationService;
+    private final BatchEstimationService batchEstimationService;
+    private final EstimationExportService estimationExportService;
 
     @PostMapping(consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
     public ResponseEntity<Estimation> generateEstimation(
@@ -27,30 +50,124 @@ public class EstimationController {
         );
     }
 
+    @PostMapping(
+            value = "/batch",
+            consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE},
+            produces = APPLICATION_NDJSON_VALUE
+    )
+    public ResponseEntity<StreamingResponseBody> generateBatchEstimations(
+            InputStream body
+    ) {
+        // The body is read as the response is written, so both stream
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> batchEstimationService.estimate(body, out));
+    }
+
     @GetMapping(produces = APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<Estimation>> getAllEstimations() {
+    public ResponseEntity<EstimationPage<?>> listEstimations(
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Integer yearFrom,
+            @RequestParam(required = false) Integer yearTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "full") String fields
+    ) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidEstimationRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (!fields.equals("full") && !fields.equals("summary")) {
+            throw new InvalidEstimationRequestException("fields must be 'full' or 'summary'");
+        }
         return ResponseEntity.ok(
-                estimationService.getAllEstimations()
+                estimationService.listEstimations(
+                        brand, category, yearFrom, yearTo, cursor, limit, fields.equals("summary"))
         );
     }
 
-    @GetMapping(value = "/{id}", produces = APPLICATION_JSON_VALUE)
-    public ResponseEntity<Estimation> getEstimationById(
-            @PathVariable Long id
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportEstimations(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        EstimationExportService.Format exportFormat = switch (format.toLowerCase(Locale.ROOT)) {
+            case "ndjson" -> EstimationExportService.Format.NDJSON;
+            case "csv" -> EstimationExportService.Format.CSV;
+            default -> throw new InvalidEstimationRequestException("format must be 'ndjson' or 'csv'");
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(exportFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("estimations." + exportFormat.extension())
+                        .build()
+                        .toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(out -> estimationExportService.export(exportFormat, gzip, out));
+    }
+
+    @GetMapping(value = "/search", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<EstimationPage<EstimationSearchHit>> searchEstimations(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String text,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit
     ) {
+        name = name == null || name.isBlank() ? null : name.trim();
+        text = text == null || text.isBlank() ? null : text.trim();
+        if (name == null && text == null) {
+            throw new InvalidEstimationRequestException("name or text is required");
+        }
+        if (name != null && name.length() > 255) {
+            throw new InvalidEstimationRequestException("name must be at most 255 characters");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_PAGE_SIZE) {
+            throw new InvalidEstimationRequestException("limit must be between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+        return ResponseEntity.ok(estimationService.searchEstimations(name, text, cursor, limit));
+    }
+
+    @GetMapping(value = "/archive", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Estimation>> listArchivedEstimations(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        if (!from.isBefore(to)) {
+            throw new InvalidEstimationRequestException("from must be before to");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidEstimationRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
         return ResponseEntity.ok(
-                estimationService.getEstimationById(id)
+                estimationService.getArchivedEstimations(from.atStartOfDay(), to.atStartOfDay(), limit)
         );
     }
 
+    // With the ETag set, Spring answers a matching If-None-Match with 304 and never serializes the body
+    @GetMapping(value = "/{id}", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<Estimation> getEstimationById(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "false") boolean archived
+    ) {
+        Estimation estimation = estimationService.getEstimationById(id, archived);
+        return ResponseEntity.ok()
+                .eTag(EstimationEntityCache.etag(estimation))
+                .body(estimation);
+    }
+
     @PutMapping(value = "/{id}", consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
     public ResponseEntity<Estimation> updateEstimation(
             @PathVariable Long id,
             @RequestBody Estimation estimation
     ) {
-        return ResponseEntity.ok(
-                estimationService.updateEstimation(id, estimation)
-        );
+        Estimation updated = estimationService.updateEstimation(id, estimation);
+        return ResponseEntity.ok()
+                .eTag(EstimationEntityCache.etag(updated))
+                .body(updated);
     }
 
     @DeleteMapping("/{id}")
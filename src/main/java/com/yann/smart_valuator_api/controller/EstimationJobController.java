@@ -0,0 +1,45 @@
+package com.yann.smart_valuator_api.controller;
+
+import com.yann.smart_valuator_api.DTO.EstimationJobResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.service.EstimationJobService;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.UUID;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@Profile("!reactive")
+@CrossOrigin
+@AllArgsConstructor
+@RequestMapping("/api/estimations/jobs")
+public class EstimationJobController {
+
+    private final EstimationJobService estimationJobService;
+
+    @PostMapping(consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<EstimationJobResult> submitEstimationJob(
+            @RequestBody Estimation estimation,
+            @RequestParam(required = false) String callbackUrl
+    ) {
+        EstimationJobResult job = estimationJobService.submit(estimation, callbackUrl);
+        return ResponseEntity
+                .accepted()
+                .location(URI.create("/api/estimations/jobs/" + job.getJobId()))
+                .body(job);
+    }
+
+    @GetMapping(value = "/{id}", produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<EstimationJobResult> getEstimationJob(
+            @PathVariable UUID id
+    ) {
+        return ResponseEntity.ok(
+                estimationJobService.getJob(id)
+        );
+    }
+}
@@ -0,0 +1,93 @@
+package com.yann.smart_valuator_api.controller;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.service.EstimationService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
+
+/**
+ * Relays model output to the client over server-sent events while the estimation is generated:
+ * {@code token} events carry partial output, a final {@code estimation} event carries the saved
+ * estimation.
+ */
+@RestController
+@Profile("!reactive")
+@CrossOrigin
+@RequestMapping("/api/estimations/stream")
+public class EstimationStreamController {
+
+    private final EstimationService estimationService;
+    private final TaskExecutor estimationStreamExecutor;
+    private final Duration timeout;
+
+    public EstimationStreamController(
+            EstimationService estimationService,
+            @Qualifier("estimationStreamExecutor") TaskExecutor estimationStreamExecutor,
+            @Value("${estimation.stream.timeout:60s}") Duration timeout
+    ) {
+        this.estimationService = estimationService;
+        this.estimationStreamExecutor = estimationStreamExecutor;
+        this.timeout = timeout;
+    }
+
+    @PostMapping(consumes = APPLICATION_JSON_VALUE, produces = TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEstimation(
+            @RequestBody Estimation estimation
+    ) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+
+        try {
+            estimationStreamExecutor.execute(() -> {
+                TokenRelay relay = new TokenRelay(emitter);
+                try {
+                    Estimation saved = estimationService.generateAiEstimationStreaming(estimation, relay);
+                    emitter.send(SseEmitter.event().name("estimation").data(saved));
+                    emitter.complete();
+                } catch (Exception e) {
+                    emitter.completeWithError(e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many streamed estimations, retry later");
+        }
+
+        return emitter;
+    }
+
+    // Stops relaying once the client is gone; the estimation itself still completes and is saved
+    private static final class TokenRelay implements Consumer<String> {
+
+        private final SseEmitter emitter;
+        private boolean clientGone;
+
+        private TokenRelay(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void accept(String token) {
+            if (clientGone) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name("token").data(token));
+            } catch (IOException | IllegalStateException e) {
+                clientGone = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.yann.smart_valuator_api.controller;
+
+import com.yann.smart_valuator_api.DTO.BatchEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.service.EstimationEntityCache;
+import com.yann.smart_valuator_api.service.ReactiveEstimationService;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+
+/**
+ * The estimation endpoints of the reactive profile, with the same paths and bodies as
+ * {@link EstimationController}. Listing, search, export, updates, deletes, jobs, streaming and
+ * analytics are left to nodes running the default profile.
+ */
+@RestController
+@Profile("reactive")
+@CrossOrigin
+@AllArgsConstructor
+@RequestMapping("/api/estimations")
+public class ReactiveEstimationController {
+
+    private final ReactiveEstimationService reactiveEstimationService;
+
+    @PostMapping(consumes = APPLICATION_JSON_VALUE, produces = APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Estimation>> generateEstimation(
+            @RequestBody Estimation estimation
+    ) {
+        return reactiveEstimationService.generateAiEstimation(estimation)
+                .map(ResponseEntity::ok);
+    }
+
+    // A JSON array is decoded element by element like NDJSON, so neither is read ahead of the estimations
+    @PostMapping(
+            value = "/batch",
+            consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE},
+            produces = APPLICATION_NDJSON_VALUE
+    )
+    public Flux<BatchEstimationResult> generateBatchEstimations(
+            @RequestBody Flux<Estimation> items
+    ) {
+        return reactiveEstimationService.generateBatchEstimations(items);
+    }
+
+    @GetMapping(value = "/{id}", produces = APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Estimation>> getEstimationById(
+            @PathVariable Long id
+    ) {
+        return reactiveEstimationService.getEstimationById(id)
+                .map(estimation -> ResponseEntity.ok()
+                        .eTag(EstimationEntityCache.etag(estimation))
+                        .body(estimation));
+    }
+}
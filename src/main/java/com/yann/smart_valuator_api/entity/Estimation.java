@@ -1,5 +1,6 @@
 package com.yann.smart_valuator_api.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -11,8 +12,10 @@ import java.time.LocalDateTime;
 @Table(name = "estimations")
 public class Estimation {
 
+    // Sequence ids in blocks of 50 (pooled-lo) let Hibernate batch inserts; shared with EstimationIdAllocator
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "estimations_id_seq")
+    @SequenceGenerator(name = "estimations_id_seq", sequenceName = "estimations_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "item_name", nullable = false)
@@ -39,6 +42,13 @@ public class Estimation {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    // Hash of the normalized item attributes (EstimationCacheKey#fingerprint), set only on model answers
+    // so that EstimationDeduplicator can hand them out again; null on fallback prices and edited rows.
+    // Internal, so left out of every JSON body (the write-behind log keeps it, see EstimationWriteBehind)
+    @JsonIgnore
+    @Column(name = "fingerprint")
+    private Long fingerprint;
+
     @PrePersist
     protected void onCreate() {
         if (createdAt == null) {
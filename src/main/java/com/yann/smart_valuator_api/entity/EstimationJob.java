@@ -0,0 +1,48 @@
+package com.yann.smart_valuator_api.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Data
+@Table(name = "estimation_jobs")
+public class EstimationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private EstimationJobStatus status;
+
+    // Submitted item as JSON, so the job can be replayed after a restart
+    @Column(name = "request_payload", columnDefinition = "TEXT", nullable = false)
+    private String requestPayload;
+
+    @Column(name = "callback_url", length = 2048)
+    private String callbackUrl;
+
+    @Column(name = "estimation_id")
+    private Long estimationId;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        updatedAt = createdAt;
+    }
+}
@@ -0,0 +1,8 @@
+package com.yann.smart_valuator_api.entity;
+
+public enum EstimationJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,213 @@
+package com.yann.smart_valuator_api.repository;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Months of estimations archived by {@code EstimationPartitionService}: each is a gzipped file in
+ * PostgreSQL's COPY text format, with the columns of {@link #COLUMNS}, recorded in
+ * {@code estimation_archives} with its time range and id range. A file can be loaded back as is:
+ *
+ * <pre>
+ * gunzip -c estimations_p2025_01-1735689600000.tsv.gz \
+ *     | psql -c "COPY estimations (id, item_name, ..., fingerprint) FROM STDIN"
+ * </pre>
+ *
+ * Lookups here read the files directly, only those whose range can hold what is asked for.
+ */
+@Repository
+@AllArgsConstructor
+public class EstimationArchiveRepository {
+
+    public static final String COLUMNS =
+            "id, item_name, category, brand, year, condition_rating, estimated_price, ai_description, created_at, fingerprint";
+
+    // COPY writes timestamps as 2025-01-31 23:59:59.123456 under DateStyle ISO, without trailing zeros in the fraction
+    private static final DateTimeFormatter TIMESTAMP = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .appendLiteral(' ')
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .toFormatter();
+
+    /** An archived month. */
+    public record Archive(
+            long id,
+            String partitionName,
+            LocalDateTime rangeFrom,
+            LocalDateTime rangeTo,
+            Long minId,
+            Long maxId,
+            long rowCount,
+            String file,
+            LocalDateTime archivedAt
+    ) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void save(String partitionName, LocalDateTime rangeFrom, LocalDateTime rangeTo,
+                     Long minId, Long maxId, long rowCount, Path file) {
+        jdbcTemplate.update("""
+                        INSERT INTO estimation_archives
+                            (partition_name, range_from, range_to, min_id, max_id, row_count, file, archived_at)
+                        VALUES (?, ?, ?, ?, ?, ?, ?, now())
+                        """,
+                partitionName, rangeFrom, rangeTo, minId, maxId, rowCount, file.toString());
+    }
+
+    public List<Archive> findAll() {
+        return jdbcTemplate.query("SELECT * FROM estimation_archives ORDER BY range_from", this::mapArchive);
+    }
+
+    /**
+     * The archived estimation with this id, if any. Only archives whose id range holds it are read.
+     */
+    public Optional<Estimation> findById(long id) {
+        List<Archive> archives = jdbcTemplate.query(
+                "SELECT * FROM estimation_archives WHERE min_id <= ? AND max_id >= ? ORDER BY range_from",
+                this::mapArchive, id, id);
+        for (Archive archive : archives) {
+            for (Estimation estimation : read(archive)) {
+                if (estimation.getId() == id) {
+                    return Optional.of(estimation);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Up to {@code limit} archived estimations created in {@code [from, to)}, oldest first.
+     */
+    public List<Estimation> findCreatedBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        List<Archive> archives = jdbcTemplate.query(
+                "SELECT * FROM estimation_archives WHERE range_from < ? AND range_to > ? ORDER BY range_from",
+                this::mapArchive, to, from);
+        List<Estimation> found = new ArrayList<>();
+        // Archives hold whole months, so reading them in month order fills the page oldest first
+        for (Archive archive : archives) {
+            List<Estimation> rows = new ArrayList<>();
+            for (Estimation estimation : read(archive)) {
+                if (!estimation.getCreatedAt().isBefore(from) && estimation.getCreatedAt().isBefore(to)) {
+                    rows.add(estimation);
+                }
+            }
+            rows.sort(Comparator.comparing(Estimation::getCreatedAt).thenComparing(Estimation::getId));
+            for (Estimation estimation : rows) {
+                if (found.size() == limit) {
+                    return found;
+                }
+                found.add(estimation);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The estimations of an archive file.
+     */
+    public static List<Estimation> read(Path file) {
+        List<Estimation> estimations = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                estimations.add(parse(line));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return estimations;
+    }
+
+    private List<Estimation> read(Archive archive) {
+        return read(Path.of(archive.file()));
+    }
+
+    // One line of COPY text output: fields separated by tabs, \N for null, backslash escapes within fields
+    static Estimation parse(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 10) {
+            throw new IllegalStateException("Expected 10 columns in archived row, got " + fields.length);
+        }
+        Estimation estimation = new Estimation();
+        estimation.setId(Long.valueOf(fields[0]));
+        estimation.setItemName(unescape(fields[1]));
+        estimation.setCategory(unescape(fields[2]));
+        estimation.setBrand(unescape(fields[3]));
+        estimation.setYear(Integer.valueOf(fields[4]));
+        String conditionRating = unescape(fields[5]);
+        estimation.setConditionRating(conditionRating != null ? Integer.valueOf(conditionRating) : null);
+        String price = unescape(fields[6]);
+        estimation.setEstimatedPrice(price != null ? new BigDecimal(price) : null);
+        estimation.setAiDescription(unescape(fields[7]));
+        estimation.setCreatedAt(LocalDateTime.parse(fields[8], TIMESTAMP));
+        String fingerprint = unescape(fields[9]);
+        estimation.setFingerprint(fingerprint != null ? Long.valueOf(fingerprint) : null);
+        return estimation;
+    }
+
+    static String unescape(String field) {
+        if (field.equals("\\N")) {
+            return null;
+        }
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder value = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\' || i + 1 == field.length()) {
+                value.append(c);
+                continue;
+            }
+            char next = field.charAt(++i);
+            switch (next) {
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'v' -> value.append('\u000b');
+                // \\ and nothing else; COPY TO writes no octal or hex escapes
+                default -> value.append(next);
+            }
+        }
+        return value.toString();
+    }
+
+    private Archive mapArchive(ResultSet rs, int rowNum) throws SQLException {
+        return new Archive(
+                rs.getLong("id"),
+                rs.getString("partition_name"),
+                rs.getObject("range_from", LocalDateTime.class),
+                rs.getObject("range_to", LocalDateTime.class),
+                rs.getObject("min_id", Long.class),
+                rs.getObject("max_id", Long.class),
+                rs.getLong("row_count"),
+                rs.getString("file"),
+                rs.getObject("archived_at", LocalDateTime.class)
+        );
+    }
+}
@@ -0,0 +1,35 @@
+package com.yann.smart_valuator_api.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out estimation ids without a database round trip per row. Each {@code nextval} of
+ * {@code estimations_id_seq} reserves the block {@code [value, value + ALLOCATION_SIZE)}, the same
+ * pooled-lo scheme Hibernate uses for the entity, so ids from either never collide.
+ */
+@Component
+public class EstimationIdAllocator {
+
+    public static final String SEQUENCE = "estimations_id_seq";
+    // Must match the sequence's INCREMENT BY and the entity's allocationSize
+    public static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private long next;
+    private long limit;
+
+    public EstimationIdAllocator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public synchronized long nextId() {
+        if (next >= limit) {
+            Long low = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCE + "')", Long.class);
+            next = low;
+            limit = low + ALLOCATION_SIZE;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,147 @@
+package com.yann.smart_valuator_api.repository;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Plain JDBC access to the estimations table for bulk paths where going through
+ * the JPA persistence context one entity at a time is too costly.
+ */
+@Repository
+@AllArgsConstructor
+public class EstimationJdbcRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO estimations
+                (id, item_name, category, brand, year, condition_rating, estimated_price, ai_description, created_at,
+                 fingerprint)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (id, created_at) DO NOTHING
+            """;
+
+    private static final String SELECT_ALL_SQL = """
+            SELECT id, item_name, category, brand, year, condition_rating, estimated_price, ai_description, created_at
+            FROM estimations
+            ORDER BY id
+            """;
+
+    private static final String SELECT_TRAINING_SQL = """
+            SELECT item_name, category, brand, year, condition_rating, estimated_price, created_at
+            FROM estimations
+            WHERE estimated_price > 0
+            ORDER BY created_at DESC
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EstimationIdAllocator estimationIdAllocator;
+
+    /**
+     * Inserts all estimations in a single JDBC batch, first giving an id to those without one.
+     */
+    public void batchInsert(List<Estimation> estimations) {
+        for (Estimation estimation : estimations) {
+            if (estimation.getId() == null) {
+                estimation.setId(estimationIdAllocator.nextId());
+            }
+        }
+        insertAll(estimations);
+    }
+
+    /**
+     * Inserts estimations that already carry their ids in a single JDBC batch. Rows whose id is
+     * already in the table (with the same created_at, the rest of the key) are skipped, so writing the
+     * same estimation twice is harmless.
+     */
+    public void insertAll(List<Estimation> estimations) {
+        if (estimations.isEmpty()) {
+            return;
+        }
+
+        // With ids known up front nothing is read back, so the driver can rewrite the batch into
+        // multi-row INSERTs (reWriteBatchedInserts)
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Estimation estimation = estimations.get(i);
+                ps.setLong(1, estimation.getId());
+                ps.setString(2, estimation.getItemName());
+                ps.setString(3, estimation.getCategory());
+                ps.setString(4, estimation.getBrand());
+                ps.setObject(5, estimation.getYear(), Types.INTEGER);
+                ps.setObject(6, estimation.getConditionRating(), Types.INTEGER);
+                ps.setBigDecimal(7, estimation.getEstimatedPrice());
+                ps.setString(8, estimation.getAiDescription());
+                ps.setTimestamp(9, Timestamp.valueOf(estimation.getCreatedAt()));
+                ps.setObject(10, estimation.getFingerprint(), Types.BIGINT);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return estimations.size();
+            }
+        });
+    }
+
+    /**
+     * Hands every estimation to {@code consumer}, in id order, reading {@code fetchSize} rows per
+     * round trip. PostgreSQL only uses a server-side cursor when auto-commit is off, so this must
+     * run inside a transaction or the driver will buffer the whole result set.
+     */
+    public void streamAll(int fetchSize, Consumer<Estimation> consumer) {
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            SELECT_ALL_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(mapRow(rs))
+        );
+    }
+
+    /**
+     * The most recent priced estimations, with only the columns the local price model learns from.
+     */
+    public List<Estimation> findTrainingRows(int maxRows) {
+        return jdbcTemplate.query(SELECT_TRAINING_SQL, (rs, rowNum) -> {
+            Estimation estimation = new Estimation();
+            estimation.setItemName(rs.getString("item_name"));
+            estimation.setCategory(rs.getString("category"));
+            estimation.setBrand(rs.getString("brand"));
+            estimation.setYear(rs.getObject("year", Integer.class));
+            estimation.setConditionRating(rs.getObject("condition_rating", Integer.class));
+            estimation.setEstimatedPrice(rs.getBigDecimal("estimated_price"));
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            estimation.setCreatedAt(createdAt == null ? null : createdAt.toLocalDateTime());
+            return estimation;
+        }, maxRows);
+    }
+
+    private static Estimation mapRow(ResultSet rs) throws SQLException {
+        Estimation estimation = new Estimation();
+        estimation.setId(rs.getLong("id"));
+        estimation.setItemName(rs.getString("item_name"));
+        estimation.setCategory(rs.getString("category"));
+        estimation.setBrand(rs.getString("brand"));
+        estimation.setYear(rs.getObject("year", Integer.class));
+        estimation.setConditionRating(rs.getObject("condition_rating", Integer.class));
+        estimation.setEstimatedPrice(rs.getBigDecimal("estimated_price"));
+        estimation.setAiDescription(rs.getString("ai_description"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        estimation.setCreatedAt(createdAt == null ? null : createdAt.toLocalDateTime());
+        return estimation;
+    }
+}
@@ -0,0 +1,33 @@
+package com.yann.smart_valuator_api.repository;
+
+import com.yann.smart_valuator_api.entity.EstimationJob;
+import com.yann.smart_valuator_api.entity.EstimationJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface EstimationJobRepository extends JpaRepository<EstimationJob, UUID> {
+
+    List<EstimationJob> findByStatusInAndUpdatedAtBefore(
+            Collection<EstimationJobStatus> statuses,
+            LocalDateTime updatedBefore
+    );
+
+    // Compare-and-set on the status column; returns 0 when another worker got there first
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EstimationJob j set j.status = :to, j.updatedAt = :now where j.id = :id and j.status = :from")
+    int transition(
+            @Param("id") UUID id,
+            @Param("from") EstimationJobStatus from,
+            @Param("to") EstimationJobStatus to,
+            @Param("now") LocalDateTime now
+    );
+}
@@ -0,0 +1,116 @@
+package com.yann.smart_valuator_api.repository;
+
+import lombok.AllArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The monthly partitions of {@code estimations}, named {@code estimations_pYYYY_MM} and holding the
+ * estimations created in that month. Partition names end up in DDL, where they cannot be bound, so
+ * they are always built from a month here, never taken as given.
+ */
+@Repository
+@AllArgsConstructor
+public class EstimationPartitionRepository {
+
+    // Serializes partition maintenance across nodes (pg_try_advisory_xact_lock key)
+    private static final long MAINTENANCE_LOCK = 0x6573745f70617274L;
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("estimations_p(\\d{4})_(\\d{2})");
+
+    private static final String SELECT_PARTITIONS_SQL = """
+            SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'estimations'::regclass
+            """;
+
+    /** Ids and row count of a partition; the ids are null when it is empty. */
+    public record Contents(Long minId, Long maxId, long rowCount) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public static String partitionName(YearMonth month) {
+        return "estimations_p%04d_%02d".formatted(month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * The months that have a partition, oldest first.
+     */
+    public List<YearMonth> findMonths() {
+        return jdbcTemplate.queryForList(SELECT_PARTITIONS_SQL, String.class).stream()
+                .map(PARTITION_NAME::matcher)
+                .filter(Matcher::matches)
+                .map(name -> YearMonth.of(Integer.parseInt(name.group(1)), Integer.parseInt(name.group(2))))
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Creates the partition of {@code month} unless it exists.
+     */
+    public void create(YearMonth month) {
+        jdbcTemplate.queryForObject("SELECT create_estimation_partition(?)", String.class,
+                Date.valueOf(month.atDay(1)));
+    }
+
+    public boolean tryLockForMaintenance() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK));
+    }
+
+    /**
+     * Locks the partition of {@code month} against writes until the calling transaction ends, waiting
+     * at most {@code timeout} for that lock and any other the transaction takes later. Reads go on.
+     */
+    public void lockForArchive(YearMonth month, Duration timeout) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + timeout.toMillis());
+        jdbcTemplate.execute("LOCK TABLE " + partitionName(month) + " IN SHARE MODE");
+    }
+
+    public Contents contents(YearMonth month) {
+        return jdbcTemplate.queryForObject(
+                "SELECT min(id), max(id), count(*) FROM " + partitionName(month),
+                (rs, rowNum) -> new Contents(rs.getObject(1, Long.class), rs.getObject(2, Long.class), rs.getLong(3)));
+    }
+
+    /**
+     * Writes the rows of the partition of {@code month} to {@code out} in COPY text format, with the
+     * columns of {@link EstimationArchiveRepository#COLUMNS}, and returns how many there were.
+     */
+    public long copyOut(YearMonth month, OutputStream out) {
+        String sql = "COPY " + partitionName(month) + " (" + EstimationArchiveRepository.COLUMNS + ") TO STDOUT";
+        return Objects.requireNonNull(jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            // Timestamps in the form EstimationArchiveRepository parses, whatever the server default
+            try (var statement = connection.createStatement()) {
+                statement.execute("SET LOCAL DateStyle = 'ISO'");
+            }
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    /**
+     * Detaches the partition of {@code month} from {@code estimations} and drops it.
+     */
+    public void detachAndDrop(YearMonth month) {
+        String partition = partitionName(month);
+        jdbcTemplate.execute("ALTER TABLE estimations DETACH PARTITION " + partition);
+        jdbcTemplate.execute("DROP TABLE " + partition);
+    }
+}
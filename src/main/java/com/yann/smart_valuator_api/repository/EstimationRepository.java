@@ -1,8 +1,107 @@
 package com.yann.smart_valuator_api.repository;
 
 import com.yann.smart_valuator_api.entity.Estimation;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface EstimationRepository extends JpaRepository<Estimation, Long> {
     Estimation findByItemName(String itemName);
+
+    // Newest first from the partial index on (fingerprint, created_at), which also holds the id
+    @Query("""
+            select e.id from Estimation e
+            where e.fingerprint = :fingerprint and e.createdAt >= :since
+            order by e.createdAt desc
+            """)
+    List<Long> findIdsByFingerprint(
+            @Param("fingerprint") long fingerprint,
+            @Param("since") LocalDateTime since,
+            Limit limit
+    );
+
+    // Keyset pages on (created_at, id), newest first. The "<=" bound on created_at lets
+    // idx_estimations_created_at drive the scan; the id comparison only breaks ties.
+
+    @Query("""
+            select e from Estimation e
+            where (:brand is null or e.brand = :brand)
+              and (:category is null or e.category = :category)
+              and (:yearFrom is null or e.year >= :yearFrom)
+              and (:yearTo is null or e.year <= :yearTo)
+            order by e.createdAt desc, e.id desc
+            """)
+    List<Estimation> findFirstPage(
+            @Param("brand") String brand,
+            @Param("category") String category,
+            @Param("yearFrom") Integer yearFrom,
+            @Param("yearTo") Integer yearTo,
+            Limit limit
+    );
+
+    @Query("""
+            select e from Estimation e
+            where (:brand is null or e.brand = :brand)
+              and (:category is null or e.category = :category)
+              and (:yearFrom is null or e.year >= :yearFrom)
+              and (:yearTo is null or e.year <= :yearTo)
+              and e.createdAt <= :createdAt
+              and (e.createdAt < :createdAt or e.id < :id)
+            order by e.createdAt desc, e.id desc
+            """)
+    List<Estimation> findPageAfter(
+            @Param("brand") String brand,
+            @Param("category") String category,
+            @Param("yearFrom") Integer yearFrom,
+            @Param("yearTo") Integer yearTo,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Limit limit
+    );
+
+    @Query("""
+            select e.id as id, e.itemName as itemName, e.category as category, e.brand as brand,
+                   e.year as year, e.conditionRating as conditionRating,
+                   e.estimatedPrice as estimatedPrice, e.createdAt as createdAt
+            from Estimation e
+            where (:brand is null or e.brand = :brand)
+              and (:category is null or e.category = :category)
+              and (:yearFrom is null or e.year >= :yearFrom)
+              and (:yearTo is null or e.year <= :yearTo)
+            order by e.createdAt desc, e.id desc
+            """)
+    List<EstimationSummary> findFirstSummaryPage(
+            @Param("brand") String brand,
+            @Param("category") String category,
+            @Param("yearFrom") Integer yearFrom,
+            @Param("yearTo") Integer yearTo,
+            Limit limit
+    );
+
+    @Query("""
+            select e.id as id, e.itemName as itemName, e.category as category, e.brand as brand,
+                   e.year as year, e.conditionRating as conditionRating,
+                   e.estimatedPrice as estimatedPrice, e.createdAt as createdAt
+            from Estimation e
+            where (:brand is null or e.brand = :brand)
+              and (:category is null or e.category = :category)
+              and (:yearFrom is null or e.year >= :yearFrom)
+              and (:yearTo is null or e.year <= :yearTo)
+              and e.createdAt <= :createdAt
+              and (e.createdAt < :createdAt or e.id < :id)
+            order by e.createdAt desc, e.id desc
+            """)
+    List<EstimationSummary> findSummaryPageAfter(
+            @Param("brand") String brand,
+            @Param("category") String category,
+            @Param("yearFrom") Integer yearFrom,
+            @Param("yearTo") Integer yearTo,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Limit limit
+    );
 }
@@ -0,0 +1,343 @@
+package com.yann.smart_valuator_api.repository;
+
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+
+/**
+ * The {@code estimation_price_rollups} table: per day, the prices of the estimations of every
+ * combination of category, brand, year and condition rating, and of every combination of at most
+ * two of them. A query on at most two dimensions (filtered or grouped on) reads exactly the rows it
+ * reports; one on more reads the full combinations and merges the few values of the dimensions it
+ * leaves open. Either way its cost depends on the days and dimension values covered, not on the
+ * number of estimations. {@code estimation_price_rollups_monthly} holds the same per month, for the
+ * months before the one the caller says are final; month and year buckets read those instead of the days.
+ */
+@Repository
+@AllArgsConstructor
+public class EstimationRollupRepository {
+
+    // Serializes refreshes across nodes (pg_try_advisory_xact_lock key)
+    private static final long REFRESH_LOCK = 0x6573745f726f6c6cL;
+
+    private static final String DELETE_SQL = """
+            DELETE FROM %1$s WHERE day >= ? AND day < ?
+            """;
+
+    // Bins per period, price bin and grouping set, then folded into one row of bin arrays per period and grouping
+    private static final String INSERT_SQL = """
+            INSERT INTO %1$s
+                (day, dims, category, brand, year, condition_rating, price_sum, bins, bin_counts, bin_mins, bin_maxs)
+            SELECT day, dims, coalesce(category, ''), coalesce(brand, ''), coalesce(year, 0), coalesce(condition_rating, 0),
+                   sum(price_sum), array_agg(bin ORDER BY bin), array_agg(row_count ORDER BY bin),
+                   array_agg(price_min ORDER BY bin), array_agg(price_max ORDER BY bin)
+            FROM (
+                SELECT day, 15 - GROUPING(category, brand, year, condition_rating) AS dims,
+                       category, brand, year, condition_rating, bin,
+                       count(*) AS row_count, sum(price) AS price_sum, min(price) AS price_min, max(price) AS price_max
+                FROM (
+                    SELECT %2$s AS day, coalesce(category, '') AS category, coalesce(brand, '') AS brand,
+                           year, coalesce(condition_rating, 0) AS condition_rating, estimated_price AS price,
+                           floor(ln(estimated_price::float8) / ln(1.05))::smallint AS bin
+                    FROM estimations
+                    WHERE created_at >= ? AND created_at < ? AND estimated_price > 0
+                ) e
+                GROUP BY day, bin, GROUPING SETS (
+                    (), (category), (brand), (year), (condition_rating),
+                    (category, brand), (category, year), (category, condition_rating),
+                    (brand, year), (brand, condition_rating), (year, condition_rating),
+                    (category, brand, year, condition_rating)
+                )
+            ) b
+            GROUP BY day, dims, category, brand, year, condition_rating
+            """;
+
+    private static final String TAKE_DIRTY_DAYS_SQL = """
+            DELETE FROM estimation_rollup_dirty_days
+            WHERE day IN (SELECT day FROM estimation_rollup_dirty_days ORDER BY day LIMIT ? FOR UPDATE)
+            RETURNING day
+            """;
+
+    private static final String MARK_ALL_DAYS_DIRTY_SQL = """
+            INSERT INTO estimation_rollup_dirty_days
+            SELECT DISTINCT created_at::date FROM estimations
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String SELECT_MARKET_SQL = """
+            SELECT category, brand, year, condition_rating, price_sum, bins, bin_counts, bin_mins, bin_maxs
+            FROM %1$s
+            WHERE dims = 15 AND day >= ? AND day < ?
+            """;
+
+    private static final int ALL_DIMS = 15;
+
+    private enum Grain {
+        DAY("estimation_price_rollups", "created_at::date"),
+        MONTH("estimation_price_rollups_monthly", "date_trunc('month', created_at)::date");
+
+        private final String table;
+        private final String deleteSql;
+        private final String insertSql;
+
+        Grain(String table, String period) {
+            this.table = table;
+            this.deleteSql = DELETE_SQL.formatted(table);
+            this.insertSql = INSERT_SQL.formatted(table, period);
+        }
+    }
+
+    // Rows of a grain in [from, to)
+    private record Span(Grain grain, LocalDate from, LocalDate to) {
+    }
+
+    public enum Bucket {
+        DAY, WEEK, MONTH, YEAR
+    }
+
+    // bit is the dimension's bit in the dims column, set on rows specific to a value of that dimension
+    public enum GroupBy {
+        NONE(null, 0), CATEGORY("category", 8), BRAND("brand", 4), YEAR("year", 2), CONDITION("condition_rating", 1);
+
+        private final String column;
+        private final int bit;
+
+        GroupBy(String column, int bit) {
+            this.column = column;
+            this.bit = bit;
+        }
+    }
+
+    /**
+     * Rollup filter; null fields match everything.
+     */
+    public record Filter(String category, String brand, Integer year, Integer conditionRating) {
+    }
+
+    /**
+     * Prices of a set of estimations as histogram bins, in ascending order: {@code counts[i]} prices
+     * in bin {@code bins[i]}, between {@code mins[i]} and {@code maxs[i]}.
+     */
+    public record PriceBins(BigDecimal sum, int[] bins, long[] counts, BigDecimal[] mins, BigDecimal[] maxs) {
+    }
+
+    /**
+     * Rollup of one day or month; {@code bucket} is the start of its time bucket and {@code group} the value of
+     * the grouping dimension, null without one.
+     */
+    public record Rollup(LocalDate bucket, String group, PriceBins prices) {
+    }
+
+    /**
+     * Item key of the market prices: category and brand trimmed and lower-cased, '' and 0 for missing values.
+     */
+    public record MarketKey(String category, String brand, int year, int conditionRating) {
+
+        public static MarketKey of(String category, String brand, int year, Integer conditionRating) {
+            return new MarketKey(normalize(category), normalize(brand), year,
+                    conditionRating == null ? 0 : conditionRating);
+        }
+
+        private static String normalize(String value) {
+            return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * True when this transaction now holds the refresh lock; it is released at commit or rollback.
+     */
+    public boolean tryLockForRefresh() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, REFRESH_LOCK));
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("SELECT 1 FROM estimation_price_rollups LIMIT 1").isEmpty();
+    }
+
+    /**
+     * Rebuilds the rollups of the days in {@code [from, to)} from the estimations table.
+     */
+    public void recompute(LocalDate from, LocalDate to) {
+        recompute(Grain.DAY, from, to);
+    }
+
+    /**
+     * Rebuilds the monthly rollups of {@code month} from the estimations table.
+     */
+    public void recomputeMonth(YearMonth month) {
+        recompute(Grain.MONTH, month.atDay(1), month.plusMonths(1).atDay(1));
+    }
+
+    public boolean hasMonth(YearMonth month) {
+        return !jdbcTemplate.queryForList("SELECT 1 FROM estimation_price_rollups_monthly WHERE day = ? LIMIT 1",
+                Date.valueOf(month.atDay(1))).isEmpty();
+    }
+
+    private void recompute(Grain grain, LocalDate from, LocalDate to) {
+        jdbcTemplate.update(grain.deleteSql, Date.valueOf(from), Date.valueOf(to));
+        jdbcTemplate.update(grain.insertSql, from.atStartOfDay(), to.atStartOfDay());
+    }
+
+    /**
+     * Queues {@code day} for a rebuild at the next refresh.
+     */
+    public void markDirty(LocalDate day) {
+        jdbcTemplate.update(
+                "INSERT INTO estimation_rollup_dirty_days (day) VALUES (?) ON CONFLICT DO NOTHING", Date.valueOf(day));
+    }
+
+    public void markAllDirty() {
+        jdbcTemplate.update(MARK_ALL_DAYS_DIRTY_SQL);
+    }
+
+    /**
+     * Unqueues the days in {@code [from, to)}, whose rollups must stay as they are.
+     */
+    public void forgetDirty(LocalDate from, LocalDate to) {
+        jdbcTemplate.update("DELETE FROM estimation_rollup_dirty_days WHERE day >= ? AND day < ?",
+                Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * Removes and returns up to {@code limit} queued days, oldest first. Days marked again while the
+     * calling transaction is open are queued anew once it commits.
+     */
+    public List<LocalDate> takeDirtyDays(int limit) {
+        return jdbcTemplate.query(TAKE_DIRTY_DAYS_SQL, (rs, rowNum) -> rs.getDate("day").toLocalDate(), limit);
+    }
+
+    /**
+     * Rollups in {@code [from, to)} matching {@code filter}, ordered by time bucket and group. Whole months
+     * before {@code monthlyUntil} come from the monthly rollups when the bucket spans whole months;
+     * null reads days only.
+     */
+    public List<Rollup> findRollups(Filter filter, LocalDate from, LocalDate to, Bucket bucket, GroupBy groupBy,
+                                    LocalDate monthlyUntil) {
+        int dims = groupBy.bit
+                | (filter.category() != null ? GroupBy.CATEGORY.bit : 0)
+                | (filter.brand() != null ? GroupBy.BRAND.bit : 0)
+                | (filter.year() != null ? GroupBy.YEAR.bit : 0)
+                | (filter.conditionRating() != null ? GroupBy.CONDITION.bit : 0);
+        // Only combinations of up to two dimensions and the full one are rolled up
+        boolean open = Integer.bitCount(dims) > 2;
+        if (open) {
+            dims = ALL_DIMS;
+        }
+
+        boolean wholeMonths = bucket == Bucket.MONTH || bucket == Bucket.YEAR;
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        for (Span span : spans(from, to, wholeMonths ? monthlyUntil : null)) {
+            if (!sql.isEmpty()) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT date_trunc('").append(bucket.name().toLowerCase(Locale.ROOT)).append("', day)::date AS bucket, ")
+                    .append(groupBy == GroupBy.NONE ? "NULL" : groupBy.column).append(" AS grp, ")
+                    .append("price_sum, bins, bin_counts, bin_mins, bin_maxs ")
+                    .append("FROM ").append(span.grain().table).append(" WHERE dims = ?");
+            args.add(dims);
+            // Dimensions neither filtered nor grouped on are pinned to their rolled-up value, so the
+            // primary key index does the filtering
+            condition(sql, args, GroupBy.CATEGORY, groupBy, open, filter.category(), "");
+            condition(sql, args, GroupBy.BRAND, groupBy, open, filter.brand(), "");
+            condition(sql, args, GroupBy.YEAR, groupBy, open, filter.year(), 0);
+            condition(sql, args, GroupBy.CONDITION, groupBy, open, filter.conditionRating(), 0);
+            sql.append(" AND day >= ? AND day < ?");
+            args.add(Date.valueOf(span.from()));
+            args.add(Date.valueOf(span.to()));
+        }
+        sql.append(" ORDER BY 1, 2");
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new Rollup(
+                rs.getDate("bucket").toLocalDate(),
+                rs.getString("grp"),
+                priceBins(rs)
+        ), args.toArray());
+    }
+
+    /**
+     * Hands over the rollups of every item since {@code since}, one per item and day, or per item and
+     * month for the whole months before {@code monthlyUntil}.
+     */
+    public void streamMarketRollups(LocalDate since, LocalDate monthlyUntil, BiConsumer<MarketKey, PriceBins> consumer) {
+        for (Span span : spans(since, LocalDate.now().plusDays(1), monthlyUntil)) {
+            jdbcTemplate.query(SELECT_MARKET_SQL.formatted(span.grain().table), (RowCallbackHandler) rs -> consumer.accept(
+                    MarketKey.of(rs.getString("category"), rs.getString("brand"),
+                            rs.getInt("year"), rs.getInt("condition_rating")),
+                    priceBins(rs)
+            ), Date.valueOf(span.from()), Date.valueOf(span.to()));
+        }
+    }
+
+    // [from, to) as the days before the first whole month, the whole months before monthlyUntil and the days after
+    private static List<Span> spans(LocalDate from, LocalDate to, LocalDate monthlyUntil) {
+        if (monthlyUntil != null) {
+            LocalDate monthsFrom = from.getDayOfMonth() == 1 ? from : YearMonth.from(from).plusMonths(1).atDay(1);
+            LocalDate monthsTo = YearMonth.from(to).atDay(1);
+            if (monthlyUntil.isBefore(monthsTo)) {
+                monthsTo = monthlyUntil;
+            }
+            if (monthsFrom.isBefore(monthsTo)) {
+                List<Span> spans = new ArrayList<>();
+                if (from.isBefore(monthsFrom)) {
+                    spans.add(new Span(Grain.DAY, from, monthsFrom));
+                }
+                spans.add(new Span(Grain.MONTH, monthsFrom, monthsTo));
+                if (monthsTo.isBefore(to)) {
+                    spans.add(new Span(Grain.DAY, monthsTo, to));
+                }
+                return spans;
+            }
+        }
+        return List.of(new Span(Grain.DAY, from, to));
+    }
+
+    private static void condition(StringBuilder sql, List<Object> args, GroupBy dimension, GroupBy groupBy,
+                                  boolean open, Object value, Object rolledUp) {
+        if (value == null && (dimension == groupBy || open)) {
+            return;
+        }
+        sql.append(" AND ").append(dimension.column).append(" = ?");
+        args.add(value != null ? value : rolledUp);
+    }
+
+    private static PriceBins priceBins(ResultSet rs) throws SQLException {
+        Object[] bins = elements(rs.getArray("bins"));
+        Object[] counts = elements(rs.getArray("bin_counts"));
+        Object[] mins = elements(rs.getArray("bin_mins"));
+        Object[] maxs = elements(rs.getArray("bin_maxs"));
+        PriceBins prices = new PriceBins(rs.getBigDecimal("price_sum"), new int[bins.length], new long[bins.length],
+                new BigDecimal[bins.length], new BigDecimal[bins.length]);
+        for (int i = 0; i < bins.length; i++) {
+            prices.bins()[i] = ((Number) bins[i]).intValue();
+            prices.counts()[i] = ((Number) counts[i]).longValue();
+            prices.mins()[i] = (BigDecimal) mins[i];
+            prices.maxs()[i] = (BigDecimal) maxs[i];
+        }
+        return prices;
+    }
+
+    private static Object[] elements(Array array) throws SQLException {
+        try {
+            return (Object[]) array.getArray();
+        } finally {
+            array.free();
+        }
+    }
+}
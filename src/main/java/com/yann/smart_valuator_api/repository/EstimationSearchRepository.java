@@ -0,0 +1,181 @@
+package com.yann.smart_valuator_api.repository;
+
+import com.yann.smart_valuator_api.DTO.EstimationSearchHit;
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Search over item names and AI descriptions. Names are matched on trigrams ({@code pg_trgm}) in
+ * {@code estimation_item_names}, the distinct names kept by trigger, so partial and misspelled
+ * names are found without scanning the estimations; each matching name then reads its newest rows
+ * from {@code idx_estimations_item_name_created_at}. Descriptions are matched as full text. See
+ * {@code V1__baseline.sql} for the indexes.
+ */
+@Repository
+@AllArgsConstructor
+public class EstimationSearchRepository {
+
+    // score is word_similarity: the share of the query's trigrams found in the best matching part of the
+    // name. Only the names that can reach this page are joined (WITH TIES keeps every name scoring like the
+    // last one), each for at most a page of its newest rows.
+    private static final String NAME_SEARCH_SQL = """
+            WITH names AS (
+                SELECT item_name, word_similarity(?, item_name) AS score
+                FROM estimation_item_names
+                WHERE ? <%% item_name%s
+                ORDER BY score DESC
+                FETCH FIRST ? ROWS WITH TIES
+            )
+            SELECT * FROM (%s) hits
+            ORDER BY score DESC, created_at DESC, id DESC
+            LIMIT ?
+            """;
+
+    private static final String NAME_ROWS_SQL = """
+            SELECT n.score, e.*
+            FROM names n
+            CROSS JOIN LATERAL (
+                SELECT id, item_name, category, brand, year, condition_rating, estimated_price, created_at
+                FROM estimations e
+                WHERE e.item_name = n.item_name%s
+                ORDER BY e.created_at DESC, e.id DESC
+                LIMIT ?
+            ) e%s
+            """;
+
+    private static final String TEXT_SEARCH_SQL = """
+            SELECT NULL::real AS score, id, item_name, category, brand, year, condition_rating, estimated_price, created_at
+            FROM estimations
+            WHERE %s%s
+            ORDER BY created_at DESC, id DESC
+            LIMIT ?
+            """;
+
+    // Same expression as idx_estimations_description_text
+    private static final String TEXT_MATCH = "to_tsvector('english', coalesce(ai_description, '')) @@ websearch_to_tsquery('english', ?)";
+
+    // Model answers only (fingerprint set) of the best matching names, most similar first
+    private static final String NEIGHBOUR_PRICES_SQL = """
+            SELECT e.estimated_price
+            FROM (
+                SELECT item_name, word_similarity(?, item_name) AS score
+                FROM estimation_item_names
+                WHERE ? <%% item_name
+                ORDER BY score DESC
+                LIMIT 10
+            ) n
+            CROSS JOIN LATERAL (
+                SELECT estimated_price, created_at
+                FROM estimations e
+                WHERE e.item_name = n.item_name AND e.year = ? AND e.fingerprint IS NOT NULL
+                  AND e.estimated_price > 0%s
+                ORDER BY e.created_at DESC
+                LIMIT ?
+            ) e
+            WHERE n.score >= ?
+            ORDER BY n.score DESC, e.created_at DESC
+            LIMIT ?
+            """;
+
+    /**
+     * Position after which a search page starts: the last hit of the previous page.
+     */
+    public record After(Float score, LocalDateTime createdAt, long id) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Up to {@code limit} estimations whose name resembles {@code name}, best match first and newest
+     * first among equal matches, restricted to descriptions matching {@code text} when given. Without
+     * a name, the estimations whose description matches {@code text}, newest first.
+     */
+    public List<EstimationSearchHit> search(String name, String text, After after, int limit) {
+        List<Object> args = new ArrayList<>();
+        String textFilter = text == null ? "" : " AND " + TEXT_MATCH;
+
+        if (name == null) {
+            String position = "";
+            args.add(text);
+            if (after != null) {
+                position = " AND (created_at, id) < (?, ?)";
+                args.add(after.createdAt());
+                args.add(after.id());
+            }
+            args.add(limit);
+            return query(TEXT_SEARCH_SQL.formatted(TEXT_MATCH, position), args);
+        }
+
+        args.add(name);
+        args.add(name);
+        String names = "";
+        String rows;
+        if (after == null) {
+            rows = NAME_ROWS_SQL.formatted(textFilter, "");
+            args.add(limit);
+            addIfPresent(args, text);
+            args.add(limit);
+        } else {
+            // Names scoring like the last hit continue after it, lower scoring ones from their newest row
+            names = " AND word_similarity(?, item_name) <= ?";
+            rows = NAME_ROWS_SQL.formatted(textFilter + " AND (e.created_at, e.id) < (?, ?)", " WHERE n.score = ?")
+                    + " UNION ALL " + NAME_ROWS_SQL.formatted(textFilter, " WHERE n.score < ?");
+            args.addAll(List.of(name, after.score(), limit));
+            addIfPresent(args, text);
+            args.addAll(List.of(after.createdAt(), after.id(), limit, after.score()));
+            addIfPresent(args, text);
+            args.addAll(List.of(limit, after.score()));
+        }
+        args.add(limit);
+        return query(NAME_SEARCH_SQL.formatted(names, rows), args);
+    }
+
+    /**
+     * Prices the model gave to up to {@code limit} recent estimations of the same year and, when given,
+     * condition rating, among the ten names most like {@code itemName} with a similarity of at least
+     * {@code minSimilarity}; most similar names first.
+     */
+    public List<BigDecimal> findNeighbourPrices(String itemName, int year, Integer conditionRating,
+                                                double minSimilarity, int limit) {
+        List<Object> args = new ArrayList<>(List.of(itemName, itemName, year));
+        String condition = "";
+        if (conditionRating != null) {
+            condition = " AND e.condition_rating = ?";
+            args.add(conditionRating);
+        }
+        args.add(limit);
+        args.add(minSimilarity);
+        args.add(limit);
+        return jdbcTemplate.queryForList(NEIGHBOUR_PRICES_SQL.formatted(condition), BigDecimal.class, args.toArray());
+    }
+
+    private static void addIfPresent(List<Object> args, String value) {
+        if (value != null) {
+            args.add(value);
+        }
+    }
+
+    private List<EstimationSearchHit> query(String sql, List<Object> args) {
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            return new EstimationSearchHit(
+                    rs.getLong("id"),
+                    rs.getString("item_name"),
+                    rs.getString("category"),
+                    rs.getString("brand"),
+                    rs.getObject("year", Integer.class),
+                    rs.getObject("condition_rating", Integer.class),
+                    rs.getBigDecimal("estimated_price"),
+                    createdAt == null ? null : createdAt.toLocalDateTime(),
+                    rs.getObject("score", Float.class)
+            );
+        }, args.toArray());
+    }
+}
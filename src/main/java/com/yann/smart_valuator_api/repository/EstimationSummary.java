@@ -0,0 +1,25 @@
+package com.yann.smart_valuator_api.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Sparse view of an estimation without the AI description, used for listings.
+ */
+public interface EstimationSummary {
+    Long getId();
+
+    String getItemName();
+
+    String getCategory();
+
+    String getBrand();
+
+    Integer getYear();
+
+    Integer getConditionRating();
+
+    BigDecimal getEstimatedPrice();
+
+    LocalDateTime getCreatedAt();
+}
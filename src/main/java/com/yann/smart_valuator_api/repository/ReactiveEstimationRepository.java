@@ -0,0 +1,189 @@
+package com.yann.smart_valuator_api.repository;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * R2DBC access to the estimations table for the reactive profile: the inserts and reads of the
+ * estimation hot path, without holding a thread while PostgreSQL works. Everything else keeps
+ * using JPA and JDBC on the regular pool.
+ *
+ * <p>The connection pool is owned here rather than exposed as a {@code ConnectionFactory} bean,
+ * which would switch off Spring Boot's DataSource, and with it JPA, for the whole application.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveEstimationRepository implements AutoCloseable {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO estimations
+                (id, item_name, category, brand, year, condition_rating, estimated_price, ai_description, created_at,
+                 fingerprint)
+            VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10)
+            ON CONFLICT (id, created_at) DO NOTHING
+            """;
+
+    private static final String SELECT_SQL = """
+            SELECT id, item_name, category, brand, year, condition_rating, estimated_price, ai_description, created_at,
+                   fingerprint
+            FROM estimations
+            """;
+
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+
+    // Current block of ids, see EstimationIdAllocator
+    private long nextId;
+    private long idLimit;
+
+    public ReactiveEstimationRepository(
+            @Value("${spring.datasource.url}") String jdbcUrl,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${estimation.reactive.r2dbc.url:}") String url,
+            @Value("${estimation.reactive.r2dbc.max-size:20}") int maxSize,
+            @Value("${estimation.reactive.r2dbc.max-pending:1000}") int maxPending,
+            @Value("${estimation.reactive.r2dbc.max-acquire-time:5s}") Duration maxAcquireTime
+    ) {
+        // Same database as the JDBC pool unless told otherwise: jdbc:postgresql://... becomes r2dbc:postgresql://...
+        String r2dbcUrl = url.isBlank() ? "r2dbc:" + jdbcUrl.substring("jdbc:".length()) : url;
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(r2dbcUrl).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name("estimations-r2dbc")
+                .maxSize(maxSize)
+                .maxAcquireTime(maxAcquireTime)
+                // Beyond this many waiting for a connection, inserts fail at once instead of queueing without bound
+                .customizer(pool -> pool.maxPendingAcquire(maxPending))
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+    }
+
+    /**
+     * Inserts the estimations in one pipelined batch, first giving an id to those without one. Like
+     * {@link EstimationJdbcRepository#insertAll}, rows whose id is already in the table are skipped.
+     */
+    public Mono<Void> insertAll(List<Estimation> estimations) {
+        if (estimations.isEmpty()) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(estimations)
+                .filter(estimation -> estimation.getId() == null)
+                .concatMap(estimation -> nextId().doOnNext(estimation::setId))
+                .then(databaseClient.inConnection(connection -> {
+                    Statement statement = connection.createStatement(INSERT_SQL);
+                    for (int i = 0; i < estimations.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        bind(statement, estimations.get(i));
+                    }
+                    return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated).then();
+                }));
+    }
+
+    public Mono<Estimation> findById(long id) {
+        return databaseClient.sql(SELECT_SQL + "WHERE id = $1")
+                .bind(0, id)
+                .map(ReactiveEstimationRepository::mapRow)
+                .one();
+    }
+
+    /**
+     * The newest estimation with this fingerprint created at or after {@code since}, as
+     * {@link EstimationRepository#findIdsByFingerprint} finds it.
+     */
+    public Mono<Estimation> findNewestByFingerprint(long fingerprint, LocalDateTime since) {
+        return databaseClient.sql(SELECT_SQL + """
+                        WHERE fingerprint = $1 AND created_at >= $2
+                        ORDER BY created_at DESC
+                        LIMIT 1
+                        """)
+                .bind(0, fingerprint)
+                .bind(1, since)
+                .map(ReactiveEstimationRepository::mapRow)
+                .one();
+    }
+
+    // A whole block is read when the current one is used up. Two callers may both read one; the ids left
+    // in the block that loses are never used, a gap like any other in the sequence.
+    private Mono<Long> nextId() {
+        return Mono.defer(() -> {
+            synchronized (this) {
+                if (nextId < idLimit) {
+                    return Mono.just(nextId++);
+                }
+            }
+            return databaseClient.sql("SELECT nextval('" + EstimationIdAllocator.SEQUENCE + "')")
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(low -> {
+                        synchronized (this) {
+                            nextId = low;
+                            idLimit = low + EstimationIdAllocator.ALLOCATION_SIZE;
+                            return nextId++;
+                        }
+                    });
+        });
+    }
+
+    private static void bind(Statement statement, Estimation estimation) {
+        statement.bind(0, estimation.getId());
+        bind(statement, 1, estimation.getItemName(), String.class);
+        bind(statement, 2, estimation.getCategory(), String.class);
+        bind(statement, 3, estimation.getBrand(), String.class);
+        bind(statement, 4, estimation.getYear(), Integer.class);
+        bind(statement, 5, estimation.getConditionRating(), Integer.class);
+        bind(statement, 6, estimation.getEstimatedPrice(), BigDecimal.class);
+        bind(statement, 7, estimation.getAiDescription(), String.class);
+        statement.bind(8, estimation.getCreatedAt());
+        bind(statement, 9, estimation.getFingerprint(), Long.class);
+    }
+
+    private static void bind(Statement statement, int index, Object value, Class<?> type) {
+        if (value == null) {
+            statement.bindNull(index, type);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+
+    private static Estimation mapRow(Readable row) {
+        Estimation estimation = new Estimation();
+        estimation.setId(row.get("id", Long.class));
+        estimation.setItemName(row.get("item_name", String.class));
+        estimation.setCategory(row.get("category", String.class));
+        estimation.setBrand(row.get("brand", String.class));
+        estimation.setYear(row.get("year", Integer.class));
+        estimation.setConditionRating(row.get("condition_rating", Integer.class));
+        estimation.setEstimatedPrice(row.get("estimated_price", BigDecimal.class));
+        estimation.setAiDescription(row.get("ai_description", String.class));
+        estimation.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        estimation.setFingerprint(row.get("fingerprint", Long.class));
+        return estimation;
+    }
+
+    @Override
+    public void close() {
+        connectionPool.dispose();
+    }
+}
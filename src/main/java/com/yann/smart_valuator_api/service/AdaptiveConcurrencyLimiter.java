@@ -0,0 +1,73 @@
+package com.yann.smart_valuator_api.service;
+
+/**
+ * AIMD limit on concurrent upstream calls. Calls beyond the limit are rejected rather than
+ * queued. Each call that completes within the latency threshold raises the limit by
+ * {@code 1 / limit}, so it grows by about one per limit's worth of successes. A failed or slow
+ * call multiplies it by {@code backoffRatio}.
+ */
+final class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    private double limit;
+    private int inFlight;
+
+    AdaptiveConcurrencyLimiter(
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            double backoffRatio,
+            long latencyThresholdNanos
+    ) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    // Returns a slot without adjusting the limit, for calls that never went out
+    synchronized void release() {
+        inFlight--;
+    }
+
+    synchronized void onSuccess(long latencyNanos) {
+        // Only grow while the limit is actually being used, or an idle period would inflate it
+        boolean saturated = inFlight * 2 >= limit;
+        inFlight--;
+        if (latencyNanos > latencyThresholdNanos) {
+            decrease();
+        } else if (saturated) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    synchronized void onDropped() {
+        inFlight--;
+        decrease();
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
@@ -0,0 +1,237 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.BatchEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+/**
+ * Estimates a whole catalog in one request, reading it as it goes: identical items are estimated
+ * once, items priced recently are answered with their stored row (see {@link EstimationDeduplicator}),
+ * AI calls are fanned out on a pool sized to the configured concurrency cap, and finished results are
+ * persisted with JDBC batch inserts and streamed back as NDJSON as soon as they are saved.
+ */
+@Service
+public class BatchEstimationService {
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final EstimationService estimationService;
+    private final EstimationDeduplicator estimationDeduplicator;
+    private final EstimationJdbcRepository estimationJdbcRepository;
+    private final Executor estimationBatchExecutor;
+    private final ObjectMapper objectMapper;
+    private final EstimationMetrics estimationMetrics;
+    private final int maxItems;
+    private final int insertBatchSize;
+    private final int maxInFlight;
+
+    public BatchEstimationService(
+            EstimationService estimationService,
+            EstimationDeduplicator estimationDeduplicator,
+            EstimationJdbcRepository estimationJdbcRepository,
+            @Qualifier("estimationBatchExecutor") Executor estimationBatchExecutor,
+            ObjectMapper objectMapper,
+            EstimationMetrics estimationMetrics,
+            @Value("${estimation.batch.max-items:10000}") int maxItems,
+            @Value("${estimation.batch.insert-batch-size:100}") int insertBatchSize,
+            @Value("${estimation.batch.max-in-flight:200}") int maxInFlight
+    ) {
+        this.estimationService = estimationService;
+        this.estimationDeduplicator = estimationDeduplicator;
+        this.estimationJdbcRepository = estimationJdbcRepository;
+        this.estimationBatchExecutor = estimationBatchExecutor;
+        this.objectMapper = objectMapper;
+        this.estimationMetrics = estimationMetrics;
+        this.maxItems = maxItems;
+        this.insertBatchSize = insertBatchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Reads a JSON array or NDJSON stream of items from {@code body} while estimating them and writes
+     * one NDJSON line per item to {@code out}. The body is parsed one item at a time, and no more of it
+     * is read while {@code max-in-flight} distinct items are being estimated. An item missing its name
+     * or year gets an error line and the rest go on; a malformed body or one over {@code max-items}
+     * gets an error line at the index where it broke, and ends the batch once the items before are done.
+     */
+    public void estimate(InputStream body, OutputStream out) throws IOException {
+        CompletionService<BatchItem> completion = new ExecutorCompletionService<>(estimationBatchExecutor);
+        Set<Future<BatchItem>> inFlight = new HashSet<>();
+        // Identical items are estimated once; later copies wait for the first or are answered with it
+        Map<EstimationCacheKey, BatchItem> seen = new HashMap<>();
+        List<BatchItem> ready = new ArrayList<>(insertBatchSize);
+
+        try (MappingIterator<Estimation> items = objectMapper.readerFor(Estimation.class).readValues(body)) {
+            int index = 0;
+            while (true) {
+                Estimation item;
+                try {
+                    if (!items.hasNextValue()) {
+                        break;
+                    }
+                    if (index >= maxItems) {
+                        writeLine(out, BatchEstimationResult.error(index,
+                                "Batch exceeds the maximum of " + maxItems + " items"));
+                        break;
+                    }
+                    item = items.nextValue();
+                } catch (JacksonException e) {
+                    writeLine(out, BatchEstimationResult.error(index, "Malformed batch body: " + e.getOriginalMessage()));
+                    break;
+                }
+
+                int itemIndex = index++;
+                if (item.getItemName() == null || item.getYear() == null) {
+                    writeLine(out, BatchEstimationResult.error(itemIndex,
+                            "Item " + itemIndex + " is missing itemName or year"));
+                    continue;
+                }
+                BatchItem same = seen.get(EstimationCacheKey.of(item));
+                if (same != null) {
+                    if (same.written) {
+                        writeLine(out, new BatchEstimationResult(itemIndex, same.estimation));
+                    } else {
+                        same.indexes.add(itemIndex);
+                    }
+                    continue;
+                }
+
+                BatchItem batchItem = new BatchItem(item, itemIndex);
+                seen.put(EstimationCacheKey.of(item), batchItem);
+                inFlight.add(completion.submit(() -> estimate(batchItem)));
+                // Write what is done; with a full window, wait for something to be done before reading on
+                drain(completion, inFlight, ready, out, inFlight.size() >= maxInFlight);
+            }
+
+            while (!inFlight.isEmpty()) {
+                drain(completion, inFlight, ready, out, true);
+            }
+            out.flush();
+        } finally {
+            // Client went away or persistence failed: stop spending upstream calls on this batch
+            inFlight.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private BatchItem estimate(BatchItem item) {
+        // The same item priced recently, possibly by another node, is answered with its stored row
+        Estimation stored = estimationDeduplicator.findRecent(item.estimation);
+        if (stored != null) {
+            item.estimation = stored;
+            item.stored = true;
+        } else {
+            estimationService.applyAiEstimation(item.estimation);
+        }
+        return item;
+    }
+
+    // Saves and writes the items that are done, first waiting for one when block is set
+    private void drain(CompletionService<BatchItem> completion, Set<Future<BatchItem>> inFlight,
+                       List<BatchItem> ready, OutputStream out, boolean block) throws IOException {
+        Future<BatchItem> next = block ? take(completion) : completion.poll();
+        while (next != null) {
+            inFlight.remove(next);
+            ready.add(resolve(next));
+            if (ready.size() == insertBatchSize) {
+                write(ready, out);
+            }
+            next = completion.poll();
+        }
+        write(ready, out);
+    }
+
+    private void write(List<BatchItem> ready, OutputStream out) throws IOException {
+        if (ready.isEmpty()) {
+            return;
+        }
+        persist(ready);
+        for (BatchItem item : ready) {
+            for (int index : item.indexes) {
+                writeLine(out, new BatchEstimationResult(index, item.estimation));
+            }
+            item.written = true;
+        }
+        out.flush();
+        ready.clear();
+    }
+
+    private void persist(List<BatchItem> ready) {
+        List<Estimation> estimations = new ArrayList<>(ready.size());
+        for (BatchItem item : ready) {
+            if (!item.stored) {
+                estimations.add(item.estimation);
+            }
+        }
+        if (estimations.isEmpty()) {
+            return;
+        }
+        // A batch mixes categories, so its save time is reported without one
+        Timer.Sample sample = estimationMetrics.start();
+        estimationJdbcRepository.batchInsert(estimations);
+        estimationMetrics.record(sample, EstimationMetrics.Stage.DB_SAVE, EstimationMetrics.NO_MODEL, null);
+    }
+
+    private void writeLine(OutputStream out, BatchEstimationResult result) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(result));
+        out.write(NEWLINE);
+    }
+
+    private static Future<BatchItem> take(CompletionService<BatchItem> completion) throws IOException {
+        try {
+            return completion.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for batch results", e);
+        }
+    }
+
+    private static BatchItem resolve(Future<BatchItem> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            // applyAiEstimation records AI failures itself; this only covers unexpected errors
+            throw new IllegalStateException("Batch item failed", e.getCause());
+        }
+    }
+
+    // A distinct item of the batch and the indexes it appears at. The worker estimating it sets
+    // estimation and stored; everything else is only touched by the thread reading the batch
+    private static final class BatchItem {
+        private final List<Integer> indexes = new ArrayList<>(1);
+        private Estimation estimation;
+        // An existing row, answered as is and not saved again
+        private boolean stored;
+        // Its lines are written, so later copies are answered at once
+        private boolean written;
+
+        BatchItem(Estimation estimation, int index) {
+            this.estimation = estimation;
+            indexes.add(index);
+        }
+    }
+}
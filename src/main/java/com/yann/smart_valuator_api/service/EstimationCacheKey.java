@@ -0,0 +1,65 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Normalized item attributes identifying an estimation request, so that
+ * "iPhone 13 Pro " and "iphone  13 pro" resolve to the same cached result.
+ */
+public record EstimationCacheKey(
+        String itemName,
+        String brand,
+        String category,
+        Integer year,
+        Integer conditionRating
+) {
+
+    public static EstimationCacheKey of(Estimation estimation) {
+        return new EstimationCacheKey(
+                normalize(estimation.getItemName()),
+                normalize(estimation.getBrand()),
+                normalize(estimation.getCategory()),
+                estimation.getYear(),
+                estimation.getConditionRating()
+        );
+    }
+
+    /**
+     * Stable 64-bit hash of the key, the first 8 bytes of its SHA-256, stored in the fingerprint column.
+     * Equal keys always share a fingerprint; the reverse is only almost certain.
+     */
+    public long fingerprint() {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Object field : new Object[]{itemName, brand, category, year, conditionRating}) {
+            sha256.update(Objects.toString(field, "").getBytes(StandardCharsets.UTF_8));
+            // Field separator, so ("ab", "c") and ("a", "bc") differ
+            sha256.update((byte) 0x1f);
+        }
+        long hash = 0;
+        for (byte b : Arrays.copyOf(sha256.digest(), Long.BYTES)) {
+            hash = (hash << 8) | (b & 0xff);
+        }
+        return hash;
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim()
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT);
+    }
+}
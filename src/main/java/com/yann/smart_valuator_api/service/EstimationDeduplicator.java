@@ -0,0 +1,83 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Answers a new estimation with a stored one for the same item, when the model priced that item less
+ * than {@code estimation.dedup.max-age} ago. Unlike {@link EstimationResultCache} it works across
+ * nodes and restarts, and it saves the row as well as the upstream call.
+ */
+@Component
+public class EstimationDeduplicator {
+
+    private final EstimationRepository estimationRepository;
+    private final EstimationEntityCache estimationEntityCache;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final Counter hits;
+    private final Counter misses;
+
+    public EstimationDeduplicator(
+            EstimationRepository estimationRepository,
+            EstimationEntityCache estimationEntityCache,
+            MeterRegistry registry,
+            @Value("${estimation.dedup.enabled:true}") boolean enabled,
+            @Value("${estimation.dedup.max-age:24h}") Duration maxAge
+    ) {
+        this.estimationRepository = estimationRepository;
+        this.estimationEntityCache = estimationEntityCache;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.hits = Counter.builder("estimation.dedup.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("estimation.dedup.requests").tag("result", "miss").register(registry);
+    }
+
+    /**
+     * The newest reusable estimation of the same item, or null.
+     */
+    public Estimation findRecent(Estimation estimation) {
+        if (!enabled) {
+            return null;
+        }
+        EstimationCacheKey key = EstimationCacheKey.of(estimation);
+        List<Long> ids = estimationRepository.findIdsByFingerprint(key.fingerprint(), oldest(), Limit.of(1));
+        Estimation existing = ids.isEmpty() ? null
+                : estimationEntityCache.get(ids.getFirst(), id -> estimationRepository.findById(id).orElse(null));
+        return accept(key, existing);
+    }
+
+    // The rest is for ReactiveEstimationService, which reads the newest fingerprint match itself
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Creation time of the oldest estimation that may be reused
+    public LocalDateTime oldest() {
+        return LocalDateTime.now().minus(maxAge);
+    }
+
+    /**
+     * {@code candidate}, the newest estimation with the fingerprint of {@code key}, if it is the same
+     * item; null otherwise, or when there was no candidate.
+     */
+    public Estimation accept(EstimationCacheKey key, Estimation candidate) {
+        // The fingerprint is a hash: a different item with the same one is possible, if unlikely
+        if (candidate == null || !key.equals(EstimationCacheKey.of(candidate))) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return candidate;
+    }
+}
@@ -0,0 +1,108 @@
+package com.yann.smart_valuator_api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yann.smart_valuator_api.entity.Estimation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Near cache of estimations by id in front of PostgreSQL, for the single-estimation reads that
+ * dashboards repeat. Entries expire after {@code estimation.entity-cache.ttl} and are dropped on
+ * every node when an estimation changes, through the {@link EstimationInvalidationChannel}.
+ *
+ * <p>Cached instances are shared between requests and must not be modified.
+ */
+@Component
+public class EstimationEntityCache implements MeterBinder, EstimationInvalidationChannel.Subscriber {
+
+    private final Cache<Long, Estimation> cache;
+    private final EstimationInvalidationChannel invalidationChannel;
+    private final boolean enabled;
+
+    public EstimationEntityCache(
+            EstimationInvalidationChannel invalidationChannel,
+            @Value("${estimation.entity-cache.enabled:true}") boolean enabled,
+            @Value("${estimation.entity-cache.max-size:10000}") long maxSize,
+            @Value("${estimation.entity-cache.ttl:10m}") Duration ttl
+    ) {
+        this.invalidationChannel = invalidationChannel;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        invalidationChannel.subscribe(this);
+    }
+
+    /**
+     * The cached estimation, or the one {@code loader} reads, which is then cached. Concurrent
+     * misses for the same id share one load.
+     */
+    public Estimation get(Long id, Function<Long, Estimation> loader) {
+        return enabled ? cache.get(id, loader) : loader.apply(id);
+    }
+
+    // For callers that load without blocking (ReactiveEstimationService); null when not cached
+    public Estimation getIfPresent(Long id) {
+        return enabled ? cache.getIfPresent(id) : null;
+    }
+
+    public void put(Estimation estimation) {
+        if (enabled && estimation.getId() != null) {
+            cache.put(estimation.getId(), estimation);
+        }
+    }
+
+    /**
+     * Drops the estimation here and on every other node. Call once the change is committed.
+     */
+    public void evict(Long id) {
+        cache.invalidate(id);
+        invalidationChannel.publish(id);
+    }
+
+    @Override
+    public void invalidated(long id) {
+        cache.invalidate(id);
+    }
+
+    @Override
+    public void missedInvalidations() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "estimations");
+    }
+
+    /**
+     * Strong ETag for the estimation's JSON representation, computed from its fields so a
+     * matching {@code If-None-Match} is answered without serializing anything.
+     */
+    public static String etag(Estimation estimation) {
+        // 64-bit FNV-1a over the fields in representation order
+        long hash = 0xcbf29ce484222325L;
+        for (Object field : new Object[]{
+                estimation.getId(), estimation.getItemName(), estimation.getCategory(), estimation.getBrand(),
+                estimation.getYear(), estimation.getConditionRating(), estimation.getEstimatedPrice(),
+                estimation.getAiDescription(), estimation.getCreatedAt()}) {
+            for (byte b : Objects.toString(field).getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            // Field separator, so ("ab", "c") and ("a", "bc") differ
+            hash = (hash ^ 0x1f) * 0x100000001b3L;
+        }
+        return "\"" + Long.toHexString(hash) + "\"";
+    }
+}
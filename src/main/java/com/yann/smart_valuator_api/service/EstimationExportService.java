@@ -0,0 +1,161 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Dumps the whole estimations table to an output stream. Rows come from a server-side cursor
+ * through plain JDBC, so nothing is held in the persistence context and memory use does not
+ * grow with the table.
+ */
+@Service
+public class EstimationExportService {
+
+    private static final String CSV_HEADER =
+            "id,item_name,category,brand,year,condition_rating,estimated_price,ai_description,created_at\n";
+
+    public enum Format {
+        NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+        CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    private final EstimationJdbcRepository estimationJdbcRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public EstimationExportService(
+            EstimationJdbcRepository estimationJdbcRepository,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            @Value("${estimation.export.fetch-size:1000}") int fetchSize
+    ) {
+        this.estimationJdbcRepository = estimationJdbcRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    public void export(Format format, boolean gzip, OutputStream out) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                switch (format) {
+                    case NDJSON -> writeNdjson(target);
+                    case CSV -> writeCsv(target);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+        out.flush();
+    }
+
+    private void writeNdjson(OutputStream out) {
+        // One generator for the whole export. It must not close the response stream, and the
+        // default " " between root values is replaced by our own newline
+        try (JsonGenerator generator = objectMapper.writer()
+                .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator((String) null)
+                .createGenerator(out)) {
+            estimationJdbcRepository.streamAll(fetchSize, estimation -> {
+                objectMapper.writeValue(generator, estimation);
+                generator.writeRaw('\n');
+            });
+        }
+    }
+
+    private void writeCsv(OutputStream out) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            writer.write(CSV_HEADER);
+            estimationJdbcRepository.streamAll(fetchSize, estimation -> writeCsvRow(writer, estimation));
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCsvRow(Writer writer, Estimation estimation) {
+        try {
+            writer.write(String.valueOf(estimation.getId()));
+            writer.write(',');
+            writeCsvField(writer, estimation.getItemName());
+            writer.write(',');
+            writeCsvField(writer, estimation.getCategory());
+            writer.write(',');
+            writeCsvField(writer, estimation.getBrand());
+            writer.write(',');
+            writeCsvField(writer, estimation.getYear());
+            writer.write(',');
+            writeCsvField(writer, estimation.getConditionRating());
+            writer.write(',');
+            writeCsvField(writer, estimation.getEstimatedPrice() == null
+                    ? null : estimation.getEstimatedPrice().toPlainString());
+            writer.write(',');
+            writeCsvField(writer, estimation.getAiDescription());
+            writer.write(',');
+            writeCsvField(writer, estimation.getCreatedAt());
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // RFC 4180: quote only when needed, doubling embedded quotes
+    private static void writeCsvField(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,22 @@
+package com.yann.smart_valuator_api.service;
+
+/**
+ * Carries "estimation changed" events between the nodes of a deployment, so each can drop its
+ * copy from {@link EstimationEntityCache}. Publishers also receive their own events.
+ */
+public interface EstimationInvalidationChannel {
+
+    void publish(long id);
+
+    void subscribe(Subscriber subscriber);
+
+    interface Subscriber {
+
+        void invalidated(long id);
+
+        /**
+         * Events may have been lost, for instance while the channel was reconnecting.
+         */
+        void missedInvalidations();
+    }
+}
@@ -0,0 +1,249 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.EstimationJobResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.entity.EstimationJob;
+import com.yann.smart_valuator_api.entity.EstimationJobStatus;
+import com.yann.smart_valuator_api.repository.EstimationJobRepository;
+import exception.EstimationJobNotFoundException;
+import exception.EstimationJobRejectedException;
+import exception.EstimationNotFoundException;
+import exception.InvalidEstimationRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class EstimationJobService {
+
+    private final EstimationJobRepository estimationJobRepository;
+    private final EstimationService estimationService;
+    private final TaskExecutor estimationJobExecutor;
+    private final ObjectMapper objectMapper;
+    private final Duration staleAfter;
+    private final RestTemplate callbackTemplate;
+    // Hosts callbacks may go to whatever they resolve to; empty allows any host with public addresses only
+    private final Set<String> allowedCallbackHosts;
+
+    public EstimationJobService(
+            EstimationJobRepository estimationJobRepository,
+            EstimationService estimationService,
+            @Qualifier("estimationJobExecutor") TaskExecutor estimationJobExecutor,
+            ObjectMapper objectMapper,
+            @Value("${estimation.jobs.stale-after:5m}") Duration staleAfter,
+            @Value("${estimation.jobs.callback.connect-timeout:5s}") Duration callbackConnectTimeout,
+            @Value("${estimation.jobs.callback.read-timeout:10s}") Duration callbackReadTimeout,
+            @Value("${estimation.jobs.callback.allowed-hosts:}") List<String> allowedCallbackHosts
+    ) {
+        this.estimationJobRepository = estimationJobRepository;
+        this.estimationService = estimationService;
+        this.estimationJobExecutor = estimationJobExecutor;
+        this.objectMapper = objectMapper;
+        this.staleAfter = staleAfter;
+        this.allowedCallbackHosts = allowedCallbackHosts.stream()
+                .map(host -> host.trim().toLowerCase(Locale.ROOT))
+                .filter(host -> !host.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+
+        // POSTs are not redirected by this factory, so a callback cannot be bounced to another host
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(callbackConnectTimeout);
+        factory.setReadTimeout(callbackReadTimeout);
+        this.callbackTemplate = new RestTemplate(factory);
+    }
+
+    public EstimationJobResult submit(Estimation estimation, String callbackUrl) {
+        if (callbackUrl != null) {
+            validateCallbackUrl(callbackUrl, allowedCallbackHosts);
+        }
+
+        EstimationJob job = new EstimationJob();
+        job.setStatus(EstimationJobStatus.PENDING);
+        job.setRequestPayload(objectMapper.writeValueAsString(estimation));
+        job.setCallbackUrl(callbackUrl);
+        EstimationJob saved = estimationJobRepository.save(job);
+
+        try {
+            estimationJobExecutor.execute(() -> run(saved.getId()));
+        } catch (TaskRejectedException e) {
+            estimationJobRepository.delete(saved);
+            throw new EstimationJobRejectedException("Estimation job queue is full, retry later");
+        }
+
+        return toResult(saved, null);
+    }
+
+    public EstimationJobResult getJob(UUID id) {
+        EstimationJob job = estimationJobRepository.findById(id)
+                .orElseThrow(() -> new EstimationJobNotFoundException(id));
+
+        Estimation estimation = null;
+        if (job.getEstimationId() != null) {
+            try {
+                estimation = estimationService.getEstimationById(job.getEstimationId());
+            } catch (EstimationNotFoundException e) {
+                // Deleted or archived since the job completed; the job itself is still reported
+            }
+        }
+
+        return toResult(job, estimation);
+    }
+
+    /**
+     * Re-queues jobs left PENDING or RUNNING for longer than {@code stale-after}, such as those of a
+     * node that stopped or crashed. Runs at startup and every {@code recovery-interval}, so jobs of a
+     * node that is gone are picked up by the others without waiting for a restart.
+     */
+    @Scheduled(
+            fixedDelayString = "${estimation.jobs.recovery-interval:1m}",
+            initialDelayString = "${estimation.jobs.recovery-initial-delay:0s}"
+    )
+    public void recoverInterruptedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(staleAfter);
+
+        for (EstimationJob job : estimationJobRepository.findByStatusInAndUpdatedAtBefore(
+                EnumSet.of(EstimationJobStatus.PENDING, EstimationJobStatus.RUNNING), cutoff)) {
+
+            if (job.getStatus() == EstimationJobStatus.RUNNING
+                    && estimationJobRepository.transition(job.getId(), EstimationJobStatus.RUNNING,
+                    EstimationJobStatus.PENDING, LocalDateTime.now()) == 0) {
+                continue;
+            }
+
+            try {
+                estimationJobExecutor.execute(() -> run(job.getId()));
+            } catch (TaskRejectedException e) {
+                log.warn("Job queue full while recovering, remaining jobs wait for the next sweep");
+                return;
+            }
+        }
+    }
+
+    void run(UUID jobId) {
+        // Claim the job; another node or a recovery pass may already own it
+        if (estimationJobRepository.transition(jobId, EstimationJobStatus.PENDING,
+                EstimationJobStatus.RUNNING, LocalDateTime.now()) == 0) {
+            return;
+        }
+
+        EstimationJob job = estimationJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        Estimation estimation = null;
+        try {
+            Estimation item = objectMapper.readValue(job.getRequestPayload(), Estimation.class);
+            estimation = estimationService.generateAiEstimation(item);
+            job.setStatus(EstimationJobStatus.COMPLETED);
+            job.setEstimationId(estimation.getId());
+        } catch (RuntimeException e) {
+            log.error("Estimation job {} failed", jobId, e);
+            job.setStatus(EstimationJobStatus.FAILED);
+            job.setErrorMessage(e.getMessage());
+        }
+
+        job.setUpdatedAt(LocalDateTime.now());
+        EstimationJob finished = estimationJobRepository.save(job);
+
+        if (finished.getCallbackUrl() != null) {
+            notifyCallback(finished, estimation);
+        }
+    }
+
+    private void notifyCallback(EstimationJob job, Estimation estimation) {
+        try {
+            // Checked again: what the host resolves to may have changed since the job was submitted
+            validateCallbackUrl(job.getCallbackUrl(), allowedCallbackHosts);
+            callbackTemplate.postForEntity(job.getCallbackUrl(), toResult(job, estimation), Void.class);
+        } catch (Exception e) {
+            log.warn("Callback for job {} to {} failed: {}", job.getId(), job.getCallbackUrl(), e.getMessage());
+        }
+    }
+
+    /**
+     * Accepts absolute http(s) URLs whose host is on {@code allowedHosts}, or, with no allowed hosts,
+     * whose host resolves to public addresses only: loopback, link-local, private, unique-local,
+     * wildcard and multicast addresses are refused, so callbacks cannot reach the node's own network.
+     */
+    static void validateCallbackUrl(String callbackUrl, Set<String> allowedHosts) {
+        String host = null;
+        try {
+            URI uri = URI.create(callbackUrl);
+            String scheme = uri.getScheme();
+            if ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) {
+                host = uri.getHost();
+            }
+        } catch (IllegalArgumentException ignored) {
+            // reported below
+        }
+        if (host == null) {
+            throw new InvalidEstimationRequestException("callbackUrl must be an absolute http(s) URL");
+        }
+
+        host = host.toLowerCase(Locale.ROOT);
+        if (!allowedHosts.isEmpty()) {
+            if (!allowedHosts.contains(host)) {
+                throw new InvalidEstimationRequestException("callbackUrl host is not allowed");
+            }
+            return;
+        }
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw new InvalidEstimationRequestException("callbackUrl host cannot be resolved");
+        }
+        for (InetAddress address : addresses) {
+            if (!isPublic(address)) {
+                throw new InvalidEstimationRequestException("callbackUrl must point to a public address");
+            }
+        }
+    }
+
+    private static boolean isPublic(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet6Address) {
+            // fc00::/7, the IPv6 counterpart of the private ranges
+            return (bytes[0] & 0xfe) != 0xfc;
+        }
+        // 100.64.0.0/10, carrier-grade NAT, also used for cloud-internal addresses
+        return !((bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64);
+    }
+
+    private static EstimationJobResult toResult(EstimationJob job, Estimation estimation) {
+        return new EstimationJobResult(
+                job.getId(),
+                job.getStatus(),
+                estimation,
+                job.getErrorMessage(),
+                job.getCreatedAt(),
+                job.getUpdatedAt()
+        );
+    }
+}
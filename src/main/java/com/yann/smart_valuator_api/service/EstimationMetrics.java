@@ -0,0 +1,137 @@
+package com.yann.smart_valuator_api.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Stage timers and fallback counters for the estimation pipeline.
+ *
+ * <p>Categories come from user input, so only the first {@code estimation.metrics.max-categories}
+ * distinct values get their own tag; later ones are reported as {@code other}.
+ */
+@Component
+public class EstimationMetrics {
+
+    public enum Stage {
+        PROMPT_BUILD, UPSTREAM_HTTP, PARSE, LOCAL_MODEL, FALLBACK, DB_SAVE;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    public enum FallbackReason {
+        API_ERROR, PARSE_FAILURE, ZERO_PRICE, BUDGET_EXHAUSTED, CIRCUIT_OPEN, CONCURRENCY_LIMITED, LOCAL_MODEL_MISS;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    // A model call made first, or one sent to race it after the hedge delay
+    public enum AttemptRole {
+        PRIMARY, HEDGE;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    // Model tag for stages that do not involve a model, such as saving
+    public static final String NO_MODEL = "none";
+
+    static final String UNKNOWN = "unknown";
+    static final String OTHER = "other";
+
+    private final MeterRegistry registry;
+    private final Meter.MeterProvider<Timer> stageTimers;
+    private final Meter.MeterProvider<Counter> fallbackCounters;
+    private final Meter.MeterProvider<Counter> attemptCounters;
+    private final Meter.MeterProvider<Counter> winCounters;
+    private final Meter.MeterProvider<Counter> routeCounters;
+    private final int maxCategories;
+    private final Set<String> categories = ConcurrentHashMap.newKeySet();
+
+    public EstimationMetrics(
+            MeterRegistry registry,
+            @Value("${estimation.metrics.max-categories:20}") int maxCategories
+    ) {
+        this.registry = registry;
+        this.maxCategories = maxCategories;
+        this.stageTimers = Timer.builder("estimation.stage")
+                .description("Time spent in each stage of an estimation")
+                .publishPercentileHistogram()
+                .withRegistry(registry);
+        this.fallbackCounters = Counter.builder("estimation.fallback")
+                .description("Estimations priced by the fallback rules, by reason")
+                .withRegistry(registry);
+        this.attemptCounters = Counter.builder("estimation.upstream.attempts")
+                .description("Model calls made, by model and whether they were hedged requests")
+                .withRegistry(registry);
+        this.winCounters = Counter.builder("estimation.upstream.wins")
+                .description("Model calls whose answer was used, by model and role")
+                .withRegistry(registry);
+        this.routeCounters = Counter.builder("estimation.route")
+                .description("Estimations sent to each backend, by the reason it was picked")
+                .withRegistry(registry);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void record(Timer.Sample sample, Stage stage, String model, String category) {
+        sample.stop(stageTimers.withTags(Tags.of(
+                "stage", stage.tag,
+                "model", model == null ? UNKNOWN : model,
+                "category", categoryTag(category))));
+    }
+
+    public <T> T time(Stage stage, String model, String category, Supplier<T> work) {
+        Timer.Sample sample = start();
+        try {
+            return work.get();
+        } finally {
+            record(sample, stage, model, category);
+        }
+    }
+
+    public void fallback(FallbackReason reason, String model, String category) {
+        fallbackCounters.withTags(Tags.of(
+                "reason", reason.tag,
+                "model", model == null ? UNKNOWN : model,
+                "category", categoryTag(category))).increment();
+    }
+
+    public void attempt(String model, AttemptRole role) {
+        attemptCounters.withTags(Tags.of("model", model, "role", role.tag)).increment();
+    }
+
+    public void win(String model, AttemptRole role) {
+        winCounters.withTags(Tags.of("model", model, "role", role.tag)).increment();
+    }
+
+    public void route(String backend, String reason) {
+        routeCounters.withTags(Tags.of("backend", backend, "reason", reason)).increment();
+    }
+
+    String categoryTag(String category) {
+        if (category == null || category.isBlank()) {
+            return UNKNOWN;
+        }
+        String normalized = category.trim().toLowerCase(Locale.ROOT);
+        if (categories.contains(normalized)) {
+            return normalized;
+        }
+        // Racing threads may overshoot the cap by a few entries, which is harmless
+        if (categories.size() < maxCategories) {
+            categories.add(normalized);
+            return normalized;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,199 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Remote backend that groups concurrent estimations into one multi-item prompt, so a burst pays
+ * for the shared pricing guidelines and the round trip once instead of once per item.
+ *
+ * <p>The first item to arrive opens a window of {@code hf.micro-batch.window}; the batch is sent
+ * when the window closes or when it holds {@code max-items}. Items the model did not answer for,
+ * and lone items, are estimated with an ordinary single-item call on the caller's own thread.
+ *
+ * <p>Each caller's latency budget starts when it hands in its item, and the batch is sent under
+ * the earliest deadline among its callers. A caller whose budget runs out while it waits, or
+ * before it could estimate its item alone, is answered with fallback pricing.
+ */
+@Slf4j
+@Component
+public class EstimationMicroBatcher implements EstimationModel, AutoCloseable {
+
+    private record Pending(Estimation estimation, long deadline, CompletableFuture<AiEstimationResult> result) {
+    }
+
+    private final HuggingFaceService huggingFaceService;
+    private final boolean enabled;
+    private final int maxItems;
+    private final long windowNanos;
+    private final Duration latencyBudget;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("estimation-micro-batch-timer").factory());
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final DistributionSummary batchSizes;
+    private final Counter batchedItems;
+    private final Counter individualItems;
+
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> windowClose;
+
+    public EstimationMicroBatcher(
+            HuggingFaceService huggingFaceService,
+            MeterRegistry registry,
+            @Value("${hf.micro-batch.enabled:true}") boolean enabled,
+            @Value("${hf.micro-batch.max-items:8}") int maxItems,
+            @Value("${hf.micro-batch.window:20ms}") Duration window,
+            @Value("${hf.resilience.latency-budget:20s}") Duration latencyBudget
+    ) {
+        this.huggingFaceService = huggingFaceService;
+        this.enabled = enabled && maxItems > 1;
+        this.maxItems = maxItems;
+        this.windowNanos = window.toNanos();
+        this.latencyBudget = latencyBudget;
+        this.batchSizes = DistributionSummary.builder("estimation.micro-batch.size")
+                .description("Items per multi-item upstream call")
+                .register(registry);
+        this.batchedItems = Counter.builder("estimation.micro-batch.items")
+                .tag("outcome", "batched")
+                .description("Items answered by a multi-item call, or estimated on their own")
+                .register(registry);
+        this.individualItems = Counter.builder("estimation.micro-batch.items")
+                .tag("outcome", "individual")
+                .register(registry);
+    }
+
+    @Override
+    public String name() {
+        return huggingFaceService.name();
+    }
+
+    @Override
+    public AiEstimationResult estimate(Estimation estimation) {
+        if (!enabled) {
+            return huggingFaceService.estimate(estimation);
+        }
+        // The single-item call below shares this budget rather than opening its own
+        return LatencyBudget.within(latencyBudget, () -> batchOrAlone(estimation));
+    }
+
+    private AiEstimationResult batchOrAlone(Estimation estimation) {
+        CompletableFuture<AiEstimationResult> result = new CompletableFuture<>();
+        List<Pending> full = null;
+        synchronized (lock) {
+            pending.add(new Pending(estimation, LatencyBudget.deadline(), result));
+            if (pending.size() == 1) {
+                windowClose = timer.schedule(this::closeWindow, windowNanos, TimeUnit.NANOSECONDS);
+            } else if (pending.size() >= maxItems) {
+                windowClose.cancel(false);
+                full = takePending();
+            }
+        }
+        if (full != null) {
+            List<Pending> batch = full;
+            sender.execute(() -> send(batch));
+        }
+
+        AiEstimationResult batched = await(result);
+        if (batched != null) {
+            batchedItems.increment();
+            return batched;
+        }
+        if (LatencyBudget.remaining().toNanos() <= 0) {
+            return budgetExhausted(estimation);
+        }
+        individualItems.increment();
+        return huggingFaceService.estimate(estimation);
+    }
+
+    private void closeWindow() {
+        List<Pending> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        sender.execute(() -> send(batch));
+    }
+
+    // Caller holds the lock
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        windowClose = null;
+        return batch;
+    }
+
+    // Completes every item with its answer, or with null for the caller to estimate it alone. A batch that
+    // failed by running out the earliest caller's budget leaves the others only the few milliseconds they
+    // joined later, too short for a call of their own, so they get the fallback right away instead
+    private void send(List<Pending> batch) {
+        if (batch.size() == 1) {
+            batch.getFirst().result().complete(null);
+            return;
+        }
+        List<AiEstimationResult> results = null;
+        long deadline = batch.stream().mapToLong(Pending::deadline).min().orElseThrow();
+        try {
+            batchSizes.record(batch.size());
+            results = LatencyBudget.until(deadline, () -> huggingFaceService.generateBatchEstimation(
+                    batch.stream().map(Pending::estimation).toList()));
+        } catch (RuntimeException e) {
+            log.error("Multi-item estimation of {} items failed", batch.size(), e);
+        }
+        boolean outOfTime = results == null && System.nanoTime() - deadline >= 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Pending item = batch.get(i);
+            item.result().complete(results != null ? results.get(i)
+                    : outOfTime ? budgetExhausted(item.estimation()) : null);
+        }
+    }
+
+    private AiEstimationResult budgetExhausted(Estimation estimation) {
+        return huggingFaceService.parseStructuredEstimation(
+                HuggingFaceService.rejected(UpstreamGuard.Rejection.BUDGET_EXHAUSTED), estimation);
+    }
+
+    // Null when the item is left for its caller, or when the caller's budget ran out first
+    private static AiEstimationResult await(CompletableFuture<AiEstimationResult> result) {
+        try {
+            return result.get(LatencyBudget.remaining().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        sender.shutdownNow();
+        // Callers still waiting estimate their items on their own
+        synchronized (lock) {
+            takePending().forEach(item -> item.result().complete(null));
+        }
+    }
+}
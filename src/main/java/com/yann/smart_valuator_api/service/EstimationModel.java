@@ -0,0 +1,20 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+
+/**
+ * A backend that prices items: the remote chat model, the in-process regression model, or the
+ * router choosing between them (the primary bean).
+ */
+public interface EstimationModel {
+
+    // Used as the model tag on metrics
+    String name();
+
+    /**
+     * Description, price and verdict for the item. Never throws for upstream trouble; the result
+     * is flagged as fallback when it comes from the fallback pricing rules instead.
+     */
+    AiEstimationResult estimate(Estimation estimation);
+}
@@ -0,0 +1,107 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the backend for each estimation according to {@code estimation.model.mode}:
+ * <ul>
+ *   <li>{@code remote}: always the Hugging Face router, through the micro-batcher;</li>
+ *   <li>{@code local}: always the in-process model, never the network;</li>
+ *   <li>{@code auto}: the local model for items it covers in {@code local-categories}, and for
+ *   every item it covers while the upstream is saturated or its circuit is open; the remote
+ *   model otherwise.</li>
+ * </ul>
+ */
+@Primary
+@Component
+public class EstimationModelRouter implements EstimationModel {
+
+    public enum Mode { REMOTE, LOCAL, AUTO }
+
+    private final EstimationModel remoteModel;
+    private final LocalEstimationModel localModel;
+    private final UpstreamGuard upstreamGuard;
+    private final EstimationMetrics estimationMetrics;
+    private final Mode mode;
+    private final Set<String> localCategories;
+    private final double localAboveSaturation;
+
+    public EstimationModelRouter(
+            EstimationMicroBatcher remoteModel,
+            LocalEstimationModel localModel,
+            UpstreamGuard upstreamGuard,
+            EstimationMetrics estimationMetrics,
+            @Value("${estimation.model.mode:auto}") Mode mode,
+            @Value("${estimation.model.local-categories:}") List<String> localCategories,
+            @Value("${estimation.model.local-above-saturation:0.8}") double localAboveSaturation
+    ) {
+        this.remoteModel = remoteModel;
+        this.localModel = localModel;
+        this.upstreamGuard = upstreamGuard;
+        this.estimationMetrics = estimationMetrics;
+        this.mode = mode;
+        this.localCategories = localCategories.stream()
+                .map(category -> category.trim().toLowerCase(Locale.ROOT))
+                .filter(category -> !category.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.localAboveSaturation = localAboveSaturation;
+    }
+
+    @Override
+    public String name() {
+        return "router";
+    }
+
+    @Override
+    public AiEstimationResult estimate(Estimation estimation) {
+        return select(estimation).estimate(estimation);
+    }
+
+    /**
+     * Whether {@link #estimate} would answer with the local model, for ReactiveEstimationService,
+     * which calls the remote model itself. Counted in the route metric like an estimate.
+     */
+    public boolean routesLocally(Estimation estimation) {
+        return select(estimation) == localModel;
+    }
+
+    private EstimationModel select(Estimation estimation) {
+        return switch (mode) {
+            case REMOTE -> route(remoteModel, "mode");
+            case LOCAL -> route(localModel, "mode");
+            case AUTO -> autoRoute(estimation);
+        };
+    }
+
+    private EstimationModel autoRoute(Estimation estimation) {
+        if (!localModel.covers(estimation)) {
+            return route(remoteModel, localModel.isTrained() ? "not_covered" : "not_trained");
+        }
+        String category = estimation.getCategory() == null
+                ? "" : estimation.getCategory().trim().toLowerCase(Locale.ROOT);
+        if (localCategories.contains(category)) {
+            return route(localModel, "category");
+        }
+        if (upstreamGuard.circuitState() == CircuitBreaker.State.OPEN) {
+            return route(localModel, "circuit_open");
+        }
+        if (upstreamGuard.saturation() >= localAboveSaturation) {
+            return route(localModel, "saturated");
+        }
+        return route(remoteModel, "default");
+    }
+
+    private EstimationModel route(EstimationModel model, String reason) {
+        estimationMetrics.route(model == localModel ? "local" : "remote", reason);
+        return model;
+    }
+}
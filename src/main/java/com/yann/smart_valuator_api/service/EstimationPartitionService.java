@@ -0,0 +1,194 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.repository.EstimationArchiveRepository;
+import com.yann.smart_valuator_api.repository.EstimationPartitionRepository;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static com.yann.smart_valuator_api.repository.EstimationPartitionRepository.partitionName;
+
+/**
+ * Maintains the monthly partitions of {@code estimations}. Every run creates the partitions of the
+ * previous month through the {@code months-ahead} months after the current one, so inserts always find
+ * theirs, write-behind ones landing just after the turn of a month included.
+ *
+ * <p>With {@code estimation.retention.months} set, months before the last that many are archived:
+ * each month, in a transaction of its own, is locked against writes, copied to a gzipped file under
+ * {@code archive-dir} (see {@link EstimationArchiveRepository}), recorded in {@code estimation_archives},
+ * then detached and dropped. A month whose lock is not granted within {@code lock-timeout} is left for
+ * the next run. Price rollups of archived months are kept, and never rebuilt. Only one node maintains
+ * the partitions at a time.
+ */
+@Slf4j
+@Component
+public class EstimationPartitionService {
+
+    // The monthly price rollups of a month are final by then (EstimationRollupService)
+    private static final int MIN_RETENTION_MONTHS = 3;
+
+    private final EstimationPartitionRepository estimationPartitionRepository;
+    private final EstimationArchiveRepository estimationArchiveRepository;
+    private final EstimationRollupRepository estimationRollupRepository;
+    private final TransactionTemplate transaction;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path archiveDir;
+    private final Duration lockTimeout;
+
+    public EstimationPartitionService(
+            EstimationPartitionRepository estimationPartitionRepository,
+            EstimationArchiveRepository estimationArchiveRepository,
+            EstimationRollupRepository estimationRollupRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${estimation.partitions.months-ahead:3}") int monthsAhead,
+            @Value("${estimation.retention.months:0}") int retentionMonths,
+            @Value("${estimation.retention.archive-dir:data/archive}") Path archiveDir,
+            @Value("${estimation.retention.lock-timeout:5s}") Duration lockTimeout
+    ) {
+        if (retentionMonths != 0 && retentionMonths < MIN_RETENTION_MONTHS) {
+            throw new IllegalArgumentException("estimation.retention.months must be 0 (keep everything) or at least "
+                    + MIN_RETENTION_MONTHS + ", was " + retentionMonths);
+        }
+        this.estimationPartitionRepository = estimationPartitionRepository;
+        this.estimationArchiveRepository = estimationArchiveRepository;
+        this.estimationRollupRepository = estimationRollupRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archiveDir = archiveDir;
+        this.lockTimeout = lockTimeout;
+    }
+
+    /**
+     * Creates the upcoming partitions and archives expired months. Returns the months archived, none
+     * when another node is maintaining the partitions.
+     */
+    @Scheduled(
+            fixedDelayString = "${estimation.partitions.maintenance-interval:1h}",
+            initialDelayString = "${estimation.partitions.initial-delay:0s}"
+    )
+    public List<YearMonth> maintain() {
+        YearMonth current = YearMonth.now();
+        Boolean locked = transaction.execute(status -> {
+            if (!estimationPartitionRepository.tryLockForMaintenance()) {
+                return false;
+            }
+            for (int i = -1; i <= monthsAhead; i++) {
+                estimationPartitionRepository.create(current.plusMonths(i));
+            }
+            return true;
+        });
+        List<YearMonth> archived = new ArrayList<>();
+        if (!Boolean.TRUE.equals(locked) || retentionMonths == 0) {
+            return archived;
+        }
+
+        YearMonth keepFrom = current.minusMonths(retentionMonths);
+        for (YearMonth month : estimationPartitionRepository.findMonths()) {
+            // Oldest first; stop at the first month that is kept or could not be archived
+            if (!month.isBefore(keepFrom) || !archive(month)) {
+                break;
+            }
+            archived.add(month);
+        }
+        return archived;
+    }
+
+    private boolean archive(YearMonth month) {
+        long started = System.nanoTime();
+        Path file = archiveDir.resolve(partitionName(month) + "-" + System.currentTimeMillis() + ".tsv.gz");
+        Path partial = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            EstimationPartitionRepository.Contents contents = transaction.execute(status -> {
+                if (!estimationPartitionRepository.tryLockForMaintenance()) {
+                    return null;
+                }
+                estimationPartitionRepository.lockForArchive(month, lockTimeout);
+                EstimationPartitionRepository.Contents rows = estimationPartitionRepository.contents(month);
+                write(month, partial);
+                // The file is complete and on disk before the rows are dropped
+                move(partial, file);
+
+                LocalDateTime from = month.atDay(1).atStartOfDay();
+                LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+                estimationArchiveRepository.save(partitionName(month), from, to,
+                        rows.minId(), rows.maxId(), rows.rowCount(), file);
+                estimationRollupRepository.forgetDirty(from.toLocalDate(), to.toLocalDate());
+                estimationPartitionRepository.detachAndDrop(month);
+                return rows;
+            });
+            if (contents == null) {
+                return false;
+            }
+            log.atInfo().setMessage("Archived estimations")
+                    .addKeyValue("month", month)
+                    .addKeyValue("rows", contents.rowCount())
+                    .addKeyValue("file", file)
+                    .addKeyValue("millis", (System.nanoTime() - started) / 1_000_000)
+                    .log();
+            return true;
+        } catch (RuntimeException e) {
+            // Rolled back, so the rows are still in the table; the next run writes a new file
+            deleteQuietly(partial);
+            deleteQuietly(file);
+            log.atWarn().setMessage("Failed to archive estimations")
+                    .addKeyValue("month", month)
+                    .addKeyValue("error", e.getMessage())
+                    .log();
+            return false;
+        }
+    }
+
+    private void write(YearMonth month, Path partial) {
+        try {
+            Files.createDirectories(archiveDir);
+            try (FileOutputStream out = new FileOutputStream(partial.toFile())) {
+                GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(out, 1 << 16));
+                estimationPartitionRepository.copyOut(month, gzip);
+                gzip.finish();
+                gzip.flush();
+                out.getFD().sync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void move(Path source, Path target) {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.atWarn().setMessage("Failed to delete archive file")
+                    .addKeyValue("file", path)
+                    .addKeyValue("error", e.getMessage())
+                    .log();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.yann.smart_valuator_api.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, TTL-based cache of AI results placed in front of the upstream model call.
+ * Concurrent requests for the same key share a single in-flight computation.
+ */
+@Component
+public class EstimationResultCache implements MeterBinder {
+
+    private final AsyncCache<EstimationCacheKey, AiEstimationResult> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public EstimationResultCache(
+            @Value("${estimation.cache.max-size:10000}") long maxSize,
+            @Value("${estimation.cache.ttl:1h}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .evictionListener((key, value, cause) -> evictions.increment())
+                .buildAsync();
+    }
+
+    /**
+     * Returns the cached result for the key, joins an identical in-flight call,
+     * or runs the loader. Fallback results are handed to waiting callers but not
+     * retained, so a degraded upstream does not pin degraded prices.
+     */
+    public AiEstimationResult get(EstimationCacheKey key, Supplier<AiEstimationResult> loader) {
+        return join(getAsync(key, () -> CompletableFuture.completedFuture(loader.get())));
+    }
+
+    /**
+     * Same as {@link #get} for a loader that does not block, such as the reactive profile's model call.
+     */
+    public CompletableFuture<AiEstimationResult> getAsync(
+            EstimationCacheKey key,
+            Supplier<CompletableFuture<AiEstimationResult>> loader
+    ) {
+        CompletableFuture<AiEstimationResult> flight = new CompletableFuture<>();
+        CompletableFuture<AiEstimationResult> existing = cache.asMap().putIfAbsent(key, flight);
+
+        if (existing != null) {
+            if (existing.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+            return existing;
+        }
+
+        misses.increment();
+        CompletableFuture<AiEstimationResult> loading;
+        try {
+            loading = loader.get();
+        } catch (RuntimeException e) {
+            // Thrown before a future exists; the in-flight entry still has to be cleared and its joiners failed
+            loading = CompletableFuture.failedFuture(e);
+        }
+        loading.whenComplete((result, error) -> {
+            if (error != null || result == null || result.isFallback()) {
+                cache.asMap().remove(key, flight);
+            }
+            if (error != null) {
+                flight.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            } else {
+                flight.complete(result);
+            }
+        });
+        return flight;
+    }
+
+    // Caffeine's own stats do not see lookups made through asMap(), so the counters above are published instead
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("estimation.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("estimation.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("estimation.cache.requests", coalesced, LongAdder::sum)
+                .tag("result", "coalesced")
+                .register(registry);
+        FunctionCounter.builder("estimation.cache.evictions", evictions, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("estimation.cache.size", cache, c -> c.synchronous().estimatedSize())
+                .register(registry);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public Stats stats() {
+        return new Stats(
+                hits.sum(),
+                misses.sum(),
+                coalesced.sum(),
+                evictions.sum(),
+                cache.synchronous().estimatedSize()
+        );
+    }
+
+    private static AiEstimationResult join(CompletableFuture<AiEstimationResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public record Stats(long hits, long misses, long coalesced, long evictions, long size) {
+    }
+}
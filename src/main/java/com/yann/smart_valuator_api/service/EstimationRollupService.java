@@ -0,0 +1,189 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.MarketKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps {@code estimation_price_rollups} up to date and feeds the rollups to the fallback pricer.
+ *
+ * <p>Every refresh rebuilds the last {@code refresh-lookback-days} days plus today, which picks up
+ * new estimations, including write-behind ones that reach the database a little late. Changes to
+ * older estimations queue their day in {@code estimation_rollup_dirty_days}, and the refresh rebuilds
+ * up to {@code max-dirty-days} of those too. An empty rollup table at startup queues every day, so
+ * existing data is backfilled a batch of days per refresh. Only one node refreshes at a time.
+ *
+ * <p>Months that ended at least a month before the lookback window are final: the refresh builds
+ * their monthly rollups once, when they get there, and again whenever it rebuilds one of their days.
+ */
+@Slf4j
+@Component
+public class EstimationRollupService {
+
+    private final EstimationRollupRepository estimationRollupRepository;
+    private final FallbackPricingEngine fallbackPricingEngine;
+    private final TransactionTemplate transaction;
+    private final boolean enabled;
+    private final int lookbackDays;
+    private final int maxDirtyDays;
+    private final int marketWindowDays;
+    private final int marketMinSamples;
+
+    private volatile boolean backfillChecked;
+
+    public EstimationRollupService(
+            EstimationRollupRepository estimationRollupRepository,
+            FallbackPricingEngine fallbackPricingEngine,
+            PlatformTransactionManager transactionManager,
+            @Value("${estimation.analytics.enabled:true}") boolean enabled,
+            @Value("${estimation.analytics.refresh-lookback-days:1}") int lookbackDays,
+            @Value("${estimation.analytics.max-dirty-days:31}") int maxDirtyDays,
+            @Value("${estimation.analytics.market-window-days:90}") int marketWindowDays,
+            @Value("${estimation.analytics.market-min-samples:20}") int marketMinSamples
+    ) {
+        this.estimationRollupRepository = estimationRollupRepository;
+        this.fallbackPricingEngine = fallbackPricingEngine;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.lookbackDays = lookbackDays;
+        this.maxDirtyDays = maxDirtyDays;
+        this.marketWindowDays = marketWindowDays;
+        this.marketMinSamples = marketMinSamples;
+    }
+
+    /**
+     * Records that an estimation created at {@code createdAt} was modified, deleted, or inserted late.
+     */
+    public void estimationChanged(LocalDateTime createdAt) {
+        if (!enabled || createdAt == null) {
+            return;
+        }
+        LocalDate day = createdAt.toLocalDate();
+        // Days in the lookback window are rebuilt by every refresh anyway
+        if (day.isBefore(LocalDate.now().minusDays(lookbackDays))) {
+            estimationRollupRepository.markDirty(day);
+        }
+    }
+
+    /**
+     * Rebuilds the recent days and a batch of queued ones. Returns false when rollups are disabled
+     * or another node is refreshing.
+     */
+    @Scheduled(
+            fixedDelayString = "${estimation.analytics.refresh-interval:1m}",
+            initialDelayString = "${estimation.analytics.initial-delay:10s}"
+    )
+    public boolean refresh() {
+        if (!enabled) {
+            return false;
+        }
+        long started = System.nanoTime();
+        LocalDate recentFrom = LocalDate.now().minusDays(lookbackDays);
+        LocalDate monthlyUntil = monthlyUntil();
+        List<LocalDate> rebuilt = transaction.execute(status -> {
+            if (!estimationRollupRepository.tryLockForRefresh()) {
+                return null;
+            }
+            if (!backfillChecked && estimationRollupRepository.isEmpty()) {
+                estimationRollupRepository.markAllDirty();
+            }
+            List<LocalDate> days = estimationRollupRepository.takeDirtyDays(maxDirtyDays).stream()
+                    .filter(day -> day.isBefore(recentFrom))
+                    .toList();
+            for (LocalDate[] range : ranges(days)) {
+                estimationRollupRepository.recompute(range[0], range[1]);
+            }
+            estimationRollupRepository.recompute(recentFrom, LocalDate.now().plusDays(1));
+
+            Set<YearMonth> months = new TreeSet<>();
+            days.forEach(day -> months.add(YearMonth.from(day)));
+            YearMonth lastFinal = YearMonth.from(monthlyUntil).minusMonths(1);
+            if (!estimationRollupRepository.hasMonth(lastFinal)) {
+                months.add(lastFinal);
+            }
+            months.removeIf(month -> !month.atDay(1).isBefore(monthlyUntil));
+            months.forEach(estimationRollupRepository::recomputeMonth);
+            return days;
+        });
+        if (rebuilt == null) {
+            return false;
+        }
+        backfillChecked = true;
+
+        log.atDebug().setMessage("Refreshed price rollups")
+                .addKeyValue("queuedDays", rebuilt.size())
+                .addKeyValue("millis", (System.nanoTime() - started) / 1_000_000)
+                .log();
+        return true;
+    }
+
+    /**
+     * Start of the first month whose monthly rollups are not final yet, or null when rollups are disabled.
+     */
+    public LocalDate monthlyUntil() {
+        if (!enabled) {
+            return null;
+        }
+        return YearMonth.from(LocalDate.now().minusDays(lookbackDays)).minusMonths(1).atDay(1);
+    }
+
+    /**
+     * Hands the fallback pricer the median price of every item key with at least
+     * {@code market-min-samples} estimations over the last {@code market-window-days} days.
+     */
+    @Scheduled(
+            fixedDelayString = "${estimation.analytics.market-refresh-interval:10m}",
+            initialDelayString = "${estimation.analytics.initial-delay:10s}"
+    )
+    public void refreshMarketPrices() {
+        if (!enabled) {
+            return;
+        }
+        Map<MarketKey, PriceHistogram> histograms = new HashMap<>();
+        estimationRollupRepository.streamMarketRollups(LocalDate.now().minusDays(marketWindowDays), monthlyUntil(),
+                (key, prices) -> histograms.computeIfAbsent(key, k -> new PriceHistogram()).add(prices));
+
+        Map<MarketKey, BigDecimal> medians = new HashMap<>();
+        histograms.forEach((key, histogram) -> {
+            if (histogram.count() >= marketMinSamples) {
+                medians.put(key, histogram.percentile(50));
+            }
+        });
+        fallbackPricingEngine.useMarketPrices(medians);
+
+        log.atInfo().setMessage("Loaded market prices for fallback pricing")
+                .addKeyValue("items", medians.size())
+                .log();
+    }
+
+    // Consecutive days merged into [from, to) ranges, so a backfill rebuilds each batch in one statement
+    private static List<LocalDate[]> ranges(List<LocalDate> days) {
+        List<LocalDate[]> ranges = new ArrayList<>();
+        for (LocalDate day : days) {
+            LocalDate[] last = ranges.isEmpty() ? null : ranges.getLast();
+            if (last != null && Objects.equals(last[1], day)) {
+                last[1] = day.plusDays(1);
+            } else {
+                ranges.add(new LocalDate[]{day, day.plusDays(1)});
+            }
+        }
+        return ranges;
+    }
+}
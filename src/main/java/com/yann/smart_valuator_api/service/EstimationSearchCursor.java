@@ -0,0 +1,39 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.repository.EstimationSearchRepository;
+import exception.InvalidEstimationRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque position in the (score, created_at, id) ordering of search results; score is empty when
+ * searching descriptions only.
+ */
+record EstimationSearchCursor(Float score, LocalDateTime createdAt, long id) {
+
+    String encode() {
+        String raw = (score == null ? "" : score.toString()) + "|" + createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    EstimationSearchRepository.After toAfter() {
+        return new EstimationSearchRepository.After(score, createdAt, id);
+    }
+
+    static EstimationSearchCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", -1);
+            return new EstimationSearchCursor(
+                    parts[0].isEmpty() ? null : Float.valueOf(parts[0]),
+                    LocalDateTime.parse(parts[1]),
+                    Long.parseLong(parts[2])
+            );
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new InvalidEstimationRequestException("Invalid cursor");
+        }
+    }
+}
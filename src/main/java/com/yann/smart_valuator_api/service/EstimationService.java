@@ -1,75 +1,243 @@
 package com.yann.smart_valuator_api.service;
 
 import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.DTO.EstimationPage;
+import com.yann.smart_valuator_api.DTO.EstimationSearchHit;
 import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationArchiveRepository;
 import com.yann.smart_valuator_api.repository.EstimationRepository;
+import com.yann.smart_valuator_api.repository.EstimationSearchRepository;
+import com.yann.smart_valuator_api.repository.EstimationSummary;
+import exception.EstimationNotFoundException;
+import exception.InvalidEstimationRequestException;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+@Slf4j
 @Service
 @AllArgsConstructor
 public class EstimationService {
 
     private final EstimationRepository estimationRepository;
     private final HuggingFaceService huggingFaceService;
+    // Router picking the remote or local backend (see EstimationModelRouter)
+    private final EstimationModel estimationModel;
+    private final EstimationResultCache estimationResultCache;
+    private final EstimationMetrics estimationMetrics;
+    private final EstimationWriteBehind estimationWriteBehind;
+    private final EstimationEntityCache estimationEntityCache;
+    private final EstimationRollupService estimationRollupService;
+    private final EstimationDeduplicator estimationDeduplicator;
+    private final EstimationSearchRepository estimationSearchRepository;
+    private final EstimationArchiveRepository estimationArchiveRepository;
 
     public Estimation generateAiEstimation(Estimation estimation) {
+        // The same item priced recently, possibly by another node, is answered with its stored row
+        Estimation duplicate = estimationDeduplicator.findRecent(estimation);
+        if (duplicate != null) {
+            return duplicate;
+        }
+        applyAiEstimation(estimation);
+
+        // Save to database
+        Estimation saved = save(estimation);
+
+        log.atDebug().setMessage("Saved estimation")
+                .addKeyValue("id", saved.getId())
+                .addKeyValue("price", saved.getEstimatedPrice())
+                .addKeyValue("createdAt", saved.getCreatedAt())
+                .log();
+
+        return saved;
+    }
+
+    /**
+     * Same as {@link #generateAiEstimation} but reads the model output as a stream, relaying
+     * each token to {@code onToken}. Cached and deduplicated results are returned without any tokens.
+     * Always uses the remote model, the only one that produces tokens.
+     */
+    public Estimation generateAiEstimationStreaming(Estimation estimation, Consumer<String> onToken) {
+        Estimation duplicate = estimationDeduplicator.findRecent(estimation);
+        if (duplicate != null) {
+            return duplicate;
+        }
+        applyAiEstimation(estimation,
+                item -> huggingFaceService.streamStructuredEstimation(item, onToken));
+        return save(estimation);
+    }
+
+    private Estimation save(Estimation estimation) {
+        Estimation saved = estimationMetrics.time(EstimationMetrics.Stage.DB_SAVE, EstimationMetrics.NO_MODEL,
+                estimation.getCategory(), () -> estimationWriteBehind.isEnabled()
+                        ? estimationWriteBehind.submit(estimation)
+                        : estimationRepository.save(estimation));
+        // New estimations are the ones most likely to be read back
+        estimationEntityCache.put(saved);
+        return saved;
+    }
+
+    /**
+     * Fills in the AI description and price without persisting, so callers can
+     * choose how the estimation gets saved.
+     */
+    public Estimation applyAiEstimation(Estimation estimation) {
+        return applyAiEstimation(estimation, estimationModel::estimate);
+    }
+
+    private Estimation applyAiEstimation(
+            Estimation estimation,
+            Function<Estimation, AiEstimationResult> aiCall
+    ) {
+        prepare(estimation);
+
+        try {
+            // Call AI service, reusing a recent result for the same item when available
+            EstimationCacheKey key = EstimationCacheKey.of(estimation);
+            AiEstimationResult aiResult = estimationResultCache.get(key, () -> aiCall.apply(estimation));
+            apply(estimation, key, aiResult);
+
+        } catch (Exception e) {
+            failed(estimation, e);
+        }
+
+        return estimation;
+    }
+
+    // The steps of applyAiEstimation, shared with ReactiveEstimationService
+
+    static void prepare(Estimation estimation) {
         // Set creation time first
         estimation.setCreatedAt(LocalDateTime.now());
 
-        // Build product details string
-        String productDetails = String.format(
-                "Item: %s, Brand: %s, Category: %s, Purchase Year: %d, Condition: %d/10",
-                estimation.getItemName(),
-                estimation.getBrand(),
-                estimation.getCategory(),
-                estimation.getYear(),
-                estimation.getConditionRating()
-        );
+        // Only model answers may be handed out again by EstimationDeduplicator
+        estimation.setFingerprint(null);
+    }
 
-        try {
-            // Call AI service
-            AiEstimationResult aiResult =
-                    huggingFaceService.generateStructuredEstimation(productDetails);
+    static Estimation apply(Estimation estimation, EstimationCacheKey key, AiEstimationResult aiResult) {
+        // Set AI results
+        estimation.setAiDescription(aiResult.getDescription());
+        estimation.setEstimatedPrice(aiResult.getEstimatedPrice());
+        if (!aiResult.isFallback() && aiResult.getEstimatedPrice() != null) {
+            estimation.setFingerprint(key.fingerprint());
+        }
+        return estimation;
+    }
 
-            // Set AI results
-            estimation.setAiDescription(aiResult.getDescription());
-            estimation.setEstimatedPrice(aiResult.getEstimatedPrice());
+    static Estimation failed(Estimation estimation, Throwable e) {
+        log.error("AI estimation failed for {}", estimation.getItemName(), e);
+        // On error, keep the error message as description
+        estimation.setAiDescription("Error generating description: " + e.getMessage());
+        estimation.setEstimatedPrice(null);
+        return estimation;
+    }
 
-            // Save to database
-            Estimation saved = estimationRepository.save(estimation);
+    /**
+     * Lists estimations newest first, one keyset page at a time. With {@code summary} set the
+     * AI description is never read from the database.
+     */
+    public EstimationPage<?> listEstimations(
+            String brand,
+            String category,
+            Integer yearFrom,
+            Integer yearTo,
+            String cursor,
+            int limit,
+            boolean summary
+    ) {
+        // One extra row tells us whether another page exists without a count query
+        Limit fetch = Limit.of(limit + 1);
+        EstimationCursor after = cursor == null || cursor.isBlank() ? null : EstimationCursor.decode(cursor);
 
-            System.out.println("=== SAVED ESTIMATION ===");
-            System.out.println("ID: " + saved.getId());
-            System.out.println("Price: " + saved.getEstimatedPrice());
-            System.out.println("CreatedAt: " + saved.getCreatedAt());
-            System.out.println("========================");
+        if (summary) {
+            List<EstimationSummary> rows = after == null
+                    ? estimationRepository.findFirstSummaryPage(brand, category, yearFrom, yearTo, fetch)
+                    : estimationRepository.findSummaryPageAfter(
+                            brand, category, yearFrom, yearTo, after.createdAt(), after.id(), fetch);
+            return toPage(rows, limit, row -> new EstimationCursor(row.getCreatedAt(), row.getId()).encode());
+        }
 
-            return saved;
+        List<Estimation> rows = after == null
+                ? estimationRepository.findFirstPage(brand, category, yearFrom, yearTo, fetch)
+                : estimationRepository.findPageAfter(
+                        brand, category, yearFrom, yearTo, after.createdAt(), after.id(), fetch);
+        return toPage(rows, limit, row -> new EstimationCursor(row.getCreatedAt(), row.getId()).encode());
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            // On error, save with error message
-            estimation.setAiDescription("Error generating description: " + e.getMessage());
-            estimation.setEstimatedPrice(null);
-            return estimationRepository.save(estimation);
+    /**
+     * Finds estimations by approximate item name, by words of their AI description, or both; see
+     * {@link EstimationSearchRepository#search}. Paginated like {@link #listEstimations}.
+     */
+    public EstimationPage<EstimationSearchHit> searchEstimations(String name, String text, String cursor, int limit) {
+        EstimationSearchCursor after = cursor == null || cursor.isBlank() ? null : EstimationSearchCursor.decode(cursor);
+        if (after != null && (after.score() == null) != (name == null)) {
+            throw new InvalidEstimationRequestException("Invalid cursor");
         }
+        List<EstimationSearchHit> rows = estimationSearchRepository.search(
+                name, text, after == null ? null : after.toAfter(), limit + 1);
+        return toPage(rows, limit, row -> new EstimationSearchCursor(row.score(), row.createdAt(), row.id()).encode());
     }
 
-    public List<Estimation> getAllEstimations() {
-        return estimationRepository.findAll();
+    private static <T> EstimationPage<T> toPage(List<T> rows, int limit, Function<T, String> cursor) {
+        if (rows.size() <= limit) {
+            return new EstimationPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new EstimationPage<>(items, cursor.apply(items.getLast()));
     }
 
     public Estimation getEstimationById(Long id) {
-        return estimationRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Estimation not found with id: " + id));
+        // Read-your-writes: an estimation still queued for write-behind is not in the database yet
+        Estimation pending = estimationWriteBehind.pending(id);
+        if (pending != null) {
+            return pending;
+        }
+        Estimation estimation = estimationEntityCache.get(id, key -> estimationRepository.findById(key).orElse(null));
+        if (estimation == null) {
+            throw new EstimationNotFoundException(id);
+        }
+        return estimation;
+    }
+
+    /**
+     * Like {@link #getEstimationById(Long)}, but an estimation no longer in the table is looked up in
+     * the archives when {@code includeArchived} is set. Archived ones are read from their file every time.
+     */
+    public Estimation getEstimationById(Long id, boolean includeArchived) {
+        if (!includeArchived) {
+            return getEstimationById(id);
+        }
+        Estimation pending = estimationWriteBehind.pending(id);
+        if (pending != null) {
+            return pending;
+        }
+        // Archive hits stay out of the entity cache, which only holds rows of the table
+        Estimation estimation = estimationEntityCache.get(id, key -> estimationRepository.findById(key).orElse(null));
+        if (estimation == null) {
+            estimation = estimationArchiveRepository.findById(id)
+                    .orElseThrow(() -> new EstimationNotFoundException(id));
+        }
+        return estimation;
+    }
+
+    /**
+     * Up to {@code limit} archived estimations created in {@code [from, to)}, oldest first.
+     */
+    public List<Estimation> getArchivedEstimations(LocalDateTime from, LocalDateTime to, int limit) {
+        return estimationArchiveRepository.findCreatedBetween(from, to, limit);
     }
 
     public Estimation updateEstimation(Long id, Estimation estimation) {
-        Estimation existing = getEstimationById(id);
+        estimationWriteBehind.awaitPersisted(id);
+        // Not through the cache: the cached instance is shared and must not be modified
+        Estimation existing = estimationRepository.findById(id)
+                .orElseThrow(() -> new EstimationNotFoundException(id));
 
         existing.setItemName(estimation.getItemName());
         existing.setBrand(estimation.getBrand());
@@ -78,11 +246,22 @@ public class EstimationService {
         existing.setConditionRating(estimation.getConditionRating());
         existing.setEstimatedPrice(estimation.getEstimatedPrice());
         existing.setAiDescription(estimation.getAiDescription());
+        // An edited estimation is no longer the model's answer for its item
+        existing.setFingerprint(null);
 
-        return estimationRepository.save(existing);
+        Estimation saved = estimationRepository.save(existing);
+        estimationEntityCache.evict(id);
+        estimationRollupService.estimationChanged(saved.getCreatedAt());
+        return saved;
     }
 
     public void deleteEstimation(Long id) {
-        estimationRepository.deleteById(id);
+        estimationWriteBehind.awaitPersisted(id);
+        // Loaded first (as deleteById would) for the creation day the price rollups need to rebuild
+        estimationRepository.findById(id).ifPresent(existing -> {
+            estimationRepository.delete(existing);
+            estimationRollupService.estimationChanged(existing.getCreatedAt());
+        });
+        estimationEntityCache.evict(id);
     }
 }
\ No newline at end of file
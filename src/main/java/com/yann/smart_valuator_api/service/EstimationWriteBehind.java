@@ -0,0 +1,601 @@
+package com.yann.smart_valuator_api.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationIdAllocator;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import exception.EstimationNotPersistedException;
+import exception.InvalidEstimationRequestException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Saves estimations off the request path when {@code estimation.persistence.mode=write-behind}.
+ *
+ * <p>{@link #submit} checks the estimation against the table's constraints, gives it its id,
+ * appends it to a local log, waits until the log is on disk and queues it; a background writer
+ * inserts queued estimations in multi-row JDBC batches. Concurrent submits share one fsync (group
+ * commit), so an acknowledged estimation survives a crash of the process or of the machine. Until
+ * its batch is written an estimation is served from memory by {@link #pending}, so a client can
+ * read back what it just created. The log is split into segments, each deleted once all of its
+ * estimations are in the database; segments left over by a crash are replayed at startup. Rows are
+ * inserted with {@code ON CONFLICT (id, created_at) DO NOTHING}, so replaying an estimation that
+ * did reach the database is harmless. When the queue is full the estimation is inserted on the
+ * caller's thread instead.
+ *
+ * <p>While the database is unreachable the writer retries a batch with backoff. A batch the
+ * database rejects (a constraint violation that got past the checks) is retried row by row, and
+ * the rows rejected on their own go to {@code dead-letter.ndjson} in the log directory, so one bad
+ * row never holds up the others, in the writer or at replay.
+ */
+@Slf4j
+@Component
+public class EstimationWriteBehind implements AutoCloseable {
+
+    public enum Mode { SYNC, WRITE_BEHIND }
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    static final String DEAD_LETTER_FILE = "dead-letter.ndjson";
+
+    // Limits of the estimations columns (see V1__baseline.sql)
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("100000000");
+
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean sealed;
+        private long size;
+
+        private Segment(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+    }
+
+    private record Entry(Estimation estimation, Segment segment) {
+    }
+
+    private record Appended(Segment segment, long position) {
+    }
+
+    private record DeadLetter(Estimation estimation, String error, LocalDateTime at) {
+    }
+
+    private abstract static class LoggedEstimation {
+        @JsonIgnore(false)
+        private Long fingerprint;
+
+        @JsonIgnore(false)
+        abstract Long getFingerprint();
+
+        @JsonIgnore(false)
+        abstract void setFingerprint(Long fingerprint);
+    }
+
+    private final EstimationJdbcRepository estimationJdbcRepository;
+    private final EstimationIdAllocator estimationIdAllocator;
+    private final EstimationRollupService estimationRollupService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long segmentBytes;
+    private final Path logDirectory;
+    private final long awaitTimeoutMillis;
+
+    private final Map<Long, Estimation> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<Entry> queue;
+    // Notified after every batch written, for callers waiting on a particular estimation
+    private final Object written = new Object();
+
+    private final Object logLock = new Object();
+    private final long startedMillis = System.currentTimeMillis();
+    private int segmentCount;
+    private Segment current;
+    // Lines appended so far (under logLock) and how many of them are known to be on disk
+    private long appended;
+    private volatile long synced;
+    // Held by the submitter running the fsync; the others queue up behind it and are usually covered by it
+    private final Object syncLock = new Object();
+    private final Object deadLetterLock = new Object();
+
+    private final DistributionSummary batchSizes;
+    private final Counter overflow;
+    private final Counter deadLettered;
+    private final DistributionSummary syncGroupSizes;
+
+    private volatile boolean closed;
+    private Thread writer;
+
+    public EstimationWriteBehind(
+            EstimationJdbcRepository estimationJdbcRepository,
+            EstimationIdAllocator estimationIdAllocator,
+            EstimationRollupService estimationRollupService,
+            ObjectMapper objectMapper,
+            MeterRegistry registry,
+            @Value("${estimation.persistence.mode:sync}") Mode mode,
+            @Value("${estimation.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${estimation.write-behind.batch-size:200}") int batchSize,
+            @Value("${estimation.write-behind.linger:50ms}") Duration linger,
+            @Value("${estimation.write-behind.segment-size:16MB}") DataSize segmentSize,
+            @Value("${estimation.write-behind.log-dir:data/write-behind}") Path logDirectory,
+            @Value("${estimation.write-behind.await-timeout:5s}") Duration awaitTimeout
+    ) {
+        this.estimationJdbcRepository = estimationJdbcRepository;
+        this.estimationIdAllocator = estimationIdAllocator;
+        this.estimationRollupService = estimationRollupService;
+        // The log keeps the fingerprint that the API leaves out, so replayed rows can still be deduplicated
+        this.objectMapper = objectMapper.rebuild().addMixIn(Estimation.class, LoggedEstimation.class).build();
+        this.enabled = mode == Mode.WRITE_BEHIND;
+        this.batchSize = batchSize;
+        this.lingerNanos = linger.toNanos();
+        this.segmentBytes = segmentSize.toBytes();
+        this.logDirectory = logDirectory;
+        this.awaitTimeoutMillis = awaitTimeout.toMillis();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("estimation.write-behind.queue.size", queue, BlockingQueue::size)
+                .description("Estimations waiting for the background writer")
+                .register(registry);
+        Gauge.builder("estimation.write-behind.pending", pending, Map::size)
+                .description("Estimations accepted but not yet in the database")
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("estimation.write-behind.batch.size")
+                .description("Estimations per background insert")
+                .register(registry);
+        this.overflow = Counter.builder("estimation.write-behind.overflow")
+                .description("Estimations inserted on the request thread because the queue was full")
+                .register(registry);
+        this.deadLettered = Counter.builder("estimation.write-behind.dead-lettered")
+                .description("Estimations the database rejected, written to the dead-letter file")
+                .register(registry);
+        this.syncGroupSizes = DistributionSummary.builder("estimation.write-behind.sync.group.size")
+                .description("Log lines made durable per fsync")
+                .register(registry);
+
+        if (enabled) {
+            try {
+                Files.createDirectories(logDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create write-behind log directory " + logDirectory, e);
+            }
+            replay();
+            writer = Thread.ofPlatform().daemon().name("estimation-write-behind").start(this::writeLoop);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gives the estimation an id, logs it and queues it for insertion. Returns the estimation,
+     * readable through {@link #pending} until it is in the database, once the log holding it is on disk.
+     *
+     * @throws InvalidEstimationRequestException when the table would reject the estimation
+     */
+    public Estimation submit(Estimation estimation) {
+        validate(estimation);
+        if (estimation.getId() == null) {
+            estimation.setId(estimationIdAllocator.nextId());
+        }
+        if (estimation.getCreatedAt() == null) {
+            estimation.setCreatedAt(LocalDateTime.now());
+        }
+        Appended appended = append(estimation);
+        Entry entry = new Entry(estimation, appended.segment());
+        pending.put(estimation.getId(), estimation);
+
+        // Without a durable log line the estimation is only acknowledged once it is in the database
+        if (!awaitDurable(appended.position()) || closed || !queue.offer(entry)) {
+            overflow.increment();
+            estimationJdbcRepository.insertAll(List.of(estimation));
+            persisted(List.of(entry));
+        }
+        return estimation;
+    }
+
+    /**
+     * The estimation with this id if it was accepted but is not in the database yet, else null.
+     */
+    public Estimation pending(Long id) {
+        return pending.get(id);
+    }
+
+    /**
+     * Returns once the estimation with this id is in the database, so it can be updated or
+     * deleted there. Returns at once for ids that are not pending.
+     *
+     * @throws EstimationNotPersistedException when it is still pending after {@code await-timeout},
+     *                                         as while the database is unreachable
+     */
+    public void awaitPersisted(Long id) {
+        long deadline = System.currentTimeMillis() + awaitTimeoutMillis;
+        synchronized (written) {
+            while (pending.containsKey(id)) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    throw new EstimationNotPersistedException(
+                            "Estimation " + id + " is not saved yet, retry later");
+                }
+                try {
+                    written.wait(Math.min(left, 100));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new EstimationNotPersistedException(
+                            "Interrupted while waiting for estimation " + id + " to be saved");
+                }
+            }
+        }
+    }
+
+    /**
+     * Rejects what the estimations table would: a missing item name or year, a condition rating
+     * outside 1 to 10, text longer than its column, or a price that does not fit NUMERIC(10,2).
+     */
+    static void validate(Estimation estimation) {
+        if (estimation.getItemName() == null || estimation.getItemName().isBlank()) {
+            throw new InvalidEstimationRequestException("itemName is required");
+        }
+        if (estimation.getYear() == null) {
+            throw new InvalidEstimationRequestException("year is required");
+        }
+        Integer conditionRating = estimation.getConditionRating();
+        if (conditionRating != null && (conditionRating < 1 || conditionRating > 10)) {
+            throw new InvalidEstimationRequestException("conditionRating must be between 1 and 10");
+        }
+        checkLength("itemName", estimation.getItemName());
+        checkLength("category", estimation.getCategory());
+        checkLength("brand", estimation.getBrand());
+        BigDecimal price = estimation.getEstimatedPrice();
+        if (price != null && price.abs().compareTo(MAX_PRICE) >= 0) {
+            throw new InvalidEstimationRequestException("estimatedPrice must be less than " + MAX_PRICE);
+        }
+    }
+
+    private static void checkLength(String field, String value) {
+        if (value != null && value.length() > MAX_TEXT_LENGTH) {
+            throw new InvalidEstimationRequestException(field + " must be at most " + MAX_TEXT_LENGTH + " characters");
+        }
+    }
+
+    private Appended append(Estimation estimation) {
+        byte[] json = objectMapper.writeValueAsBytes(estimation);
+        ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+        synchronized (logLock) {
+            try {
+                if (current == null || current.size >= segmentBytes) {
+                    roll();
+                }
+                while (line.hasRemaining()) {
+                    current.size += current.channel.write(line);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot append to write-behind log", e);
+            }
+            current.outstanding.incrementAndGet();
+            return new Appended(current, ++appended);
+        }
+    }
+
+    /**
+     * Waits until the log is on disk up to line {@code position}. One submitter forces the current
+     * segment for every line appended so far while the others wait, then find their line covered.
+     * Returns false when the log cannot be synced.
+     */
+    private boolean awaitDurable(long position) {
+        if (synced >= position) {
+            return true;
+        }
+        synchronized (syncLock) {
+            if (synced >= position) {
+                return true;
+            }
+            long target;
+            Segment segment;
+            synchronized (logLock) {
+                target = appended;
+                segment = current;
+            }
+            try {
+                segment.channel.force(false);
+            } catch (ClosedChannelException e) {
+                // Rolled, so forced by roll(), and already written and deleted
+            } catch (IOException e) {
+                log.atWarn().setMessage("Cannot sync write-behind log, inserting on the request thread")
+                        .addKeyValue("segment", segment.path)
+                        .addKeyValue("error", e.getMessage())
+                        .log();
+                return false;
+            }
+            syncGroupSizes.record(target - synced);
+            synced = target;
+            return true;
+        }
+    }
+
+    // Caller holds logLock
+    private void roll() throws IOException {
+        Segment previous = current;
+        if (previous != null) {
+            // Its unsynced lines are covered by the next group sync, which only forces the current segment
+            previous.channel.force(false);
+        }
+        current = new Segment(logDirectory.resolve(
+                "estimations-%d-%06d%s".formatted(startedMillis, segmentCount++, SEGMENT_SUFFIX)));
+        if (previous != null) {
+            previous.sealed = true;
+            deleteIfDone(previous);
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(lingerNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long left = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || left <= 0 || closed) {
+                        break;
+                    }
+                    Entry next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // close() interrupts a writer stuck retrying; what is left stays in the log
+                return;
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) throws InterruptedException {
+        List<Estimation> estimations = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            estimations.add(entry.estimation());
+        }
+        long backoffMillis = 100;
+        while (true) {
+            try {
+                insertOrDeadLetter(estimations);
+                break;
+            } catch (DataAccessException e) {
+                log.atError().setMessage("Write-behind insert failed, retrying")
+                        .addKeyValue("estimations", estimations.size())
+                        .addKeyValue("retryInMillis", backoffMillis)
+                        .setCause(e)
+                        .log();
+                Thread.sleep(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, 5_000);
+            }
+        }
+        batchSizes.record(batch.size());
+        persisted(batch);
+    }
+
+    /**
+     * Inserts the estimations. When the database rejects the batch, inserts them one at a time and
+     * moves those it rejects on their own to the dead-letter file. Failures of the database itself
+     * (unreachable, timed out, deadlocked) are thrown, for the caller to retry.
+     */
+    private void insertOrDeadLetter(List<Estimation> estimations) {
+        try {
+            estimationJdbcRepository.insertAll(estimations);
+            return;
+        } catch (DataAccessException e) {
+            if (!rejected(e) || estimations.size() == 1) {
+                rethrowOrDeadLetter(estimations, e);
+                return;
+            }
+        }
+        // Rows of the batch that made it in are skipped by ON CONFLICT DO NOTHING
+        for (Estimation estimation : estimations) {
+            try {
+                estimationJdbcRepository.insertAll(List.of(estimation));
+            } catch (DataAccessException e) {
+                rethrowOrDeadLetter(List.of(estimation), e);
+            }
+        }
+    }
+
+    private void rethrowOrDeadLetter(List<Estimation> estimations, DataAccessException e) {
+        if (!rejected(e)) {
+            throw e;
+        }
+        deadLetter(estimations.getFirst(), e);
+    }
+
+    // Rejected for what the rows hold, so retrying the same rows cannot succeed
+    static boolean rejected(DataAccessException e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof NonTransientDataAccessResourceException);
+    }
+
+    private void deadLetter(Estimation estimation, DataAccessException e) {
+        deadLettered.increment();
+        log.atError().setMessage("Write-behind insert rejected, moved to the dead-letter file")
+                .addKeyValue("id", estimation.getId())
+                .addKeyValue("error", e.getMostSpecificCause().getMessage())
+                .log();
+        byte[] json = objectMapper.writeValueAsBytes(new DeadLetter(
+                estimation, e.getMostSpecificCause().getMessage(), LocalDateTime.now()));
+        synchronized (deadLetterLock) {
+            try (FileChannel channel = FileChannel.open(logDirectory.resolve(DEAD_LETTER_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer line = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+                while (line.hasRemaining()) {
+                    channel.write(line);
+                }
+                // On disk before the log line holding it can be deleted
+                channel.force(false);
+            } catch (IOException io) {
+                throw new UncheckedIOException("Cannot write to the write-behind dead-letter file", io);
+            }
+        }
+    }
+
+    private void persisted(List<Entry> entries) {
+        for (Entry entry : entries) {
+            pending.remove(entry.estimation().getId());
+            entry.segment().outstanding.decrementAndGet();
+            deleteIfDone(entry.segment());
+        }
+        synchronized (written) {
+            written.notifyAll();
+        }
+    }
+
+    private static void deleteIfDone(Segment segment) {
+        if (!segment.sealed || segment.outstanding.get() > 0) {
+            return;
+        }
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Cannot delete write-behind log {}", segment.path, e);
+        }
+    }
+
+    /**
+     * Inserts whatever earlier runs logged but did not write, then deletes their segments. A
+     * segment that cannot be written is kept for the next start.
+     */
+    void replay() {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(logDirectory)) {
+            segments = files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list write-behind log directory " + logDirectory, e);
+        }
+
+        for (Path segment : segments) {
+            synchronized (logLock) {
+                if (current != null && current.path.equals(segment)) {
+                    continue;
+                }
+            }
+            int replayed = 0;
+            Set<LocalDate> days = new HashSet<>();
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                List<Estimation> estimations = new ArrayList<>(batchSize);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        estimations.add(objectMapper.readValue(line, Estimation.class));
+                    } catch (JacksonException e) {
+                        // A crash mid-append leaves a torn last line; its request was never answered
+                        log.warn("Skipping unreadable write-behind log line in {}", segment.getFileName());
+                        continue;
+                    }
+                    if (estimations.size() == batchSize) {
+                        replayed += replayBatch(estimations, days);
+                    }
+                }
+                replayed += replayBatch(estimations, days);
+                // Rows from a long outage may be older than the days the price rollups rebuild anyway
+                days.forEach(day -> estimationRollupService.estimationChanged(day.atStartOfDay()));
+                Files.delete(segment);
+            } catch (IOException | DataAccessException e) {
+                log.error("Cannot replay write-behind log {}, keeping it for the next start", segment, e);
+                continue;
+            }
+            log.atInfo().setMessage("Replayed write-behind log")
+                    .addKeyValue("segment", segment.getFileName())
+                    .addKeyValue("estimations", replayed)
+                    .log();
+        }
+    }
+
+    private int replayBatch(List<Estimation> estimations, Set<LocalDate> days) {
+        insertOrDeadLetter(estimations);
+        for (Estimation estimation : estimations) {
+            days.add(estimation.getCreatedAt().toLocalDate());
+        }
+        int replayed = estimations.size();
+        estimations.clear();
+        return replayed;
+    }
+
+    /**
+     * Writes everything still queued, then removes the log.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+            if (writer.isAlive()) {
+                log.warn("Write-behind writer did not finish, {} estimations left in the log", pending.size());
+                writer.interrupt();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (logLock) {
+            if (current != null) {
+                current.sealed = true;
+                deleteIfDone(current);
+            }
+        }
+    }
+}
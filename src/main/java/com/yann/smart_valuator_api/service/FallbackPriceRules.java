@@ -0,0 +1,244 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fallback price rules compiled from {@code pricing/fallback-rules.json}.
+ *
+ * <p>Rule tokens are stored in a trie over {@code [a-z0-9]}. A lookup walks the item name,
+ * brand and category once, recording matched tokens as bits of a {@code long}, then checks the
+ * rules in file order against precompiled clause masks. Prices for every condition rating are
+ * computed at load time, so a lookup allocates nothing.
+ */
+public final class FallbackPriceRules {
+
+    private static final int ALPHABET = 36;
+    private static final int MAX_TOKENS = Long.SIZE;
+    private static final int MAX_CONDITION = 10;
+    // Column holding the price for a missing condition rating
+    private static final int NO_CONDITION = MAX_CONDITION + 1;
+
+    record RulesFile(
+            String version,
+            String currency,
+            BigDecimal defaultPrice,
+            BigDecimal defaultConditionMultiplier,
+            List<Rule> rules
+    ) {
+    }
+
+    record Rule(String name, List<List<String>> match, BigDecimal price) {
+    }
+
+    private final String version;
+    // trie[node * ALPHABET + symbol] is the child node, 0 when absent (the root is never a child)
+    private final int[] trie;
+    // Token index ending at each node, -1 when none
+    private final int[] tokenAt;
+    // Clause masks of rule r are clauses[clauseStart[r] .. clauseStart[r + 1])
+    private final long[] clauses;
+    private final int[] clauseStart;
+    // prices[r][condition]; the extra last row holds the default price when no rule matches
+    private final BigDecimal[][] prices;
+
+    private FallbackPriceRules(
+            String version,
+            int[] trie,
+            int[] tokenAt,
+            long[] clauses,
+            int[] clauseStart,
+            BigDecimal[][] prices
+    ) {
+        this.version = version;
+        this.trie = trie;
+        this.tokenAt = tokenAt;
+        this.clauses = clauses;
+        this.clauseStart = clauseStart;
+        this.prices = prices;
+    }
+
+    public static FallbackPriceRules load(InputStream in, ObjectMapper objectMapper) {
+        return compile(objectMapper.readValue(in, RulesFile.class));
+    }
+
+    static FallbackPriceRules compile(RulesFile file) {
+        if (file.version() == null || file.defaultPrice() == null || file.defaultConditionMultiplier() == null) {
+            throw new IllegalArgumentException("Fallback rules need version, defaultPrice and defaultConditionMultiplier");
+        }
+        List<Rule> rules = file.rules() == null ? List.of() : file.rules();
+
+        Map<String, Integer> tokenIds = new HashMap<>();
+        List<Long> clauseMasks = new ArrayList<>();
+        int[] clauseStart = new int[rules.size() + 1];
+        BigDecimal[][] prices = new BigDecimal[rules.size() + 1][];
+
+        for (int r = 0; r < rules.size(); r++) {
+            Rule rule = rules.get(r);
+            if (rule.price() == null || rule.match() == null || rule.match().isEmpty()) {
+                throw new IllegalArgumentException("Fallback rule '" + rule.name() + "' needs a price and a match");
+            }
+            clauseStart[r] = clauseMasks.size();
+            for (List<String> clause : rule.match()) {
+                long mask = 0;
+                for (String token : clause) {
+                    String normalized = normalizeToken(token, rule.name());
+                    Integer id = tokenIds.get(normalized);
+                    if (id == null) {
+                        id = tokenIds.size();
+                        if (id == MAX_TOKENS) {
+                            throw new IllegalArgumentException("Fallback rules use more than " + MAX_TOKENS + " distinct tokens");
+                        }
+                        tokenIds.put(normalized, id);
+                    }
+                    mask |= 1L << id;
+                }
+                clauseMasks.add(mask);
+            }
+            prices[r] = priceTable(rule.price(), file.defaultConditionMultiplier());
+        }
+        clauseStart[rules.size()] = clauseMasks.size();
+        prices[rules.size()] = priceTable(file.defaultPrice(), file.defaultConditionMultiplier());
+
+        // Build the trie; node 0 is the root
+        int maxNodes = 1 + tokenIds.keySet().stream().mapToInt(String::length).sum();
+        int[] trie = new int[maxNodes * ALPHABET];
+        int[] tokenAt = new int[maxNodes];
+        Arrays.fill(tokenAt, -1);
+        int nodes = 1;
+        for (Map.Entry<String, Integer> entry : tokenIds.entrySet()) {
+            int node = 0;
+            for (int i = 0; i < entry.getKey().length(); i++) {
+                int slot = node * ALPHABET + symbol(entry.getKey().charAt(i));
+                if (trie[slot] == 0) {
+                    trie[slot] = nodes++;
+                }
+                node = trie[slot];
+            }
+            tokenAt[node] = entry.getValue();
+        }
+
+        long[] clauses = clauseMasks.stream().mapToLong(Long::longValue).toArray();
+        return new FallbackPriceRules(
+                file.version(),
+                Arrays.copyOf(trie, nodes * ALPHABET),
+                Arrays.copyOf(tokenAt, nodes),
+                clauses,
+                clauseStart,
+                prices
+        );
+    }
+
+    public String version() {
+        return version;
+    }
+
+    /**
+     * Price of the first rule matching the item's name, brand and category, adjusted by its
+     * condition rating (rating / 10, or the default multiplier when there is none).
+     */
+    public BigDecimal price(Estimation estimation) {
+        long matched = scan(estimation.getItemName(), 0L);
+        matched = scan(estimation.getBrand(), matched);
+        matched = scan(estimation.getCategory(), matched);
+
+        int rule = firstMatchingRule(matched);
+        Integer condition = estimation.getConditionRating();
+        if (condition == null) {
+            return prices[rule][NO_CONDITION];
+        }
+        if (condition >= 0 && condition <= MAX_CONDITION) {
+            return prices[rule][condition];
+        }
+        // Out-of-range ratings are not worth a table entry
+        return prices[rule][MAX_CONDITION]
+                .multiply(BigDecimal.valueOf(condition, 1))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private long scan(String text, long matched) {
+        if (text == null) {
+            return matched;
+        }
+        // -1 means the current word already left the trie
+        int node = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            int symbol = symbol(text.charAt(i));
+            if (symbol < 0) {
+                if (node > 0 && tokenAt[node] >= 0) {
+                    matched |= 1L << tokenAt[node];
+                }
+                node = 0;
+            } else if (node >= 0) {
+                int child = trie[node * ALPHABET + symbol];
+                node = child == 0 ? -1 : child;
+            }
+        }
+        if (node > 0 && tokenAt[node] >= 0) {
+            matched |= 1L << tokenAt[node];
+        }
+        return matched;
+    }
+
+    private int firstMatchingRule(long matched) {
+        int rules = clauseStart.length - 1;
+        for (int r = 0; r < rules; r++) {
+            boolean all = true;
+            for (int c = clauseStart[r]; c < clauseStart[r + 1] && all; c++) {
+                all = (matched & clauses[c]) != 0;
+            }
+            if (all) {
+                return r;
+            }
+        }
+        return rules;
+    }
+
+    private static BigDecimal[] priceTable(BigDecimal basePrice, BigDecimal defaultMultiplier) {
+        BigDecimal[] table = new BigDecimal[NO_CONDITION + 1];
+        for (int condition = 0; condition <= MAX_CONDITION; condition++) {
+            table[condition] = basePrice.multiply(BigDecimal.valueOf(condition, 1))
+                    .setScale(2, RoundingMode.HALF_UP);
+        }
+        table[NO_CONDITION] = basePrice.multiply(defaultMultiplier).setScale(2, RoundingMode.HALF_UP);
+        return table;
+    }
+
+    private static String normalizeToken(String token, String ruleName) {
+        String normalized = token == null ? "" : token.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Fallback rule '" + ruleName + "' has an empty token");
+        }
+        for (int i = 0; i < normalized.length(); i++) {
+            if (symbol(normalized.charAt(i)) < 0) {
+                throw new IllegalArgumentException(
+                        "Fallback rule '" + ruleName + "' token '" + token + "' must only use [a-z0-9]");
+            }
+        }
+        return normalized;
+    }
+
+    // ASCII letters (either case) map to 0-25 and digits to 26-35; anything else separates words
+    private static int symbol(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= '0' && c <= '9') {
+            return 26 + (c - '0');
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,173 @@
+package com.yann.smart_valuator_api.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.MarketKey;
+import com.yann.smart_valuator_api.repository.EstimationSearchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * Prices items when the AI gives no usable answer, from the rules in
+ * {@code estimation.fallback.rules-location}. The file is checked for changes periodically and
+ * swapped in without a restart; a file that fails to load leaves the previous rules in place.
+ *
+ * <p>Items with enough recent estimations of the same category, brand, year and condition get
+ * their median price instead (see {@link EstimationRollupService#refreshMarketPrices}). Failing
+ * that, the median of the prices the model gave to the most similarly named items of the same year
+ * and condition is used, when there are at least three. Those medians are looked up in the database
+ * in the background and kept for {@code neighbour-refresh-interval}; pricing never waits for them,
+ * so an item whose neighbours are not loaded yet is priced by the rules.
+ */
+@Slf4j
+@Component
+public class FallbackPricingEngine {
+
+    private static final int MIN_NEIGHBOURS = 3;
+
+    private record NeighbourKey(String itemName, int year, Integer conditionRating) {
+    }
+
+    private final Resource rulesResource;
+    private final ObjectMapper objectMapper;
+    private final EstimationSearchRepository estimationSearchRepository;
+    private final int neighbours;
+    private final double neighbourMinSimilarity;
+    // Loaded one at a time, so an outage does not also take a database connection per fallback
+    private final AsyncLoadingCache<NeighbourKey, Optional<BigDecimal>> neighbourPrices;
+
+    private volatile FallbackPriceRules rules;
+    private volatile long lastModified;
+    private volatile Map<MarketKey, BigDecimal> marketPrices = Map.of();
+
+    public FallbackPricingEngine(
+            ResourceLoader resourceLoader,
+            ObjectMapper objectMapper,
+            EstimationSearchRepository estimationSearchRepository,
+            @Value("${estimation.fallback.rules-location:classpath:pricing/fallback-rules.json}") String rulesLocation,
+            @Value("${estimation.fallback.neighbours:5}") int neighbours,
+            @Value("${estimation.fallback.neighbour-min-similarity:0.8}") double neighbourMinSimilarity,
+            @Value("${estimation.fallback.neighbour-cache-size:10000}") long neighbourCacheSize,
+            @Value("${estimation.fallback.neighbour-refresh-interval:10m}") Duration neighbourRefreshInterval
+    ) {
+        this.rulesResource = resourceLoader.getResource(rulesLocation);
+        this.objectMapper = objectMapper;
+        this.estimationSearchRepository = estimationSearchRepository;
+        this.neighbours = neighbours;
+        this.neighbourMinSimilarity = neighbourMinSimilarity;
+        this.neighbourPrices = Caffeine.newBuilder()
+                .maximumSize(neighbourCacheSize)
+                .refreshAfterWrite(neighbourRefreshInterval)
+                .executor(Executors.newSingleThreadExecutor(
+                        Thread.ofPlatform().daemon().name("fallback-neighbour-prices").factory()))
+                .buildAsync(this::loadNeighbourPrice);
+        this.lastModified = lastModified();
+        this.rules = load();
+        log.info("Loaded fallback pricing rules version {} from {}", rules.version(), rulesResource);
+    }
+
+    public BigDecimal price(Estimation estimation) {
+        Map<MarketKey, BigDecimal> market = marketPrices;
+        if (!market.isEmpty() && estimation.getYear() != null) {
+            BigDecimal median = market.get(MarketKey.of(estimation.getCategory(), estimation.getBrand(),
+                    estimation.getYear(), estimation.getConditionRating()));
+            if (median != null) {
+                return median;
+            }
+        }
+        BigDecimal neighbourPrice = neighbourPrice(estimation);
+        if (neighbourPrice != null) {
+            return neighbourPrice;
+        }
+        return rules.price(estimation);
+    }
+
+    // The loaded median, or null while it is loading or when there is none
+    private BigDecimal neighbourPrice(Estimation estimation) {
+        if (neighbours < MIN_NEIGHBOURS || estimation.getItemName() == null || estimation.getYear() == null) {
+            return null;
+        }
+        NeighbourKey key = new NeighbourKey(estimation.getItemName().trim().toLowerCase(Locale.ROOT),
+                estimation.getYear(), estimation.getConditionRating());
+        CompletableFuture<Optional<BigDecimal>> price = neighbourPrices.get(key);
+        return price.isDone() && !price.isCompletedExceptionally() ? price.join().orElse(null) : null;
+    }
+
+    // A load that fails (the database is down) is logged by the cache and not kept, so a later
+    // fallback for the item tries again
+    private Optional<BigDecimal> loadNeighbourPrice(NeighbourKey key) {
+        List<BigDecimal> prices = estimationSearchRepository.findNeighbourPrices(key.itemName(), key.year(),
+                key.conditionRating(), neighbourMinSimilarity, neighbours);
+        if (prices.size() < MIN_NEIGHBOURS) {
+            return Optional.empty();
+        }
+        List<BigDecimal> sorted = prices.stream().sorted().toList();
+        int middle = sorted.size() / 2;
+        return Optional.of(sorted.size() % 2 == 1
+                ? sorted.get(middle)
+                : sorted.get(middle - 1).add(sorted.get(middle)).divide(BigDecimal.TWO, 2, RoundingMode.HALF_UP));
+    }
+
+    public void useMarketPrices(Map<MarketKey, BigDecimal> marketPrices) {
+        this.marketPrices = Map.copyOf(marketPrices);
+    }
+
+    public String version() {
+        return rules.version();
+    }
+
+    @Scheduled(
+            fixedDelayString = "${estimation.fallback.reload-interval:30s}",
+            initialDelayString = "${estimation.fallback.reload-interval:30s}"
+    )
+    public void reloadIfChanged() {
+        long modified = lastModified();
+        if (modified == lastModified) {
+            return;
+        }
+        try {
+            FallbackPriceRules reloaded = load();
+            rules = reloaded;
+            log.info("Reloaded fallback pricing rules version {}", reloaded.version());
+        } catch (RuntimeException e) {
+            log.error("Keeping fallback pricing rules version {}, reload failed", rules.version(), e);
+        }
+        // Do not retry a broken file until it changes again
+        lastModified = modified;
+    }
+
+    private FallbackPriceRules load() {
+        try (InputStream in = rulesResource.getInputStream()) {
+            return FallbackPriceRules.load(in, objectMapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read fallback pricing rules from " + rulesResource, e);
+        }
+    }
+
+    private long lastModified() {
+        try {
+            return rulesResource.lastModified();
+        } catch (IOException e) {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.yann.smart_valuator_api.service;
+
+import java.util.Arrays;
+
+/**
+ * Gradient-boosted regression trees with squared loss, trained on histogram bins.
+ *
+ * <p>Each feature is cut into at most {@code MAX_BINS} quantile bins once before training, so
+ * finding the best split of a node is one pass over its rows to fill per-bin gradient sums and
+ * one pass over the bins. Trees are stored as flat arrays and predicting walks raw feature values,
+ * so a prediction allocates nothing.
+ */
+final class GradientBoostedPriceModel {
+
+    private static final int MAX_BINS = 32;
+
+    record Parameters(int trees, int maxDepth, double learningRate, int minLeafRows) {
+    }
+
+    private final double base;
+    private final Tree[] trees;
+
+    private GradientBoostedPriceModel(double base, Tree[] trees) {
+        this.base = base;
+        this.trees = trees;
+    }
+
+    /**
+     * Fits {@code targets} from {@code rows}; every row must have the same number of features.
+     */
+    static GradientBoostedPriceModel train(double[][] rows, double[] targets, Parameters parameters) {
+        int n = rows.length;
+        if (n == 0 || targets.length != n) {
+            throw new IllegalArgumentException("Need as many targets as rows, and at least one row");
+        }
+        int features = rows[0].length;
+
+        // Bin edges per feature and the bin of every value
+        double[][] edges = new double[features][];
+        byte[][] bins = new byte[features][n];
+        for (int f = 0; f < features; f++) {
+            edges[f] = binEdges(rows, f);
+            for (int i = 0; i < n; i++) {
+                bins[f][i] = (byte) bin(edges[f], rows[i][f]);
+            }
+        }
+
+        double base = Arrays.stream(targets).average().orElse(0);
+        double[] predictions = new double[n];
+        Arrays.fill(predictions, base);
+        double[] residuals = new double[n];
+        int[] rowIndex = new int[n];
+
+        Tree[] trees = new Tree[parameters.trees()];
+        for (int t = 0; t < trees.length; t++) {
+            for (int i = 0; i < n; i++) {
+                residuals[i] = targets[i] - predictions[i];
+                rowIndex[i] = i;
+            }
+            TreeBuilder builder = new TreeBuilder(bins, edges, residuals, parameters);
+            builder.grow(rowIndex, 0, n, 0);
+            Tree tree = builder.build(parameters.learningRate());
+            for (int i = 0; i < n; i++) {
+                predictions[i] += tree.predict(rows[i]);
+            }
+            trees[t] = tree;
+        }
+        return new GradientBoostedPriceModel(base, trees);
+    }
+
+    double predict(double[] features) {
+        double prediction = base;
+        for (Tree tree : trees) {
+            prediction += tree.predict(features);
+        }
+        return prediction;
+    }
+
+    // Upper values of the quantile bins; a value goes to the first bin whose edge is >= it
+    private static double[] binEdges(double[][] rows, int feature) {
+        double[] values = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            values[i] = rows[i][feature];
+        }
+        Arrays.sort(values);
+        double[] edges = new double[MAX_BINS];
+        int count = 0;
+        for (int b = 1; b <= MAX_BINS; b++) {
+            double edge = values[Math.min(values.length - 1, (int) ((long) b * values.length / MAX_BINS))];
+            if (count == 0 || edge > edges[count - 1]) {
+                edges[count++] = edge;
+            }
+        }
+        return Arrays.copyOf(edges, count);
+    }
+
+    private static int bin(double[] edges, double value) {
+        int index = Arrays.binarySearch(edges, value);
+        return Math.min(index >= 0 ? index : -index - 1, edges.length - 1);
+    }
+
+    // Node i splits on feature[i] <= threshold[i]; leaves have feature -1 and carry value[i]
+    private record Tree(int[] feature, double[] threshold, int[] left, int[] right, double[] value) {
+
+        double predict(double[] features) {
+            int node = 0;
+            while (feature[node] >= 0) {
+                node = features[feature[node]] <= threshold[node] ? left[node] : right[node];
+            }
+            return value[node];
+        }
+    }
+
+    private static final class TreeBuilder {
+
+        private final byte[][] bins;
+        private final double[][] edges;
+        private final double[] residuals;
+        private final Parameters parameters;
+
+        private final int[] feature;
+        private final double[] threshold;
+        private final int[] left;
+        private final int[] right;
+        private final double[] value;
+        private int nodes;
+
+        TreeBuilder(byte[][] bins, double[][] edges, double[] residuals, Parameters parameters) {
+            this.bins = bins;
+            this.edges = edges;
+            this.residuals = residuals;
+            this.parameters = parameters;
+            int maxNodes = (1 << (parameters.maxDepth() + 1)) - 1;
+            this.feature = new int[maxNodes];
+            this.threshold = new double[maxNodes];
+            this.left = new int[maxNodes];
+            this.right = new int[maxNodes];
+            this.value = new double[maxNodes];
+        }
+
+        // Grows the node for rows[from, to) and returns its index
+        int grow(int[] rows, int from, int to, int depth) {
+            int node = nodes++;
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += residuals[rows[i]];
+            }
+            int count = to - from;
+            feature[node] = -1;
+            value[node] = sum / count;
+            if (depth == parameters.maxDepth() || count < 2 * parameters.minLeafRows()) {
+                return node;
+            }
+
+            // Best split maximizes sumLeft^2 / countLeft + sumRight^2 / countRight
+            double bestGain = sum * sum / count;
+            int bestFeature = -1;
+            int bestBin = -1;
+            double[] binSums = new double[MAX_BINS];
+            int[] binCounts = new int[MAX_BINS];
+            for (int f = 0; f < bins.length; f++) {
+                Arrays.fill(binSums, 0);
+                Arrays.fill(binCounts, 0);
+                byte[] featureBins = bins[f];
+                for (int i = from; i < to; i++) {
+                    int row = rows[i];
+                    binSums[featureBins[row]] += residuals[row];
+                    binCounts[featureBins[row]]++;
+                }
+                double leftSum = 0;
+                int leftCount = 0;
+                for (int b = 0; b < edges[f].length - 1; b++) {
+                    leftSum += binSums[b];
+                    leftCount += binCounts[b];
+                    int rightCount = count - leftCount;
+                    if (leftCount < parameters.minLeafRows() || rightCount < parameters.minLeafRows()) {
+                        continue;
+                    }
+                    double rightSum = sum - leftSum;
+                    double gain = leftSum * leftSum / leftCount + rightSum * rightSum / rightCount;
+                    if (gain > bestGain + 1e-12) {
+                        bestGain = gain;
+                        bestFeature = f;
+                        bestBin = b;
+                    }
+                }
+            }
+            if (bestFeature < 0) {
+                return node;
+            }
+
+            // Partition rows in place: bins <= bestBin first
+            byte[] featureBins = bins[bestFeature];
+            int mid = from;
+            for (int i = from; i < to; i++) {
+                if (featureBins[rows[i]] <= bestBin) {
+                    int swap = rows[mid];
+                    rows[mid++] = rows[i];
+                    rows[i] = swap;
+                }
+            }
+            feature[node] = bestFeature;
+            threshold[node] = edges[bestFeature][bestBin];
+            left[node] = grow(rows, from, mid, depth + 1);
+            right[node] = grow(rows, mid, to, depth + 1);
+            return node;
+        }
+
+        Tree build(double learningRate) {
+            double[] scaled = new double[nodes];
+            for (int i = 0; i < nodes; i++) {
+                scaled[i] = value[i] * learningRate;
+            }
+            return new Tree(
+                    Arrays.copyOf(feature, nodes),
+                    Arrays.copyOf(threshold, nodes),
+                    Arrays.copyOf(left, nodes),
+                    Arrays.copyOf(right, nodes),
+                    scaled
+            );
+        }
+    }
+}
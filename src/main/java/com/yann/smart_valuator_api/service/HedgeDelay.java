@@ -0,0 +1,54 @@
+package com.yann.smart_valuator_api.service;
+
+import java.util.Arrays;
+
+/**
+ * How long to wait for the primary model before sending a hedged request: the configured
+ * percentile of its recent answer times, never below {@code minNanos}. Until enough answers
+ * have been seen, {@code initialNanos} is used.
+ */
+final class HedgeDelay {
+
+    private static final int MIN_SAMPLES = 20;
+    // The percentile is recomputed after this many new samples rather than on every request
+    private static final int REFRESH_EVERY = 16;
+
+    private final double percentile;
+    private final long minNanos;
+    private final long initialNanos;
+
+    // Ring buffer of the most recent answer times
+    private final long[] samples;
+    private int next;
+    private int recorded;
+    private int sinceRefresh;
+    private long delayNanos;
+
+    HedgeDelay(int windowSize, double percentile, long minNanos, long initialNanos) {
+        this.samples = new long[windowSize];
+        this.percentile = percentile;
+        this.minNanos = minNanos;
+        this.initialNanos = initialNanos;
+        this.delayNanos = Math.max(minNanos, initialNanos);
+    }
+
+    synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        if (recorded < samples.length) {
+            recorded++;
+        }
+        sinceRefresh++;
+        if (recorded >= Math.min(MIN_SAMPLES, samples.length) && sinceRefresh >= REFRESH_EVERY) {
+            sinceRefresh = 0;
+            long[] sorted = Arrays.copyOf(samples, recorded);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * recorded) - 1;
+            delayNanos = Math.max(minNanos, sorted[Math.clamp(index, 0, recorded - 1)]);
+        }
+    }
+
+    synchronized long nanos() {
+        return delayNanos;
+    }
+}
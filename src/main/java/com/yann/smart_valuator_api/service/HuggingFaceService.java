@@ -2,307 +2,549 @@ package com.yann.smart_valuator_api.service;
 
 import com.yann.smart_valuator_api.DTO.AiEstimationResult;
 import com.yann.smart_valuator_api.DTO.ChatCompletionRequest;
+import com.yann.smart_valuator_api.DTO.ChatCompletionResponse;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.service.EstimationMetrics.AttemptRole;
+import com.yann.smart_valuator_api.service.EstimationMetrics.FallbackReason;
+import com.yann.smart_valuator_api.service.EstimationMetrics.Stage;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
-import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+@Slf4j
 @Service
-public class HuggingFaceService {
+public class HuggingFaceService implements EstimationModel {
 
     @Value("${hf.api.key}")
     private String hfApiKey;
 
-    private static final String HF_URL =
-            "https://router.huggingface.co/v1/chat/completions";
+    // Overridable so load tests can point the service at a local stub
+    @Value("${hf.api.url:https://router.huggingface.co/v1/chat/completions}")
+    private String hfUrl;
+
+    // When true, structured estimations read the SSE stream and stop once price and description are in
+    @Value("${hf.api.stream:false}")
+    private boolean streamResponses;
+
+    // Time an estimation may spend on the model before it is answered with fallback pricing
+    @Value("${hf.resilience.latency-budget:20s}")
+    private Duration latencyBudget = Duration.ofSeconds(20);
+
+    // Default for hf.models
+    static final String MODEL = "meta-llama/Llama-3.3-70B-Instruct";
+
+    // Prefix of the sentinel returned when a call was not made; followed by the UpstreamGuard.Rejection
+    private static final String REJECTED = "UPSTREAM_REJECTED:";
+    // Returned when the call failed
+    static final String API_ERROR = "API_ERROR";
+    // Returned by a hedged call aborted because the other one answered first
+    private static final String CANCELLED = "UPSTREAM_CANCELLED";
+
+    private static final BigDecimal INTERESTING_THRESHOLD = new BigDecimal("100");
 
     private final RestTemplate restTemplate;
+    private final FallbackPricingEngine fallbackPricingEngine;
+    private final EstimationMetrics estimationMetrics;
+    private final UpstreamGuard upstreamGuard;
+    private final ModelPool modelPool;
+    private final PromptBuilder promptBuilder;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public HuggingFaceService() {
-        // Configure RestTemplate with timeouts
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(15000); // 15 seconds
-        factory.setReadTimeout(30000);    // 30 seconds
-        this.restTemplate = new RestTemplate(factory);
+    // Pooled client with timeouts from hf.http.* (see HttpClientConfig)
+    public HuggingFaceService(
+            @Qualifier("huggingFaceRestTemplate") RestTemplate restTemplate,
+            FallbackPricingEngine fallbackPricingEngine,
+            EstimationMetrics estimationMetrics,
+            UpstreamGuard upstreamGuard,
+            ModelPool modelPool,
+            PromptBuilder promptBuilder
+    ) {
+        this.restTemplate = restTemplate;
+        this.fallbackPricingEngine = fallbackPricingEngine;
+        this.estimationMetrics = estimationMetrics;
+        this.upstreamGuard = upstreamGuard;
+        this.modelPool = modelPool;
+        this.promptBuilder = promptBuilder;
     }
 
-    public String generateDescription(String productDetails) {
+    // The static helpers and parseStructuredEstimation are public so benchmarks/ can measure them in isolation
+
+    public static String productDetails(Estimation estimation) {
+        return String.format(
+                "Item: %s, Brand: %s, Category: %s, Purchase Year: %d, Condition: %d/10",
+                estimation.getItemName(),
+                estimation.getBrand(),
+                estimation.getCategory(),
+                estimation.getYear(),
+                estimation.getConditionRating()
+        );
+    }
+
+    private HttpEntity<ChatCompletionRequest> buildRequest(Estimation estimation, String model, boolean stream) {
+        return withHeaders(promptBuilder.single(estimation, model, stream));
+    }
+
+    private HttpEntity<ChatCompletionRequest> withHeaders(ChatCompletionRequest request) {
 
         HttpHeaders headers = new HttpHeaders();
         headers.setBearerAuth(hfApiKey);
         headers.setContentType(MediaType.APPLICATION_JSON);
+        if (request.stream) {
+            headers.setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+        }
 
-        String prompt = """
-            You are an expert in electronics resale valuation for the European market. Provide a realistic market price in Euros (€).
-            
-            Analyze this used electronics item and return ONLY valid JSON (no markdown):
-            
-            {
-              "description": "Brief description of item condition and market value in Europe",
-              "estimatedPrice": 450.00,
-              "currency": "EUR",
-              "verdict": "interesting"
-            }
-            
-            PRICING GUIDELINES (current used market in EUR - 2026):
-            - iPhone 15/15 Pro: 550€ - 850€
-            - iPhone 14/14 Pro: 450€ - 650€
-            - iPhone 13/13 Pro: 350€ - 500€
-            - iPhone 12/12 Pro: 250€ - 380€
-            - iPhone 11: 180€ - 280€
-            - Samsung Galaxy S23/S24: 350€ - 650€
-            - MacBook Air/Pro (M1/M2/M3): 600€ - 1300€
-            - iPad Pro (USB-C models): 400€ - 900€
-            
-            Adjust based on condition rating (multiply by rating/10).
-            Take into account battery health if provided.
-            
-            Product:
-            %s
-            
-            Return ONLY the JSON object with a realistic non-zero price in Euros.
-            """.formatted(productDetails);
-
-        ChatCompletionRequest request = new ChatCompletionRequest();
-        request.model = "meta-llama/Llama-3.3-70B-Instruct";
-        request.messages = List.of(
-                new ChatCompletionRequest.Message("user", prompt)
-        );
-        request.temperature = 0.3;
-        request.max_tokens = 500;
-
-        HttpEntity<ChatCompletionRequest> entity =
-                new HttpEntity<>(request, headers);
+        return new HttpEntity<>(request, headers);
+    }
 
-        try {
-            ResponseEntity<Map> response =
-                    restTemplate.postForEntity(HF_URL, entity, Map.class);
+    public String generateDescription(Estimation estimation) {
+        return generateDescription(estimation, modelPool.primaryModel());
+    }
 
-            Map<String, Object> body = response.getBody();
+    public String generateDescription(Estimation estimation, String model) {
 
-            if (body == null || !body.containsKey("choices")) {
-                return "API returned empty response";
-            }
+        String category = estimation.getCategory();
+        HttpEntity<ChatCompletionRequest> entity = estimationMetrics.time(Stage.PROMPT_BUILD, model, category,
+                () -> buildRequest(estimation, model, false));
+        return post(entity, model, category);
+    }
 
-            List<Map<String, Object>> choices =
-                    (List<Map<String, Object>>) body.get("choices");
+    private String post(HttpEntity<ChatCompletionRequest> entity, String model, String category) {
 
-            if (choices == null || choices.isEmpty()) {
-                return "API returned no choices";
-            }
+        UpstreamGuard.Permit permit;
+        try {
+            permit = upstreamGuard.acquire();
+        } catch (UpstreamGuard.UpstreamRejectedException e) {
+            return REJECTED + e.rejection();
+        }
 
-            Map<String, Object> message =
-                    (Map<String, Object>) choices.get(0).get("message");
+        Timer.Sample upstream = estimationMetrics.start();
+        try {
+            ResponseEntity<ChatCompletionResponse> response =
+                    restTemplate.postForEntity(hfUrl, entity, ChatCompletionResponse.class);
+            permit.success();
 
-            return message.get("content").toString().trim();
+            return messageContent(response.getBody());
 
         } catch (Exception e) {
-            System.err.println("Hugging Face API call failed: " + e.getMessage());
-            e.printStackTrace();
-            return "API_ERROR";
+            return upstreamFailure(permit, "Hugging Face API call failed", e);
+        } finally {
+            estimationMetrics.record(upstream, Stage.UPSTREAM_HTTP, model, category);
         }
     }
 
-    public AiEstimationResult generateStructuredEstimation(String productDetails) {
+    /**
+     * Prices several items with one multi-item prompt to the primary model. The result has one
+     * entry per item, in order; an entry is null when the model gave no usable price for that
+     * item, or for every item when the call itself failed.
+     */
+    public List<AiEstimationResult> generateBatchEstimation(List<Estimation> items) {
+        String model = modelPool.primaryModel();
+        // Tagged with the first item's category; a batch usually mixes several
+        String category = items.getFirst().getCategory();
+
+        String rawJson = LatencyBudget.within(latencyBudget, () -> {
+            HttpEntity<ChatCompletionRequest> entity = estimationMetrics.time(Stage.PROMPT_BUILD, model, category,
+                    () -> withHeaders(promptBuilder.batch(items, model)));
+            return post(entity, model, category);
+        });
+
+        List<AiEstimationResult> results = new ArrayList<>(Collections.nCopies(items.size(), null));
+        if (isFailure(rawJson)) {
+            return results;
+        }
+        Timer.Sample parse = estimationMetrics.start();
+        try {
+            List<StructuredOutputParser.Item> answers = StructuredOutputParser.parseArray(rawJson);
+            for (int i = 0; i < answers.size(); i++) {
+                StructuredOutputParser.Item element = answers.get(i);
+                // Trust the echoed index over the position, the model sometimes skips an item
+                int index = element.index() > 0 ? element.index() - 1 : i;
+                if (index < 0 || index >= items.size() || results.get(index) != null) {
+                    continue;
+                }
+                AiEstimationResult answer = element.result();
+                if (hasPrice(answer)) {
+                    results.set(index, complete(answer, items.get(index), model));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.atWarn().setMessage("Failed to parse multi-item AI response")
+                    .addKeyValue("items", items.size())
+                    .addKeyValue("error", e.getMessage())
+                    .log();
+        } finally {
+            estimationMetrics.record(parse, Stage.PARSE, model, category);
+        }
+        return results;
+    }
 
-        String rawJson = generateDescription(productDetails);
+    // A call cut short by the latency budget or cancelled by a hedge is reported as such rather than as
+    // an upstream error
+    private static String upstreamFailure(UpstreamGuard.Permit permit, String message, Exception e) {
+        if (UpstreamCall.cancelledOnThisThread()) {
+            permit.abandon();
+            return CANCELLED;
+        }
+        permit.failure();
+        Duration remaining = LatencyBudget.remaining();
+        if (remaining != null && remaining.toMillis() <= 0) {
+            log.warn("{}: latency budget exhausted", message);
+            return REJECTED + UpstreamGuard.Rejection.BUDGET_EXHAUSTED;
+        }
+        log.error(message, e);
+        return API_ERROR;
+    }
 
-        System.out.println("=== AI RAW RESPONSE ===");
-        System.out.println(rawJson);
-        System.out.println("=====================");
+    // Raw response for a call the guard turned away, for ReactiveHuggingFaceService
+    static String rejected(UpstreamGuard.Rejection rejection) {
+        return REJECTED + rejection;
+    }
 
-        // If API failed, use fallback immediately
-        if (rawJson.equals("API_ERROR") || rawJson.startsWith("Hugging Face error") ||
-                rawJson.startsWith("API returned")) {
-            System.out.println("API call failed, using fallback pricing");
-            return createFallbackResult(productDetails);
+    public static String messageContent(ChatCompletionResponse body) {
+        if (body == null || body.choices() == null) {
+            return "API returned empty response";
         }
 
-        String cleanedJson = extractJsonFromResponse(rawJson);
+        List<ChatCompletionResponse.Choice> choices = body.choices();
 
-        System.out.println("=== CLEANED JSON ===");
-        System.out.println(cleanedJson);
-        System.out.println("====================");
+        if (choices.isEmpty()) {
+            return "API returned no choices";
+        }
 
-        try {
-            JsonNode jsonNode = objectMapper.readTree(cleanedJson);
+        ChatCompletionResponse.Message message = choices.get(0).message();
+        if (message == null || message.content() == null) {
+            return "API returned empty response";
+        }
 
-            AiEstimationResult result = new AiEstimationResult();
+        return message.content().trim();
+    }
 
-            // Extract description
-            if (jsonNode.has("description") && !jsonNode.get("description").isNull()) {
-                result.setDescription(jsonNode.get("description").asText());
-            } else {
-                result.setDescription(generateFallbackDescription(productDetails));
-            }
+    private static String deltaContent(ChatCompletionResponse chunk) {
+        if (chunk.choices() == null || chunk.choices().isEmpty()) {
+            return "";
+        }
+        ChatCompletionResponse.Message delta = chunk.choices().get(0).delta();
+        return delta == null || delta.content() == null ? "" : delta.content();
+    }
 
-            BigDecimal price = null;
-            if (jsonNode.has("estimatedPrice")) {
-                JsonNode priceNode = jsonNode.get("estimatedPrice");
-                if (!priceNode.isNull()) {
-                    if (priceNode.isNumber()) {
-                        price = new BigDecimal(priceNode.asText());
-                    } else if (priceNode.isTextual()) {
-                        try {
-                            String priceText = priceNode.asText().replaceAll("[^0-9.]", "");
-                            price = new BigDecimal(priceText);
-                        } catch (NumberFormatException e) {
-                            price = null;
-                        }
-                    }
-                }
-            }
+    /**
+     * Streams the completion as server-sent events, handing each content delta to
+     * {@code onToken}, and stops reading as soon as the estimation JSON has both its
+     * description and its price. Returns the JSON received so far.
+     */
+    public String streamDescription(Estimation estimation, Consumer<String> onToken) {
+        return streamDescription(estimation, modelPool.primaryModel(), onToken);
+    }
 
-            if (price == null || price.compareTo(BigDecimal.ZERO) == 0) {
-                System.out.println("WARNING: AI returned zero or null price, using fallback");
-                price = estimateFallbackPrice(productDetails);
-            }
+    public String streamDescription(Estimation estimation, String model, Consumer<String> onToken) {
 
-            result.setEstimatedPrice(price);
+        String category = estimation.getCategory();
+        HttpEntity<ChatCompletionRequest> entity = estimationMetrics.time(Stage.PROMPT_BUILD, model, category,
+                () -> buildRequest(estimation, model, true));
 
-            if (jsonNode.has("verdict")) {
-                result.setVerdict(jsonNode.get("verdict").asText());
-            } else {
-                result.setVerdict(price.compareTo(new BigDecimal("100")) > 0 ? "interesting" : "not interesting");
-            }
+        UpstreamGuard.Permit permit;
+        try {
+            permit = upstreamGuard.acquire();
+        } catch (UpstreamGuard.UpstreamRejectedException e) {
+            return REJECTED + e.rejection();
+        }
 
-            System.out.println("=== PARSED RESULT ===");
-            System.out.println("Description: " + result.getDescription());
-            System.out.println("Price: €" + result.getEstimatedPrice());
-            System.out.println("Verdict: " + result.getVerdict());
-            System.out.println("=====================");
+        Timer.Sample upstream = estimationMetrics.start();
+        try {
+            String content = restTemplate.execute(hfUrl, HttpMethod.POST,
+                    restTemplate.httpEntityCallback(entity),
+                    response -> {
+                        StreamingEstimationParser parser = new StreamingEstimationParser();
+                        BufferedReader reader = new BufferedReader(
+                                new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+
+                        String line;
+                        while (!parser.isComplete() && (line = reader.readLine()) != null) {
+                            if (!line.startsWith("data:")) {
+                                continue;
+                            }
+                            String data = line.substring(5).trim();
+                            if (data.equals("[DONE]")) {
+                                break;
+                            }
+                            String token = deltaContent(objectMapper.readValue(data, ChatCompletionResponse.class));
+                            if (!token.isEmpty()) {
+                                parser.append(token);
+                                onToken.accept(token);
+                            }
+                        }
+                        // Returning closes the response, which releases the connection mid-stream
+                        return parser.isComplete() ? parser.json() : parser.text();
+                    });
+            permit.success();
 
-            return result;
+            if (content == null || content.isBlank()) {
+                return "API returned empty response";
+            }
+            return content.trim();
 
         } catch (Exception e) {
-            System.err.println("Failed to parse AI response, using fallback");
-            System.err.println("Error: " + e.getMessage());
-            return createFallbackResult(productDetails);
+            return upstreamFailure(permit, "Hugging Face streaming call failed", e);
+        } finally {
+            estimationMetrics.record(upstream, Stage.UPSTREAM_HTTP, model, category);
         }
     }
 
-    private AiEstimationResult createFallbackResult(String productDetails) {
-        AiEstimationResult result = new AiEstimationResult();
-        result.setDescription(generateFallbackDescription(productDetails));
-        result.setEstimatedPrice(estimateFallbackPrice(productDetails));
-        result.setVerdict(result.getEstimatedPrice().compareTo(new BigDecimal("100")) > 0 ? "interesting" : "not interesting");
-        return result;
+    @Override
+    public String name() {
+        return modelPool.primaryModel();
     }
 
-    private String generateFallbackDescription(String productDetails) {
-        // Extract key info
-        Pattern namePattern = Pattern.compile("Item: ([^,]+)");
-        Pattern conditionPattern = Pattern.compile("Condition: (\\d+)/10");
-        Pattern yearPattern = Pattern.compile("Purchase Year: (\\d+)");
+    @Override
+    public AiEstimationResult estimate(Estimation estimation) {
+        return generateStructuredEstimation(estimation);
+    }
 
-        Matcher nameMatcher = namePattern.matcher(productDetails);
-        Matcher conditionMatcher = conditionPattern.matcher(productDetails);
-        Matcher yearMatcher = yearPattern.matcher(productDetails);
+    public AiEstimationResult generateStructuredEstimation(Estimation estimation) {
+        return LatencyBudget.within(latencyBudget, () -> {
+            if (modelPool.hedgingEnabled()) {
+                return race(estimation);
+            }
+            String model = modelPool.primaryModel();
+            return parseStructuredEstimation(describe(estimation, model), estimation, model);
+        });
+    }
 
-        String itemName = nameMatcher.find() ? nameMatcher.group(1).trim() : "this item";
-        String condition = conditionMatcher.find() ? conditionMatcher.group(1) + "/10" : "used";
-        String year = yearMatcher.find() ? yearMatcher.group(1) : "unknown year";
+    // Not hedged: the tokens of the first call are already on their way to the client
+    public AiEstimationResult streamStructuredEstimation(Estimation estimation, Consumer<String> onToken) {
+        String model = modelPool.primaryModel();
+        return LatencyBudget.within(latencyBudget, () -> parseStructuredEstimation(
+                streamDescription(estimation, model, onToken),
+                estimation, model));
+    }
 
-        return String.format("A %s from %s in %s condition. Based on current European market analysis, " +
-                        "this item retains reasonable resale value in the used electronics market.",
-                itemName, year, condition);
+    private String describe(Estimation estimation, String model) {
+        return streamResponses
+                ? streamDescription(estimation, model, token -> { })
+                : generateDescription(estimation, model);
+    }
+
+    // One model call of a race; answer is null unless the model gave a usable price
+    private record Attempt(String model, AttemptRole role, String rawJson, AiEstimationResult answer) {
     }
 
     /**
-     * Fallback price estimation based on European market (EUR)
+     * Asks the primary model and, if it has no usable answer within the hedge delay, the hedge
+     * model too. The first usable answer wins and the other call is aborted. A primary that fails
+     * within the delay is not hedged. When neither answers, the primary's response decides the
+     * fallback reason.
      */
-    private BigDecimal estimateFallbackPrice(String productDetails) {
-        String lower = productDetails.toLowerCase();
-
-        double conditionMultiplier = 0.7; // default
-        Pattern conditionPattern = Pattern.compile("condition[:\\s]+(\\d+)/10");
-        Matcher matcher = conditionPattern.matcher(lower);
-        if (matcher.find()) {
-            conditionMultiplier = Integer.parseInt(matcher.group(1)) / 10.0;
+    private AiEstimationResult race(Estimation estimation) {
+        BlockingQueue<Attempt> finished = new LinkedBlockingQueue<>();
+        List<UpstreamCall> calls = new ArrayList<>(2);
+        try {
+            start(modelPool.primaryModel(), AttemptRole.PRIMARY, estimation, calls, finished);
+            Attempt primary = finished.poll(modelPool.hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+            // Only a slow primary is hedged: a fast failure would double the calls to an upstream that is failing
+            if (primary != null) {
+                return settle(primary, estimation);
+            }
+
+            start(modelPool.hedgeModel(), AttemptRole.HEDGE, estimation, calls, finished);
+            for (int pending = 2; pending > 0; pending--) {
+                Attempt attempt = finished.take();
+                if (attempt.answer() != null) {
+                    return settle(attempt, estimation);
+                }
+                if (attempt.role() == AttemptRole.PRIMARY) {
+                    primary = attempt;
+                }
+            }
+            return parseStructuredEstimation(primary.rawJson(), estimation, primary.model());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return createFallbackResult(estimation, FallbackReason.API_ERROR, modelPool.primaryModel());
+        } finally {
+            calls.forEach(UpstreamCall::cancel);
         }
+    }
+
+    private void start(
+            String model,
+            AttemptRole role,
+            Estimation estimation,
+            List<UpstreamCall> calls,
+            BlockingQueue<Attempt> finished
+    ) {
+        UpstreamCall call = new UpstreamCall();
+        calls.add(call);
+        estimationMetrics.attempt(model, role);
+        Supplier<Attempt> work = LatencyBudget.propagate(
+                () -> call.run(() -> attempt(model, role, estimation)));
+        modelPool.executor().execute(() -> {
+            try {
+                finished.add(work.get());
+            } catch (RuntimeException e) {
+                log.error("Hugging Face call for {} failed", model, e);
+                finished.add(new Attempt(model, role, API_ERROR, null));
+            }
+        });
+    }
 
-        BigDecimal basePrice;
-
-        // Prices in EUR for European market (2026)
-        if (lower.contains("iphone")) {
-            if (lower.contains("15") || lower.contains("16")) basePrice = new BigDecimal("650");
-            else if (lower.contains("14")) basePrice = new BigDecimal("500");
-            else if (lower.contains("13")) basePrice = new BigDecimal("380");
-            else if (lower.contains("12")) basePrice = new BigDecimal("280");
-            else if (lower.contains("11")) basePrice = new BigDecimal("200");
-            else if (lower.contains("x") || lower.contains("10")) basePrice = new BigDecimal("170");
-            else basePrice = new BigDecimal("140");
+    // A primary aborted because the hedge won took at least as long as it ran; recording that lower bound
+    // keeps the delay from being computed from the fast answers alone, which would drag it down
+    private Attempt attempt(String model, AttemptRole role, Estimation estimation) {
+        long started = System.nanoTime();
+        String rawJson = describe(estimation, model);
+        AiEstimationResult answer = usableAnswer(rawJson, model, estimation.getCategory());
+        if (role == AttemptRole.PRIMARY && (answer != null || rawJson.equals(CANCELLED))) {
+            modelPool.recordPrimaryLatency(System.nanoTime() - started);
         }
-        else if (lower.contains("samsung") || lower.contains("galaxy")) {
-            if (lower.contains("s24") || lower.contains("s23")) basePrice = new BigDecimal("470");
-            else if (lower.contains("s22") || lower.contains("s21")) basePrice = new BigDecimal("320");
-            else basePrice = new BigDecimal("180");
+        return new Attempt(model, role, rawJson, answer);
+    }
+
+    // Failures are left for parseStructuredEstimation to log and count once the race is decided
+    private AiEstimationResult usableAnswer(String rawJson, String model, String category) {
+        if (isFailure(rawJson)) {
+            return null;
         }
-        else if (lower.contains("macbook")) {
-            if (lower.contains("pro")) basePrice = new BigDecimal("850");
-            else basePrice = new BigDecimal("550");
+        try {
+            AiEstimationResult answer = estimationMetrics.time(Stage.PARSE, model, category,
+                    () -> StructuredOutputParser.parse(rawJson));
+            return hasPrice(answer) ? answer : null;
+        } catch (RuntimeException e) {
+            return null;
         }
-        else if (lower.contains("laptop")) {
-            basePrice = new BigDecimal("370");
+    }
+
+    private AiEstimationResult settle(Attempt winner, Estimation estimation) {
+        if (winner.answer() == null) {
+            return parseStructuredEstimation(winner.rawJson(), estimation, winner.model());
         }
-        else if (lower.contains("ipad")) {
-            if (lower.contains("pro")) basePrice = new BigDecimal("470");
-            else basePrice = new BigDecimal("280");
+        estimationMetrics.win(winner.model(), winner.role());
+        return complete(winner.answer(), estimation, winner.model());
+    }
+
+    public AiEstimationResult parseStructuredEstimation(String rawJson, Estimation estimation) {
+        return parseStructuredEstimation(rawJson, estimation, modelPool.primaryModel());
+    }
+
+    private AiEstimationResult parseStructuredEstimation(String rawJson, Estimation estimation, String model) {
+        String category = estimation.getCategory();
+        log.debug("AI raw response: {}", rawJson);
+
+        // Not attempted: the guard turned the call away or the latency budget ran out
+        if (rawJson.startsWith(REJECTED)) {
+            FallbackReason reason = FallbackReason.valueOf(rawJson.substring(REJECTED.length()));
+            log.atWarn().setMessage("AI call skipped, using fallback pricing")
+                    .addKeyValue("category", category)
+                    .addKeyValue("reason", reason)
+                    .log();
+            return createFallbackResult(estimation, reason, model);
         }
-        else if (lower.contains("tablet")) {
-            basePrice = new BigDecimal("180");
+
+        // If API failed, use fallback immediately
+        if (isFailure(rawJson)) {
+            log.atWarn().setMessage("AI call failed, using fallback pricing")
+                    .addKeyValue("category", category)
+                    .addKeyValue("response", rawJson)
+                    .log();
+            return createFallbackResult(estimation, FallbackReason.API_ERROR, model);
         }
-        else if (lower.contains("watch")) basePrice = new BigDecimal("230");
-        else if (lower.contains("airpods")) basePrice = new BigDecimal("90");
-        else if (lower.contains("console") || lower.contains("playstation") || lower.contains("xbox")) {
-            basePrice = new BigDecimal("320");
+
+        AiEstimationResult result;
+        Timer.Sample parse = estimationMetrics.start();
+        try {
+            result = StructuredOutputParser.parse(rawJson);
+        } catch (Exception e) {
+            log.atWarn().setMessage("Failed to parse AI response, using fallback pricing")
+                    .addKeyValue("category", category)
+                    .addKeyValue("error", e.getMessage())
+                    .log();
+            return createFallbackResult(estimation, FallbackReason.PARSE_FAILURE, model);
+        } finally {
+            estimationMetrics.record(parse, Stage.PARSE, model, category);
         }
-        else {
-            basePrice = new BigDecimal("140");
+
+        return complete(result, estimation, model);
+    }
+
+    // Fills in whatever the model left out; a missing or zero price comes from the fallback rules
+    private AiEstimationResult complete(AiEstimationResult result, Estimation estimation, String model) {
+        String category = estimation.getCategory();
+        if (result.getDescription() == null) {
+            result.setDescription(generateFallbackDescription(estimation));
+        }
+
+        BigDecimal price = result.getEstimatedPrice();
+        if (!hasPrice(result)) {
+            log.atWarn().setMessage("AI returned zero or no price, using fallback pricing")
+                    .addKeyValue("category", category)
+                    .log();
+            estimationMetrics.fallback(FallbackReason.ZERO_PRICE, model, category);
+            price = estimationMetrics.time(Stage.FALLBACK, model, category,
+                    () -> fallbackPricingEngine.price(estimation));
+            result.setEstimatedPrice(price);
+            result.setFallback(true);
+        }
+
+        if (result.getVerdict() == null) {
+            result.setVerdict(price.compareTo(INTERESTING_THRESHOLD) > 0 ? "interesting" : "not interesting");
         }
 
-        BigDecimal adjustedPrice = basePrice.multiply(new BigDecimal(conditionMultiplier));
+        log.atDebug().setMessage("Parsed AI estimation")
+                .addKeyValue("price", result.getEstimatedPrice())
+                .addKeyValue("verdict", result.getVerdict())
+                .addKeyValue("fallback", result.isFallback())
+                .log();
 
-        return adjustedPrice.setScale(2, BigDecimal.ROUND_HALF_UP);
+        return result;
     }
 
-    private String extractJsonFromResponse(String response) {
-        String cleaned = response
-                .replaceAll("```json\\s*", "")
-                .replaceAll("```\\s*", "")
-                .trim();
+    private static boolean isFailure(String rawJson) {
+        return rawJson.startsWith(REJECTED) || rawJson.equals(CANCELLED) || rawJson.equals(API_ERROR)
+                || rawJson.startsWith("Hugging Face error") || rawJson.startsWith("API returned");
+    }
 
-        Pattern jsonPattern = Pattern.compile(
-                "\\{(?:[^{}]|\\{[^{}]*\\})*\\}",
-                Pattern.DOTALL
-        );
-        Matcher matcher = jsonPattern.matcher(cleaned);
+    private static boolean hasPrice(AiEstimationResult result) {
+        BigDecimal price = result.getEstimatedPrice();
+        return price != null && price.compareTo(BigDecimal.ZERO) != 0;
+    }
 
-        if (matcher.find()) {
-            String json = matcher.group().trim();
-            int lastBrace = json.lastIndexOf('}');
-            if (lastBrace > 0) {
-                json = json.substring(0, lastBrace + 1);
-            }
-            return json;
-        }
+    private AiEstimationResult createFallbackResult(Estimation estimation, FallbackReason reason, String model) {
+        estimationMetrics.fallback(reason, model, estimation.getCategory());
+        Timer.Sample sample = estimationMetrics.start();
+
+        AiEstimationResult result = new AiEstimationResult();
+        result.setDescription(generateFallbackDescription(estimation));
+        result.setEstimatedPrice(fallbackPricingEngine.price(estimation));
+        result.setVerdict(result.getEstimatedPrice().compareTo(INTERESTING_THRESHOLD) > 0 ? "interesting" : "not interesting");
+        result.setFallback(true);
 
-        cleaned = cleaned.replaceAll("^[^{]*", "");
-        cleaned = cleaned.replaceAll("[^}]*$", "");
+        estimationMetrics.record(sample, Stage.FALLBACK, model, estimation.getCategory());
+        return result;
+    }
 
-        if (cleaned.startsWith("{") && cleaned.endsWith("}")) {
-            return cleaned;
-        }
+    private String generateFallbackDescription(Estimation estimation) {
+        String itemName = estimation.getItemName() == null || estimation.getItemName().isBlank()
+                ? "this item" : estimation.getItemName().trim();
+        String condition = estimation.getConditionRating() != null ? estimation.getConditionRating() + "/10" : "used";
+        String year = estimation.getYear() != null ? estimation.getYear().toString() : "unknown year";
 
-        return cleaned;
+        return String.format("A %s from %s in %s condition. Based on current European market analysis, " +
+                        "this item retains reasonable resale value in the used electronics market.",
+                itemName, year, condition);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package com.yann.smart_valuator_api.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers events to subscribers in this JVM only, on the publishing thread. Enough for a single
+ * node, and lets tests stand in for several nodes by subscribing several caches.
+ */
+@Component
+@ConditionalOnProperty(name = "estimation.entity-cache.invalidation", havingValue = "in-process", matchIfMissing = true)
+public class InProcessInvalidationChannel implements EstimationInvalidationChannel {
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(long id) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.invalidated(id);
+        }
+    }
+
+    @Override
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+}
@@ -0,0 +1,73 @@
+package com.yann.smart_valuator_api.service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Deadline for the estimation running on the current thread. The upstream HTTP client reads it
+ * to cap its timeouts (see HttpClientConfig), so a slow model call gives up in time to answer
+ * with fallback pricing instead of running into the client's own timeout.
+ */
+public final class LatencyBudget {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private LatencyBudget() {
+    }
+
+    /**
+     * Runs {@code work} with a deadline {@code budget} from now. A deadline already set by an
+     * enclosing call is kept, so nested calls share the outer budget.
+     */
+    public static <T> T within(Duration budget, Supplier<T> work) {
+        if (DEADLINE.get() != null) {
+            return work.get();
+        }
+        DEADLINE.set(System.nanoTime() + budget.toNanos());
+        try {
+            return work.get();
+        } finally {
+            DEADLINE.remove();
+        }
+    }
+
+    /**
+     * Wraps {@code work} so that it runs under the current thread's deadline on whichever thread
+     * executes it.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> work) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return work;
+        }
+        return () -> until(deadline, work);
+    }
+
+    /**
+     * Runs {@code work} under {@code deadline}, a {@link System#nanoTime()} value taken from
+     * {@link #deadline()} on another thread.
+     */
+    static <T> T until(long deadline, Supplier<T> work) {
+        DEADLINE.set(deadline);
+        try {
+            return work.get();
+        } finally {
+            DEADLINE.remove();
+        }
+    }
+
+    /**
+     * The current thread's deadline in {@link System#nanoTime()} terms, or null when none is set.
+     */
+    static Long deadline() {
+        return DEADLINE.get();
+    }
+
+    /**
+     * Time left before the deadline, possibly negative, or null when none is set.
+     */
+    public static Duration remaining() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? null : Duration.ofNanos(deadline - System.nanoTime());
+    }
+}
@@ -0,0 +1,158 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import com.yann.smart_valuator_api.service.EstimationMetrics.FallbackReason;
+import com.yann.smart_valuator_api.service.EstimationMetrics.Stage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * In-process price model: gradient-boosted trees over the log price of our own estimation history,
+ * retrained periodically. Answers in microseconds and needs no network, but only for items similar
+ * to ones already priced (see {@link #covers}); other items get the fallback pricing rules.
+ */
+@Slf4j
+@Component
+public class LocalEstimationModel implements EstimationModel {
+
+    public static final String NAME = "local-gbm";
+
+    private static final BigDecimal INTERESTING_THRESHOLD = new BigDecimal("100");
+
+    private record Trained(GradientBoostedPriceModel model, PriceFeatures features, int rows) {
+    }
+
+    private final EstimationJdbcRepository estimationJdbcRepository;
+    private final FallbackPricingEngine fallbackPricingEngine;
+    private final EstimationMetrics estimationMetrics;
+    private final boolean enabled;
+    private final int maxTrainingRows;
+    private final int minTrainingRows;
+    private final GradientBoostedPriceModel.Parameters parameters;
+
+    private volatile Trained trained;
+
+    public LocalEstimationModel(
+            EstimationJdbcRepository estimationJdbcRepository,
+            FallbackPricingEngine fallbackPricingEngine,
+            EstimationMetrics estimationMetrics,
+            @Value("${estimation.local-model.enabled:true}") boolean enabled,
+            @Value("${estimation.local-model.max-training-rows:50000}") int maxTrainingRows,
+            @Value("${estimation.local-model.min-training-rows:200}") int minTrainingRows,
+            @Value("${estimation.local-model.trees:150}") int trees,
+            @Value("${estimation.local-model.max-depth:4}") int maxDepth,
+            @Value("${estimation.local-model.learning-rate:0.1}") double learningRate,
+            @Value("${estimation.local-model.min-leaf-rows:10}") int minLeafRows
+    ) {
+        this.estimationJdbcRepository = estimationJdbcRepository;
+        this.fallbackPricingEngine = fallbackPricingEngine;
+        this.estimationMetrics = estimationMetrics;
+        this.enabled = enabled;
+        this.maxTrainingRows = maxTrainingRows;
+        this.minTrainingRows = minTrainingRows;
+        this.parameters = new GradientBoostedPriceModel.Parameters(trees, maxDepth, learningRate, minLeafRows);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    public boolean isTrained() {
+        return trained != null;
+    }
+
+    /**
+     * True when the model is trained and has seen enough items like this one to be trusted.
+     */
+    public boolean covers(Estimation estimation) {
+        Trained current = trained;
+        return current != null && current.features().knows(estimation);
+    }
+
+    @Override
+    public AiEstimationResult estimate(Estimation estimation) {
+        String category = estimation.getCategory();
+        Trained current = trained;
+        if (current == null || !current.features().knows(estimation)) {
+            return fallback(estimation);
+        }
+
+        BigDecimal price = estimationMetrics.time(Stage.LOCAL_MODEL, NAME, category, () -> {
+            double logPrice = current.model().predict(current.features().extract(estimation));
+            return BigDecimal.valueOf(Math.exp(logPrice)).setScale(2, RoundingMode.HALF_UP);
+        });
+
+        AiEstimationResult result = new AiEstimationResult();
+        result.setEstimatedPrice(price);
+        result.setDescription(String.format(
+                "Estimated from %d past valuations of similar %s items in %s condition.",
+                current.rows(),
+                category == null ? "used" : category,
+                estimation.getConditionRating() == null ? "used" : estimation.getConditionRating() + "/10"));
+        result.setVerdict(price.compareTo(INTERESTING_THRESHOLD) > 0 ? "interesting" : "not interesting");
+        return result;
+    }
+
+    @Scheduled(
+            fixedDelayString = "${estimation.local-model.retrain-interval:1h}",
+            initialDelayString = "${estimation.local-model.initial-delay:15s}"
+    )
+    public void retrain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            train(estimationJdbcRepository.findTrainingRows(maxTrainingRows));
+        } catch (RuntimeException e) {
+            log.error("Local price model training failed, keeping the previous model", e);
+        }
+    }
+
+    // Package-private so tests can train from a fixed history instead of the database
+    void train(List<Estimation> history) {
+        if (history.size() < minTrainingRows) {
+            log.info("Local price model not trained: {} priced estimations, {} needed",
+                    history.size(), minTrainingRows);
+            return;
+        }
+        long started = System.nanoTime();
+        double[] targets = new double[history.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = Math.log(history.get(i).getEstimatedPrice().doubleValue());
+        }
+        PriceFeatures features = PriceFeatures.fit(history, targets);
+        double[][] rows = new double[history.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = features.extract(history.get(i));
+        }
+        trained = new Trained(GradientBoostedPriceModel.train(rows, targets, parameters), features, rows.length);
+
+        log.atInfo().setMessage("Trained local price model")
+                .addKeyValue("rows", rows.length)
+                .addKeyValue("trees", parameters.trees())
+                .addKeyValue("millis", (System.nanoTime() - started) / 1_000_000)
+                .log();
+    }
+
+    private AiEstimationResult fallback(Estimation estimation) {
+        estimationMetrics.fallback(FallbackReason.LOCAL_MODEL_MISS, NAME, estimation.getCategory());
+        BigDecimal price = estimationMetrics.time(Stage.FALLBACK, NAME, estimation.getCategory(),
+                () -> fallbackPricingEngine.price(estimation));
+
+        AiEstimationResult result = new AiEstimationResult();
+        result.setEstimatedPrice(price);
+        result.setDescription("Priced from reference prices for this kind of item; no similar past valuations were found.");
+        result.setVerdict(price.compareTo(INTERESTING_THRESHOLD) > 0 ? "interesting" : "not interesting");
+        result.setFallback(true);
+        return result;
+    }
+}
@@ -0,0 +1,71 @@
+package com.yann.smart_valuator_api.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Models an estimation may be sent to, from {@code hf.models}, and when to hedge. The first model
+ * is asked first; when it has not given a usable answer within the hedge delay, the same prompt
+ * is sent to the second model (or again to the first when only one is configured) and whichever
+ * answers first is used.
+ */
+@Component
+public class ModelPool implements AutoCloseable {
+
+    private final List<String> models;
+    private final boolean hedgingEnabled;
+    private final HedgeDelay hedgeDelay;
+    // Racing calls block on I/O for seconds, so each gets its own virtual thread
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ModelPool(
+            @Value("${hf.models:" + HuggingFaceService.MODEL + "}") List<String> models,
+            @Value("${hf.hedge.enabled:true}") boolean hedgingEnabled,
+            @Value("${hf.hedge.percentile:0.95}") double percentile,
+            @Value("${hf.hedge.window-size:500}") int windowSize,
+            @Value("${hf.hedge.min-delay:500ms}") Duration minDelay,
+            @Value("${hf.hedge.initial-delay:5s}") Duration initialDelay
+    ) {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("hf.models needs at least one model");
+        }
+        this.models = List.copyOf(models);
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgeDelay = new HedgeDelay(windowSize, percentile, minDelay.toNanos(), initialDelay.toNanos());
+    }
+
+    public String primaryModel() {
+        return models.getFirst();
+    }
+
+    public String hedgeModel() {
+        return models.size() > 1 ? models.get(1) : models.getFirst();
+    }
+
+    public boolean hedgingEnabled() {
+        return hedgingEnabled;
+    }
+
+    long hedgeDelayNanos() {
+        return hedgeDelay.nanos();
+    }
+
+    // Only answers from the primary model shape the delay, since it is the one being hedged
+    void recordPrimaryLatency(long nanos) {
+        hedgeDelay.record(nanos);
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
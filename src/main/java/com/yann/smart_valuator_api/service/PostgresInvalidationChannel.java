@@ -0,0 +1,109 @@
+package com.yann.smart_valuator_api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Invalidation over PostgreSQL {@code LISTEN}/{@code NOTIFY}, so every node sharing the database
+ * hears about every change without extra infrastructure. One pooled connection per node is held
+ * for listening. After that connection drops, subscribers are told events may have been missed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "estimation.entity-cache.invalidation", havingValue = "postgres")
+public class PostgresInvalidationChannel implements EstimationInvalidationChannel, AutoCloseable {
+
+    static final String CHANNEL = "estimation_invalidation";
+
+    private static final int POLL_MILLIS = 1_000;
+    private static final long RECONNECT_MILLIS = 1_000;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread listener;
+
+    private volatile boolean closed;
+
+    public PostgresInvalidationChannel(DataSource dataSource, JdbcTemplate jdbcTemplate) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.listener = Thread.ofPlatform().daemon().name("estimation-invalidation-listener").start(this::listen);
+    }
+
+    @Override
+    public void publish(long id) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, Long.toString(id));
+    }
+
+    @Override
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    private void listen() {
+        boolean connectedBefore = false;
+        while (!closed) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (connectedBefore) {
+                    subscribers.forEach(Subscriber::missedInvalidations);
+                }
+                connectedBefore = true;
+
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                while (!closed) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        dispatch(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (closed) {
+                    return;
+                }
+                log.warn("Lost the estimation invalidation listener connection, reconnecting", e);
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(String payload) {
+        long id;
+        try {
+            id = Long.parseLong(payload);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring estimation invalidation with payload '{}'", payload);
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.invalidated(id);
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        listener.join(POLL_MILLIS * 2L);
+    }
+}
@@ -0,0 +1,79 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.PriceHistory;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.Bucket;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.Filter;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.GroupBy;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.Rollup;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Price history read from the rollups kept by {@link EstimationRollupService}.
+ */
+@Service
+@AllArgsConstructor
+public class PriceAnalyticsService {
+
+    private final EstimationRollupRepository estimationRollupRepository;
+    private final EstimationRollupService estimationRollupService;
+
+    /**
+     * Statistics of the estimations created in {@code [from, to]} matching {@code filter}.
+     * {@code percentiles} are between 0 and 100.
+     */
+    public PriceHistory priceHistory(Filter filter, LocalDate from, LocalDate to, Bucket bucket, GroupBy groupBy,
+                                     List<Double> percentiles) {
+        List<Rollup> rollups = estimationRollupRepository.findRollups(filter, from, to.plusDays(1), bucket, groupBy,
+                estimationRollupService.monthlyUntil());
+
+        List<PriceHistory.Point> points = new ArrayList<>();
+        PriceHistogram histogram = null;
+        Rollup first = null;
+        for (Rollup rollup : rollups) {
+            if (first == null || !first.bucket().equals(rollup.bucket()) || !Objects.equals(first.group(), rollup.group())) {
+                if (first != null) {
+                    points.add(point(first, histogram, percentiles));
+                }
+                first = rollup;
+                histogram = new PriceHistogram();
+            }
+            histogram.add(rollup.prices());
+        }
+        if (first != null) {
+            points.add(point(first, histogram, percentiles));
+        }
+        return new PriceHistory(
+                bucket.name().toLowerCase(Locale.ROOT),
+                groupBy == GroupBy.NONE ? null : groupBy.name().toLowerCase(Locale.ROOT),
+                points
+        );
+    }
+
+    private static PriceHistory.Point point(Rollup first, PriceHistogram histogram, List<Double> percentiles) {
+        Map<String, BigDecimal> values = new LinkedHashMap<>();
+        for (double percentile : percentiles) {
+            values.put("p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString(),
+                    histogram.percentile(percentile));
+        }
+        return new PriceHistory.Point(
+                first.bucket(),
+                first.group(),
+                histogram.count(),
+                histogram.average(),
+                histogram.min(),
+                histogram.max(),
+                values
+        );
+    }
+}
@@ -0,0 +1,161 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns an item into the numeric features of the local price model. Category, brand and name
+ * tokens are replaced by the smoothed mean log price of past items sharing them (target
+ * encoding), which lets a tree split on "what such items usually cost" rather than on ids.
+ */
+final class PriceFeatures {
+
+    static final int COUNT = 8;
+
+    // Pseudo-count pulling rare values towards the overall mean
+    private static final double SMOOTHING = 10;
+    // A token or category needs this many past items to be trusted
+    private static final int MIN_OCCURRENCES = 5;
+
+    private final double globalMean;
+    private final Map<String, Encoding> categories;
+    private final Map<String, Encoding> brands;
+    private final Map<String, Encoding> tokens;
+
+    private record Encoding(double value, int count) {
+    }
+
+    private PriceFeatures(
+            double globalMean,
+            Map<String, Encoding> categories,
+            Map<String, Encoding> brands,
+            Map<String, Encoding> tokens
+    ) {
+        this.globalMean = globalMean;
+        this.categories = categories;
+        this.brands = brands;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Learns the encodings from past items; {@code targets[i]} is the log price of {@code history.get(i)}.
+     */
+    static PriceFeatures fit(List<Estimation> history, double[] targets) {
+        double sum = 0;
+        for (double target : targets) {
+            sum += target;
+        }
+        double globalMean = sum / targets.length;
+
+        Map<String, double[]> categorySums = new HashMap<>();
+        Map<String, double[]> brandSums = new HashMap<>();
+        Map<String, double[]> tokenSums = new HashMap<>();
+        for (int i = 0; i < targets.length; i++) {
+            Estimation item = history.get(i);
+            accumulate(categorySums, normalize(item.getCategory()), targets[i]);
+            accumulate(brandSums, normalize(item.getBrand()), targets[i]);
+            for (String token : tokens(item.getItemName())) {
+                accumulate(tokenSums, token, targets[i]);
+            }
+        }
+        return new PriceFeatures(
+                globalMean,
+                encode(categorySums, globalMean, 1),
+                encode(brandSums, globalMean, 1),
+                encode(tokenSums, globalMean, MIN_OCCURRENCES)
+        );
+    }
+
+    /**
+     * True when the category is well known and at least one word of the name is, which is when
+     * the model's answer is worth more than the fallback rules.
+     */
+    boolean knows(Estimation item) {
+        Encoding category = categories.get(normalize(item.getCategory()));
+        if (category == null || category.count() < MIN_OCCURRENCES) {
+            return false;
+        }
+        for (String token : tokens(item.getItemName())) {
+            if (tokens.containsKey(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    double[] extract(Estimation item) {
+        double[] features = new double[COUNT];
+        int referenceYear = (item.getCreatedAt() != null ? item.getCreatedAt() : LocalDateTime.now()).getYear();
+        features[0] = item.getYear() == null ? -1 : referenceYear - item.getYear();
+        features[1] = item.getConditionRating() == null ? -1 : item.getConditionRating();
+        features[2] = valueOf(categories, normalize(item.getCategory()));
+        features[3] = valueOf(brands, normalize(item.getBrand()));
+
+        double tokenSum = 0;
+        double tokenMin = Double.POSITIVE_INFINITY;
+        double tokenMax = Double.NEGATIVE_INFINITY;
+        int known = 0;
+        for (String token : tokens(item.getItemName())) {
+            Encoding encoding = tokens.get(token);
+            if (encoding != null) {
+                tokenSum += encoding.value();
+                tokenMin = Math.min(tokenMin, encoding.value());
+                tokenMax = Math.max(tokenMax, encoding.value());
+                known++;
+            }
+        }
+        features[4] = known == 0 ? globalMean : tokenSum / known;
+        features[5] = known == 0 ? globalMean : tokenMin;
+        features[6] = known == 0 ? globalMean : tokenMax;
+        features[7] = known;
+        return features;
+    }
+
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private double valueOf(Map<String, Encoding> encodings, String key) {
+        Encoding encoding = encodings.get(key);
+        return encoding == null ? globalMean : encoding.value();
+    }
+
+    private static void accumulate(Map<String, double[]> sums, String key, double target) {
+        if (key.isEmpty()) {
+            return;
+        }
+        double[] entry = sums.computeIfAbsent(key, k -> new double[2]);
+        entry[0] += target;
+        entry[1]++;
+    }
+
+    private static Map<String, Encoding> encode(Map<String, double[]> sums, double globalMean, int minCount) {
+        Map<String, Encoding> encodings = new HashMap<>();
+        sums.forEach((key, entry) -> {
+            if (entry[1] >= minCount) {
+                encodings.put(key, new Encoding(
+                        (entry[0] + SMOOTHING * globalMean) / (entry[1] + SMOOTHING), (int) entry[1]));
+            }
+        });
+        return encodings;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,98 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.PriceBins;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Merges rollup price histograms into count, average, min, max and percentiles. Bins are about
+ * 5% wide on a log scale (see {@code V1__baseline.sql}) and carry their own min and max, so a percentile
+ * is interpolated between the real extremes of its bin and is exact at 0 and 100.
+ */
+final class PriceHistogram {
+
+    // Sorted by bin; a histogram rarely has more than a few dozen
+    private int size;
+    private int[] bins = new int[16];
+    private long[] counts = new long[16];
+    private BigDecimal[] mins = new BigDecimal[16];
+    private BigDecimal[] maxs = new BigDecimal[16];
+    private long count;
+    private BigDecimal sum = BigDecimal.ZERO;
+
+    void add(PriceBins prices) {
+        sum = sum.add(prices.sum());
+        for (int i = 0; i < prices.bins().length; i++) {
+            add(prices.bins()[i], prices.counts()[i], prices.mins()[i], prices.maxs()[i]);
+        }
+    }
+
+    private void add(int bin, long binCount, BigDecimal binMin, BigDecimal binMax) {
+        count += binCount;
+        int at = Arrays.binarySearch(bins, 0, size, bin);
+        if (at >= 0) {
+            counts[at] += binCount;
+            mins[at] = mins[at].min(binMin);
+            maxs[at] = maxs[at].max(binMax);
+            return;
+        }
+        at = -at - 1;
+        if (size == bins.length) {
+            int capacity = size * 2;
+            bins = Arrays.copyOf(bins, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxs = Arrays.copyOf(maxs, capacity);
+        }
+        System.arraycopy(bins, at, bins, at + 1, size - at);
+        System.arraycopy(counts, at, counts, at + 1, size - at);
+        System.arraycopy(mins, at, mins, at + 1, size - at);
+        System.arraycopy(maxs, at, maxs, at + 1, size - at);
+        bins[at] = bin;
+        counts[at] = binCount;
+        mins[at] = binMin;
+        maxs[at] = binMax;
+        size++;
+    }
+
+    long count() {
+        return count;
+    }
+
+    BigDecimal average() {
+        return count == 0 ? null : sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP);
+    }
+
+    BigDecimal min() {
+        return size == 0 ? null : mins[0];
+    }
+
+    BigDecimal max() {
+        return size == 0 ? null : maxs[size - 1];
+    }
+
+    /**
+     * The price below which {@code percentile} percent of the prices fall, 0 to 100.
+     */
+    BigDecimal percentile(double percentile) {
+        if (count == 0) {
+            return null;
+        }
+        // 0-based rank, as with linear interpolation between closest ranks
+        double rank = percentile / 100 * (count - 1);
+        long before = 0;
+        int i = 0;
+        while (i < size - 1 && rank >= before + counts[i]) {
+            before += counts[i];
+            i++;
+        }
+        if (counts[i] == 1) {
+            return mins[i];
+        }
+        double fraction = Math.min(1, (rank - before) / (counts[i] - 1));
+        BigDecimal spread = maxs[i].subtract(mins[i]);
+        return mins[i].add(spread.multiply(BigDecimal.valueOf(fraction))).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,214 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.ChatCompletionRequest;
+import com.yann.smart_valuator_api.entity.Estimation;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the chat completion requests sent to the model from the templates under
+ * {@code hf.prompt.location}.
+ *
+ * <p>Instructions that never change go first, as the system message, so providers that cache
+ * prompt prefixes can reuse them across every call. The user message then carries only the
+ * pricing guideline lines for the item's category and brand, followed by the item itself.
+ * {@code max_tokens} comes from the per-category table in {@code guidelines.json}.
+ */
+@Component
+public class PromptBuilder {
+
+    record GuidelinesFile(
+            String header,
+            List<Guideline> guidelines,
+            Map<String, Integer> maxTokens,
+            int batchItemMaxTokens,
+            int batchBaseMaxTokens
+    ) {
+    }
+
+    record Guideline(String category, List<String> brands, String line) {
+    }
+
+    private static final double TEMPERATURE = 0.3;
+    private static final String DEFAULT = "default";
+    // Guideline blocks are cached per category and brand; both come from user input, so the cache is capped
+    private static final int MAX_CACHED_BLOCKS = 1024;
+
+    private final String singleSystem;
+    private final String batchSystem;
+    private final PromptTemplate singleUser;
+    private final PromptTemplate batchUser;
+    private final GuidelinesFile guidelines;
+    private final String allGuidelines;
+    private final Map<String, String> guidelineBlocks = new ConcurrentHashMap<>();
+    private final DistributionSummary singleTokens;
+    private final DistributionSummary batchTokens;
+
+    public PromptBuilder(
+            ResourceLoader resourceLoader,
+            ObjectMapper objectMapper,
+            MeterRegistry registry,
+            @Value("${hf.prompt.location:classpath:prompts/}") String location
+    ) {
+        this.singleSystem = read(resourceLoader, location + "single-system.txt");
+        this.batchSystem = read(resourceLoader, location + "batch-system.txt");
+        this.singleUser = PromptTemplate.compile(read(resourceLoader, location + "single-user.txt"),
+                "guidelines", "product");
+        this.batchUser = PromptTemplate.compile(read(resourceLoader, location + "batch-user.txt"),
+                "guidelines", "products");
+        this.guidelines = objectMapper.readValue(read(resourceLoader, location + "guidelines.json"), GuidelinesFile.class);
+        if (guidelines.maxTokens() == null || !guidelines.maxTokens().containsKey(DEFAULT)) {
+            throw new IllegalArgumentException("guidelines.json needs a default entry in maxTokens");
+        }
+        this.allGuidelines = block(guidelines.guidelines().stream().map(Guideline::line).toList());
+
+        DistributionSummary.Builder tokens = DistributionSummary.builder("hf.prompt.tokens")
+                .description("Estimated input tokens per prompt")
+                .baseUnit("tokens");
+        this.singleTokens = tokens.tag("kind", "single").register(registry);
+        this.batchTokens = tokens.tag("kind", "batch").register(registry);
+    }
+
+    public ChatCompletionRequest single(Estimation estimation, String model, boolean stream) {
+        String user = singleUser.render(
+                guidelinesFor(estimation.getCategory(), estimation.getBrand()),
+                HuggingFaceService.productDetails(estimation));
+        singleTokens.record(estimateTokens(singleSystem) + estimateTokens(user));
+        return request(model, user, singleSystem, maxTokens(estimation.getCategory()), stream);
+    }
+
+    /**
+     * One prompt for several items, numbered from 1, answered as a JSON array.
+     */
+    public ChatCompletionRequest batch(List<Estimation> items, String model) {
+        StringBuilder products = new StringBuilder();
+        Set<String> lines = new LinkedHashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            Estimation item = items.get(i);
+            products.append(i + 1).append(". ").append(HuggingFaceService.productDetails(item)).append('\n');
+            lines.addAll(select(normalize(item.getCategory()), normalize(item.getBrand())));
+        }
+        String block = lines.isEmpty() ? allGuidelines : block(lines);
+        String user = batchUser.render(block, products.toString());
+        batchTokens.record(estimateTokens(batchSystem) + estimateTokens(user));
+        int maxTokens = guidelines.batchBaseMaxTokens() + guidelines.batchItemMaxTokens() * items.size();
+        return request(model, user, batchSystem, maxTokens, false);
+    }
+
+    int maxTokens(String category) {
+        Integer maxTokens = guidelines.maxTokens().get(normalize(category));
+        return maxTokens != null ? maxTokens : guidelines.maxTokens().get(DEFAULT);
+    }
+
+    String guidelinesFor(String category, String brand) {
+        String key = normalize(category) + '|' + normalize(brand);
+        String cached = guidelineBlocks.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        List<String> lines = select(normalize(category), normalize(brand));
+        String block = lines.isEmpty() ? allGuidelines : block(lines);
+        if (guidelineBlocks.size() < MAX_CACHED_BLOCKS) {
+            guidelineBlocks.put(key, block);
+        }
+        return block;
+    }
+
+    /**
+     * Rough token count for Llama-style BPE vocabularies: about one token per four letters or
+     * digits of a word, one per punctuation mark, two per non-ASCII character.
+     */
+    static int estimateTokens(CharSequence text) {
+        int tokens = 0;
+        int word = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) && c < 128) {
+                word++;
+                continue;
+            }
+            tokens += (word + 3) / 4;
+            word = 0;
+            if (c >= 128) {
+                tokens += 2;
+            } else if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + (word + 3) / 4;
+    }
+
+    // The category's lines for the brand, else all of the category's lines, else the brand's lines anywhere
+    private List<String> select(String category, String brand) {
+        List<String> forCategory = new ArrayList<>();
+        List<String> forBrand = new ArrayList<>();
+        List<String> forBrandInCategory = new ArrayList<>();
+        for (Guideline guideline : guidelines.guidelines()) {
+            boolean sameCategory = guideline.category().equals(category);
+            boolean sameBrand = guideline.brands() == null || guideline.brands().isEmpty()
+                    || guideline.brands().contains(brand);
+            if (sameCategory) {
+                forCategory.add(guideline.line());
+            }
+            if (sameBrand) {
+                forBrand.add(guideline.line());
+            }
+            if (sameCategory && sameBrand) {
+                forBrandInCategory.add(guideline.line());
+            }
+        }
+        if (!forBrandInCategory.isEmpty()) {
+            return forBrandInCategory;
+        }
+        return !forCategory.isEmpty() ? forCategory : brand.isEmpty() ? List.of() : forBrand;
+    }
+
+    private String block(Iterable<String> lines) {
+        StringBuilder block = new StringBuilder(guidelines.header()).append('\n');
+        for (String line : lines) {
+            block.append(line).append('\n');
+        }
+        return block.toString();
+    }
+
+    private static ChatCompletionRequest request(String model, String user, String system, int maxTokens, boolean stream) {
+        ChatCompletionRequest request = new ChatCompletionRequest();
+        request.model = model;
+        request.messages = List.of(
+                new ChatCompletionRequest.Message("system", system),
+                new ChatCompletionRequest.Message("user", user)
+        );
+        request.temperature = TEMPERATURE;
+        request.max_tokens = maxTokens;
+        request.stream = stream;
+        return request;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String read(ResourceLoader resourceLoader, String location) {
+        try (InputStream in = resourceLoader.getResource(location).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read prompt template " + location, e);
+        }
+    }
+}
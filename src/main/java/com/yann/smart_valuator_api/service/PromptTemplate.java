@@ -0,0 +1,70 @@
+package com.yann.smart_valuator_api.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Text with {@code {{name}}} placeholders, split once into literal parts and slots so rendering
+ * is a single pass of appends into a right-sized builder.
+ */
+public final class PromptTemplate {
+
+    private final String[] literals;
+    // slots[i] is the index of the value rendered between literals[i] and literals[i + 1]
+    private final int[] slots;
+    private final int literalLength;
+
+    private PromptTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        this.literalLength = Arrays.stream(literals).mapToInt(String::length).sum();
+    }
+
+    /**
+     * Compiles {@code text}; {@code names} gives the order of the values passed to {@link #render}.
+     *
+     * @throws IllegalArgumentException for a placeholder not in {@code names}, or an unclosed one
+     */
+    public static PromptTemplate compile(String text, String... names) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<String> known = List.of(names);
+        int position = 0;
+        while (true) {
+            int open = text.indexOf("{{", position);
+            if (open < 0) {
+                literals.add(text.substring(position));
+                break;
+            }
+            int close = text.indexOf("}}", open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at " + open);
+            }
+            String name = text.substring(open + 2, close).trim();
+            int slot = known.indexOf(name);
+            if (slot < 0) {
+                throw new IllegalArgumentException("Unknown placeholder {{" + name + "}}, expected one of " + known);
+            }
+            literals.add(text.substring(position, open));
+            slots.add(slot);
+            position = close + 2;
+        }
+        return new PromptTemplate(
+                literals.toArray(String[]::new),
+                slots.stream().mapToInt(Integer::intValue).toArray()
+        );
+    }
+
+    public String render(String... values) {
+        int length = literalLength;
+        for (int slot : slots) {
+            length += values[slot].length();
+        }
+        StringBuilder out = new StringBuilder(length);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]).append(values[slots[i]]);
+        }
+        return out.append(literals[slots.length]).toString();
+    }
+}
@@ -0,0 +1,180 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.DTO.BatchEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.ReactiveEstimationRepository;
+import exception.EstimationNotFoundException;
+import exception.InvalidEstimationRequestException;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The estimation pipeline of the reactive profile: the same steps as {@link EstimationService}
+ * (deduplication, result cache, model routing, fallback pricing), with the remote model called
+ * through {@link ReactiveHuggingFaceService} and estimations stored through
+ * {@link ReactiveEstimationRepository}, so no thread waits on the network or the database.
+ *
+ * <p>Batches are backpressured end to end: items are read from the request only as fast as
+ * {@code estimation.reactive.batch.concurrency} model calls finish, and results are written only
+ * as fast as their rows are inserted and the client reads them.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveEstimationService {
+
+    private final ReactiveEstimationRepository reactiveEstimationRepository;
+    private final ReactiveHuggingFaceService reactiveHuggingFaceService;
+    private final EstimationModelRouter estimationModelRouter;
+    private final LocalEstimationModel localEstimationModel;
+    private final EstimationResultCache estimationResultCache;
+    private final EstimationDeduplicator estimationDeduplicator;
+    private final EstimationEntityCache estimationEntityCache;
+    private final EstimationMetrics estimationMetrics;
+    private final int batchConcurrency;
+    private final int maxItems;
+    private final int insertBatchSize;
+    private final Duration linger;
+
+    public ReactiveEstimationService(
+            ReactiveEstimationRepository reactiveEstimationRepository,
+            ReactiveHuggingFaceService reactiveHuggingFaceService,
+            EstimationModelRouter estimationModelRouter,
+            LocalEstimationModel localEstimationModel,
+            EstimationResultCache estimationResultCache,
+            EstimationDeduplicator estimationDeduplicator,
+            EstimationEntityCache estimationEntityCache,
+            EstimationMetrics estimationMetrics,
+            @Value("${estimation.reactive.batch.concurrency:64}") int batchConcurrency,
+            @Value("${estimation.batch.max-items:10000}") int maxItems,
+            @Value("${estimation.batch.insert-batch-size:100}") int insertBatchSize,
+            @Value("${estimation.reactive.batch.linger:50ms}") Duration linger
+    ) {
+        this.reactiveEstimationRepository = reactiveEstimationRepository;
+        this.reactiveHuggingFaceService = reactiveHuggingFaceService;
+        this.estimationModelRouter = estimationModelRouter;
+        this.localEstimationModel = localEstimationModel;
+        this.estimationResultCache = estimationResultCache;
+        this.estimationDeduplicator = estimationDeduplicator;
+        this.estimationEntityCache = estimationEntityCache;
+        this.estimationMetrics = estimationMetrics;
+        this.batchConcurrency = batchConcurrency;
+        this.maxItems = maxItems;
+        this.insertBatchSize = insertBatchSize;
+        this.linger = linger;
+    }
+
+    // A deduplicated estimation is already stored; a new one is not yet
+    private record Estimated(long index, Estimation estimation, boolean stored) {
+    }
+
+    public Mono<Estimation> generateAiEstimation(Estimation estimation) {
+        return estimate(0, estimation)
+                .flatMap(estimated -> estimated.stored()
+                        ? Mono.just(estimated.estimation())
+                        : save(List.of(estimated.estimation()), estimation.getCategory())
+                                .thenReturn(estimated.estimation()))
+                // New estimations are the ones most likely to be read back
+                .doOnNext(estimationEntityCache::put);
+    }
+
+    /**
+     * Estimates the items as they are read, up to {@code estimation.reactive.batch.concurrency} at a
+     * time, and inserts them in batches of up to {@code insert-batch-size}, waiting at most
+     * {@code linger} for a batch to fill. Results come in the order their rows were written, each
+     * with its position in {@code items}, as in {@link BatchEstimationService}.
+     */
+    public Flux<BatchEstimationResult> generateBatchEstimations(Flux<Estimation> items) {
+        return items.index()
+                .doOnNext(item -> validate(item.getT1(), item.getT2()))
+                .flatMap(item -> estimate(item.getT1(), item.getT2()), batchConcurrency)
+                // Fair backpressure: a batch is only cut when there is demand for it
+                .bufferTimeout(insertBatchSize, linger, true)
+                .concatMap(ready -> {
+                    List<Estimation> unsaved = ready.stream()
+                            .filter(estimated -> !estimated.stored())
+                            .map(Estimated::estimation)
+                            .toList();
+                    // A batch mixes categories, so its save time is reported without one
+                    return save(unsaved, null).thenMany(Flux.fromIterable(ready)
+                            .map(estimated -> new BatchEstimationResult(
+                                    (int) estimated.index(), estimated.estimation())));
+                });
+    }
+
+    public Mono<Estimation> getEstimationById(long id) {
+        Estimation cached = estimationEntityCache.getIfPresent(id);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return reactiveEstimationRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new EstimationNotFoundException(id)))
+                .doOnNext(estimationEntityCache::put);
+    }
+
+    private void validate(long index, Estimation item) {
+        if (index >= maxItems) {
+            throw new InvalidEstimationRequestException("Batch exceeds the maximum of " + maxItems + " items");
+        }
+        if (item.getItemName() == null || item.getYear() == null) {
+            throw new InvalidEstimationRequestException("Item " + index + " is missing itemName or year");
+        }
+    }
+
+    private Mono<Estimated> estimate(long index, Estimation estimation) {
+        return findDuplicate(estimation)
+                .map(duplicate -> new Estimated(index, duplicate, true))
+                .switchIfEmpty(Mono.defer(() -> price(estimation))
+                        .map(priced -> new Estimated(index, priced, false)));
+    }
+
+    // Same lookup as EstimationDeduplicator#findRecent
+    private Mono<Estimation> findDuplicate(Estimation estimation) {
+        if (!estimationDeduplicator.isEnabled()) {
+            return Mono.empty();
+        }
+        EstimationCacheKey key = EstimationCacheKey.of(estimation);
+        return reactiveEstimationRepository.findNewestByFingerprint(key.fingerprint(), estimationDeduplicator.oldest())
+                .map(candidate -> estimationDeduplicator.accept(key, candidate))
+                .switchIfEmpty(Mono.fromSupplier(() -> estimationDeduplicator.accept(key, null)));
+    }
+
+    // EstimationService#applyAiEstimation
+    private Mono<Estimation> price(Estimation estimation) {
+        return Mono.defer(() -> {
+                    EstimationService.prepare(estimation);
+                    EstimationCacheKey key = EstimationCacheKey.of(estimation);
+                    // Cancel suppressed: other requests for the same item may be waiting on this call
+                    return Mono.fromFuture(() -> estimationResultCache.getAsync(
+                                    key, () -> callModel(estimation).toFuture()), true)
+                            .map(result -> EstimationService.apply(estimation, key, result));
+                })
+                .onErrorResume(e -> Mono.just(EstimationService.failed(estimation, e)));
+    }
+
+    private Mono<AiEstimationResult> callModel(Estimation estimation) {
+        if (estimationModelRouter.routesLocally(estimation)) {
+            // An item the local model does not know gets fallback pricing, which may read the database
+            return Mono.fromCallable(() -> localEstimationModel.estimate(estimation))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return reactiveHuggingFaceService.estimate(estimation);
+    }
+
+    private Mono<Void> save(List<Estimation> estimations, String category) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = estimationMetrics.start();
+            return reactiveEstimationRepository.insertAll(estimations)
+                    .doFinally(signal -> estimationMetrics.record(
+                            sample, EstimationMetrics.Stage.DB_SAVE, EstimationMetrics.NO_MODEL, category));
+        });
+    }
+}
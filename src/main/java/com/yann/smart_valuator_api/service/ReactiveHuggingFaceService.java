@@ -0,0 +1,114 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.DTO.ChatCompletionRequest;
+import com.yann.smart_valuator_api.DTO.ChatCompletionResponse;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.service.EstimationMetrics.Stage;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Structured estimation by the primary model over {@code huggingFaceWebClient}, for the reactive
+ * profile. Admission ({@link UpstreamGuard}), the latency budget, metrics and the parsing and
+ * fallback pricing of the answer are those of {@link HuggingFaceService}; calls are neither hedged
+ * nor micro-batched.
+ */
+@Slf4j
+@Service
+@Profile("reactive")
+public class ReactiveHuggingFaceService {
+
+    @Value("${hf.api.key}")
+    private String hfApiKey;
+
+    @Value("${hf.api.url:https://router.huggingface.co/v1/chat/completions}")
+    private String hfUrl;
+
+    @Value("${hf.resilience.latency-budget:20s}")
+    private Duration latencyBudget = Duration.ofSeconds(20);
+
+    private final WebClient webClient;
+    private final HuggingFaceService huggingFaceService;
+    private final EstimationMetrics estimationMetrics;
+    private final UpstreamGuard upstreamGuard;
+    private final ModelPool modelPool;
+    private final PromptBuilder promptBuilder;
+
+    public ReactiveHuggingFaceService(
+            @Qualifier("huggingFaceWebClient") WebClient webClient,
+            HuggingFaceService huggingFaceService,
+            EstimationMetrics estimationMetrics,
+            UpstreamGuard upstreamGuard,
+            ModelPool modelPool,
+            PromptBuilder promptBuilder
+    ) {
+        this.webClient = webClient;
+        this.huggingFaceService = huggingFaceService;
+        this.estimationMetrics = estimationMetrics;
+        this.upstreamGuard = upstreamGuard;
+        this.modelPool = modelPool;
+        this.promptBuilder = promptBuilder;
+    }
+
+    public Mono<AiEstimationResult> estimate(Estimation estimation) {
+        return describe(estimation)
+                // Falling back prices from the market medians or similar items, which may read the database
+                .publishOn(Schedulers.boundedElastic())
+                .map(rawJson -> huggingFaceService.parseStructuredEstimation(rawJson, estimation));
+    }
+
+    // The model's message content, or one of HuggingFaceService's failure responses; never an error
+    private Mono<String> describe(Estimation estimation) {
+        return Mono.defer(() -> {
+            String model = modelPool.primaryModel();
+            String category = estimation.getCategory();
+            ChatCompletionRequest request = estimationMetrics.time(Stage.PROMPT_BUILD, model, category,
+                    () -> promptBuilder.single(estimation, model, false));
+
+            UpstreamGuard.Permit permit;
+            try {
+                permit = upstreamGuard.acquire();
+            } catch (UpstreamGuard.UpstreamRejectedException e) {
+                return Mono.just(HuggingFaceService.rejected(e.rejection()));
+            }
+
+            Timer.Sample upstream = estimationMetrics.start();
+            return webClient.post()
+                    .uri(hfUrl)
+                    .headers(headers -> headers.setBearerAuth(hfApiKey))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(request)
+                    .retrieve()
+                    .bodyToMono(ChatCompletionResponse.class)
+                    .map(HuggingFaceService::messageContent)
+                    .defaultIfEmpty("API returned empty response")
+                    .timeout(latencyBudget)
+                    .doOnNext(content -> permit.success())
+                    .onErrorResume(TimeoutException.class, e -> {
+                        permit.failure();
+                        log.warn("Hugging Face API call failed: latency budget exhausted");
+                        return Mono.just(HuggingFaceService.rejected(UpstreamGuard.Rejection.BUDGET_EXHAUSTED));
+                    })
+                    .onErrorResume(e -> {
+                        permit.failure();
+                        log.error("Hugging Face API call failed", e);
+                        return Mono.just(HuggingFaceService.API_ERROR);
+                    })
+                    // The caller went away: says nothing about the upstream's health
+                    .doOnCancel(permit::abandon)
+                    .doFinally(signal -> estimationMetrics.record(upstream, Stage.UPSTREAM_HTTP, model, category));
+        });
+    }
+}
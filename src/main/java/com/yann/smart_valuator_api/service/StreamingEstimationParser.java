@@ -0,0 +1,140 @@
+package com.yann.smart_valuator_api.service;
+
+/**
+ * Incrementally scans streamed model output for the first top-level JSON object and tracks
+ * which of its fields are complete, so the stream can be abandoned as soon as the
+ * description and the price have arrived. Text before the object (markdown fences, chatter)
+ * is skipped.
+ */
+class StreamingEstimationParser {
+
+    private final StringBuilder text = new StringBuilder();
+
+    private int scanned;
+    private int objectStart = -1;
+    private int objectEnd = -1;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    // Top-level key/value tracking
+    private boolean readingKey;
+    private int keyStart;
+    private String currentKey;
+    private boolean inValue;
+    private int lastValueEnd = -1;
+
+    private boolean descriptionComplete;
+    private boolean priceComplete;
+
+    void append(String chunk) {
+        text.append(chunk);
+        while (scanned < text.length() && objectEnd < 0) {
+            scan(text.charAt(scanned), scanned);
+            scanned++;
+        }
+    }
+
+    boolean isComplete() {
+        return objectEnd >= 0 || (descriptionComplete && priceComplete);
+    }
+
+    /**
+     * The object seen so far, closed right after the last complete top-level value when the
+     * stream was cut short; falls back to the raw text when no object was found.
+     */
+    String json() {
+        if (objectEnd >= 0) {
+            return text.substring(objectStart, objectEnd + 1);
+        }
+        if (objectStart >= 0 && lastValueEnd > objectStart) {
+            return text.substring(objectStart, lastValueEnd + 1) + "}";
+        }
+        return text.toString();
+    }
+
+    String text() {
+        return text.toString();
+    }
+
+    private void scan(char c, int index) {
+        if (objectStart < 0) {
+            if (c == '{') {
+                objectStart = index;
+                depth = 1;
+            }
+            return;
+        }
+
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (depth == 1 && readingKey) {
+                    readingKey = false;
+                    currentKey = text.substring(keyStart, index);
+                } else if (depth == 1 && inValue) {
+                    completeValue(index);
+                }
+            }
+            return;
+        }
+
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                if (depth == 1 && !inValue) {
+                    readingKey = true;
+                    keyStart = index + 1;
+                }
+            }
+            case ':' -> {
+                if (depth == 1) {
+                    inValue = true;
+                }
+            }
+            case '{', '[' -> depth++;
+            case '}', ']' -> {
+                depth--;
+                if (depth == 1 && inValue) {
+                    completeValue(index);
+                } else if (depth == 0) {
+                    if (inValue) {
+                        completeValue(lastNonWhitespace(index));
+                    }
+                    objectEnd = index;
+                }
+            }
+            case ',' -> {
+                if (depth == 1 && inValue) {
+                    completeValue(lastNonWhitespace(index));
+                }
+            }
+            default -> {
+                // numbers, literals and whitespace are picked up by the delimiters above
+            }
+        }
+    }
+
+    private void completeValue(int endInclusive) {
+        inValue = false;
+        lastValueEnd = endInclusive;
+        if ("description".equals(currentKey)) {
+            descriptionComplete = true;
+        } else if ("estimatedPrice".equals(currentKey)) {
+            priceComplete = true;
+        }
+        currentKey = null;
+    }
+
+    private int lastNonWhitespace(int before) {
+        int i = before - 1;
+        while (i > objectStart && Character.isWhitespace(text.charAt(i))) {
+            i--;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,186 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.ObjectReadContext;
+import tools.jackson.core.json.JsonFactory;
+import tools.jackson.core.json.JsonReadFeature;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads estimations out of model output in one pass over Jackson's token stream, without regex
+ * cleanup or an intermediate tree. Parsing starts at the first opening brace (or bracket), so
+ * markdown fences and chatter before it are skipped, and stops at the matching close, so anything
+ * after it is never read. Only {@code description}, {@code estimatedPrice} and {@code verdict} are kept.
+ *
+ * <p>Models do not always write strict JSON: unquoted names, single quotes and trailing commas
+ * are accepted, and when the text breaks off or turns invalid mid-object, the fields completed
+ * before that point are kept.
+ */
+public final class StructuredOutputParser {
+
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_UNQUOTED_PROPERTY_NAMES)
+            .enable(JsonReadFeature.ALLOW_SINGLE_QUOTES)
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .build();
+
+    /**
+     * One element of a multi-item answer; {@code index} is the 1-based index the model echoed, or
+     * 0 when it gave none.
+     */
+    public record Item(int index, AiEstimationResult result) {
+    }
+
+    private StructuredOutputParser() {
+    }
+
+    /**
+     * The first JSON object in {@code text}. Missing or unusable values stay null.
+     *
+     * @throws IllegalArgumentException when the text holds no object at all
+     */
+    public static AiEstimationResult parse(String text) {
+        try (JsonParser parser = parserAt(text, '{')) {
+            AiEstimationResult result = new AiEstimationResult();
+            try {
+                parser.nextToken();
+                readObject(parser, result, null);
+            } catch (JacksonException e) {
+                // Keep what was read before the text broke off
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The objects of the first JSON array in {@code text}, in order. Elements that are not objects
+     * are skipped; a truncated last element is kept with the fields it has.
+     *
+     * @throws IllegalArgumentException when the text holds no array at all
+     */
+    public static List<Item> parseArray(String text) {
+        List<Item> items = new ArrayList<>();
+        try (JsonParser parser = parserAt(text, '[')) {
+            try {
+                parser.nextToken();
+                JsonToken token;
+                while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+                    if (token != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    AiEstimationResult result = new AiEstimationResult();
+                    int[] index = new int[1];
+                    try {
+                        readObject(parser, result, index);
+                    } finally {
+                        items.add(new Item(index[0], result));
+                    }
+                }
+            } catch (JacksonException e) {
+                // Keep the elements read before the text broke off
+            }
+        }
+        return items;
+    }
+
+    // The parser is on the START_OBJECT; returns on its END_OBJECT. index, when given, receives "index"
+    private static void readObject(JsonParser parser, AiEstimationResult result, int[] index) {
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "description" -> result.setDescription(scalarText(parser, value));
+                case "verdict" -> result.setVerdict(scalarText(parser, value));
+                case "estimatedPrice" -> result.setEstimatedPrice(price(parser, value));
+                case "index" -> {
+                    if (index != null && value == JsonToken.VALUE_NUMBER_INT) {
+                        index[0] = parser.getIntValue();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static String scalarText(JsonParser parser, JsonToken value) {
+        if (value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+            return parser.getString();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static BigDecimal price(JsonParser parser, JsonToken value) {
+        if (value.isNumeric()) {
+            return parser.getDecimalValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            return parsePrice(parser.getString());
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * A price written as text, such as {@code "€ 1.299"}, {@code "145,00 €"} or {@code "1,299.50"}.
+     * A comma followed by exactly two digits is a decimal comma; any other comma is a thousands
+     * separator. Null when there are no digits or they do not form a number.
+     */
+    static BigDecimal parsePrice(String text) {
+        StringBuilder digits = new StringBuilder(text.length());
+        int end = text.length();
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9' || c == '.') {
+                digits.append(c);
+            } else if (c == ',' && isDecimalComma(text, i)) {
+                digits.append('.');
+            } else if (!digits.isEmpty() && c != ',' && c != ' ' && c != '\u00A0') {
+                // Anything after the number, such as "€" or "EUR", ends it
+                break;
+            }
+        }
+        if (digits.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(digits.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isDecimalComma(String text, int comma) {
+        int digits = 0;
+        int i = comma + 1;
+        while (i < text.length() && Character.isDigit(text.charAt(i))) {
+            digits++;
+            i++;
+        }
+        return digits == 2;
+    }
+
+    private static JsonParser parserAt(String text, char open) {
+        int start = text.indexOf(open);
+        if (start < 0) {
+            throw new IllegalArgumentException(open == '{' ? "No JSON object in the response" : "No JSON array in the response");
+        }
+        StringReader reader = new StringReader(text);
+        try {
+            reader.skip(start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return JSON.createParser(ObjectReadContext.empty(), reader);
+    }
+}
@@ -0,0 +1,71 @@
+package com.yann.smart_valuator_api.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Handle on the upstream HTTP request made by a piece of work running on another thread, so a
+ * hedged call that lost the race can be aborted instead of running to completion. The request
+ * factory in HttpClientConfig registers each request it creates with the call of its thread.
+ */
+public final class UpstreamCall {
+
+    private static final ThreadLocal<UpstreamCall> CURRENT = new ThreadLocal<>();
+
+    private Runnable abort;
+    private boolean cancelled;
+    private boolean finished;
+
+    /**
+     * Called by the request factory for every request it creates.
+     */
+    public static void register(Runnable abort) {
+        UpstreamCall call = CURRENT.get();
+        if (call != null) {
+            call.attach(abort);
+        }
+    }
+
+    // True when the request made on this thread failed because another thread cancelled it
+    static boolean cancelledOnThisThread() {
+        UpstreamCall call = CURRENT.get();
+        return call != null && call.isCancelled();
+    }
+
+    <T> T run(Supplier<T> work) {
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            CURRENT.remove();
+            finish();
+        }
+    }
+
+    // No effect once the work is done, so a finished request is never aborted after the fact
+    synchronized void cancel() {
+        if (cancelled || finished) {
+            return;
+        }
+        cancelled = true;
+        if (abort != null) {
+            abort.run();
+        }
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private synchronized void finish() {
+        finished = true;
+        abort = null;
+    }
+
+    private synchronized void attach(Runnable abort) {
+        this.abort = abort;
+        // Cancelled before the request existed: abort it right away so it is never sent
+        if (cancelled) {
+            abort.run();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.yann.smart_valuator_api.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Admission control for calls to the Hugging Face router: the per-request latency budget, a
+ * circuit breaker and an adaptive concurrency limit. A call that is not admitted fails fast so
+ * the caller can fall back to rule-based pricing instead of waiting on a struggling upstream.
+ */
+@Slf4j
+@Component
+public class UpstreamGuard implements MeterBinder {
+
+    public enum Rejection { BUDGET_EXHAUSTED, CIRCUIT_OPEN, CONCURRENCY_LIMITED }
+
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public UpstreamGuard(
+            @Value("${hf.resilience.breaker.window-size:50}") int windowSize,
+            @Value("${hf.resilience.breaker.minimum-calls:20}") int minimumCalls,
+            @Value("${hf.resilience.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${hf.resilience.breaker.open-duration:30s}") Duration openDuration,
+            @Value("${hf.resilience.breaker.half-open-calls:5}") int halfOpenCalls,
+            @Value("${hf.resilience.limiter.initial-limit:20}") int initialLimit,
+            @Value("${hf.resilience.limiter.min-limit:2}") int minLimit,
+            @Value("${hf.resilience.limiter.max-limit:200}") int maxLimit,
+            @Value("${hf.resilience.limiter.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${hf.resilience.limiter.latency-threshold:10s}") Duration latencyThreshold
+    ) {
+        this.circuitBreaker = new CircuitBreaker(
+                windowSize, minimumCalls, failureRateThreshold, openDuration.toNanos(), halfOpenCalls, System::nanoTime);
+        this.limiter = new AdaptiveConcurrencyLimiter(
+                initialLimit, minLimit, maxLimit, backoffRatio, latencyThreshold.toNanos());
+    }
+
+    /**
+     * Admits one upstream call. The returned permit must be completed with
+     * {@link Permit#success()}, {@link Permit#failure()} or {@link Permit#abandon()}.
+     *
+     * @throws UpstreamRejectedException when the call should not be made
+     */
+    public Permit acquire() {
+        Duration remaining = LatencyBudget.remaining();
+        if (remaining != null && (remaining.isNegative() || remaining.isZero())) {
+            throw new UpstreamRejectedException(Rejection.BUDGET_EXHAUSTED);
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            throw new UpstreamRejectedException(Rejection.CIRCUIT_OPEN);
+        }
+        if (!limiter.tryAcquire()) {
+            circuitBreaker.release();
+            throw new UpstreamRejectedException(Rejection.CONCURRENCY_LIMITED);
+        }
+        return new Permit(System.nanoTime());
+    }
+
+    CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    int concurrencyLimit() {
+        return limiter.limit();
+    }
+
+    // Share of the concurrency limit in use, from 0 to 1
+    double saturation() {
+        return (double) limiter.inFlight() / limiter.limit();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("hf.upstream.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive limit on concurrent upstream calls")
+                .register(registry);
+        Gauge.builder("hf.upstream.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                .register(registry);
+        Gauge.builder("hf.upstream.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("0 closed, 1 open, 2 half-open")
+                .register(registry);
+    }
+
+    public final class Permit {
+
+        private final long startNanos;
+        private boolean completed;
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        // Only the first outcome counts, so callers can report failure from a catch block
+        // even when success was already reported
+
+        public void success() {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            limiter.onSuccess(System.nanoTime() - startNanos);
+            circuitBreaker.onSuccess();
+        }
+
+        // For a call cancelled by the caller, which says nothing about the upstream's health
+        public void abandon() {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            limiter.release();
+            circuitBreaker.release();
+        }
+
+        public void failure() {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            limiter.onDropped();
+            CircuitBreaker.State before = circuitBreaker.state();
+            circuitBreaker.onFailure();
+            if (before != CircuitBreaker.State.OPEN && circuitBreaker.state() == CircuitBreaker.State.OPEN) {
+                log.warn("Circuit to the Hugging Face router opened; estimations use fallback pricing until it recovers");
+            }
+        }
+    }
+
+    /**
+     * Thrown instead of making the call; carries no stack trace since it is expected under load.
+     */
+    public static class UpstreamRejectedException extends RuntimeException {
+
+        private final Rejection rejection;
+
+        UpstreamRejectedException(Rejection rejection) {
+            super(rejection.name(), null, false, false);
+            this.rejection = rejection;
+        }
+
+        public Rejection rejection() {
+            return rejection;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.yann.smart_valuator_api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the calls {@link HuggingFaceService} makes to the model when {@code hf.record.enabled}
+ * is set, for {@link UpstreamReplayServer} to play back. Each call is one JSON line, in a gzipped
+ * file per run under {@code hf.record.dir}: the request body, the response status, content type
+ * and body, the time to the response headers and the time until the response was closed.
+ *
+ * <p>Only bodies are kept, never headers, so the API key stays out of the files. A streamed
+ * response is recorded as far as it was read. Calls that failed before a response (timeouts,
+ * refused connections) are not recorded.
+ */
+@Slf4j
+@Component
+public class UpstreamRecorder implements ClientHttpRequestInterceptor, AutoCloseable {
+
+    static final String FILE_SUFFIX = ".ndjson.gz";
+
+    /** One recorded call. */
+    public record Exchange(
+            String model,
+            boolean stream,
+            String request,
+            int status,
+            String contentType,
+            long headersMillis,
+            long latencyMillis,
+            String response
+    ) {
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final boolean enabled;
+    private final Path directory;
+
+    private Writer writer;
+    private Path file;
+    private int recorded;
+
+    public UpstreamRecorder(
+            @Value("${hf.record.enabled:false}") boolean enabled,
+            @Value("${hf.record.dir:data/recordings}") Path directory
+    ) {
+        this.enabled = enabled;
+        this.directory = directory;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        long started = System.nanoTime();
+        ClientHttpResponse response = execution.execute(request, body);
+        long headersNanos = System.nanoTime() - started;
+        return new RecordingResponse(response, new String(body, StandardCharsets.UTF_8), started, headersNanos);
+    }
+
+    public synchronized void write(Exchange exchange) {
+        try {
+            if (writer == null) {
+                Files.createDirectories(directory);
+                file = directory.resolve("hf-"
+                        + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS"))
+                        + "-" + ProcessHandle.current().pid() + FILE_SUFFIX);
+                writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)),
+                        StandardCharsets.UTF_8);
+                log.atInfo().setMessage("Recording upstream calls").addKeyValue("file", file).log();
+            }
+            writer.write(objectMapper.writeValueAsString(exchange));
+            writer.write('\n');
+            recorded++;
+        } catch (IOException e) {
+            // Losing a recording must not fail the estimation it belongs to
+            log.atWarn().setMessage("Failed to record upstream call")
+                    .addKeyValue("error", e.getMessage())
+                    .log();
+        }
+    }
+
+    /**
+     * The exchanges in a recording file, or in every recording file of a directory in name order.
+     * A file cut short, by a crash before it was closed, yields the calls written up to that point.
+     */
+    public static List<Exchange> read(Path path) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Exchange> exchanges = new ArrayList<>();
+        try {
+            List<Path> files;
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> listing = Files.list(path)) {
+                    files = listing.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX))
+                            .sorted()
+                            .toList();
+                }
+            } else {
+                files = List.of(path);
+            }
+            for (Path file : files) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isBlank()) {
+                            exchanges.add(objectMapper.readValue(line, Exchange.class));
+                        }
+                    }
+                } catch (EOFException | JacksonException e) {
+                    log.atWarn().setMessage("Recording is truncated, keeping the calls read so far")
+                            .addKeyValue("file", file)
+                            .log();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return exchanges;
+    }
+
+    private void record(String request, ClientHttpResponse response, long started, long headersNanos, byte[] body) {
+        String model = null;
+        boolean stream = false;
+        try {
+            JsonNode json = objectMapper.readTree(request);
+            model = json.path("model").asString(null);
+            stream = json.path("stream").asBoolean(false);
+        } catch (JacksonException e) {
+            // Recorded without a model; replay then matches it on the body alone
+        }
+        try {
+            String contentType = response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+            write(new Exchange(model, stream, request, response.getStatusCode().value(), contentType,
+                    headersNanos / 1_000_000, (System.nanoTime() - started) / 1_000_000,
+                    new String(body, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            log.atWarn().setMessage("Failed to record upstream call")
+                    .addKeyValue("error", e.getMessage())
+                    .log();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+            log.atInfo().setMessage("Closed upstream recording")
+                    .addKeyValue("file", file)
+                    .addKeyValue("calls", recorded)
+                    .log();
+        } catch (IOException e) {
+            log.atWarn().setMessage("Failed to close upstream recording")
+                    .addKeyValue("file", file)
+                    .addKeyValue("error", e.getMessage())
+                    .log();
+        } finally {
+            writer = null;
+        }
+    }
+
+    // Copies the body as the caller reads it and records the call once the response is closed
+    private final class RecordingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final String request;
+        private final long started;
+        private final long headersNanos;
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private InputStream body;
+
+        private RecordingResponse(ClientHttpResponse delegate, String request, long started, long headersNanos) {
+            this.delegate = delegate;
+            this.request = request;
+            this.started = started;
+            this.headersNanos = headersNanos;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(delegate.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b >= 0) {
+                            copy.write(b);
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int n = super.read(buffer, offset, length);
+                        if (n > 0) {
+                            copy.write(buffer, offset, n);
+                        }
+                        return n;
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                record(request, delegate, started, headersNanos, copy.toByteArray());
+            }
+            delegate.close();
+        }
+    }
+}
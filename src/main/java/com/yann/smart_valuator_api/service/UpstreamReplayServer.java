@@ -0,0 +1,218 @@
+package com.yann.smart_valuator_api.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yann.smart_valuator_api.service.UpstreamRecorder.Exchange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays back calls recorded by {@link UpstreamRecorder} from an in-process HTTP server, so the
+ * whole application can be load tested without the network or an API key. Started by the
+ * {@code replay} profile, which points {@code hf.api.url} at it.
+ *
+ * <p>A request whose body was recorded gets that call's response, after its recorded latency
+ * times {@code hf.replay.latency-scale}; a body recorded several times gets each of its calls in
+ * turn. Any other request gets a call recorded for the same model, streaming mode and number of
+ * items (one, or several for a multi-item prompt), failing that for the same model and streaming
+ * mode, failing that any call, chosen from the hash of its body. Latencies then follow the
+ * recorded distribution, and the same request always gets the same answer. Streamed responses
+ * are written event by event, spread over the recorded time.
+ */
+@Slf4j
+@Component
+@Profile("replay")
+public class UpstreamReplayServer implements AutoCloseable {
+
+    private static final String EVENT_STREAM = "text/event-stream";
+    private static final String PRODUCT = "Item: ";
+
+    // Calls recorded for one request body, served in turn
+    private record Recorded(List<Exchange> exchanges, AtomicInteger next) {
+
+        Exchange take() {
+            return exchanges.get(Math.floorMod(next.getAndIncrement(), exchanges.size()));
+        }
+    }
+
+    private final List<Exchange> exchanges;
+    private final Map<String, Recorded> byRequest = new HashMap<>();
+    private final Map<String, List<Exchange>> byKind = new HashMap<>();
+    private final Map<String, List<Exchange>> byModel = new HashMap<>();
+    private final double latencyScale;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong substituted = new AtomicLong();
+
+    public UpstreamReplayServer(
+            @Value("${hf.replay.recordings:data/recordings}") Path recordings,
+            @Value("${hf.replay.port:8089}") int port,
+            @Value("${hf.replay.latency-scale:1.0}") double latencyScale
+    ) {
+        this.exchanges = UpstreamRecorder.read(recordings);
+        if (exchanges.isEmpty()) {
+            throw new IllegalStateException("No recorded upstream calls in " + recordings.toAbsolutePath());
+        }
+        for (Exchange exchange : exchanges) {
+            byRequest.computeIfAbsent(exchange.request(), request -> new Recorded(new ArrayList<>(), new AtomicInteger()))
+                    .exchanges().add(exchange);
+            String modelKey = modelKey(exchange.model(), exchange.stream());
+            byKind.computeIfAbsent(kind(modelKey, exchange.request()), kind -> new ArrayList<>()).add(exchange);
+            byModel.computeIfAbsent(modelKey, key -> new ArrayList<>()).add(exchange);
+        }
+        this.latencyScale = latencyScale;
+
+        try {
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Any path, so hf.api.url only has to name the host and port
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+
+        log.atInfo().setMessage("Replaying recorded upstream calls")
+                .addKeyValue("recordings", recordings)
+                .addKeyValue("calls", exchanges.size())
+                .addKeyValue("url", url())
+                .addKeyValue("latencyScale", latencyScale)
+                .log();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    // Requests answered with a call recorded for another body
+    public long substituted() {
+        return substituted.get();
+    }
+
+    public long replayed() {
+        return replayed.get();
+    }
+
+    Exchange match(String request, String model, boolean stream) {
+        Recorded recorded = byRequest.get(request);
+        if (recorded != null) {
+            return recorded.take();
+        }
+        substituted.incrementAndGet();
+        String modelKey = modelKey(model, stream);
+        List<Exchange> candidates = byKind.getOrDefault(kind(modelKey, request),
+                byModel.getOrDefault(modelKey, exchanges));
+        return candidates.get(Math.floorMod(request.hashCode(), candidates.size()));
+    }
+
+    private void handle(HttpExchange http) throws IOException {
+        replayed.incrementAndGet();
+        try (http) {
+            String request;
+            try (InputStream body = http.getRequestBody()) {
+                request = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Exchange exchange = match(request, field(request, "model"), "true".equals(field(request, "stream")));
+
+            byte[] response = exchange.response().getBytes(StandardCharsets.UTF_8);
+            if (exchange.contentType() != null) {
+                http.getResponseHeaders().set("Content-Type", exchange.contentType());
+            }
+            boolean streamed = exchange.contentType() != null && exchange.contentType().startsWith(EVENT_STREAM);
+            if (!streamed || response.length == 0) {
+                sleep(exchange.latencyMillis());
+                http.sendResponseHeaders(exchange.status(), response.length == 0 ? -1 : response.length);
+                if (response.length > 0) {
+                    try (OutputStream out = http.getResponseBody()) {
+                        out.write(response);
+                    }
+                }
+                return;
+            }
+
+            sleep(exchange.headersMillis());
+            http.sendResponseHeaders(exchange.status(), 0);
+            String[] events = exchange.response().split("(?<=\n\n)");
+            long perEvent = Math.max(0, exchange.latencyMillis() - exchange.headersMillis()) / events.length;
+            try (OutputStream out = http.getResponseBody()) {
+                for (String event : events) {
+                    sleep(perEvent);
+                    out.write(event.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sleep(long recordedMillis) throws InterruptedException {
+        long millis = Math.round(recordedMillis * latencyScale);
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private static String modelKey(String model, boolean stream) {
+        return model + (stream ? "|stream" : "|complete");
+    }
+
+    // A multi-item prompt lists every product, one HuggingFaceService#productDetails line each
+    private static String kind(String modelKey, String request) {
+        int items = 0;
+        for (int i = request.indexOf(PRODUCT); i >= 0; i = request.indexOf(PRODUCT, i + PRODUCT.length())) {
+            items++;
+        }
+        return modelKey + (items > 1 ? "|multi" : "|single");
+    }
+
+    // The value of a top-level string or boolean field of a request body; requests are written by
+    // PromptBuilder's DTO, so a full parse would only cost time on the replay path
+    private static String field(String request, String name) {
+        String key = "\"" + name + "\":";
+        int start = request.indexOf(key);
+        if (start < 0) {
+            return null;
+        }
+        start += key.length();
+        if (request.startsWith("\"", start)) {
+            int end = request.indexOf('"', start + 1);
+            return end < 0 ? null : request.substring(start + 1, end);
+        }
+        int end = start;
+        while (end < request.length() && Character.isLetter(request.charAt(end))) {
+            end++;
+        }
+        return request.substring(start, end);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        log.atInfo().setMessage("Stopped upstream replay")
+                .addKeyValue("replayed", replayed.get())
+                .addKeyValue("substituted", substituted.get())
+                .log();
+    }
+}
@@ -0,0 +1,13 @@
+package exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class EstimationJobNotFoundException extends RuntimeException {
+    public EstimationJobNotFoundException(UUID id) {
+        super("Estimation job with id " + id + " not found");
+    }
+}
@@ -0,0 +1,11 @@
+package exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class EstimationJobRejectedException extends RuntimeException {
+    public EstimationJobRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class EstimationNotPersistedException extends RuntimeException {
+    public EstimationNotPersistedException(String message) {
+        super(message);
+    }
+}
@@ -1,14 +1,20 @@
 package exception;
 
+import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.NonNull;
+import org.springframework.beans.TypeMismatchException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+@Slf4j
 @RestControllerAdvice
 public class GlobalHandlerException {
 
@@ -22,8 +28,74 @@ public class GlobalHandlerException {
         return new ResponseEntity<>(apiError, new HttpHeaders(), HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(EstimationJobNotFoundException.class)
+    public ResponseEntity<ApiError> handleEstimationJobNotFoundException(@NonNull EstimationJobNotFoundException ex) {
+        ApiError apiError = new ApiError(
+                ex.getMessage(),
+                HttpStatus.NOT_FOUND.value(),
+                java.time.LocalDateTime.now()
+        );
+        return new ResponseEntity<>(apiError, new HttpHeaders(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(InvalidEstimationRequestException.class)
+    public ResponseEntity<ApiError> handleInvalidEstimationRequestException(@NonNull InvalidEstimationRequestException ex) {
+        ApiError apiError = new ApiError(
+                ex.getMessage(),
+                HttpStatus.BAD_REQUEST.value(),
+                java.time.LocalDateTime.now()
+        );
+        return new ResponseEntity<>(apiError, new HttpHeaders(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(EstimationNotPersistedException.class)
+    public ResponseEntity<ApiError> handleEstimationNotPersistedException(@NonNull EstimationNotPersistedException ex) {
+        ApiError apiError = new ApiError(
+                ex.getMessage(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                java.time.LocalDateTime.now()
+        );
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<>(apiError, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(EstimationJobRejectedException.class)
+    public ResponseEntity<ApiError> handleEstimationJobRejectedException(@NonNull EstimationJobRejectedException ex) {
+        ApiError apiError = new ApiError(
+                ex.getMessage(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                java.time.LocalDateTime.now()
+        );
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<>(apiError, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // Unreadable JSON bodies and parameters of the wrong type
+    @ExceptionHandler({HttpMessageNotReadableException.class, TypeMismatchException.class})
+    public ResponseEntity<ApiError> handleUnreadableRequest(@NonNull Exception ex) {
+        ApiError apiError = new ApiError(
+                "Malformed request: " + ex.getMessage(),
+                HttpStatus.BAD_REQUEST.value(),
+                java.time.LocalDateTime.now()
+        );
+        return new ResponseEntity<>(apiError, new HttpHeaders(), HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiError> handleGlobalException(Exception ex) {
+        // Spring's own exceptions (missing parameter, unknown path, ResponseStatusException...) keep their status
+        if (ex instanceof ErrorResponse errorResponse) {
+            HttpStatusCode status = errorResponse.getStatusCode();
+            ApiError apiError = new ApiError(
+                    errorResponse.getBody().getDetail(),
+                    status.value(),
+                    java.time.LocalDateTime.now()
+            );
+            return new ResponseEntity<>(apiError, errorResponse.getHeaders(), status);
+        }
+        log.error("Unexpected error while handling a request", ex);
         ApiError apiError = new ApiError(
                 "An unexpected error occurred",
                 HttpStatus.INTERNAL_SERVER_ERROR.value(),
@@ -0,0 +1,11 @@
+package exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidEstimationRequestException extends RuntimeException {
+    public InvalidEstimationRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,116 @@
+-- The schema as Hibernate (ddl-auto=update) and schema.sql left it. Every statement is idempotent: databases
+-- created before the migrations are baselined at version 0 and run this too, which adds whatever they lack.
+
+-- Estimation ids are allocated in blocks of 50 (pooled-lo, see EstimationIdAllocator). Databases created while
+-- the id was generated per row still have the sequence at INCREMENT BY 1.
+CREATE SEQUENCE IF NOT EXISTS estimations_id_seq INCREMENT BY 50;
+ALTER SEQUENCE estimations_id_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS estimations (
+    id BIGINT PRIMARY KEY,
+    item_name VARCHAR(255) NOT NULL,
+    category VARCHAR(255),
+    brand VARCHAR(255),
+    year INTEGER NOT NULL,
+    condition_rating INTEGER CHECK (condition_rating BETWEEN 1 AND 10),
+    estimated_price NUMERIC(10,2),
+    ai_description TEXT,
+    created_at TIMESTAMP(6) NOT NULL
+);
+
+-- Fingerprints of model answers, looked up by EstimationDeduplicator from the partial index alone
+ALTER TABLE estimations ADD COLUMN IF NOT EXISTS fingerprint BIGINT;
+CREATE INDEX IF NOT EXISTS idx_estimations_fingerprint ON estimations(fingerprint, created_at) INCLUDE (id)
+    WHERE fingerprint IS NOT NULL;
+
+-- Keyset pagination on (created_at, id)
+CREATE INDEX IF NOT EXISTS idx_estimations_created_at ON estimations(created_at);
+
+-- Search (EstimationSearchRepository). Item names are matched on trigrams in estimation_item_names, the distinct
+-- names, which the triggers below keep complete (names are never removed); each match then reads its newest
+-- estimations from idx_estimations_item_name_created_at. AI descriptions are matched as full text.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_estimations_item_name_created_at ON estimations(item_name, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_estimations_description_text
+    ON estimations USING gin (to_tsvector('english', coalesce(ai_description, '')));
+
+CREATE TABLE IF NOT EXISTS estimation_item_names (
+    item_name VARCHAR(255) PRIMARY KEY
+);
+
+CREATE INDEX IF NOT EXISTS idx_estimation_item_names_trgm ON estimation_item_names USING gin (item_name gin_trgm_ops);
+
+CREATE OR REPLACE FUNCTION estimation_item_names_add() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    INSERT INTO estimation_item_names (item_name) SELECT DISTINCT item_name FROM added ON CONFLICT DO NOTHING;
+    RETURN NULL;
+END $$;
+
+-- Statement triggers, so a batch insert adds its names in one statement
+CREATE OR REPLACE TRIGGER estimations_item_names_insert AFTER INSERT ON estimations
+    REFERENCING NEW TABLE AS added FOR EACH STATEMENT EXECUTE FUNCTION estimation_item_names_add();
+CREATE OR REPLACE TRIGGER estimations_item_names_update AFTER UPDATE ON estimations
+    REFERENCING NEW TABLE AS added FOR EACH STATEMENT EXECUTE FUNCTION estimation_item_names_add();
+
+INSERT INTO estimation_item_names (item_name) SELECT DISTINCT item_name FROM estimations ON CONFLICT DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS estimation_jobs (
+    id UUID PRIMARY KEY,
+    status VARCHAR(20) NOT NULL CHECK (status IN ('PENDING', 'RUNNING', 'COMPLETED', 'FAILED')),
+    request_payload TEXT NOT NULL,
+    callback_url VARCHAR(2048),
+    estimation_id BIGINT,
+    error_message TEXT,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL
+);
+
+-- Stale job recovery (EstimationJobRepository)
+CREATE INDEX IF NOT EXISTS idx_estimation_jobs_status_updated_at ON estimation_jobs(status, updated_at);
+
+-- Price rollups behind /api/analytics/prices, maintained by EstimationRollupService. One row per day and
+-- combination of category, brand, year and condition rating, and per day and combination of at most two of them.
+-- dims has a bit set for each dimension the row is specific to (category 8, brand 4, year 2, condition 1);
+-- the others hold '' or 0, as do missing values. Prices are kept as a histogram with bins about 5% wide on a
+-- log scale, floor(ln(price) / ln(1.05)), each with its count, min and max.
+CREATE TABLE IF NOT EXISTS estimation_price_rollups (
+    dims SMALLINT NOT NULL,
+    category VARCHAR(255) NOT NULL,
+    brand VARCHAR(255) NOT NULL,
+    year INTEGER NOT NULL,
+    condition_rating INTEGER NOT NULL,
+    day DATE NOT NULL,
+    price_sum NUMERIC(20,2) NOT NULL,
+    bins SMALLINT[] NOT NULL,
+    bin_counts BIGINT[] NOT NULL,
+    bin_mins NUMERIC(10,2)[] NOT NULL,
+    bin_maxs NUMERIC(10,2)[] NOT NULL,
+    PRIMARY KEY (dims, category, brand, year, condition_rating, day)
+);
+
+CREATE INDEX IF NOT EXISTS idx_estimation_price_rollups_day ON estimation_price_rollups(day);
+
+-- The same per month (day is the first of the month), kept for months that no refresh rebuilds any more,
+-- so month and year buckets over long ranges read a row per month instead of one per day
+CREATE TABLE IF NOT EXISTS estimation_price_rollups_monthly (
+    dims SMALLINT NOT NULL,
+    category VARCHAR(255) NOT NULL,
+    brand VARCHAR(255) NOT NULL,
+    year INTEGER NOT NULL,
+    condition_rating INTEGER NOT NULL,
+    day DATE NOT NULL,
+    price_sum NUMERIC(20,2) NOT NULL,
+    bins SMALLINT[] NOT NULL,
+    bin_counts BIGINT[] NOT NULL,
+    bin_mins NUMERIC(10,2)[] NOT NULL,
+    bin_maxs NUMERIC(10,2)[] NOT NULL,
+    PRIMARY KEY (dims, category, brand, year, condition_rating, day)
+);
+
+CREATE INDEX IF NOT EXISTS idx_estimation_price_rollups_monthly_day ON estimation_price_rollups_monthly(day);
+
+-- Days whose estimations changed outside the recent window the rollups refresh anyway
+CREATE TABLE IF NOT EXISTS estimation_rollup_dirty_days (
+    day DATE PRIMARY KEY
+);
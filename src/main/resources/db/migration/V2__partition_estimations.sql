@@ -0,0 +1,69 @@
+-- estimations becomes a table partitioned by month of created_at, so range scans only read the months they cover,
+-- each month is vacuumed on its own, and old months can be detached and archived whole (EstimationPartitionService).
+-- The primary key has to include the partition key, so it is (id, created_at); ids stay unique, they all come
+-- from estimations_id_seq. The rows are copied over in this migration, in one transaction holding a lock on the
+-- old table: on a database with estimations it is an offline migration, run with the application stopped.
+
+-- Creates the partition holding the month of the given day unless it exists, and returns its name
+CREATE OR REPLACE FUNCTION create_estimation_partition(month DATE) RETURNS TEXT LANGUAGE plpgsql AS $$
+DECLARE
+    first_day DATE := date_trunc('month', month);
+    partition_name TEXT := 'estimations_p' || to_char(first_day, 'YYYY_MM');
+BEGIN
+    IF to_regclass(partition_name) IS NULL THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF estimations FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, first_day, first_day + INTERVAL '1 month');
+    END IF;
+    RETURN partition_name;
+END $$;
+
+ALTER TABLE estimations RENAME TO estimations_unpartitioned;
+-- A SERIAL column would take its sequence along when the old table is dropped
+ALTER SEQUENCE estimations_id_seq OWNED BY NONE;
+-- A SERIAL sequence is AS integer and would run out long before the BIGINT ids, handed out in blocks of 50
+ALTER SEQUENCE estimations_id_seq AS bigint;
+
+CREATE TABLE estimations (
+    id BIGINT NOT NULL,
+    item_name VARCHAR(255) NOT NULL,
+    category VARCHAR(255),
+    brand VARCHAR(255),
+    year INTEGER NOT NULL,
+    condition_rating INTEGER CHECK (condition_rating BETWEEN 1 AND 10),
+    estimated_price NUMERIC(10,2),
+    ai_description TEXT,
+    created_at TIMESTAMP(6) NOT NULL,
+    fingerprint BIGINT
+) PARTITION BY RANGE (created_at);
+
+-- Every month with estimations and the previous one, through three months ahead; the application keeps
+-- creating months ahead
+SELECT create_estimation_partition(month::date)
+FROM generate_series(
+        date_trunc('month', least((SELECT min(created_at) FROM estimations_unpartitioned), now() - INTERVAL '1 month')),
+        date_trunc('month', greatest((SELECT max(created_at) FROM estimations_unpartitioned), now()))
+            + INTERVAL '3 months',
+        INTERVAL '1 month') AS month;
+
+-- Rows from before created_at was required get the time of the migration
+INSERT INTO estimations
+    (id, item_name, category, brand, year, condition_rating, estimated_price, ai_description, created_at, fingerprint)
+SELECT id, item_name, category, brand, year, condition_rating, estimated_price, ai_description,
+       coalesce(created_at, now()), fingerprint
+FROM estimations_unpartitioned;
+
+DROP TABLE estimations_unpartitioned;
+
+-- Indexes created on the parent are created on every partition, present and future
+ALTER TABLE estimations ADD PRIMARY KEY (id, created_at);
+CREATE INDEX idx_estimations_created_at ON estimations(created_at);
+CREATE INDEX idx_estimations_fingerprint ON estimations(fingerprint, created_at) INCLUDE (id)
+    WHERE fingerprint IS NOT NULL;
+CREATE INDEX idx_estimations_item_name_created_at ON estimations(item_name, created_at, id);
+CREATE INDEX idx_estimations_description_text
+    ON estimations USING gin (to_tsvector('english', coalesce(ai_description, '')));
+
+CREATE TRIGGER estimations_item_names_insert AFTER INSERT ON estimations
+    REFERENCING NEW TABLE AS added FOR EACH STATEMENT EXECUTE FUNCTION estimation_item_names_add();
+CREATE TRIGGER estimations_item_names_update AFTER UPDATE ON estimations
+    REFERENCING NEW TABLE AS added FOR EACH STATEMENT EXECUTE FUNCTION estimation_item_names_add();
@@ -0,0 +1,16 @@
+-- One row per archived partition (EstimationPartitionService): the month it held, the range of its ids, so a lookup
+-- by id only opens the files that may hold it, and the gzipped COPY file under estimation.retention.archive-dir
+-- it was written to. A month archived twice, because rows for it arrived after it was archived, has two rows.
+CREATE TABLE estimation_archives (
+    id BIGSERIAL PRIMARY KEY,
+    partition_name VARCHAR(63) NOT NULL,
+    range_from TIMESTAMP(6) NOT NULL,
+    range_to TIMESTAMP(6) NOT NULL,
+    min_id BIGINT,
+    max_id BIGINT,
+    row_count BIGINT NOT NULL,
+    file VARCHAR(1024) NOT NULL,
+    archived_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_estimation_archives_range ON estimation_archives(range_from, range_to);
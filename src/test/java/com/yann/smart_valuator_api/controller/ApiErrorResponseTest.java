@@ -0,0 +1,117 @@
+package com.yann.smart_valuator_api.controller;
+
+import exception.EstimationJobRejectedException;
+import exception.EstimationNotPersistedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Closed afterwards: MockMvc makes it a context of its own
+@DirtiesContext
+@AutoConfigureMockMvc
+@Import(ApiErrorResponseTest.UnavailableController.class)
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false"
+})
+class ApiErrorResponseTest {
+
+    private static final String ITEM = """
+            {"itemName":"Nintendo Switch","brand":"Nintendo","category":"Console","year":2019,"conditionRating":7}
+            """;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    // Throws what the write-behind and the job queue throw when they cannot take a request
+    @RestController
+    static class UnavailableController {
+
+        @PostMapping("/test/not-persisted")
+        void notPersisted() {
+            throw new EstimationNotPersistedException("Estimation 1 is not saved yet, retry later");
+        }
+
+        @PostMapping("/test/job-rejected")
+        void jobRejected() {
+            throw new EstimationJobRejectedException("Estimation job queue is full, retry later");
+        }
+    }
+
+    @Test
+    void invalidCallbackUrlIsABadRequestWithAnApiError() throws Exception {
+        mockMvc.perform(post("/api/estimations/jobs")
+                        .param("callbackUrl", "http://127.0.0.1/hook")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ITEM))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400))
+                .andExpect(jsonPath("$.message").isNotEmpty())
+                .andExpect(jsonPath("$.timestamp").isNotEmpty())
+                // Not Boot's default error body
+                .andExpect(jsonPath("$.error").doesNotExist())
+                .andExpect(jsonPath("$.trace").doesNotExist());
+    }
+
+    @Test
+    void unknownJobIsNotFoundWithAnApiError() throws Exception {
+        UUID id = UUID.randomUUID();
+
+        mockMvc.perform(get("/api/estimations/jobs/{id}", id))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status").value(404))
+                .andExpect(jsonPath("$.message").value("Estimation job with id " + id + " not found"));
+    }
+
+    @Test
+    void malformedBodyIsABadRequestWithAnApiError() throws Exception {
+        mockMvc.perform(post("/api/estimations/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"itemName\": "))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400));
+    }
+
+    @Test
+    void unknownPathKeepsItsStatus() throws Exception {
+        mockMvc.perform(get("/api/no-such-endpoint"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status").value(404));
+    }
+
+    @Test
+    void unsavedEstimationIsUnavailableWithRetryAfter() throws Exception {
+        mockMvc.perform(post("/test/not-persisted"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.status").value(503))
+                .andExpect(jsonPath("$.message").value("Estimation 1 is not saved yet, retry later"));
+    }
+
+    @Test
+    void fullJobQueueIsUnavailableWithRetryAfter() throws Exception {
+        mockMvc.perform(post("/test/job-rejected"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.status").value(503))
+                .andExpect(jsonPath("$.message").value("Estimation job queue is full, retry later"));
+    }
+}
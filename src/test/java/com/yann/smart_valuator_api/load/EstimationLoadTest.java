@@ -0,0 +1,90 @@
+package com.yann.smart_valuator_api.load;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fires a burst of concurrent POST /api/estimations against a node whose upstream is a slow
+ * local stub, and reports how many estimations the node kept in flight at once. Subclasses
+ * pin the execution model; run with {@code mvn test -Pload-test}.
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "hf.api.key=load-test",
+                // Large enough that the upstream pool is not what limits either mode
+                "hf.http.max-connections=2000",
+                "hf.http.max-connections-per-route=2000",
+                "hf.http.connection-request-timeout=60s",
+                "hf.resilience.limiter.initial-limit=2000",
+                "hf.resilience.limiter.max-limit=2000",
+                "hf.resilience.latency-budget=60s",
+                // The item names repeat across runs, whose stored answers would otherwise be returned
+                "estimation.dedup.enabled=false"
+        }
+)
+abstract class EstimationLoadTest {
+
+    static final int CONCURRENCY = Integer.getInteger("load.concurrency", 1000);
+    static final long UPSTREAM_LATENCY_MS = Long.getLong("load.upstream-latency-ms", 2000);
+
+    static StubChatCompletionServer upstream;
+
+    @LocalServerPort
+    int port;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) throws IOException {
+        if (upstream == null) {
+            upstream = new StubChatCompletionServer(UPSTREAM_LATENCY_MS);
+        }
+        registry.add("hf.api.url", upstream::url);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        if (upstream != null) {
+            upstream.close();
+            upstream = null;
+        }
+    }
+
+    abstract String mode();
+
+    @Test
+    void sustainsConcurrentInFlightEstimations() throws Exception {
+        upstream.resetCounters();
+        // Distinct item names keep the result cache out of the measurement
+        List<String> bodies = IntStream.range(0, CONCURRENCY)
+                .mapToObj(i -> """
+                        {"itemName":"Load item %s-%d","brand":"Apple","category":"Smartphone","year":2022,"conditionRating":8}
+                        """.formatted(mode(), i))
+                .toList();
+
+        LoadGenerator.Report report = new LoadGenerator(port, CONCURRENCY).run(bodies);
+        log.info("[load] mode={} requests={} ok={} upstreamLatency={}ms peakInFlight={} "
+                        + "throughput={} req/s p50={}ms p99={}ms elapsed={}s",
+                mode(), report.requests(), report.succeeded(), UPSTREAM_LATENCY_MS, upstream.peakInFlight(),
+                "%.1f".formatted(report.throughput()), report.percentile(0.50), report.percentile(0.99),
+                "%.1f".formatted(report.elapsedSeconds()));
+
+        assertEquals(CONCURRENCY, report.succeeded());
+        assertPeakInFlight(upstream.peakInFlight());
+    }
+
+    abstract void assertPeakInFlight(int peakInFlight);
+}
@@ -0,0 +1,141 @@
+package com.yann.smart_valuator_api.load;
+
+import com.yann.smart_valuator_api.service.UpstreamRecorder;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends POST /api/estimations bodies to a running node, at most {@code concurrency} at a time,
+ * and reports throughput and latency percentiles.
+ */
+class LoadGenerator {
+
+    // HuggingFaceService#productDetails, as it appears in recorded prompts
+    private static final Pattern PRODUCT = Pattern.compile(
+            "Item: (.*), Brand: (.*), Category: (.*), Purchase Year: (\\d+), Condition: (\\d+)/10");
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    record Report(int requests, int succeeded, double elapsedSeconds, List<Long> sortedLatencies) {
+
+        double throughput() {
+            return requests / elapsedSeconds;
+        }
+
+        long percentile(double percentile) {
+            if (sortedLatencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.size()) - 1;
+            return sortedLatencies.get(Math.max(0, Math.min(index, sortedLatencies.size() - 1)));
+        }
+    }
+
+    private final URI target;
+    private final int concurrency;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    LoadGenerator(int port, int concurrency) {
+        this.target = URI.create("http://localhost:" + port + "/api/estimations");
+        this.concurrency = concurrency;
+    }
+
+    Report run(List<String> bodies) throws Exception {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger succeeded = new AtomicInteger();
+        Semaphore slots = new Semaphore(concurrency);
+
+        long started = System.nanoTime();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(bodies.size());
+            for (String body : bodies) {
+                slots.acquire();
+                futures.add(callers.submit(() -> {
+                    try {
+                        long sent = System.nanoTime();
+                        HttpResponse<Void> response = send(body);
+                        latencies.add((System.nanoTime() - sent) / 1_000_000);
+                        if (response.statusCode() == 200) {
+                            succeeded.incrementAndGet();
+                        }
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1_000_000_000.0;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return new Report(bodies.size(), succeeded.get(), elapsedSeconds, sorted);
+    }
+
+    /**
+     * Request bodies for the items priced in the recorded calls, in recording order, so that a
+     * replayed run asks for what was recorded. Multi-item prompts give one body per item.
+     */
+    static List<String> recordedItems(List<UpstreamRecorder.Exchange> exchanges) {
+        List<String> bodies = new ArrayList<>();
+        for (UpstreamRecorder.Exchange exchange : exchanges) {
+            JsonNode messages = OBJECT_MAPPER.readTree(exchange.request()).path("messages");
+            for (JsonNode message : messages) {
+                if (!"user".equals(message.path("role").asString(null))) {
+                    continue;
+                }
+                Matcher product = PRODUCT.matcher(message.path("content").asString(""));
+                while (product.find()) {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("itemName", product.group(1));
+                    item.put("brand", product.group(2));
+                    item.put("category", product.group(3));
+                    item.put("year", Integer.parseInt(product.group(4)));
+                    item.put("conditionRating", Integer.parseInt(product.group(5)));
+                    bodies.add(OBJECT_MAPPER.writeValueAsString(item));
+                }
+            }
+        }
+        return bodies;
+    }
+
+    private HttpResponse<Void> send(String body) {
+        HttpRequest request = HttpRequest.newBuilder(target)
+                .timeout(Duration.ofMinutes(5))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.yann.smart_valuator_api.load;
+
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@TestPropertySource(properties = {
+        "spring.threads.virtual.enabled=false",
+        "server.tomcat.threads.max=200"
+})
+class PlatformThreadLoadTest extends EstimationLoadTest {
+
+    @Override
+    String mode() {
+        return "platform";
+    }
+
+    @Override
+    void assertPeakInFlight(int peakInFlight) {
+        // Each in-flight estimation holds a Tomcat worker, so the pool size is the ceiling
+        assertTrue(peakInFlight <= 200, "peak in-flight " + peakInFlight + " exceeded the worker pool");
+    }
+}
@@ -0,0 +1,20 @@
+package com.yann.smart_valuator_api.load;
+
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ActiveProfiles("reactive")
+class ReactiveLoadTest extends EstimationLoadTest {
+
+    @Override
+    String mode() {
+        return "reactive";
+    }
+
+    @Override
+    void assertPeakInFlight(int peakInFlight) {
+        // No worker is held while the upstream answers, so nothing near the platform pool size caps it
+        assertTrue(peakInFlight > 200, "peak in-flight " + peakInFlight + " stayed within a worker pool's size");
+    }
+}
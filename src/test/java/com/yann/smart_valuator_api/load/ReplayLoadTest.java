@@ -0,0 +1,127 @@
+package com.yann.smart_valuator_api.load;
+
+import com.yann.smart_valuator_api.service.UpstreamRecorder;
+import com.yann.smart_valuator_api.service.UpstreamReplayServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the whole application against recorded model calls (the {@code replay} profile) and
+ * reports throughput and latency, with no network. The items sent are those of the recording,
+ * so each call finds its recorded answer:
+ *
+ * <pre>
+ * mvn test -Pload-test -Dtest=ReplayLoadTest -Dload.recording=data/recordings \
+ *     -Dload.requests=5000 -Dload.concurrency=200 -Dload.latency-scale=0.5
+ * </pre>
+ *
+ * Without {@code load.recording} a synthetic recording is used: 200 items whose answers take a
+ * log-normally distributed time with a median of 1.5s.
+ */
+@Slf4j
+@Tag("load")
+@ActiveProfiles("replay")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "hf.http.max-connections=2000",
+                "hf.http.max-connections-per-route=2000",
+                "hf.http.connection-request-timeout=60s",
+                "hf.resilience.limiter.initial-limit=2000",
+                "hf.resilience.limiter.max-limit=2000",
+                "hf.resilience.latency-budget=60s",
+                // Items repeat across runs, whose stored answers would otherwise be returned
+                "estimation.dedup.enabled=false"
+        }
+)
+class ReplayLoadTest {
+
+    static final String RECORDING = System.getProperty("load.recording");
+    static final int REQUESTS = Integer.getInteger("load.requests", 1000);
+    static final int CONCURRENCY = Integer.getInteger("load.concurrency", 200);
+    static final String LATENCY_SCALE = System.getProperty("load.latency-scale", "1.0");
+
+    static final String MODEL = "meta-llama/Llama-3.3-70B-Instruct";
+
+    static Path recordings;
+    static int replayPort;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    UpstreamReplayServer upstreamReplayServer;
+
+    @DynamicPropertySource
+    static void replayProperties(DynamicPropertyRegistry registry) throws IOException {
+        if (recordings == null) {
+            recordings = RECORDING != null ? Path.of(RECORDING) : synthetic();
+            try (ServerSocket socket = new ServerSocket(0)) {
+                replayPort = socket.getLocalPort();
+            }
+        }
+        registry.add("hf.replay.recordings", recordings::toString);
+        registry.add("hf.replay.port", () -> replayPort);
+        registry.add("hf.replay.latency-scale", () -> LATENCY_SCALE);
+    }
+
+    @Test
+    void replaysRecordedCalls() throws Exception {
+        List<String> items = LoadGenerator.recordedItems(UpstreamRecorder.read(recordings));
+        assertFalse(items.isEmpty(), "no items in the recorded prompts");
+        List<String> bodies = IntStream.range(0, REQUESTS).mapToObj(i -> items.get(i % items.size())).toList();
+
+        LoadGenerator.Report report = new LoadGenerator(port, CONCURRENCY).run(bodies);
+        log.info("[load] mode=replay requests={} ok={} concurrency={} latencyScale={} upstreamCalls={} "
+                        + "substituted={} throughput={} req/s p50={}ms p90={}ms p99={}ms elapsed={}s",
+                report.requests(), report.succeeded(), CONCURRENCY, LATENCY_SCALE,
+                upstreamReplayServer.replayed(), upstreamReplayServer.substituted(),
+                "%.1f".formatted(report.throughput()), report.percentile(0.50), report.percentile(0.90),
+                report.percentile(0.99), "%.1f".formatted(report.elapsedSeconds()));
+
+        assertEquals(REQUESTS, report.succeeded());
+        assertTrue(upstreamReplayServer.replayed() > 0, "no call reached the replay server");
+    }
+
+    // Seeded, so every run replays the same calls
+    private static Path synthetic() throws IOException {
+        Path directory = Files.createTempDirectory("replay-load");
+        Random random = new Random(42);
+        try (UpstreamRecorder recorder = new UpstreamRecorder(true, directory)) {
+            for (int i = 0; i < 200; i++) {
+                String product = "Item: Replay item %d, Brand: Apple, Category: Smartphone, Purchase Year: %d, Condition: %d/10"
+                        .formatted(i, 2018 + i % 6, 5 + i % 5);
+                String request = """
+                        {"model":"%s","messages":[{"role":"user","content":"Product:\\n%s"}],\
+                        "temperature":0.3,"max_tokens":200,"stream":false}""".formatted(MODEL, product);
+                String content = "{\\\"description\\\":\\\"Replayed estimation\\\",\\\"estimatedPrice\\\":%d.00,\\\"verdict\\\":\\\"interesting\\\"}"
+                        .formatted(150 + random.nextInt(600));
+                String response = """
+                        {"choices":[{"index":0,"message":{"role":"assistant","content":"%s"}}]}""".formatted(content);
+                long latencyMillis = Math.round(1500 * Math.exp(0.5 * random.nextGaussian()));
+                recorder.write(new UpstreamRecorder.Exchange(
+                        MODEL, false, request, 200, "application/json", latencyMillis, latencyMillis, response));
+            }
+        }
+        return directory;
+    }
+}
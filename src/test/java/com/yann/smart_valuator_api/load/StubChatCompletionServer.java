@@ -0,0 +1,136 @@
+package com.yann.smart_valuator_api.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for the chat-completions router: answers every request with a fixed
+ * estimation, or an error status, after a configurable delay (optionally per model) and
+ * tracks how many requests are in flight.
+ */
+public class StubChatCompletionServer implements AutoCloseable {
+
+    static final String RESPONSE = """
+            {"choices":[{"index":0,"message":{"role":"assistant","content":\
+            "{\\"description\\":\\"Stub estimation\\",\\"estimatedPrice\\":420.00,\\"verdict\\":\\"interesting\\"}"}}]}
+            """;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private volatile long latencyMillis;
+    private volatile int errorStatus;
+    private final Map<String, Long> modelLatencyMillis = new ConcurrentHashMap<>();
+    private volatile Function<String, String> responder;
+
+    public StubChatCompletionServer(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        this.server.createContext("/v1/chat/completions", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    // Message content to answer with, computed from the raw request body; null restores RESPONSE
+    public void setResponder(Function<String, String> responder) {
+        this.responder = responder;
+    }
+
+    // Delay for requests naming this model, in place of the default latency
+    public void setModelLatencyMillis(String model, long latencyMillis) {
+        modelLatencyMillis.put(model, latencyMillis);
+    }
+
+    // Answer every request with this status and an empty body; 0 restores normal responses
+    public void setErrorStatus(int errorStatus) {
+        this.errorStatus = errorStatus;
+    }
+
+    public int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    public int requests() {
+        return requests.get();
+    }
+
+    public void resetCounters() {
+        peakInFlight.set(0);
+        requests.set(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+        requests.incrementAndGet();
+        try (exchange) {
+            String request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Thread.sleep(latencyFor(request));
+
+            int status = errorStatus;
+            if (status != 0) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+
+            Function<String, String> answer = responder;
+            String body = answer == null ? RESPONSE : envelope(answer.apply(request));
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static String envelope(String content) {
+        String escaped = content.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return "{\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + escaped + "\"}}]}";
+    }
+
+    private long latencyFor(String request) {
+        for (Map.Entry<String, Long> entry : modelLatencyMillis.entrySet()) {
+            if (request.contains("\"model\":\"" + entry.getKey() + "\"")) {
+                return entry.getValue();
+            }
+        }
+        return latencyMillis;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
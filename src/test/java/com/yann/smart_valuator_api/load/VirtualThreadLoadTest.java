@@ -0,0 +1,23 @@
+package com.yann.smart_valuator_api.load;
+
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@TestPropertySource(properties = {
+        "spring.threads.virtual.enabled=true",
+        "server.tomcat.threads.max=200"
+})
+class VirtualThreadLoadTest extends EstimationLoadTest {
+
+    @Override
+    String mode() {
+        return "virtual";
+    }
+
+    @Override
+    void assertPeakInFlight(int peakInFlight) {
+        // Same worker setting as the platform run, but requests are no longer bound by it
+        assertTrue(peakInFlight > 200, "peak in-flight " + peakInFlight + " stayed within the worker pool");
+    }
+}
@@ -0,0 +1,177 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.BatchEstimationResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Closed afterwards: its small batch limits make it a context of its own
+@DirtiesContext
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false",
+        "estimation.batch.max-items=6",
+        "estimation.batch.insert-batch-size=2",
+        "estimation.batch.max-in-flight=2"
+})
+class BatchEstimationServiceTest {
+
+    @Autowired
+    BatchEstimationService batchEstimationService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void ndjsonItemsAreEstimatedStoredAndIndexed() throws IOException {
+        String prefix = "Canon AE-1 ndjson " + System.nanoTime() + " ";
+        String body = IntStream.range(0, 5)
+                .mapToObj(i -> item(prefix + i))
+                .collect(Collectors.joining("\n"));
+
+        List<BatchEstimationResult> results = estimate(body);
+
+        assertEquals(List.of(0, 1, 2, 3, 4), indexes(results));
+        for (BatchEstimationResult result : results) {
+            assertNull(result.getError());
+            assertEquals(prefix + result.getIndex(), result.getEstimation().getItemName());
+            assertNotNull(result.getEstimation().getId());
+            assertNotNull(result.getEstimation().getEstimatedPrice());
+        }
+        assertEquals(5, rowCount(prefix + "%"));
+    }
+
+    @Test
+    void jsonArrayIsReadLikeNdjson() throws IOException {
+        String prefix = "Canon AE-1 array " + System.nanoTime() + " ";
+        String body = "[" + item(prefix + 0) + ", " + item(prefix + 1) + "]";
+
+        List<BatchEstimationResult> results = estimate(body);
+
+        assertEquals(List.of(0, 1), indexes(results));
+        assertEquals(prefix + 1, sorted(results).get(1).getEstimation().getItemName());
+    }
+
+    @Test
+    void identicalItemsAreEstimatedOnceAndAnsweredAtEachIndex() throws IOException {
+        String name = "Canon AE-1 twice " + System.nanoTime();
+        String other = "Canon A-1 " + System.nanoTime();
+        String body = String.join("\n", item(name), item(other), item(name.toUpperCase()), item(name));
+
+        List<BatchEstimationResult> results = sorted(estimate(body));
+
+        assertEquals(List.of(0, 1, 2, 3), indexes(results));
+        Long id = results.get(0).getEstimation().getId();
+        assertEquals(id, results.get(2).getEstimation().getId());
+        assertEquals(id, results.get(3).getEstimation().getId());
+        assertNotEquals(id, results.get(1).getEstimation().getId());
+        assertEquals(1, rowCount(name));
+    }
+
+    @Test
+    void itemsWithoutNameOrYearGetAnErrorLine() throws IOException {
+        String name = "Canon AE-1 partial " + System.nanoTime();
+        String body = String.join("\n",
+                item(name),
+                "{\"brand\":\"Canon\",\"year\":1976}",
+                "{\"itemName\":\"Canon AE-1 no year\"}",
+                item(name + " second"));
+
+        List<BatchEstimationResult> results = sorted(estimate(body));
+
+        assertEquals(List.of(0, 1, 2, 3), indexes(results));
+        assertNotNull(results.get(0).getEstimation());
+        assertEquals("Item 1 is missing itemName or year", results.get(1).getError());
+        assertNull(results.get(1).getEstimation());
+        assertEquals("Item 2 is missing itemName or year", results.get(2).getError());
+        assertNotNull(results.get(3).getEstimation());
+    }
+
+    @Test
+    void batchOverTheLimitEndsWithAnErrorLine() throws IOException {
+        String prefix = "Canon AE-1 limit " + System.nanoTime() + " ";
+        String body = IntStream.range(0, 8)
+                .mapToObj(i -> item(prefix + i))
+                .collect(Collectors.joining("\n"));
+
+        List<BatchEstimationResult> results = sorted(estimate(body));
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6), indexes(results));
+        assertEquals("Batch exceeds the maximum of 6 items", results.get(6).getError());
+        assertEquals(6, rowCount(prefix + "%"));
+    }
+
+    @Test
+    void malformedBodyEndsWithAnErrorLineAfterTheItemsBefore() throws IOException {
+        String name = "Canon AE-1 malformed " + System.nanoTime();
+        String body = item(name) + "\n{\"itemName\": \"torn";
+
+        List<BatchEstimationResult> results = sorted(estimate(body));
+
+        assertEquals(List.of(0, 1), indexes(results));
+        assertEquals(name, results.get(0).getEstimation().getItemName());
+        assertTrue(results.get(1).getError().startsWith("Malformed batch body"), results.get(1).getError());
+    }
+
+    @Test
+    void onlyErrorLinesHaveAnErrorField() throws IOException {
+        String body = item("Canon AE-1 fields " + System.nanoTime()) + "\n{\"brand\":\"Canon\"}";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchEstimationService.estimate(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonNode> lines = objectMapper.readerFor(JsonNode.class).<JsonNode>readValues(out.toByteArray()).readAll();
+        JsonNode estimated = lines.stream().filter(line -> line.get("index").asInt() == 0).findFirst().orElseThrow();
+        JsonNode failed = lines.stream().filter(line -> line.get("index").asInt() == 1).findFirst().orElseThrow();
+        assertFalse(estimated.has("error"));
+        assertTrue(failed.get("estimation").isNull());
+        assertEquals("Item 1 is missing itemName or year", failed.get("error").asString());
+    }
+
+    private List<BatchEstimationResult> estimate(String body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchEstimationService.estimate(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+        return objectMapper.readerFor(BatchEstimationResult.class)
+                .<BatchEstimationResult>readValues(out.toByteArray())
+                .readAll();
+    }
+
+    private static List<BatchEstimationResult> sorted(List<BatchEstimationResult> results) {
+        return results.stream().sorted(Comparator.comparingInt(BatchEstimationResult::getIndex)).toList();
+    }
+
+    // Every index once; the lines themselves come in the order items finish
+    private static List<Integer> indexes(List<BatchEstimationResult> results) {
+        return results.stream().map(BatchEstimationResult::getIndex).sorted().toList();
+    }
+
+    private int rowCount(String itemNamePattern) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM estimations WHERE item_name LIKE ?", Integer.class, itemNamePattern);
+    }
+
+    private static String item(String name) {
+        return """
+                {"itemName":"%s","brand":"Canon","category":"Camera","year":1976,"conditionRating":7}
+                """.formatted(name).strip();
+    }
+}
@@ -0,0 +1,98 @@
+package com.yann.smart_valuator_api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void opensOnceTheFailureRateIsReachedAndRecoversAfterHalfOpenTrials() {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, TimeUnit.SECONDS.toNanos(30), 2, clock::get);
+
+        // Three failures are not enough calls to judge
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // Only the configured number of trial calls get through
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void failedTrialReopensAndOldFailuresLeaveTheWindow() {
+        CircuitBreaker breaker = new CircuitBreaker(4, 4, 0.5, 1_000, 1, clock::get);
+        breaker.onFailure();
+        for (int i = 0; i < 5; i++) {
+            breaker.onSuccess();
+        }
+        breaker.onFailure();
+        // One failure in the last four calls
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        clock.addAndGet(1_000);
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void limiterBacksOffOnSlowCallsAndGrowsOnlyWhenSaturated() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 2, 16, 0.5, 100);
+        assertEquals(8, fill(limiter));
+        limiter.onSuccess(500);
+        assertEquals(4, limiter.limit());
+        for (int i = 0; i < 7; i++) {
+            limiter.onDropped();
+        }
+        assertEquals(2, limiter.limit(), "never below the minimum");
+        assertEquals(0, limiter.inFlight());
+
+        // Fast calls at full use of the limit grow it up to the maximum
+        for (int round = 0; round < 100; round++) {
+            int acquired = fill(limiter);
+            for (int i = 0; i < acquired; i++) {
+                limiter.onSuccess(10);
+            }
+        }
+        assertEquals(16, limiter.limit());
+
+        // One call at a time is far from saturating, so it does not grow a lowered limit
+        limiter.tryAcquire();
+        limiter.onDropped();
+        int lowered = limiter.limit();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.onSuccess(10);
+        }
+        assertEquals(lowered, limiter.limit());
+    }
+
+    private static int fill(AdaptiveConcurrencyLimiter limiter) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+}
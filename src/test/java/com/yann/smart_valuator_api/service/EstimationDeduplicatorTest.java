@@ -0,0 +1,152 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false",
+        "estimation.analytics.initial-delay=1h",
+        "estimation.dedup.max-age=1d"
+})
+class EstimationDeduplicatorTest {
+
+    @Autowired
+    EstimationDeduplicator estimationDeduplicator;
+
+    @Autowired
+    EstimationJdbcRepository estimationJdbcRepository;
+
+    @Autowired
+    EstimationService estimationService;
+
+    @Autowired
+    BatchEstimationService batchEstimationService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void recentModelAnswerIsReturnedForTheSameItem() {
+        String name = "Walkman WM-" + System.nanoTime();
+        Estimation stored = modelAnswer(name, LocalDateTime.now().minusHours(3));
+        estimationJdbcRepository.batchInsert(List.of(stored));
+
+        Estimation asked = item("  " + name.toUpperCase() + " ");
+        Estimation found = estimationDeduplicator.findRecent(asked);
+        assertNotNull(found);
+        assertEquals(stored.getId(), found.getId());
+
+        // Create answers with the stored row instead of estimating again
+        assertEquals(stored.getId(), estimationService.generateAiEstimation(item(name)).getId());
+
+        Estimation otherCondition = item(name);
+        otherCondition.setConditionRating(4);
+        assertNull(estimationDeduplicator.findRecent(otherCondition));
+    }
+
+    @Test
+    void batchItemsAreAnsweredWithTheStoredRow() throws IOException {
+        String name = "Walkman WM-" + System.nanoTime();
+        Estimation stored = modelAnswer(name, LocalDateTime.now().minusHours(1));
+        estimationJdbcRepository.batchInsert(List.of(stored));
+        String fresh = "Walkman fresh WM-" + System.nanoTime();
+
+        String body = objectMapper.writeValueAsString(item(name)) + "\n" + objectMapper.writeValueAsString(item(fresh));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchEstimationService.estimate(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonNode> lines = objectMapper.readerFor(JsonNode.class)
+                .<JsonNode>readValues(out.toByteArray()).readAll();
+        JsonNode reused = lines.stream().filter(line -> line.get("index").asInt() == 0).findFirst().orElseThrow();
+        assertEquals(stored.getId().longValue(), reused.get("estimation").get("id").asLong());
+        assertEquals(1, rowCount(name));
+        assertEquals(1, rowCount(fresh));
+    }
+
+    @Test
+    void fingerprintIsNotPartOfTheRepresentation() {
+        Estimation answer = modelAnswer("Walkman WM-FX", LocalDateTime.now());
+        answer.setId(1L);
+
+        assertFalse(objectMapper.writeValueAsString(answer).contains("fingerprint"));
+        assertEquals(EstimationEntityCache.etag(answer), EstimationEntityCache.etag(withoutFingerprint(answer)));
+    }
+
+    @Test
+    void staleAndFallbackRowsAreNotReused() {
+        String stale = "Discman D-" + System.nanoTime();
+        estimationJdbcRepository.batchInsert(List.of(modelAnswer(stale, LocalDateTime.now().minusDays(2))));
+        assertNull(estimationDeduplicator.findRecent(item(stale)));
+
+        // Without a model every price here is a fallback one, which gets no fingerprint
+        String fallback = "Minidisc MZ-" + System.nanoTime();
+        Estimation first = estimationService.generateAiEstimation(item(fallback));
+        assertNull(first.getFingerprint());
+        assertNotEquals(first.getId(), estimationService.generateAiEstimation(item(fallback)).getId());
+    }
+
+    @Test
+    void fingerprintIgnoresCaseAndSpacing() {
+        Estimation a = item("Game  Boy Color");
+        Estimation b = item(" game boy color ");
+        b.setBrand("NINTENDO");
+
+        assertEquals(EstimationCacheKey.of(a).fingerprint(), EstimationCacheKey.of(b).fingerprint());
+        b.setYear(1999);
+        assertNotEquals(EstimationCacheKey.of(a).fingerprint(), EstimationCacheKey.of(b).fingerprint());
+    }
+
+    private int rowCount(String itemName) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM estimations WHERE item_name = ?", Integer.class, itemName);
+    }
+
+    private static Estimation withoutFingerprint(Estimation estimation) {
+        Estimation copy = item(estimation.getItemName());
+        copy.setId(estimation.getId());
+        copy.setEstimatedPrice(estimation.getEstimatedPrice());
+        copy.setAiDescription(estimation.getAiDescription());
+        copy.setCreatedAt(estimation.getCreatedAt());
+        return copy;
+    }
+
+    private static Estimation modelAnswer(String name, LocalDateTime createdAt) {
+        Estimation estimation = item(name);
+        estimation.setEstimatedPrice(new BigDecimal("85.00"));
+        estimation.setAiDescription("Portable cassette player");
+        estimation.setCreatedAt(createdAt);
+        estimation.setFingerprint(EstimationCacheKey.of(estimation).fingerprint());
+        return estimation;
+    }
+
+    private static Estimation item(String name) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setBrand("Nintendo");
+        estimation.setCategory("Electronics");
+        estimation.setYear(1998);
+        estimation.setConditionRating(7);
+        return estimation;
+    }
+}
@@ -0,0 +1,85 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EstimationEntityCacheTest {
+
+    private final InProcessInvalidationChannel channel = new InProcessInvalidationChannel();
+    // Two nodes sharing one invalidation channel
+    private final EstimationEntityCache nodeA = new EstimationEntityCache(channel, true, 100, Duration.ofMinutes(10));
+    private final EstimationEntityCache nodeB = new EstimationEntityCache(channel, true, 100, Duration.ofMinutes(10));
+
+    @Test
+    void readsThroughOnceAndServesFromCache() {
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            Estimation estimation = nodeA.get(1L, id -> {
+                loads.incrementAndGet();
+                return estimation(id, "iPhone 13");
+            });
+            assertEquals("iPhone 13", estimation.getItemName());
+        }
+        assertEquals(1, loads.get());
+
+        // A missing estimation is not cached
+        assertNull(nodeA.get(2L, id -> null));
+        assertEquals("Found", nodeA.get(2L, id -> estimation(id, "Found")).getItemName());
+    }
+
+    @Test
+    void evictionReachesEveryNode() {
+        nodeA.put(estimation(1L, "Old"));
+        nodeB.put(estimation(1L, "Old"));
+
+        nodeA.evict(1L);
+
+        assertEquals("New", nodeA.get(1L, id -> estimation(id, "New")).getItemName());
+        assertEquals("New", nodeB.get(1L, id -> estimation(id, "New")).getItemName());
+    }
+
+    @Test
+    void missedInvalidationsClearTheCache() {
+        nodeB.put(estimation(1L, "Old"));
+        nodeB.put(estimation(2L, "Old"));
+
+        nodeB.missedInvalidations();
+
+        assertEquals("New", nodeB.get(1L, id -> estimation(id, "New")).getItemName());
+        assertEquals("New", nodeB.get(2L, id -> estimation(id, "New")).getItemName());
+    }
+
+    @Test
+    void etagFollowsTheRepresentation() {
+        String etag = EstimationEntityCache.etag(estimation(1L, "iPhone 13"));
+
+        assertTrue(etag.matches("\"[0-9a-f]+\""));
+        assertEquals(etag, EstimationEntityCache.etag(estimation(1L, "iPhone 13")));
+        assertNotEquals(etag, EstimationEntityCache.etag(estimation(1L, "iPhone 14")));
+
+        Estimation repriced = estimation(1L, "iPhone 13");
+        repriced.setEstimatedPrice(new BigDecimal("410.00"));
+        assertNotEquals(etag, EstimationEntityCache.etag(repriced));
+    }
+
+    private static Estimation estimation(Long id, String itemName) {
+        Estimation estimation = new Estimation();
+        estimation.setId(id);
+        estimation.setItemName(itemName);
+        estimation.setCategory("smartphone");
+        estimation.setBrand("Apple");
+        estimation.setYear(2021);
+        estimation.setConditionRating(8);
+        estimation.setEstimatedPrice(new BigDecimal("420.00"));
+        estimation.setAiDescription("Good condition");
+        estimation.setCreatedAt(LocalDateTime.of(2026, 1, 15, 10, 30));
+        return estimation;
+    }
+}
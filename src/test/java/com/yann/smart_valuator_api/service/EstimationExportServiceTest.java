@@ -0,0 +1,170 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false"
+})
+class EstimationExportServiceTest {
+
+    private static final String AWKWARD_DESCRIPTION = "Sold as \"mint\", boxed,\nwith manual\r\nand strap";
+
+    @Autowired
+    EstimationExportService estimationExportService;
+
+    @Autowired
+    EstimationJdbcRepository estimationJdbcRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void csvQuotesCommasQuotesAndLineBreaks() throws IOException {
+        Estimation awkward = insert("Olympus OM-1, black", AWKWARD_DESCRIPTION);
+        Estimation plain = insert("Olympus OM-2", null);
+
+        List<List<String>> records = parseCsv(new String(export(EstimationExportService.Format.CSV, false),
+                StandardCharsets.UTF_8));
+
+        assertEquals(List.of("id", "item_name", "category", "brand", "year", "condition_rating",
+                "estimated_price", "ai_description", "created_at"), records.getFirst());
+        List<String> awkwardRecord = record(records, awkward.getId());
+        assertEquals("Olympus OM-1, black", awkwardRecord.get(1));
+        assertEquals(AWKWARD_DESCRIPTION, awkwardRecord.get(7));
+        assertEquals("149.50", awkwardRecord.get(6));
+        assertEquals(awkward.getCreatedAt(), LocalDateTime.parse(awkwardRecord.get(8)));
+        // Nulls are empty fields
+        assertEquals("", record(records, plain.getId()).get(7));
+        for (List<String> record : records) {
+            assertEquals(9, record.size(), record.toString());
+        }
+    }
+
+    @Test
+    void ndjsonIsOneObjectPerLineInIdOrder() throws IOException {
+        Estimation awkward = insert("Olympus OM-1n", AWKWARD_DESCRIPTION);
+
+        String body = new String(export(EstimationExportService.Format.NDJSON, false), StandardCharsets.UTF_8);
+
+        assertTrue(body.endsWith("\n"));
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            rows.add(objectMapper.readTree(line));
+        }
+        assertIdsAscending(rows.stream().map(row -> row.get("id").asLong()).toList());
+        JsonNode exported = rows.stream()
+                .filter(row -> row.get("id").asLong() == awkward.getId())
+                .findFirst()
+                .orElseThrow();
+        assertEquals(AWKWARD_DESCRIPTION, exported.get("aiDescription").asString());
+        assertFalse(exported.has("fingerprint"));
+    }
+
+    @Test
+    void gzipWrapsTheSameRows() throws IOException {
+        Estimation awkward = insert("Olympus OM-4", AWKWARD_DESCRIPTION);
+
+        byte[] compressed = export(EstimationExportService.Format.CSV, true);
+
+        byte[] csv;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            csv = in.readAllBytes();
+        }
+        List<List<String>> records = parseCsv(new String(csv, StandardCharsets.UTF_8));
+        assertEquals(AWKWARD_DESCRIPTION, record(records, awkward.getId()).get(7));
+        assertIdsAscending(records.subList(1, records.size()).stream().map(record -> Long.parseLong(record.getFirst())).toList());
+    }
+
+    private byte[] export(EstimationExportService.Format format, boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        estimationExportService.export(format, gzip, out);
+        return out.toByteArray();
+    }
+
+    private Estimation insert(String name, String description) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setBrand("Olympus");
+        estimation.setCategory("Camera");
+        estimation.setYear(1975);
+        estimation.setConditionRating(6);
+        estimation.setEstimatedPrice(new BigDecimal("149.50"));
+        estimation.setAiDescription(description);
+        estimation.setCreatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        estimationJdbcRepository.batchInsert(List.of(estimation));
+        return estimation;
+    }
+
+    private static List<String> record(List<List<String>> records, long id) {
+        return records.stream()
+                .filter(record -> record.getFirst().equals(String.valueOf(id)))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static void assertIdsAscending(List<Long> ids) {
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1) < ids.get(i), "ids out of order at " + i);
+        }
+    }
+
+    // RFC 4180, strict: quoted fields may hold commas, doubled quotes and line breaks; records end with \n
+    private static List<List<String>> parseCsv(String csv) {
+        List<List<String>> records = new ArrayList<>();
+        List<String> record = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < csv.length(); i++) {
+            char c = csv.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < csv.length() && csv.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                assertEquals(0, field.length(), "quote inside an unquoted field");
+                quoted = true;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                record.add(field.toString());
+                field.setLength(0);
+                records.add(record);
+                record = new ArrayList<>();
+            } else {
+                assertNotEquals('\r', c, "bare carriage return outside quotes");
+                field.append(c);
+            }
+        }
+        assertFalse(quoted, "unterminated quoted field");
+        assertTrue(record.isEmpty() && field.isEmpty(), "last record not terminated");
+        return records;
+    }
+}
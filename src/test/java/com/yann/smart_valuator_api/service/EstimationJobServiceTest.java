@@ -0,0 +1,223 @@
+package com.yann.smart_valuator_api.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.yann.smart_valuator_api.DTO.EstimationJobResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.entity.EstimationJob;
+import com.yann.smart_valuator_api.entity.EstimationJobStatus;
+import com.yann.smart_valuator_api.repository.EstimationJobRepository;
+import exception.EstimationJobNotFoundException;
+import exception.InvalidEstimationRequestException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Closed afterwards: its callback and recovery settings make it a context of its own
+@DirtiesContext
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false",
+        // The test drives recovery itself
+        "estimation.jobs.recovery-initial-delay=1h",
+        // The callback receiver below listens on loopback
+        "estimation.jobs.callback.allowed-hosts=127.0.0.1"
+})
+class EstimationJobServiceTest {
+
+    static HttpServer callbackServer;
+    static final BlockingQueue<String> callbacks = new LinkedBlockingQueue<>();
+
+    @Autowired
+    EstimationJobService estimationJobService;
+
+    @Autowired
+    EstimationJobRepository estimationJobRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    EstimationService estimationService;
+
+    @BeforeAll
+    static void startCallbackServer() throws IOException {
+        callbackServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        callbackServer.createContext("/hook", exchange -> {
+            callbacks.add(new String(exchange.getRequestBody().readAllBytes()));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        callbackServer.start();
+    }
+
+    @AfterAll
+    static void stopCallbackServer() {
+        callbackServer.stop(0);
+    }
+
+    @Test
+    void jobIsPendingThenCompletesWithItsEstimation() throws InterruptedException {
+        EstimationJobResult submitted = estimationJobService.submit(item("Sony WH-1000XM4 job"), null);
+
+        assertNotNull(submitted.getJobId());
+        assertEquals(EstimationJobStatus.PENDING, submitted.getStatus());
+        assertNull(submitted.getEstimation());
+
+        EstimationJobResult finished = awaitFinished(submitted.getJobId());
+        assertEquals(EstimationJobStatus.COMPLETED, finished.getStatus());
+        assertEquals("Sony WH-1000XM4 job", finished.getEstimation().getItemName());
+        assertNotNull(finished.getEstimation().getEstimatedPrice());
+        assertNull(finished.getError());
+        assertFalse(finished.getUpdatedAt().isBefore(finished.getCreatedAt()));
+    }
+
+    @Test
+    void completedJobIsReportedAfterItsEstimationIsDeleted() throws InterruptedException {
+        EstimationJobResult submitted = estimationJobService.submit(item("Sony WH-1000XM4 deleted"), null);
+        EstimationJobResult finished = awaitFinished(submitted.getJobId());
+
+        estimationService.deleteEstimation(finished.getEstimation().getId());
+
+        EstimationJobResult result = estimationJobService.getJob(submitted.getJobId());
+        assertEquals(EstimationJobStatus.COMPLETED, result.getStatus());
+        assertNull(result.getEstimation());
+    }
+
+    @Test
+    void unknownJobIsNotFound() {
+        assertThrows(EstimationJobNotFoundException.class, () -> estimationJobService.getJob(UUID.randomUUID()));
+    }
+
+    @Test
+    void jobWithAnUnreadablePayloadFails() {
+        EstimationJob job = new EstimationJob();
+        job.setStatus(EstimationJobStatus.PENDING);
+        job.setRequestPayload("{\"itemName\": ");
+        EstimationJob saved = estimationJobRepository.save(job);
+
+        estimationJobService.run(saved.getId());
+
+        EstimationJobResult result = estimationJobService.getJob(saved.getId());
+        assertEquals(EstimationJobStatus.FAILED, result.getStatus());
+        assertNotNull(result.getError());
+        assertNull(result.getEstimation());
+    }
+
+    @Test
+    void finishedJobIsPostedToItsCallback() throws InterruptedException {
+        String callbackUrl = "http://127.0.0.1:" + callbackServer.getAddress().getPort() + "/hook";
+        callbacks.clear();
+
+        EstimationJobResult submitted = estimationJobService.submit(item("Sony WH-1000XM5 callback"), callbackUrl);
+
+        String body = callbacks.poll(30, TimeUnit.SECONDS);
+        assertNotNull(body, "callback not delivered");
+        JsonNode posted = objectMapper.readTree(body);
+        assertEquals(submitted.getJobId().toString(), posted.get("jobId").asString());
+        assertEquals("COMPLETED", posted.get("status").asString());
+        assertEquals("Sony WH-1000XM5 callback", posted.get("estimation").get("itemName").asString());
+    }
+
+    @Test
+    void callbackHostMustBeAllowed() {
+        assertThrows(InvalidEstimationRequestException.class,
+                () -> estimationJobService.submit(item("Sony WH-1000XM3"), "http://localhost:8080/hook"));
+        assertThrows(InvalidEstimationRequestException.class,
+                () -> estimationJobService.submit(item("Sony WH-1000XM3"), "ftp://127.0.0.1/hook"));
+    }
+
+    @Test
+    void callbackMustResolveToPublicAddressesWhenNoHostIsAllowed() {
+        for (String url : List.of(
+                "http://127.0.0.1/hook",
+                "http://localhost:8080/hook",
+                "http://[::1]/hook",
+                "http://0.0.0.0/hook",
+                "http://10.1.2.3/hook",
+                "http://172.16.0.1/hook",
+                "http://192.168.1.10/hook",
+                "http://169.254.169.254/latest/meta-data",
+                "http://100.64.0.1/hook",
+                "http://[fd00::1]/hook",
+                "http://[fe80::1]/hook",
+                "file:///etc/passwd",
+                "not a url",
+                "/relative/hook")) {
+            assertThrows(InvalidEstimationRequestException.class,
+                    () -> EstimationJobService.validateCallbackUrl(url, Set.of()), url);
+        }
+        EstimationJobService.validateCallbackUrl("https://93.184.215.14/hook", Set.of());
+        EstimationJobService.validateCallbackUrl("http://[2606:4700::1111]/hook", Set.of());
+    }
+
+    @Test
+    void staleJobsAreRequeued() throws InterruptedException {
+        // Left RUNNING by a node that went away an hour ago
+        EstimationJob job = new EstimationJob();
+        job.setStatus(EstimationJobStatus.RUNNING);
+        job.setRequestPayload(objectMapper.writeValueAsString(item("Sony WH-1000XM2 recovered")));
+        job.setCreatedAt(LocalDateTime.now().minusHours(1));
+        EstimationJob stale = estimationJobRepository.save(job);
+
+        estimationJobService.recoverInterruptedJobs();
+
+        EstimationJobResult recovered = awaitFinished(stale.getId());
+        assertEquals(EstimationJobStatus.COMPLETED, recovered.getStatus());
+        assertEquals("Sony WH-1000XM2 recovered", recovered.getEstimation().getItemName());
+    }
+
+    @Test
+    void recentRunningJobsAreLeftAlone() {
+        EstimationJob job = new EstimationJob();
+        job.setStatus(EstimationJobStatus.RUNNING);
+        job.setRequestPayload(objectMapper.writeValueAsString(item("Sony WH-1000XM1 running")));
+        EstimationJob running = estimationJobRepository.save(job);
+
+        estimationJobService.recoverInterruptedJobs();
+
+        assertEquals(EstimationJobStatus.RUNNING, estimationJobService.getJob(running.getId()).getStatus());
+        estimationJobRepository.delete(running);
+    }
+
+    private EstimationJobResult awaitFinished(UUID jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            EstimationJobResult result = estimationJobService.getJob(jobId);
+            if (result.getStatus() == EstimationJobStatus.COMPLETED || result.getStatus() == EstimationJobStatus.FAILED) {
+                return result;
+            }
+            Thread.sleep(50);
+        }
+        fail("job " + jobId + " did not finish");
+        return null;
+    }
+
+    private static Estimation item(String name) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setBrand("Sony");
+        estimation.setCategory("Headphones");
+        estimation.setYear(2021);
+        estimation.setConditionRating(7);
+        return estimation;
+    }
+}
@@ -0,0 +1,173 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.EstimationPage;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import com.yann.smart_valuator_api.repository.EstimationSummary;
+import exception.InvalidEstimationRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false"
+})
+class EstimationListingTest {
+
+    @Autowired
+    EstimationService estimationService;
+
+    @Autowired
+    EstimationJdbcRepository estimationJdbcRepository;
+
+    @Test
+    void cursorRoundTrips() {
+        EstimationCursor cursor = new EstimationCursor(LocalDateTime.of(2026, 3, 1, 12, 30, 15, 123_456_000), 42L);
+
+        String token = cursor.encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+        assertEquals(cursor, EstimationCursor.decode(token));
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        for (String token : List.of(
+                "not base64!",
+                encode("no separator"),
+                encode("2026-03-01T12:30|not a number"),
+                encode("yesterday|42"),
+                encode("|42"))) {
+            assertThrows(InvalidEstimationRequestException.class, () -> EstimationCursor.decode(token), token);
+            assertThrows(InvalidEstimationRequestException.class,
+                    () -> estimationService.listEstimations(null, null, null, null, token, 10, false), token);
+        }
+    }
+
+    @Test
+    void pagesWalkEveryRowOnceNewestFirstThroughTies() {
+        String brand = "Leica " + System.nanoTime();
+        List<Estimation> rows = insert(brand);
+
+        List<Long> walked = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            EstimationPage<?> page = estimationService.listEstimations(brand, null, null, null, cursor, 2, false);
+            page.getItems().forEach(item -> walked.add(((Estimation) item).getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(newestFirst(rows), walked);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void summaryPagesFollowTheSameOrder() {
+        String brand = "Leica summary " + System.nanoTime();
+        List<Estimation> rows = insert(brand);
+
+        EstimationPage<?> first = estimationService.listEstimations(brand, null, null, null, null, 4, true);
+        EstimationPage<?> last = estimationService.listEstimations(brand, null, null, null, first.getNextCursor(), 4, true);
+
+        List<Long> walked = new ArrayList<>();
+        first.getItems().forEach(item -> walked.add(((EstimationSummary) item).getId()));
+        last.getItems().forEach(item -> walked.add(((EstimationSummary) item).getId()));
+        assertEquals(newestFirst(rows), walked);
+        assertNotNull(first.getNextCursor());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void exactlyFullLastPageHasNoNextCursor() {
+        String brand = "Leica full " + System.nanoTime();
+        insert(brand);
+
+        EstimationPage<?> page = estimationService.listEstimations(brand, null, null, null, null, 6, false);
+
+        assertEquals(6, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void filtersCombine() {
+        String brand = "Leica filters " + System.nanoTime();
+        List<Estimation> rows = insert(brand);
+
+        assertEquals(ids(rows, row -> row.getCategory().equals("Rangefinder")),
+                list(brand, "Rangefinder", null, null));
+        assertEquals(ids(rows, row -> row.getYear() >= 1960),
+                list(brand, null, 1960, null));
+        assertEquals(ids(rows, row -> row.getYear() <= 1960),
+                list(brand, null, null, 1960));
+        assertEquals(ids(rows, row -> row.getCategory().equals("Rangefinder") && row.getYear() == 1960),
+                list(brand, "Rangefinder", 1960, 1960));
+        assertEquals(List.of(), list(brand, "Compact", null, null));
+    }
+
+    // Six rows: three sharing one created_at (ordered by id among themselves), two sharing another, one older
+    private List<Estimation> insert(String brand) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        List<Estimation> rows = List.of(
+                item(brand, "Rangefinder", 1954, now.minusMinutes(1)),
+                item(brand, "SLR", 1960, now.minusMinutes(1)),
+                item(brand, "Rangefinder", 1960, now.minusMinutes(1)),
+                item(brand, "SLR", 1971, now.minusMinutes(2)),
+                item(brand, "Rangefinder", 1984, now.minusMinutes(2)),
+                item(brand, "SLR", 1948, now.minusMinutes(3)));
+        estimationJdbcRepository.batchInsert(rows);
+        return rows;
+    }
+
+    private List<Long> list(String brand, String category, Integer yearFrom, Integer yearTo) {
+        List<Long> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            EstimationPage<?> page = estimationService.listEstimations(brand, category, yearFrom, yearTo, cursor, 1, false);
+            page.getItems().forEach(item -> walked.add(((Estimation) item).getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return walked;
+    }
+
+    private static List<Long> ids(List<Estimation> rows, Predicate<Estimation> filter) {
+        return newestFirst(rows.stream().filter(filter).toList());
+    }
+
+    private static List<Long> newestFirst(List<Estimation> rows) {
+        return rows.stream()
+                .sorted(Comparator.comparing(Estimation::getCreatedAt).thenComparing(Estimation::getId).reversed())
+                .map(Estimation::getId)
+                .toList();
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Estimation item(String brand, String category, int year, LocalDateTime createdAt) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(brand + " " + category + " " + year);
+        estimation.setBrand(brand);
+        estimation.setCategory(category);
+        estimation.setYear(year);
+        estimation.setConditionRating(6);
+        estimation.setCreatedAt(createdAt);
+        return estimation;
+    }
+}
@@ -0,0 +1,37 @@
+package com.yann.smart_valuator_api.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EstimationMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EstimationMetrics metrics = new EstimationMetrics(registry, 2);
+
+    @Test
+    void capsDistinctCategoryTags() {
+        assertEquals("smartphone", metrics.categoryTag(" Smartphone "));
+        assertEquals("laptop", metrics.categoryTag("Laptop"));
+        assertEquals("other", metrics.categoryTag("Console"));
+        // Categories seen before the cap keep their own tag
+        assertEquals("smartphone", metrics.categoryTag("SMARTPHONE"));
+        assertEquals("unknown", metrics.categoryTag(null));
+    }
+
+    @Test
+    void countsFallbacksByReasonAndTimesStages() {
+        metrics.fallback(EstimationMetrics.FallbackReason.ZERO_PRICE, "model-a", "Laptop");
+        metrics.fallback(EstimationMetrics.FallbackReason.ZERO_PRICE, "model-a", "laptop");
+        String result = metrics.time(EstimationMetrics.Stage.PARSE, "model-a", "Laptop", () -> "parsed");
+
+        assertEquals("parsed", result);
+        assertEquals(2, registry.get("estimation.fallback")
+                .tags("reason", "zero_price", "model", "model-a", "category", "laptop")
+                .counter().count());
+        assertEquals(1, registry.get("estimation.stage")
+                .tags("stage", "parse", "category", "laptop")
+                .timer().count());
+    }
+}
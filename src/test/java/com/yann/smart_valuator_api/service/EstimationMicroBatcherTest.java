@@ -0,0 +1,148 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.load.StubChatCompletionServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.stream=false",
+        "hf.hedge.enabled=false",
+        "hf.micro-batch.enabled=true",
+        "hf.micro-batch.max-items=4",
+        "hf.micro-batch.window=5s",
+        "hf.resilience.latency-budget=1s"
+})
+class EstimationMicroBatcherTest {
+
+    // Numbered product lines of a multi-item prompt, as they appear in the JSON request body
+    private static final Pattern PRODUCT = Pattern.compile("\\\\n(\\d+)\\. Item: ");
+
+    static StubChatCompletionServer upstream;
+
+    @Autowired
+    EstimationMicroBatcher microBatcher;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) throws IOException {
+        if (upstream == null) {
+            upstream = new StubChatCompletionServer(0);
+        }
+        registry.add("hf.api.url", upstream::url);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.close();
+        upstream = null;
+    }
+
+    @AfterEach
+    void resetUpstream() {
+        upstream.setResponder(null);
+        upstream.setLatencyMillis(0);
+        upstream.resetCounters();
+    }
+
+    @Test
+    void concurrentItemsShareOneUpstreamCall() throws Exception {
+        upstream.setResponder(request -> batchAnswer(request, -1));
+
+        List<AiEstimationResult> results = estimateConcurrently(4);
+
+        assertEquals(1, upstream.requests());
+        for (int i = 0; i < results.size(); i++) {
+            assertFalse(results.get(i).isFallback());
+            assertEquals(0, BigDecimal.valueOf(100 + i + 1).compareTo(results.get(i).getEstimatedPrice()),
+                    "item " + i + " got " + results.get(i).getEstimatedPrice());
+        }
+    }
+
+    @Test
+    void itemsMissingFromTheAnswerAreEstimatedAlone() throws Exception {
+        // The multi-item answer skips the second product; single-item prompts get the stub estimation
+        upstream.setResponder(request -> request.contains("JSON array")
+                ? batchAnswer(request, 2)
+                : "{\"description\":\"Single\",\"estimatedPrice\":420.00,\"verdict\":\"interesting\"}");
+
+        List<AiEstimationResult> results = estimateConcurrently(4);
+
+        assertEquals(2, upstream.requests());
+        assertEquals(0, new BigDecimal("420.00").compareTo(results.get(1).getEstimatedPrice()));
+        assertEquals(0, new BigDecimal("103").compareTo(results.get(2).getEstimatedPrice()));
+    }
+
+    @Test
+    void slowBatchIsAnsweredWithFallbackWithinTheCallersBudget() throws Exception {
+        upstream.setLatencyMillis(3_000);
+
+        long started = System.nanoTime();
+        List<AiEstimationResult> results = estimateConcurrently(4);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        // One batch call cut short by the budget, and no single-item call after it
+        assertEquals(1, upstream.requests());
+        assertTrue(elapsedMillis < 2_500, "took " + elapsedMillis + "ms");
+        results.forEach(result -> assertTrue(result.isFallback()));
+    }
+
+    // Prices each product at 100 + its number so results can be matched to items
+    private static String batchAnswer(String request, int skipped) {
+        StringBuilder answer = new StringBuilder("Here you go:\n```json\n[");
+        Matcher matcher = PRODUCT.matcher(request);
+        while (matcher.find()) {
+            int index = Integer.parseInt(matcher.group(1));
+            if (index == skipped) {
+                continue;
+            }
+            if (answer.charAt(answer.length() - 1) != '[') {
+                answer.append(',');
+            }
+            answer.append("{\"index\":").append(index)
+                    .append(",\"description\":\"Item ").append(index)
+                    .append("\",\"estimatedPrice\":").append(100 + index).append('}');
+        }
+        return answer.append("]\n```").toString();
+    }
+
+    // Items arrive one by one so their order in the prompt matches their index
+    private List<AiEstimationResult> estimateConcurrently(int count) throws Exception {
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<AiEstimationResult>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Estimation item = new Estimation();
+                item.setItemName("Phone model " + i);
+                item.setBrand("Brand");
+                item.setCategory("Smartphone");
+                item.setYear(2023);
+                item.setConditionRating(8);
+                futures.add(callers.submit(() -> microBatcher.estimate(item)));
+                Thread.sleep(50);
+            }
+            List<AiEstimationResult> results = new ArrayList<>();
+            for (Future<AiEstimationResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+    }
+}
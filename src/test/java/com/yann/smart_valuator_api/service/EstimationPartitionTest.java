@@ -0,0 +1,131 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationArchiveRepository;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import com.yann.smart_valuator_api.repository.EstimationPartitionRepository;
+import com.yann.smart_valuator_api.repository.EstimationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Closed afterwards: its retention settings make it a context of its own
+@DirtiesContext
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false",
+        "estimation.analytics.initial-delay=1h",
+        "estimation.partitions.initial-delay=1h",
+        "estimation.retention.months=12"
+})
+class EstimationPartitionTest {
+
+    // Long expired under a 12 month retention
+    private static final YearMonth MONTH = YearMonth.of(2001, 1);
+
+    static Path archiveDir;
+
+    @Autowired
+    EstimationPartitionService estimationPartitionService;
+
+    @Autowired
+    EstimationPartitionRepository estimationPartitionRepository;
+
+    @Autowired
+    EstimationArchiveRepository estimationArchiveRepository;
+
+    @Autowired
+    EstimationJdbcRepository estimationJdbcRepository;
+
+    @Autowired
+    EstimationRepository estimationRepository;
+
+    @Autowired
+    EstimationService estimationService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void archiveProperties(DynamicPropertyRegistry registry) throws IOException {
+        archiveDir = Files.createTempDirectory("estimation-archive");
+        registry.add("estimation.retention.archive-dir", archiveDir::toString);
+    }
+
+    @Test
+    void expiredMonthsAreArchivedAndStayReadable() throws IOException {
+        // Archives of the month left by earlier runs, whose files may be gone
+        jdbcTemplate.update("DELETE FROM estimation_archives WHERE partition_name = 'estimations_p2001_01'");
+        estimationPartitionRepository.create(MONTH);
+        // Every character COPY escapes
+        Estimation escaped = item("Tab\tradio \\ 1", "Line one\nline two\r\n\tindented, a \\ backslash and \\N",
+                MONTH.atDay(10).atTime(9, 15, 30, 123_456_000));
+        escaped.setEstimatedPrice(new BigDecimal("123.45"));
+        escaped.setFingerprint(-42L);
+        Estimation sparse = item("Plain radio", null, MONTH.atEndOfMonth().atTime(23, 59, 59));
+        estimationJdbcRepository.batchInsert(List.of(escaped, sparse));
+
+        assertTrue(estimationPartitionService.maintain().contains(MONTH));
+
+        List<YearMonth> months = estimationPartitionRepository.findMonths();
+        assertFalse(months.contains(MONTH));
+        YearMonth current = YearMonth.now();
+        assertTrue(months.containsAll(List.of(current.minusMonths(1), current, current.plusMonths(3))), months.toString());
+        assertTrue(estimationRepository.findById(escaped.getId()).isEmpty());
+
+        Estimation restored = estimationService.getEstimationById(escaped.getId(), true);
+        assertEquals(escaped.getItemName(), restored.getItemName());
+        assertEquals(escaped.getAiDescription(), restored.getAiDescription());
+        assertEquals(escaped.getCreatedAt(), restored.getCreatedAt());
+        assertEquals(escaped.getEstimatedPrice(), restored.getEstimatedPrice());
+        assertEquals(-42L, restored.getFingerprint());
+        assertThrows(RuntimeException.class, () -> estimationService.getEstimationById(escaped.getId()));
+
+        List<Estimation> listed = estimationService.getArchivedEstimations(
+                MONTH.atDay(1).atStartOfDay(), MONTH.plusMonths(1).atDay(1).atStartOfDay(), 10);
+        assertEquals(List.of(escaped.getId(), sparse.getId()), listed.stream().map(Estimation::getId).toList());
+        Estimation restoredSparse = listed.get(1);
+        assertNull(restoredSparse.getAiDescription());
+        assertNull(restoredSparse.getBrand());
+        assertNull(restoredSparse.getEstimatedPrice());
+        assertEquals(1, estimationService.getArchivedEstimations(
+                MONTH.atDay(1).atStartOfDay(), MONTH.plusMonths(1).atDay(1).atStartOfDay(), 1).size());
+
+        EstimationArchiveRepository.Archive archive = estimationArchiveRepository.findAll().stream()
+                .filter(a -> a.partitionName().equals("estimations_p2001_01"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(2, archive.rowCount());
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            assertEquals(List.of(Path.of(archive.file())), files.toList());
+        }
+    }
+
+    private static Estimation item(String itemName, String description, LocalDateTime createdAt) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(itemName);
+        estimation.setCategory("Radio");
+        estimation.setYear(1998);
+        estimation.setConditionRating(6);
+        estimation.setAiDescription(description);
+        estimation.setCreatedAt(createdAt);
+        return estimation;
+    }
+}
@@ -0,0 +1,137 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EstimationResultCacheTest {
+
+    private final EstimationResultCache cache = new EstimationResultCache(100, Duration.ofMinutes(5));
+
+    @Test
+    void normalizesItemFieldsIntoTheSameKey() {
+        EstimationCacheKey first = EstimationCacheKey.of(estimation(" iPhone 13  Pro", "Apple"));
+        EstimationCacheKey second = EstimationCacheKey.of(estimation("iphone 13 pro", "APPLE "));
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    void servesRepeatedItemsFromCache() {
+        AtomicInteger calls = new AtomicInteger();
+        EstimationCacheKey key = EstimationCacheKey.of(estimation("iPhone 13 Pro", "Apple"));
+
+        cache.get(key, () -> result(calls.incrementAndGet(), false));
+        AiEstimationResult second = cache.get(key, () -> result(calls.incrementAndGet(), false));
+
+        assertEquals(1, calls.get());
+        assertEquals(new BigDecimal("1"), second.getEstimatedPrice());
+        assertEquals(1, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    void collapsesConcurrentIdenticalRequestsIntoOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        EstimationCacheKey key = EstimationCacheKey.of(estimation("MacBook Pro", "Apple"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            Future<?>[] futures = new Future<?>[8];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(() -> cache.get(key, () -> {
+                    calls.incrementAndGet();
+                    await(release);
+                    return result(850, false);
+                }));
+            }
+            // Give every caller time to reach the cache before the upstream call finishes
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    void doesNotRetainFallbackResults() {
+        AtomicInteger calls = new AtomicInteger();
+        EstimationCacheKey key = EstimationCacheKey.of(estimation("Galaxy S23", "Samsung"));
+
+        cache.get(key, () -> result(calls.incrementAndGet(), true));
+        cache.get(key, () -> result(calls.incrementAndGet(), true));
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void doesNotRetainFailures() {
+        EstimationCacheKey key = EstimationCacheKey.of(estimation("iPad Pro", "Apple"));
+
+        assertThrows(IllegalStateException.class, () -> cache.get(key, () -> {
+            throw new IllegalStateException("upstream down");
+        }));
+        AiEstimationResult result = cache.get(key, () -> result(470, false));
+
+        assertEquals(new BigDecimal("470"), result.getEstimatedPrice());
+    }
+
+    @Test
+    void asyncLoaderThrowingBeforeItsFutureIsNotRetained() {
+        EstimationCacheKey key = EstimationCacheKey.of(estimation("Pixel 8", "Google"));
+
+        CompletableFuture<AiEstimationResult> failed = cache.getAsync(key, () -> {
+            throw new IllegalStateException("client not started");
+        });
+        AiEstimationResult result = cache.getAsync(key, () -> CompletableFuture.completedFuture(result(520, false)))
+                .join();
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(new BigDecimal("520"), result.getEstimatedPrice());
+        assertEquals(2, cache.stats().misses());
+    }
+
+    private static Estimation estimation(String itemName, String brand) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(itemName);
+        estimation.setBrand(brand);
+        estimation.setCategory("Smartphone");
+        estimation.setYear(2022);
+        estimation.setConditionRating(8);
+        return estimation;
+    }
+
+    private static AiEstimationResult result(int price, boolean fallback) {
+        AiEstimationResult result = new AiEstimationResult();
+        result.setEstimatedPrice(new BigDecimal(price));
+        result.setFallback(fallback);
+        return result;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.PriceHistory;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import com.yann.smart_valuator_api.repository.EstimationPartitionRepository;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.Bucket;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.Filter;
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.GroupBy;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false",
+        "estimation.analytics.initial-delay=1h"
+})
+class EstimationRollupTest {
+
+    private static final LocalDate DAY = LocalDate.now().minusDays(10);
+
+    @Autowired
+    EstimationJdbcRepository estimationJdbcRepository;
+
+    @Autowired
+    EstimationRollupRepository estimationRollupRepository;
+
+    @Autowired
+    EstimationPartitionRepository estimationPartitionRepository;
+
+    @Autowired
+    EstimationRollupService estimationRollupService;
+
+    @Autowired
+    PriceAnalyticsService priceAnalyticsService;
+
+    @Autowired
+    FallbackPricingEngine fallbackPricingEngine;
+
+    @Test
+    void priceHistoryComesFromTheRollups() {
+        String category = "Camera " + System.nanoTime();
+        // 100, 110, ... 290: Sony the even steps, Nikon the odd ones
+        List<Estimation> estimations = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            estimations.add(item(category, i % 2 == 0 ? "Sony" : "Nikon", 2020, 8, 100 + 10 * i, DAY));
+        }
+        estimations.add(item(category, "Sony", 2021, 7, 500, DAY.plusDays(1)));
+        estimationJdbcRepository.batchInsert(estimations);
+        estimationRollupRepository.recompute(DAY, DAY.plusDays(2));
+
+        PriceHistory byDay = priceAnalyticsService.priceHistory(new Filter(category, null, null, null),
+                DAY, DAY.plusDays(1), Bucket.DAY, GroupBy.NONE, List.of(0.0, 50.0, 100.0));
+        assertEquals(2, byDay.points().size());
+        PriceHistory.Point first = byDay.points().getFirst();
+        assertEquals(DAY, first.bucketStart());
+        assertEquals(20, first.count());
+        assertEquals(new BigDecimal("195.00"), first.average());
+        assertEquals(new BigDecimal("100.00"), first.percentiles().get("p0"));
+        assertEquals(new BigDecimal("290.00"), first.percentiles().get("p100"));
+        // Within the 5% width of a histogram bin
+        assertEquals(195, first.percentiles().get("p50").doubleValue(), 195 * 0.05);
+
+        PriceHistory byBrand = priceAnalyticsService.priceHistory(new Filter(category, null, null, null),
+                DAY, DAY.plusDays(1), Bucket.MONTH, GroupBy.BRAND, List.of(50.0));
+        assertEquals(List.of("Nikon", "Sony"), byBrand.points().stream().map(PriceHistory.Point::group).distinct().sorted().toList());
+        assertEquals(21, byBrand.points().stream().mapToLong(PriceHistory.Point::count).sum());
+
+        // Three dimensions: merged from the full combinations
+        PriceHistory sony2020 = priceAnalyticsService.priceHistory(new Filter(category, "Sony", 2020, null),
+                DAY, DAY.plusDays(1), Bucket.YEAR, GroupBy.NONE, List.of());
+        assertEquals(1, sony2020.points().size());
+        assertEquals(10, sony2020.points().getFirst().count());
+        assertEquals(new BigDecimal("280.00"), sony2020.points().getFirst().max());
+    }
+
+    @Test
+    void finalMonthsComeFromTheMonthlyRollups() {
+        String category = "Tripod " + System.nanoTime();
+        YearMonth month = YearMonth.from(estimationRollupService.monthlyUntil()).minusMonths(2);
+        // Older than the partitions a new database starts with
+        estimationPartitionRepository.create(month);
+        estimationPartitionRepository.create(month.plusMonths(1));
+        estimationJdbcRepository.batchInsert(List.of(
+                item(category, "Manfrotto", 2018, 7, 80, month.atDay(3)),
+                item(category, "Manfrotto", 2018, 7, 120, month.atEndOfMonth()),
+                item(category, "Gitzo", 2022, 9, 400, month.plusMonths(1).atDay(15))));
+        // Only the monthly rollups, so anything reported by the month comes from them
+        estimationRollupRepository.recomputeMonth(month);
+        estimationRollupRepository.recompute(month.plusMonths(1).atDay(15), month.plusMonths(1).atDay(16));
+
+        PriceHistory byMonth = priceAnalyticsService.priceHistory(new Filter(category, null, null, null),
+                month.atDay(1).minusDays(5), month.plusMonths(1).atDay(20), Bucket.MONTH, GroupBy.BRAND, List.of());
+        assertEquals(2, byMonth.points().size());
+        assertEquals(month.atDay(1), byMonth.points().getFirst().bucketStart());
+        assertEquals("Manfrotto", byMonth.points().getFirst().group());
+        assertEquals(new BigDecimal("100.00"), byMonth.points().getFirst().average());
+        assertEquals("Gitzo", byMonth.points().get(1).group());
+
+        // Days read the daily rollups, which this month has none of
+        PriceHistory byDay = priceAnalyticsService.priceHistory(new Filter(category, null, null, null),
+                month.atDay(1), month.atEndOfMonth(), Bucket.DAY, GroupBy.NONE, List.of());
+        assertTrue(byDay.points().isEmpty());
+    }
+
+    @Test
+    void refreshRollsUpTodaysEstimations() throws InterruptedException {
+        String category = "Drone " + System.nanoTime();
+        estimationJdbcRepository.batchInsert(List.of(
+                item(category, "DJI", 2023, 9, 450, LocalDate.now()),
+                item(category, "DJI", 2023, 9, 550, LocalDate.now())));
+
+        // Application contexts of other test classes refresh on their own schedule and may hold the lock
+        boolean refreshed = false;
+        for (int attempt = 0; attempt < 50 && !refreshed; attempt++) {
+            refreshed = estimationRollupService.refresh();
+            if (!refreshed) {
+                Thread.sleep(200);
+            }
+        }
+        assertTrue(refreshed);
+
+        PriceHistory history = priceAnalyticsService.priceHistory(new Filter(category, null, null, null),
+                LocalDate.now(), LocalDate.now(), Bucket.WEEK, GroupBy.CONDITION, List.of());
+        assertEquals(1, history.points().size());
+        assertEquals("9", history.points().getFirst().group());
+        assertEquals(new BigDecimal("500.00"), history.points().getFirst().average());
+    }
+
+    @Test
+    void fallbackPricesUseTheMarketMedian() {
+        String category = "Lens " + System.nanoTime();
+        List<Estimation> estimations = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            estimations.add(item(category, "Canon", 2019, 6, i < 13 ? 300 : 320, DAY));
+        }
+        estimationJdbcRepository.batchInsert(estimations);
+        estimationRollupRepository.recompute(DAY, DAY.plusDays(1));
+
+        estimationRollupService.refreshMarketPrices();
+
+        Estimation asked = item(" " + category.toUpperCase() + " ", "canon", 2019, 6, 0, DAY);
+        asked.setEstimatedPrice(null);
+        assertEquals(new BigDecimal("300.00"), fallbackPricingEngine.price(asked));
+        asked.setConditionRating(5);
+        assertNotEquals(new BigDecimal("300.00"), fallbackPricingEngine.price(asked));
+    }
+
+    private static Estimation item(String category, String brand, int year, int condition, int price, LocalDate day) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(brand + " " + category);
+        estimation.setCategory(category);
+        estimation.setBrand(brand);
+        estimation.setYear(year);
+        estimation.setConditionRating(condition);
+        estimation.setEstimatedPrice(BigDecimal.valueOf(price).setScale(2));
+        estimation.setCreatedAt(day.atTime(12, 0));
+        return estimation;
+    }
+}
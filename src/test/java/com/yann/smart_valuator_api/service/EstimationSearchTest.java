@@ -0,0 +1,136 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.EstimationPage;
+import com.yann.smart_valuator_api.DTO.EstimationSearchHit;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationJdbcRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false",
+        "estimation.analytics.initial-delay=1h"
+})
+class EstimationSearchTest {
+
+    @Autowired
+    EstimationJdbcRepository estimationJdbcRepository;
+
+    @Autowired
+    EstimationService estimationService;
+
+    @Autowired
+    FallbackPricingEngine fallbackPricingEngine;
+
+    @Test
+    void misspelledNamesAreFoundBestMatchFirstAcrossPages() {
+        // A made-up word, so rows of earlier runs and other tests do not match
+        String word = word();
+        LocalDateTime now = LocalDateTime.now();
+        List<Estimation> estimations = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            estimations.add(item(word + " 13 Pro Max", 2022, 8, null, now.minusMinutes(i)));
+        }
+        estimations.add(item("Refurbished " + word + " 13 Pro", 2022, 8, null, now));
+        estimations.add(item("Unrelated camera", 2022, 8, null, now));
+        estimationJdbcRepository.batchInsert(estimations);
+
+        // One letter missing
+        String query = word.substring(0, 3) + word.substring(4) + " 13 pro max";
+        List<EstimationSearchHit> hits = new ArrayList<>();
+        String cursor = null;
+        do {
+            EstimationPage<EstimationSearchHit> page = estimationService.searchEstimations(query, null, cursor, 2);
+            hits.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(6, hits.size());
+        assertEquals(6, hits.stream().map(EstimationSearchHit::id).distinct().count());
+        // The five exact names first, newest first, then the partial one
+        for (int i = 0; i < 5; i++) {
+            assertEquals(estimations.get(i).getId(), hits.get(i).id());
+        }
+        assertEquals(estimations.get(5).getId(), hits.get(5).id());
+        assertTrue(hits.get(0).score() > hits.get(5).score());
+    }
+
+    @Test
+    void descriptionsAreSearchedAsFullText() {
+        String word = word();
+        Estimation older = item("Vintage radio", 1975, 6, null, LocalDateTime.now().minusDays(1));
+        older.setAiDescription("Tube radio with a " + word + " dial, still working.");
+        Estimation newer = item("Portable radio", 1985, 7, null, LocalDateTime.now());
+        newer.setAiDescription("The " + word + " dials of this series were replaced often.");
+        estimationJdbcRepository.batchInsert(List.of(older, newer));
+
+        EstimationPage<EstimationSearchHit> byText = estimationService.searchEstimations(null, word + " dial", null, 10);
+        assertEquals(List.of(newer.getId(), older.getId()), byText.getItems().stream().map(EstimationSearchHit::id).toList());
+        assertNull(byText.getItems().getFirst().score());
+
+        EstimationPage<EstimationSearchHit> both = estimationService.searchEstimations("vintage radio", word, null, 10);
+        assertEquals(List.of(older.getId()), both.getItems().stream().map(EstimationSearchHit::id).toList());
+    }
+
+    @Test
+    void fallbackUsesPricesOfSimilarlyNamedItems() throws InterruptedException {
+        String word = word();
+        LocalDateTime now = LocalDateTime.now();
+        estimationJdbcRepository.batchInsert(List.of(
+                item(word + " X100", 2021, 8, "100.00", now),
+                item(word + " X100 Black", 2021, 8, "140.00", now),
+                item(word + " X100 Silver", 2021, 8, "120.00", now),
+                // Another year, and a fallback price (no fingerprint): both ignored
+                item(word + " X100", 2015, 8, "900.00", now),
+                item(word + " X100", 2021, 8, null, now)));
+
+        Estimation asked = item(word + " X100", 2021, 8, null, now);
+        asked.setEstimatedPrice(null);
+        // A category without market median, which would come first
+        asked.setCategory(word);
+        // Loaded in the background: until then the rules price the item
+        BigDecimal price = fallbackPricingEngine.price(asked);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (price.compareTo(new BigDecimal("120.00")) != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            price = fallbackPricingEngine.price(asked);
+        }
+        assertEquals(new BigDecimal("120.00"), price);
+    }
+
+    private static String word() {
+        Random random = new Random();
+        StringBuilder word = new StringBuilder("Zy");
+        for (int i = 0; i < 8; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    // A model price sets the fingerprint, as for a model answer; without one the row is a fallback
+    private static Estimation item(String name, int year, int condition, String modelPrice, LocalDateTime createdAt) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setCategory("Electronics");
+        estimation.setYear(year);
+        estimation.setConditionRating(condition);
+        estimation.setEstimatedPrice(modelPrice == null ? new BigDecimal("50.00") : new BigDecimal(modelPrice));
+        estimation.setCreatedAt(createdAt);
+        if (modelPrice != null) {
+            estimation.setFingerprint(EstimationCacheKey.of(estimation).fingerprint());
+        }
+        return estimation;
+    }
+}
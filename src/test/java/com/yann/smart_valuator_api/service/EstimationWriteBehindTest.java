@@ -0,0 +1,233 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.repository.EstimationIdAllocator;
+import com.yann.smart_valuator_api.repository.EstimationRepository;
+import exception.EstimationNotPersistedException;
+import exception.InvalidEstimationRequestException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false",
+        "estimation.persistence.mode=write-behind",
+        "estimation.write-behind.linger=200ms",
+        "estimation.write-behind.await-timeout=1s"
+})
+class EstimationWriteBehindTest {
+
+    private static final Path LOG_DIR = createLogDir();
+
+    @DynamicPropertySource
+    static void logDir(DynamicPropertyRegistry registry) {
+        registry.add("estimation.write-behind.log-dir", LOG_DIR::toString);
+    }
+
+    @Autowired
+    EstimationService estimationService;
+
+    @Autowired
+    EstimationWriteBehind estimationWriteBehind;
+
+    @Autowired
+    EstimationIdAllocator estimationIdAllocator;
+
+    @Autowired
+    EstimationRepository estimationRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    void estimationIsReadableBeforeItsBatchIsWritten() {
+        Estimation saved = estimationService.generateAiEstimation(item("Kindle Paperwhite write-behind"));
+
+        assertNotNull(saved.getId());
+        assertSame(saved, estimationService.getEstimationById(saved.getId()));
+
+        // Updating waits for the row, then goes through JPA as usual
+        Estimation changed = item("Kindle Paperwhite write-behind");
+        changed.setEstimatedPrice(new BigDecimal("77.00"));
+        estimationService.updateEstimation(saved.getId(), changed);
+        assertNull(estimationWriteBehind.pending(saved.getId()));
+        assertEquals(1, rowCount(saved.getId()));
+        assertEquals(new BigDecimal("77.00"), estimationService.getEstimationById(saved.getId()).getEstimatedPrice());
+    }
+
+    @Test
+    void jpaAndWriteBehindIdsDoNotCollide() {
+        Estimation viaJpa = estimationRepository.save(withCreatedAt(item("Kindle Scribe jpa")));
+        Estimation viaWriteBehind = estimationWriteBehind.submit(withCreatedAt(item("Kindle Scribe write-behind")));
+        Estimation viaJpaAgain = estimationRepository.save(withCreatedAt(item("Kindle Scribe jpa again")));
+
+        assertEquals(3, List.of(viaJpa.getId(), viaWriteBehind.getId(), viaJpaAgain.getId()).stream().distinct().count());
+        estimationWriteBehind.awaitPersisted(viaWriteBehind.getId());
+        assertEquals(1, rowCount(viaWriteBehind.getId()));
+    }
+
+    @Test
+    void replaysLogSegmentsLeftByACrash() throws IOException {
+        Estimation lost = item("Kindle Oasis replayed");
+        lost.setId(estimationIdAllocator.nextId());
+        lost.setEstimatedPrice(new BigDecimal("95.00"));
+        lost.setCreatedAt(LocalDateTime.now());
+        lost.setFingerprint(EstimationCacheKey.of(lost).fingerprint());
+        Estimation alreadySaved = item("Kindle Oasis already saved");
+        alreadySaved.setId(estimationIdAllocator.nextId());
+        alreadySaved.setCreatedAt(LocalDateTime.now());
+        // Saved by the writer before the crash, so with the created_at of the logged estimation (part of the key)
+        jdbcTemplate.update("INSERT INTO estimations (id, item_name, year, created_at) VALUES (?, ?, 2022, ?)",
+                alreadySaved.getId(), alreadySaved.getItemName(), alreadySaved.getCreatedAt());
+
+        Path segment = LOG_DIR.resolve("estimations-0-000000.log");
+        Files.write(segment, List.of(
+                // As logged by the writer, fingerprint included
+                objectMapper.writeValueAsString(lost).replaceFirst("\\{", "{\"fingerprint\":" + lost.getFingerprint() + ","),
+                objectMapper.writeValueAsString(alreadySaved),
+                "{\"id\": 1, \"itemName\": \"torn"), StandardCharsets.UTF_8);
+
+        estimationWriteBehind.replay();
+
+        assertFalse(Files.exists(segment));
+        assertEquals(new BigDecimal("95.00"), jdbcTemplate.queryForObject(
+                "SELECT estimated_price FROM estimations WHERE id = ?", BigDecimal.class, lost.getId()));
+        assertEquals(lost.getFingerprint(), jdbcTemplate.queryForObject(
+                "SELECT fingerprint FROM estimations WHERE id = ?", Long.class, lost.getId()));
+        assertEquals(1, rowCount(alreadySaved.getId()));
+    }
+
+    @Test
+    void rejectsWhatTheTableWouldBeforeAnswering() {
+        Estimation outOfRange = item("Kindle Voyage condition 11");
+        outOfRange.setConditionRating(11);
+        Estimation tooLong = item("x".repeat(256));
+        Estimation noYear = item("Kindle Voyage no year");
+        noYear.setYear(null);
+
+        for (Estimation invalid : List.of(outOfRange, tooLong, noYear)) {
+            assertThrows(InvalidEstimationRequestException.class, () -> estimationWriteBehind.submit(invalid));
+            assertNull(invalid.getId());
+        }
+    }
+
+    @Test
+    void rowRejectedByTheDatabaseIsDeadLetteredWithoutHoldingUpItsBatch() throws IOException {
+        // Passes the checks, but no partition holds 1990
+        Estimation poison = item("Kindle Touch poison");
+        poison.setCreatedAt(LocalDateTime.of(1990, 1, 1, 0, 0));
+        poison.setFingerprint(-7L);
+        Estimation valid = withCreatedAt(item("Kindle Touch valid"));
+
+        estimationWriteBehind.submit(poison);
+        estimationWriteBehind.submit(valid);
+        estimationWriteBehind.awaitPersisted(poison.getId());
+        estimationWriteBehind.awaitPersisted(valid.getId());
+
+        assertEquals(1, rowCount(valid.getId()));
+        assertEquals(0, rowCount(poison.getId()));
+        // Logged with its fingerprint, which JSON bodies leave out
+        assertTrue(deadLetters().stream().anyMatch(line -> line.contains("\"id\":" + poison.getId() + ",")
+                && line.contains("\"fingerprint\":-7")));
+    }
+
+    @Test
+    void replaySkipsRowsTheDatabaseRejects() throws IOException {
+        Estimation poison = item("Kindle DX poison");
+        poison.setId(estimationIdAllocator.nextId());
+        poison.setCreatedAt(LocalDateTime.of(1990, 1, 1, 0, 0));
+        Estimation lost = withCreatedAt(item("Kindle DX replayed"));
+        lost.setId(estimationIdAllocator.nextId());
+
+        Path segment = LOG_DIR.resolve("estimations-0-000001.log");
+        Files.write(segment, List.of(
+                objectMapper.writeValueAsString(poison),
+                objectMapper.writeValueAsString(lost)), StandardCharsets.UTF_8);
+
+        estimationWriteBehind.replay();
+
+        assertFalse(Files.exists(segment));
+        assertEquals(1, rowCount(lost.getId()));
+        assertTrue(deadLetters().stream().anyMatch(line -> line.contains("\"id\":" + poison.getId() + ",")));
+    }
+
+    @Test
+    void waitingForAnUnwrittenEstimationTimesOut() throws SQLException {
+        Estimation blocked = withCreatedAt(item("Kindle Keyboard blocked"));
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                // Holds the writer's insert until rolled back
+                statement.execute("LOCK TABLE estimations IN ACCESS EXCLUSIVE MODE");
+                estimationWriteBehind.submit(blocked);
+
+                assertThrows(EstimationNotPersistedException.class,
+                        () -> estimationWriteBehind.awaitPersisted(blocked.getId()));
+                assertSame(blocked, estimationWriteBehind.pending(blocked.getId()));
+            } finally {
+                connection.rollback();
+            }
+        }
+        estimationWriteBehind.awaitPersisted(blocked.getId());
+        assertEquals(1, rowCount(blocked.getId()));
+    }
+
+    private List<String> deadLetters() throws IOException {
+        return Files.readAllLines(LOG_DIR.resolve(EstimationWriteBehind.DEAD_LETTER_FILE), StandardCharsets.UTF_8);
+    }
+
+    private int rowCount(Long id) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM estimations WHERE id = ?", Integer.class, id);
+    }
+
+    private static Estimation item(String name) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setBrand("Amazon");
+        estimation.setCategory("E-reader");
+        estimation.setYear(2022);
+        estimation.setConditionRating(8);
+        return estimation;
+    }
+
+    private static Estimation withCreatedAt(Estimation estimation) {
+        estimation.setCreatedAt(LocalDateTime.now());
+        return estimation;
+    }
+
+    private static Path createLogDir() {
+        try {
+            return Files.createTempDirectory("write-behind");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FallbackPriceRulesTest {
+
+    private static FallbackPriceRules rules;
+
+    @BeforeAll
+    static void loadBundledRules() throws Exception {
+        try (InputStream in = FallbackPriceRulesTest.class.getResourceAsStream("/pricing/fallback-rules.json")) {
+            rules = FallbackPriceRules.load(in, new ObjectMapper());
+        }
+    }
+
+    @Test
+    void firstMatchingRuleWinsAndConditionScalesThePrice() {
+        assertEquals(new BigDecimal("400.00"), rules.price(item("iPhone 14 Pro", "Apple", "Smartphone", 8)));
+        assertEquals(new BigDecimal("650.00"), rules.price(item("IPHONE-16", "Apple", "Smartphone", 10)));
+        assertEquals(new BigDecimal("329.00"), rules.price(item("Galaxy S24 Ultra", "Samsung", "Smartphone", 7)));
+        assertEquals(new BigDecimal("765.00"), rules.price(item("MacBook Pro 14", "Apple", "Laptop", 9)));
+        // Category alone is enough when the name says nothing
+        assertEquals(new BigDecimal("185.00"), rules.price(item("ThinkPad T14", "Lenovo", "Laptop", 5)));
+    }
+
+    @Test
+    void matchesWholeTokensOnly() {
+        // "2015" must not count as the "15" of an iPhone 15, nor "proxy" as "pro"
+        Estimation old = item("iPhone 6", "Apple", "Smartphone", 10);
+        old.setYear(2015);
+        assertEquals(new BigDecimal("140.00"), rules.price(old));
+        assertEquals(new BigDecimal("550.00"), rules.price(item("MacBook Proxy", "Apple", "Laptop", 10)));
+    }
+
+    @Test
+    void fallsBackToDefaultsWhenNothingMatches() {
+        assertEquals(new BigDecimal("98.00"), rules.price(item("Kindle", "Amazon", null, null)));
+        assertEquals(new BigDecimal("70.00"), rules.price(item("Kindle", "Amazon", "E-reader", 5)));
+    }
+
+    @Test
+    void rejectsTokensOutsideTheTrieAlphabet() {
+        FallbackPriceRules.RulesFile file = new FallbackPriceRules.RulesFile(
+                "test", "EUR", BigDecimal.TEN, BigDecimal.ONE,
+                List.of(new FallbackPriceRules.Rule("bad", List.of(List.of("galaxy s24")), BigDecimal.TEN))
+        );
+
+        assertThrows(IllegalArgumentException.class, () -> FallbackPriceRules.compile(file));
+    }
+
+    private static Estimation item(String name, String brand, String category, Integer condition) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setBrand(brand);
+        estimation.setCategory(category);
+        estimation.setConditionRating(condition);
+        estimation.setYear(2023);
+        return estimation;
+    }
+}
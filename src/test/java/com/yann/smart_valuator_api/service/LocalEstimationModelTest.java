@@ -0,0 +1,111 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import tools.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalEstimationModelTest {
+
+    private static final Map<String, Double> BASE_PRICES = Map.of(
+            "iPhone 13", 420.0,
+            "iPhone 14 Pro", 640.0,
+            "iPhone 15 Pro", 820.0,
+            "Galaxy S23", 480.0,
+            "Pixel 8", 390.0
+    );
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 6, 1, 12, 0);
+
+    private static LocalEstimationModel model;
+
+    @BeforeAll
+    static void trainOnSyntheticHistory() {
+        model = new LocalEstimationModel(
+                null,
+                new FallbackPricingEngine(new DefaultResourceLoader(), new ObjectMapper(), null,
+                        "classpath:pricing/fallback-rules.json", 0, 0.8, 10_000, Duration.ofMinutes(10)),
+                new EstimationMetrics(new SimpleMeterRegistry(), 20),
+                true, 50_000, 200, 150, 4, 0.1, 10);
+
+        // Price falls 10% a year and scales with condition, with 5% noise
+        Random random = new Random(42);
+        List<String> names = List.copyOf(BASE_PRICES.keySet());
+        List<Estimation> history = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String name = names.get(random.nextInt(names.size()));
+            int year = 2020 + random.nextInt(6);
+            int condition = 5 + random.nextInt(6);
+            Estimation item = item(name, year, condition);
+            item.setEstimatedPrice(BigDecimal.valueOf(expectedPrice(name, year, condition)
+                    * (1 + 0.05 * random.nextGaussian())));
+            history.add(item);
+        }
+        model.train(history);
+    }
+
+    @Test
+    void predictsPricesOfKnownItemsClosely() {
+        for (String name : BASE_PRICES.keySet()) {
+            for (int condition = 5; condition <= 10; condition += 5) {
+                AiEstimationResult result = model.estimate(item(name, 2023, condition));
+                double expected = expectedPrice(name, 2023, condition);
+                double error = Math.abs(result.getEstimatedPrice().doubleValue() - expected) / expected;
+
+                assertFalse(result.isFallback());
+                assertTrue(error < 0.12, name + " condition " + condition + " off by " + error);
+            }
+        }
+    }
+
+    @Test
+    void unknownItemsAreNotCoveredAndGetRulePricing() {
+        Estimation unknown = item("Walkman WM-2", 2023, 8);
+        unknown.setCategory("Audio");
+
+        assertFalse(model.covers(unknown));
+        assertTrue(model.covers(item("iPhone 14", 2022, 7)));
+        assertTrue(model.estimate(unknown).isFallback());
+    }
+
+    @Test
+    void needsEnoughHistoryToTrain() {
+        LocalEstimationModel untrained = new LocalEstimationModel(
+                null, null, new EstimationMetrics(new SimpleMeterRegistry(), 20),
+                true, 50_000, 200, 10, 3, 0.1, 10);
+        Estimation item = item("iPhone 13", 2022, 8);
+        item.setEstimatedPrice(BigDecimal.TEN);
+
+        untrained.train(List.of(item));
+
+        assertFalse(untrained.isTrained());
+        assertFalse(untrained.covers(item));
+    }
+
+    private static double expectedPrice(String name, int year, int condition) {
+        return BASE_PRICES.get(name) * Math.pow(0.9, NOW.getYear() - year) * condition / 10;
+    }
+
+    private static Estimation item(String name, int year, int condition) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setBrand(name.startsWith("iPhone") ? "Apple" : name.startsWith("Galaxy") ? "Samsung" : "Google");
+        estimation.setCategory("Smartphone");
+        estimation.setYear(year);
+        estimation.setConditionRating(condition);
+        estimation.setCreatedAt(NOW);
+        return estimation;
+    }
+}
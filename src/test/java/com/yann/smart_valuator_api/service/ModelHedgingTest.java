@@ -0,0 +1,146 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.load.StubChatCompletionServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.stream=false",
+        "hf.models=slow-model,fast-model",
+        "hf.hedge.enabled=true",
+        "hf.hedge.initial-delay=200ms",
+        "hf.hedge.min-delay=100ms",
+        // Small, so a few races refresh the delay
+        "hf.hedge.window-size=10"
+})
+class ModelHedgingTest {
+
+    static StubChatCompletionServer upstream;
+
+    @Autowired
+    HuggingFaceService huggingFaceService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    ModelPool modelPool;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) throws IOException {
+        if (upstream == null) {
+            upstream = new StubChatCompletionServer(0);
+        }
+        registry.add("hf.api.url", upstream::url);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.close();
+        upstream = null;
+    }
+
+    @BeforeEach
+    void resetUpstream() {
+        upstream.resetCounters();
+        upstream.setModelLatencyMillis("slow-model", 0);
+        upstream.setModelLatencyMillis("fast-model", 0);
+    }
+
+    @Test
+    void hedgeAnswersWhenThePrimaryIsSlowAndThePrimaryIsAborted() throws Exception {
+        upstream.setModelLatencyMillis("slow-model", 5_000);
+        double hedgeWins = wins("fast-model", "hedge");
+
+        long started = System.nanoTime();
+        AiEstimationResult result = huggingFaceService.generateStructuredEstimation(item());
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertFalse(result.isFallback());
+        assertTrue(elapsedMillis < 2_000, "answered after " + elapsedMillis + " ms");
+        assertEquals(2, upstream.requests());
+        assertEquals(hedgeWins + 1, wins("fast-model", "hedge"));
+
+        // The losing call gives its concurrency slot back as soon as it is aborted
+        long deadline = System.currentTimeMillis() + 1_000;
+        while (inFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, inFlight());
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() {
+        // The first call of the run pays for connecting and class loading, which can exceed the delay
+        huggingFaceService.generateStructuredEstimation(item());
+        upstream.resetCounters();
+        double primaryWins = wins("slow-model", "primary");
+
+        AiEstimationResult result = huggingFaceService.generateStructuredEstimation(item());
+
+        assertFalse(result.isFallback());
+        assertEquals(1, upstream.requests());
+        assertEquals(primaryWins + 1, wins("slow-model", "primary"));
+    }
+
+    @Test
+    void failingPrimaryIsNotHedged() {
+        upstream.setErrorStatus(500);
+        try {
+            AiEstimationResult result = huggingFaceService.generateStructuredEstimation(item());
+
+            assertTrue(result.isFallback());
+            assertEquals(1, upstream.requests());
+        } finally {
+            upstream.setErrorStatus(0);
+        }
+    }
+
+    @Test
+    void abortedPrimariesCountTowardsTheDelay() {
+        // Every primary loses to a hedge answering 400ms after it is sent
+        upstream.setModelLatencyMillis("slow-model", 5_000);
+        upstream.setModelLatencyMillis("fast-model", 400);
+
+        // The delay is recomputed at least once over these
+        for (int i = 0; i < 16; i++) {
+            assertFalse(huggingFaceService.generateStructuredEstimation(item()).isFallback());
+        }
+
+        // Each aborted primary ran for at least the delay plus the hedge's 400ms
+        assertTrue(modelPool.hedgeDelayNanos() >= 400_000_000L,
+                "hedge delay " + modelPool.hedgeDelayNanos() / 1_000_000 + " ms");
+    }
+
+    private double wins(String model, String role) {
+        var counter = meterRegistry.find("estimation.upstream.wins").tags("model", model, "role", role).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("hf.upstream.concurrency.in-flight").gauge().value();
+    }
+
+    private static Estimation item() {
+        Estimation estimation = new Estimation();
+        estimation.setItemName("Galaxy S24");
+        estimation.setBrand("Samsung");
+        estimation.setCategory("Smartphone");
+        estimation.setYear(2024);
+        estimation.setConditionRating(9);
+        return estimation;
+    }
+}
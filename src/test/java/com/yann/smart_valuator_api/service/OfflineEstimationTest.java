@@ -0,0 +1,64 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.entity.Estimation;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * With {@code estimation.model.mode=local} nothing goes over the network: the upstream URL
+ * points at a closed port and estimations still get priced.
+ */
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.url=http://127.0.0.1:9/v1/chat/completions",
+        "estimation.model.mode=local",
+        "estimation.local-model.enabled=false"
+})
+class OfflineEstimationTest {
+
+    @Autowired
+    EstimationService estimationService;
+
+    @Autowired
+    LocalEstimationModel localEstimationModel;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void estimatesWithTheLocalModelOnly() {
+        List<Estimation> history = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            Estimation item = item("Nintendo Switch OLED " + (i % 4), 8);
+            item.setEstimatedPrice(new BigDecimal("230.00"));
+            history.add(item);
+        }
+        localEstimationModel.train(history);
+
+        Estimation estimated = estimationService.applyAiEstimation(item("Nintendo Switch OLED", 8));
+        Estimation unknown = estimationService.applyAiEstimation(item("Gameboy Color", 8));
+
+        assertEquals(230.0, estimated.getEstimatedPrice().doubleValue(), 5.0);
+        assertNotNull(unknown.getEstimatedPrice());
+        assertEquals(2, meterRegistry.get("estimation.route")
+                .tags("backend", "local", "reason", "mode").counter().count());
+    }
+
+    private static Estimation item(String name, int condition) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setBrand("Nintendo");
+        estimation.setCategory("Console");
+        estimation.setYear(2023);
+        estimation.setConditionRating(condition);
+        return estimation;
+    }
+}
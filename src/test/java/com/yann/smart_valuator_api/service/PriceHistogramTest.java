@@ -0,0 +1,50 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.repository.EstimationRollupRepository.PriceBins;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceHistogramTest {
+
+    @Test
+    void mergesDaysInAnyBinOrder() {
+        PriceHistogram histogram = new PriceHistogram();
+        // 100, 110 | 120
+        histogram.add(bins("330", new int[]{100, 110}, new long[]{2, 1}, "100", "110", "120", "120"));
+        // 60 | 105 | 200, 210
+        histogram.add(bins("575", new int[]{95, 100, 120}, new long[]{1, 1, 2}, "60", "60", "105", "105", "200", "210"));
+
+        assertEquals(7, histogram.count());
+        assertEquals(new BigDecimal("129.29"), histogram.average());
+        assertEquals(new BigDecimal("60"), histogram.min());
+        assertEquals(new BigDecimal("210"), histogram.max());
+        assertEquals(new BigDecimal("60"), histogram.percentile(0));
+        assertEquals(new BigDecimal("210.00"), histogram.percentile(100));
+        // Bin 100 holds 100, 105 and 110 after the merge: ranks 1 to 3 of 0..6
+        assertEquals(new BigDecimal("102.50"), histogram.percentile(25));
+        assertEquals(new BigDecimal("110.00"), histogram.percentile(50));
+    }
+
+    @Test
+    void emptyHistogramHasNoStatistics() {
+        PriceHistogram histogram = new PriceHistogram();
+
+        assertEquals(0, histogram.count());
+        assertNull(histogram.average());
+        assertNull(histogram.percentile(50));
+    }
+
+    // mins and maxs alternate: min of the first bin, max of the first bin, min of the second...
+    private static PriceBins bins(String sum, int[] bins, long[] counts, String... minMax) {
+        BigDecimal[] mins = new BigDecimal[bins.length];
+        BigDecimal[] maxs = new BigDecimal[bins.length];
+        for (int i = 0; i < bins.length; i++) {
+            mins[i] = new BigDecimal(minMax[2 * i]);
+            maxs[i] = new BigDecimal(minMax[2 * i + 1]);
+        }
+        return new PriceBins(new BigDecimal(sum), bins, counts, mins, maxs);
+    }
+}
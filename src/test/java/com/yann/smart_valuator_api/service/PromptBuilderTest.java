@@ -0,0 +1,85 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.ChatCompletionRequest;
+import com.yann.smart_valuator_api.entity.Estimation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptBuilderTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PromptBuilder promptBuilder = new PromptBuilder(
+            new DefaultResourceLoader(), new ObjectMapper(), registry, "classpath:prompts/");
+
+    @Test
+    void staticInstructionsComeFirstAndOnlyMatchingGuidelinesAreSent() {
+        ChatCompletionRequest request = promptBuilder.single(
+                item("Galaxy S23", "Samsung", "Smartphone"), HuggingFaceService.MODEL, false);
+
+        assertEquals("system", request.messages.get(0).role);
+        // The system message must not depend on the item, or prefix caching never hits
+        assertEquals(request.messages.get(0).content, promptBuilder.single(
+                item("MacBook Air", "Apple", "Laptop"), HuggingFaceService.MODEL, false).messages.get(0).content);
+
+        String user = request.messages.get(1).content;
+        assertTrue(user.contains("Samsung Galaxy S23/S24"));
+        assertFalse(user.contains("iPhone"));
+        assertFalse(user.contains("MacBook"));
+        assertTrue(user.endsWith("Item: Galaxy S23, Brand: Samsung, Category: Smartphone, Purchase Year: 2023, Condition: 8/10\n"));
+    }
+
+    @Test
+    void unknownItemsGetBrandLinesOrEveryLine() {
+        String appleWatch = promptBuilder.guidelinesFor("Watch", "Apple");
+        assertTrue(appleWatch.contains("iPhone 15") && appleWatch.contains("MacBook"));
+        assertFalse(appleWatch.contains("Samsung"));
+
+        String kindle = promptBuilder.guidelinesFor("E-reader", "Amazon");
+        assertTrue(kindle.contains("iPhone 15") && kindle.contains("Samsung"));
+        // Known category, unknown brand: the whole category
+        assertTrue(promptBuilder.guidelinesFor("Smartphone", "Google").contains("Samsung"));
+    }
+
+    @Test
+    void maxTokensFollowCategoryAndBatchSize() {
+        assertEquals(250, promptBuilder.single(item("iPhone 14", "Apple", "smartphone"), "m", false).max_tokens);
+        assertEquals(350, promptBuilder.maxTokens("Laptop"));
+        assertEquals(300, promptBuilder.maxTokens(null));
+
+        ChatCompletionRequest batch = promptBuilder.batch(List.of(
+                item("iPhone 14", "Apple", "Smartphone"), item("Galaxy S24", "Samsung", "Smartphone")), "m");
+        assertEquals(500, batch.max_tokens);
+        assertTrue(batch.messages.get(1).content.contains("2. Item: Galaxy S24"));
+        assertEquals(1, registry.get("hf.prompt.tokens").tag("kind", "single").summary().count());
+        assertEquals(1, registry.get("hf.prompt.tokens").tag("kind", "batch").summary().count());
+    }
+
+    @Test
+    void templatesRejectUnknownPlaceholdersAndRenderInOrder() {
+        PromptTemplate template = PromptTemplate.compile("a{{x}}b{{ y }}c{{x}}", "y", "x");
+        assertEquals("a1b2c1", template.render("2", "1"));
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile("{{z}}", "x"));
+        assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile("{{x", "x"));
+
+        assertEquals(0, PromptBuilder.estimateTokens(""));
+        // "Condition" is 3 tokens, ":" 1, "8" 1, "/" 1, "10" 1
+        assertEquals(7, PromptBuilder.estimateTokens("Condition: 8/10"));
+        assertEquals(5, PromptBuilder.estimateTokens("850€ €"));
+    }
+
+    private static Estimation item(String name, String brand, String category) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setBrand(brand);
+        estimation.setCategory(category);
+        estimation.setYear(2023);
+        estimation.setConditionRating(8);
+        return estimation;
+    }
+}
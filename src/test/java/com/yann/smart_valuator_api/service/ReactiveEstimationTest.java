@@ -0,0 +1,153 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.BatchEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.load.StubChatCompletionServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The reactive profile end to end: Netty, the WebClient model call against a local stub, and R2DBC.
+ */
+@ActiveProfiles("reactive")
+// Closed afterwards: with its R2DBC pool on top of the JDBC one, keeping it cached with the other test
+// contexts would exceed PostgreSQL's max_connections
+@DirtiesContext
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "hf.api.key=test",
+                "estimation.local-model.enabled=false",
+                "estimation.analytics.initial-delay=1h",
+                "estimation.batch.insert-batch-size=2",
+                "estimation.reactive.r2dbc.max-size=4"
+        }
+)
+class ReactiveEstimationTest {
+
+    static StubChatCompletionServer upstream;
+
+    @LocalServerPort
+    int port;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) throws IOException {
+        if (upstream == null) {
+            upstream = new StubChatCompletionServer(0);
+        }
+        registry.add("hf.api.url", upstream::url);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.close();
+        upstream = null;
+    }
+
+    @Test
+    void createdEstimationIsStoredReadBackAndReused() {
+        String name = "Pixel " + System.nanoTime();
+        Estimation created = post(item(name));
+        assertNotNull(created.getId());
+        assertEquals(0, new BigDecimal("420.00").compareTo(created.getEstimatedPrice()));
+        assertEquals("Stub estimation", created.getAiDescription());
+        // Stored with the row (it is reused below) but not part of the body
+        assertNull(created.getFingerprint());
+
+        ResponseEntity<Estimation> read = client().get().uri("/api/estimations/{id}", created.getId())
+                .retrieve().toEntity(Estimation.class).block();
+        assertEquals(created.getItemName(), read.getBody().getItemName());
+        assertEquals(EstimationEntityCache.etag(created), read.getHeaders().getETag());
+
+        // A model answer for the same item: returned again without a model call
+        upstream.resetCounters();
+        assertEquals(created.getId(), post(item(name)).getId());
+        assertEquals(0, upstream.requests());
+    }
+
+    @Test
+    void batchResultsCarryTheirIndexAndAreStored() {
+        String prefix = "Pixel batch " + System.nanoTime() + " ";
+        String body = IntStream.range(0, 5)
+                .mapToObj(i -> """
+                        {"itemName":"%s%d","brand":"Google","category":"Smartphone","year":2023,"conditionRating":8}
+                        """.formatted(prefix, i).strip())
+                .collect(Collectors.joining("\n"));
+
+        List<BatchEstimationResult> results = client().post().uri("/api/estimations/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(BatchEstimationResult.class)
+                .collectList()
+                .block();
+
+        assertEquals(List.of(0, 1, 2, 3, 4), results.stream().map(BatchEstimationResult::getIndex).sorted().toList());
+        for (BatchEstimationResult result : results) {
+            assertEquals(prefix + result.getIndex(), result.getEstimation().getItemName());
+            // Batch rows are not cached, so this reads the database
+            Estimation stored = client().get().uri("/api/estimations/{id}", result.getEstimation().getId())
+                    .retrieve().bodyToMono(Estimation.class).block();
+            assertEquals(0, new BigDecimal("420.00").compareTo(stored.getEstimatedPrice()));
+        }
+    }
+
+    @Test
+    void upstreamErrorsFallBackAndUnknownIdsAreNotFound() {
+        upstream.setErrorStatus(503);
+        try {
+            Estimation created = post(item("iPhone 13 " + System.nanoTime()));
+            assertNotNull(created.getEstimatedPrice());
+            assertNull(created.getFingerprint());
+        } finally {
+            upstream.setErrorStatus(0);
+        }
+
+        HttpStatus status = client().get().uri("/api/estimations/{id}", Long.MAX_VALUE)
+                .exchangeToMono(response -> response.releaseBody().thenReturn(HttpStatus.valueOf(response.statusCode().value())))
+                .block();
+        assertEquals(HttpStatus.NOT_FOUND, status);
+    }
+
+    private Estimation post(Estimation estimation) {
+        return client().post().uri("/api/estimations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(estimation)
+                .retrieve()
+                .bodyToMono(Estimation.class)
+                .block();
+    }
+
+    private WebClient client() {
+        return WebClient.create("http://localhost:" + port);
+    }
+
+    private static Estimation item(String name) {
+        Estimation estimation = new Estimation();
+        estimation.setItemName(name);
+        estimation.setBrand("Google");
+        estimation.setCategory("Smartphone");
+        estimation.setYear(2023);
+        estimation.setConditionRating(8);
+        return estimation;
+    }
+}
@@ -0,0 +1,54 @@
+package com.yann.smart_valuator_api.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingEstimationParserTest {
+
+    @Test
+    void completesOnceDescriptionAndPriceHaveStreamed() {
+        StreamingEstimationParser parser = new StreamingEstimationParser();
+
+        feed(parser, "```json\n{\n  \"description\": \"Good {condition}, \\\"mint\\\" box\",\n");
+        assertFalse(parser.isComplete());
+
+        feed(parser, "  \"estimatedPrice\": 450.5");
+        // The number could still continue until a delimiter arrives
+        assertFalse(parser.isComplete());
+
+        feed(parser, ",\n  \"currency\": \"EUR\"");
+        assertTrue(parser.isComplete());
+        assertEquals(
+                "{\n  \"description\": \"Good {condition}, \\\"mint\\\" box\",\n  \"estimatedPrice\": 450.5,\n  \"currency\": \"EUR\"}",
+                parser.json()
+        );
+    }
+
+    @Test
+    void closesTheObjectAfterTheLastCompleteValue() {
+        StreamingEstimationParser parser = new StreamingEstimationParser();
+
+        feed(parser, "{\"estimatedPrice\": 300, \"description\": \"Fine\", \"verd");
+
+        assertTrue(parser.isComplete());
+        assertEquals("{\"estimatedPrice\": 300, \"description\": \"Fine\"}", parser.json());
+    }
+
+    @Test
+    void returnsTheWholeObjectWhenItEndsNaturally() {
+        StreamingEstimationParser parser = new StreamingEstimationParser();
+
+        feed(parser, "Here you go: {\"verdict\": \"interesting\", \"meta\": {\"a\": [1, 2]}} trailing");
+
+        assertTrue(parser.isComplete());
+        assertEquals("{\"verdict\": \"interesting\", \"meta\": {\"a\": [1, 2]}}", parser.json());
+    }
+
+    private static void feed(StreamingEstimationParser parser, String text) {
+        // Deliver a few characters at a time, the way tokens arrive
+        for (int i = 0; i < text.length(); i += 3) {
+            parser.append(text.substring(i, Math.min(text.length(), i + 3)));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StructuredOutputParserTest {
+
+    @Test
+    void readsTheFirstObjectPastFencesAndProse() {
+        AiEstimationResult fenced = StructuredOutputParser.parse(
+                "```json\n{\"description\": \"MacBook Pro {M1}\", \"estimatedPrice\": 980, \"verdict\": \"interesting\"}\n```");
+        assertEquals("MacBook Pro {M1}", fenced.getDescription());
+        assertEquals(0, new BigDecimal("980").compareTo(fenced.getEstimatedPrice()));
+        assertEquals("interesting", fenced.getVerdict());
+
+        AiEstimationResult nested = StructuredOutputParser.parse(
+                "Here you go:\n{\"details\": {\"accessories\": [\"case\"], \"description\": \"inner\"}, "
+                        + "\"description\": \"PS5\", \"estimatedPrice\": 360.50} and {\"estimatedPrice\": 1}");
+        assertEquals("PS5", nested.getDescription());
+        assertEquals(new BigDecimal("360.50"), nested.getEstimatedPrice());
+        assertNull(nested.getVerdict());
+
+        assertThrows(IllegalArgumentException.class, () -> StructuredOutputParser.parse("No idea, sorry."));
+    }
+
+    @Test
+    void keepsWhatWasReadFromLooseOrTruncatedOutput() {
+        AiEstimationResult loose = StructuredOutputParser.parse(
+                "{description: 'Apple Watch Series 7', estimatedPrice: 210, verdict: interesting");
+        assertEquals("Apple Watch Series 7", loose.getDescription());
+        assertEquals(0, new BigDecimal("210").compareTo(loose.getEstimatedPrice()));
+        assertNull(loose.getVerdict());
+
+        AiEstimationResult truncated = StructuredOutputParser.parse("{\"estimatedPrice\": 420, \"description\": \"iPad Air in very go");
+        assertEquals(0, new BigDecimal("420").compareTo(truncated.getEstimatedPrice()));
+        assertNull(truncated.getDescription());
+    }
+
+    @Test
+    void readsPricesWrittenAsText() {
+        assertEquals(new BigDecimal("145.00"), StructuredOutputParser.parsePrice("145,00 €"));
+        assertEquals(new BigDecimal("1299.50"), StructuredOutputParser.parsePrice("1,299.50 EUR"));
+        assertEquals(new BigDecimal("450"), StructuredOutputParser.parsePrice("€450 - 600"));
+        assertNull(StructuredOutputParser.parsePrice("unknown"));
+    }
+
+    @Test
+    void readsArrayElementsWithTheirEchoedIndex() {
+        List<StructuredOutputParser.Item> items = StructuredOutputParser.parseArray(
+                "```json\n[{\"index\": 2, \"estimatedPrice\": 300}, 7, {\"estimatedPrice\": \"99\"}, {\"index\": 4, \"descr");
+        assertEquals(3, items.size());
+        assertEquals(2, items.get(0).index());
+        assertEquals(0, items.get(1).index());
+        assertEquals(new BigDecimal("99"), items.get(1).result().getEstimatedPrice());
+        assertEquals(4, items.get(2).index());
+    }
+}
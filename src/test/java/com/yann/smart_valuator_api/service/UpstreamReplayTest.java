@@ -0,0 +1,129 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.load.StubChatCompletionServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamReplayTest {
+
+    private static final String MODEL = "meta-llama/Llama-3.3-70B-Instruct";
+
+    @TempDir
+    Path recordings;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void recordedCallsAreReplayedWithTheirResponseAndLatency() throws Exception {
+        String iphone = request("Item: iPhone 13, Brand: Apple, Category: Smartphone, Purchase Year: 2021, Condition: 8/10");
+        String pixel = request("Item: Pixel 7, Brand: Google, Category: Smartphone, Purchase Year: 2022, Condition: 7/10");
+
+        try (StubChatCompletionServer upstream = new StubChatCompletionServer(100);
+             UpstreamRecorder recorder = new UpstreamRecorder(true, recordings)) {
+            RestTemplate restTemplate = new RestTemplate(new SimpleClientHttpRequestFactory());
+            restTemplate.getInterceptors().add(recorder);
+
+            restTemplate.postForObject(upstream.url(), json(iphone), String.class);
+            upstream.setErrorStatus(503);
+            assertThrows(HttpServerErrorException.class,
+                    () -> restTemplate.postForObject(upstream.url(), json(pixel), String.class));
+        }
+
+        List<UpstreamRecorder.Exchange> exchanges = UpstreamRecorder.read(recordings);
+        assertEquals(2, exchanges.size());
+        UpstreamRecorder.Exchange recorded = exchanges.getFirst();
+        assertEquals(MODEL, recorded.model());
+        assertFalse(recorded.stream());
+        assertEquals(iphone, recorded.request());
+        assertEquals(200, recorded.status());
+        assertTrue(recorded.response().contains("Stub estimation"));
+        assertTrue(recorded.latencyMillis() >= 100, "latency " + recorded.latencyMillis());
+        assertEquals(503, exchanges.get(1).status());
+
+        try (UpstreamReplayServer replay = new UpstreamReplayServer(recordings, 0, 1.0)) {
+            long started = System.nanoTime();
+            HttpResponse<String> response = post(replay, iphone);
+            assertTrue((System.nanoTime() - started) / 1_000_000 >= recorded.latencyMillis());
+            assertEquals(200, response.statusCode());
+            assertEquals(recorded.response(), response.body());
+
+            assertEquals(503, post(replay, pixel).statusCode());
+            assertEquals(0, replay.substituted());
+        }
+    }
+
+    @Test
+    void unrecordedRequestsGetARecordedCallOfTheSameKind() throws Exception {
+        try (UpstreamRecorder recorder = new UpstreamRecorder(true, recordings)) {
+            recorder.write(new UpstreamRecorder.Exchange(MODEL, false,
+                    request("Item: A, Brand: B, Category: C, Purchase Year: 2020, Condition: 5/10"),
+                    200, "application/json", 0, 400, "single"));
+            recorder.write(new UpstreamRecorder.Exchange(MODEL, false,
+                    request("1. Item: A, Brand: B, Category: C, Purchase Year: 2020, Condition: 5/10\\n"
+                            + "2. Item: D, Brand: E, Category: F, Purchase Year: 2021, Condition: 6/10"),
+                    200, "application/json", 0, 400, "multi"));
+            recorder.write(new UpstreamRecorder.Exchange(MODEL, true,
+                    request("Item: A, Brand: B, Category: C, Purchase Year: 2020, Condition: 5/10").replace(
+                            "\"stream\":false", "\"stream\":true"),
+                    200, "text/event-stream", 0, 400, "data: {\"a\":1}\n\ndata: [DONE]\n\n"));
+        }
+
+        // Recorded latencies scaled to a quarter
+        try (UpstreamReplayServer replay = new UpstreamReplayServer(recordings, 0, 0.25)) {
+            String other = request("Item: X, Brand: Y, Category: Z, Purchase Year: 2019, Condition: 9/10");
+            long started = System.nanoTime();
+            HttpResponse<String> single = post(replay, other);
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            assertEquals("single", single.body());
+            assertTrue(elapsedMillis >= 100 && elapsedMillis < 400, "elapsed " + elapsedMillis);
+            // The same request always gets the same answer
+            assertEquals("single", post(replay, other).body());
+
+            String otherBatch = request("1. Item: X, Brand: Y, Category: Z, Purchase Year: 2019, Condition: 9/10\\n"
+                    + "2. Item: U, Brand: V, Category: W, Purchase Year: 2018, Condition: 4/10");
+            assertEquals("multi", post(replay, otherBatch).body());
+
+            HttpResponse<String> streamed = post(replay, other.replace("\"stream\":false", "\"stream\":true"));
+            assertEquals("data: {\"a\":1}\n\ndata: [DONE]\n\n", streamed.body());
+            assertEquals("text/event-stream", streamed.headers().firstValue("Content-Type").orElseThrow());
+
+            assertEquals(4, replay.substituted());
+        }
+    }
+
+    // A request body as PromptBuilder's DTO serializes it
+    private static String request(String product) {
+        return "{\"model\":\"" + MODEL + "\",\"messages\":[{\"role\":\"system\",\"content\":\"Price it\"},"
+                + "{\"role\":\"user\",\"content\":\"Product:\\n" + product + "\"}],"
+                + "\"temperature\":0.3,\"max_tokens\":200,\"stream\":false}";
+    }
+
+    private static HttpEntity<String> json(String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(body, headers);
+    }
+
+    private HttpResponse<String> post(UpstreamReplayServer replay, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(replay.url()))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,91 @@
+package com.yann.smart_valuator_api.service;
+
+import com.yann.smart_valuator_api.DTO.AiEstimationResult;
+import com.yann.smart_valuator_api.entity.Estimation;
+import com.yann.smart_valuator_api.load.StubChatCompletionServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the Hugging Face client against a local stub that can be made slow or failing.
+ */
+@SpringBootTest(properties = {
+        "hf.api.key=test",
+        "hf.api.stream=false",
+        "hf.resilience.latency-budget=500ms",
+        "hf.resilience.breaker.window-size=10",
+        "hf.resilience.breaker.minimum-calls=5",
+        "hf.resilience.breaker.open-duration=1m"
+})
+class UpstreamResilienceTest {
+
+    static StubChatCompletionServer upstream;
+
+    @Autowired
+    HuggingFaceService huggingFaceService;
+
+    @Autowired
+    UpstreamGuard upstreamGuard;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) throws IOException {
+        if (upstream == null) {
+            upstream = new StubChatCompletionServer(0);
+        }
+        registry.add("hf.api.url", upstream::url);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.close();
+        upstream = null;
+    }
+
+    @Test
+    void slowUpstreamFallsBackWithinTheBudgetThenErrorsOpenTheCircuit() {
+        Estimation item = item();
+
+        AiEstimationResult healthy = huggingFaceService.generateStructuredEstimation(item);
+        assertFalse(healthy.isFallback());
+        assertEquals(0, new BigDecimal("420.00").compareTo(healthy.getEstimatedPrice()));
+
+        upstream.setLatencyMillis(5_000);
+        long started = System.nanoTime();
+        AiEstimationResult slow = huggingFaceService.generateStructuredEstimation(item);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        assertTrue(slow.isFallback());
+        assertTrue(elapsedMillis < 2_000, "fell back after " + elapsedMillis + " ms");
+
+        upstream.setLatencyMillis(0);
+        upstream.setErrorStatus(503);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(huggingFaceService.generateStructuredEstimation(item).isFallback());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, upstreamGuard.circuitState());
+
+        upstream.resetCounters();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(huggingFaceService.generateStructuredEstimation(item).isFallback());
+        }
+        assertEquals(0, upstream.requests(), "open circuit must not call the upstream");
+    }
+
+    private static Estimation item() {
+        Estimation estimation = new Estimation();
+        estimation.setItemName("iPhone 14 Pro");
+        estimation.setBrand("Apple");
+        estimation.setCategory("Smartphone");
+        estimation.setYear(2022);
+        estimation.setConditionRating(8);
+        return estimation;
+    }
+}